@@ -4,6 +4,8 @@ package jminusminus;
 
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.util.Arrays;
 
 import static jminusminus.CLConstants.*;
 
@@ -40,6 +42,16 @@ abstract class CLCPInfo {
     public boolean equals(Object other) {
         return false;
     }
+
+    /**
+     * Returns a hash code for this CLCPInfo object, computed from its tag and payload, so that
+     * equal items hash alike and the constant pool can be indexed on them.
+     *
+     * @return a hash code for this CLCPInfo object.
+     */
+    public int hashCode() {
+        return tag;
+    }
 }
 
 /**
@@ -81,6 +93,13 @@ class CLConstantClassInfo extends CLCPInfo {
         }
         return false;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int hashCode() {
+        return 31 * tag + nameIndex;
+    }
 }
 
 /**
@@ -133,6 +152,13 @@ abstract class CLConstantMemberRefInfo extends CLCPInfo {
         }
         return false;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int hashCode() {
+        return 31 * (31 * tag + classIndex) + nameAndTypeIndex;
+    }
 }
 
 /**
@@ -220,6 +246,13 @@ class CLConstantStringInfo extends CLCPInfo {
         }
         return false;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int hashCode() {
+        return 31 * tag + stringIndex;
+    }
 }
 
 /**
@@ -279,6 +312,13 @@ class CLConstantIntegerInfo extends CLCPInfo {
         }
         return false;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int hashCode() {
+        return 31 * tag + i;
+    }
 }
 
 /**
@@ -330,12 +370,19 @@ class CLConstantFloatInfo extends CLCPInfo {
     public boolean equals(Object other) {
         if (other instanceof CLConstantFloatInfo) {
             CLConstantFloatInfo c = (CLConstantFloatInfo) other;
-            if (c.f == f) {
+            if (Float.floatToIntBits(c.f) == Float.floatToIntBits(f)) {
                 return true;
             }
         }
         return false;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int hashCode() {
+        return 31 * tag + Float.floatToIntBits(f);
+    }
 }
 
 /**
@@ -423,6 +470,13 @@ class CLConstantLongInfo extends CLCPInfo {
         }
         return false;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int hashCode() {
+        return 31 * tag + Long.hashCode(l);
+    }
 }
 
 /**
@@ -504,12 +558,19 @@ class CLConstantDoubleInfo extends CLCPInfo {
     public boolean equals(Object other) {
         if (other instanceof CLConstantDoubleInfo) {
             CLConstantDoubleInfo c = (CLConstantDoubleInfo) other;
-            if (c.d == d) {
+            if (Double.doubleToLongBits(c.d) == Double.doubleToLongBits(d)) {
                 return true;
             }
         }
         return false;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int hashCode() {
+        return 31 * tag + Long.hashCode(Double.doubleToLongBits(d));
+    }
 }
 
 /**
@@ -560,6 +621,13 @@ class CLConstantNameAndTypeInfo extends CLCPInfo {
         }
         return false;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int hashCode() {
+        return 31 * (31 * tag + nameIndex) + descriptorIndex;
+    }
 }
 
 /**
@@ -567,14 +635,14 @@ class CLConstantNameAndTypeInfo extends CLCPInfo {
  */
 class CLConstantUtf8Info extends CLCPInfo {
     /**
-     * CONSTANT_Utf8_info.bytes item.
+     * CONSTANT_Utf8_info.bytes item, in modified UTF-8.
      */
     public byte[] b;
 
     /**
      * Constructs a CLConstantUtf8Info object.
      *
-     * @param b a constant string value.
+     * @param b a constant string value, in modified UTF-8.
      */
     public CLConstantUtf8Info(byte[] b) {
         super.tag = CONSTANT_Utf8;
@@ -595,7 +663,11 @@ class CLConstantUtf8Info extends CLCPInfo {
      */
     public void write(CLOutputStream out) throws IOException {
         super.write(out);
-        out.writeUTF(new String(b));
+        if (b.length > 65535) {
+            throw new UTFDataFormatException("encoded string too long: " + b.length + " bytes");
+        }
+        out.writeShort(b.length);
+        out.write(b);
     }
 
     /**
@@ -604,10 +676,131 @@ class CLConstantUtf8Info extends CLCPInfo {
     public boolean equals(Object other) {
         if (other instanceof CLConstantUtf8Info) {
             CLConstantUtf8Info c = (CLConstantUtf8Info) other;
-            if ((new String(b)).equals(new String(c.b))) {
+            if (Arrays.equals(b, c.b)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int hashCode() {
+        return 31 * tag + Arrays.hashCode(b);
+    }
+}
+
+/**
+ * Representation of CONSTANT_MethodHandle_info structure.
+ */
+class CLConstantMethodHandleInfo extends CLCPInfo {
+    /**
+     * CONSTANT_MethodHandle_info.reference_kind item.
+     */
+    public int referenceKind;
+
+    /**
+     * CONSTANT_MethodHandle_info.reference_index item.
+     */
+    public int referenceIndex;
+
+    /**
+     * Constructs a CLConstantMethodHandleInfo object.
+     *
+     * @param referenceKind  CONSTANT_MethodHandle_info.reference_kind item.
+     * @param referenceIndex CONSTANT_MethodHandle_info.reference_index item.
+     */
+    public CLConstantMethodHandleInfo(int referenceKind, int referenceIndex) {
+        super.tag = CONSTANT_MethodHandle;
+        this.referenceKind = referenceKind;
+        this.referenceIndex = referenceIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void write(CLOutputStream out) throws IOException {
+        super.write(out);
+        out.writeByte(referenceKind);
+        out.writeShort(referenceIndex);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean equals(Object other) {
+        if (other instanceof CLConstantMethodHandleInfo) {
+            CLConstantMethodHandleInfo c = (CLConstantMethodHandleInfo) other;
+            if ((c.referenceKind == referenceKind) && (c.referenceIndex == referenceIndex)) {
                 return true;
             }
         }
         return false;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int hashCode() {
+        return 31 * (31 * tag + referenceKind) + referenceIndex;
+    }
+}
+
+/**
+ * Representation of CONSTANT_InvokeDynamic_info structure.
+ */
+class CLConstantInvokeDynamicInfo extends CLCPInfo {
+    /**
+     * CONSTANT_InvokeDynamic_info.bootstrap_method_attr_index item.
+     */
+    public int bootstrapMethodAttrIndex;
+
+    /**
+     * CONSTANT_InvokeDynamic_info.name_and_type_index item.
+     */
+    public int nameAndTypeIndex;
+
+    /**
+     * Constructs a CLConstantInvokeDynamicInfo object.
+     *
+     * @param bootstrapMethodAttrIndex CONSTANT_InvokeDynamic_info.bootstrap_method_attr_index
+     *                                 item.
+     * @param nameAndTypeIndex         CONSTANT_InvokeDynamic_info.name_and_type_index item.
+     */
+    public CLConstantInvokeDynamicInfo(int bootstrapMethodAttrIndex, int nameAndTypeIndex) {
+        super.tag = CONSTANT_InvokeDynamic;
+        this.bootstrapMethodAttrIndex = bootstrapMethodAttrIndex;
+        this.nameAndTypeIndex = nameAndTypeIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void write(CLOutputStream out) throws IOException {
+        super.write(out);
+        out.writeShort(bootstrapMethodAttrIndex);
+        out.writeShort(nameAndTypeIndex);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean equals(Object other) {
+        if (other instanceof CLConstantInvokeDynamicInfo) {
+            CLConstantInvokeDynamicInfo c = (CLConstantInvokeDynamicInfo) other;
+            if ((c.bootstrapMethodAttrIndex == bootstrapMethodAttrIndex) &&
+                    (c.nameAndTypeIndex == nameAndTypeIndex)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int hashCode() {
+        return 31 * (31 * tag + bootstrapMethodAttrIndex) + nameAndTypeIndex;
+    }
 }
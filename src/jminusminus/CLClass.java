@@ -0,0 +1,249 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import static jminusminus.CLConstants.*;
+
+/**
+ * This class provides a read-only view of a class file: the class's access flags, name, super
+ * class, and interfaces, and the access flags, names, and descriptors of its fields and methods.
+ * That is all the compiler needs to know about a class to resolve names against it, so the class
+ * file is read directly, and the class is never loaded (let alone linked or initialized) in the
+ * compiler's JVM. Of the constant pool, only the Utf8, Class, and constant value (Integer, Float,
+ * Long, Double, and String) entries are kept, and of the attributes, only InnerClasses, which has
+ * the access flags of a nested class, and ConstantValue, which has the value of a constant field;
+ * all else (code in particular) is skipped.
+ */
+class CLClass {
+    /**
+     * The access flags of the class. For a nested class, these are the flags in its
+     * InnerClasses entry, which (unlike the flags in the ClassFile structure) record whether the
+     * class is private, protected, or static.
+     */
+    public int accessFlags;
+
+    /**
+     * The fully qualified name of the class in internal form (eg, java/lang/String).
+     */
+    public String name;
+
+    /**
+     * The fully qualified name of the super class in internal form, or null (for
+     * java/lang/Object).
+     */
+    public String superName;
+
+    /**
+     * The fully qualified names of the direct superinterfaces in internal form.
+     */
+    public ArrayList<String> interfaces;
+
+    /**
+     * The fields declared in the class.
+     */
+    public ArrayList<MemberInfo> fields;
+
+    /**
+     * The methods declared in the class, including constructors (&lt;init&gt;) and the static
+     * initializer (&lt;clinit&gt;).
+     */
+    public ArrayList<MemberInfo> methods;
+
+    /**
+     * Reads a class file from the specified input stream, and returns a view of it.
+     *
+     * @param in input stream.
+     * @return a view of the class file.
+     * @throws IOException if the class file is malformed or can't be read.
+     */
+    public static CLClass read(CLInputStream in) throws IOException {
+        if (in.readInt() != 0xCAFEBABE) {
+            throw new IOException("Bad magic number");
+        }
+        in.readUnsignedShort(); // minor_version
+        in.readUnsignedShort(); // major_version
+
+        // Constant pool: keep the strings, for each class and String constant, the index of its
+        // name or string, and for each numeric constant, its value.
+        int constantPoolCount = in.readUnsignedShort();
+        String[] utf8 = new String[constantPoolCount];
+        int[] classNames = new int[constantPoolCount];
+        int[] strings = new int[constantPoolCount];
+        Object[] constants = new Object[constantPoolCount];
+        for (int i = 1; i < constantPoolCount; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case CONSTANT_Utf8:
+                    utf8[i] = in.readUTF();
+                    break;
+                case CONSTANT_Class:
+                    classNames[i] = in.readUnsignedShort();
+                    break;
+                case CONSTANT_String:
+                    strings[i] = in.readUnsignedShort();
+                    break;
+                case CONSTANT_MethodType:
+                case CONSTANT_Module:
+                case CONSTANT_Package:
+                    skip(in, 2);
+                    break;
+                case CONSTANT_MethodHandle:
+                    skip(in, 3);
+                    break;
+                case CONSTANT_Integer:
+                    constants[i] = in.readInt();
+                    break;
+                case CONSTANT_Float:
+                    constants[i] = in.readFloat();
+                    break;
+                case CONSTANT_Fieldref:
+                case CONSTANT_Methodref:
+                case CONSTANT_InterfaceMethodref:
+                case CONSTANT_NameAndType:
+                case CONSTANT_Dynamic:
+                case CONSTANT_InvokeDynamic:
+                    skip(in, 4);
+                    break;
+                case CONSTANT_Long:
+                    // These take up two entries.
+                    constants[i++] = in.readLong();
+                    break;
+                case CONSTANT_Double:
+                    constants[i++] = in.readDouble();
+                    break;
+                default:
+                    throw new IOException("Bad constant pool tag " + tag);
+            }
+        }
+
+        CLClass cls = new CLClass();
+        cls.accessFlags = in.readUnsignedShort();
+        cls.name = utf8[classNames[in.readUnsignedShort()]];
+        int superClass = in.readUnsignedShort();
+        cls.superName = superClass == 0 ? null : utf8[classNames[superClass]];
+        int interfacesCount = in.readUnsignedShort();
+        cls.interfaces = new ArrayList<String>(interfacesCount);
+        for (int i = 0; i < interfacesCount; i++) {
+            cls.interfaces.add(utf8[classNames[in.readUnsignedShort()]]);
+        }
+        for (int i = 1; i < constantPoolCount; i++) {
+            if (strings[i] != 0) {
+                constants[i] = utf8[strings[i]];
+            }
+        }
+        cls.fields = readMembers(in, utf8, constants, cls);
+        cls.methods = readMembers(in, utf8, constants, cls);
+
+        // Attributes: only InnerClasses is of interest.
+        int attributesCount = in.readUnsignedShort();
+        for (int i = 0; i < attributesCount; i++) {
+            String attributeName = utf8[in.readUnsignedShort()];
+            long attributeLength = in.readUnsignedInt();
+            if (!attributeName.equals(ATT_INNER_CLASSES)) {
+                skip(in, attributeLength);
+                continue;
+            }
+            int numberOfClasses = in.readUnsignedShort();
+            for (int j = 0; j < numberOfClasses; j++) {
+                int innerClass = in.readUnsignedShort();
+                skip(in, 4); // outer_class_info_index, inner_name_index
+                int innerClassAccessFlags = in.readUnsignedShort();
+                if (cls.name.equals(utf8[classNames[innerClass]])) {
+                    cls.accessFlags = innerClassAccessFlags;
+                }
+            }
+        }
+        return cls;
+    }
+
+    // Reads the fields_count and fields (or methods_count and methods) items of a class file,
+    // and returns views of the members.
+    private static ArrayList<MemberInfo> readMembers(CLInputStream in, String[] utf8,
+                                                     Object[] constants, CLClass declaringClass)
+            throws IOException {
+        int count = in.readUnsignedShort();
+        ArrayList<MemberInfo> members = new ArrayList<MemberInfo>(count);
+        for (int i = 0; i < count; i++) {
+            int accessFlags = in.readUnsignedShort();
+            String name = utf8[in.readUnsignedShort()];
+            String descriptor = utf8[in.readUnsignedShort()];
+            MemberInfo member = new MemberInfo(declaringClass, accessFlags, name, descriptor);
+            int attributesCount = in.readUnsignedShort();
+            for (int j = 0; j < attributesCount; j++) {
+                String attributeName = utf8[in.readUnsignedShort()];
+                long attributeLength = in.readUnsignedInt();
+                if (attributeName.equals(ATT_CONSTANT_VALUE)) {
+                    member.constantValue = constants[in.readUnsignedShort()];
+                } else {
+                    skip(in, attributeLength);
+                }
+            }
+            members.add(member);
+        }
+        return members;
+    }
+
+    // Skips the specified number of bytes of the input stream.
+    private static void skip(CLInputStream in, long n) throws IOException {
+        while (n > 0) {
+            int skipped = in.skipBytes((int) Math.min(n, Integer.MAX_VALUE));
+            if (skipped == 0) {
+                // Possibly at the end of the stream.
+                in.readByte();
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+
+    /**
+     * A view of a field_info or method_info structure: the member's access flags, name,
+     * descriptor, and constant value.
+     */
+    static class MemberInfo {
+        /**
+         * The class that declares the member.
+         */
+        public CLClass declaringClass;
+
+        /**
+         * The access flags of the member.
+         */
+        public int accessFlags;
+
+        /**
+         * The name of the member.
+         */
+        public String name;
+
+        /**
+         * The descriptor of the member.
+         */
+        public String descriptor;
+
+        /**
+         * The value in the ConstantValue attribute of the (field) member (an Integer, Float, Long,
+         * Double, or String), or null if there is none.
+         */
+        public Object constantValue;
+
+        /**
+         * Constructs a MemberInfo object.
+         *
+         * @param declaringClass the class that declares the member.
+         * @param accessFlags    the access flags of the member.
+         * @param name           the name of the member.
+         * @param descriptor     the descriptor of the member.
+         */
+        public MemberInfo(CLClass declaringClass, int accessFlags, String name,
+                          String descriptor) {
+            this.declaringClass = declaringClass;
+            this.accessFlags = accessFlags;
+            this.name = name;
+            this.descriptor = descriptor;
+        }
+    }
+}
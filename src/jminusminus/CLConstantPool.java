@@ -2,8 +2,10 @@
 
 package jminusminus;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * Representation of a class' constant pool.
@@ -15,12 +17,17 @@ class CLConstantPool {
     // List of constant pool items.
     private ArrayList<CLCPInfo> cpItems;
 
+    // Maps each item (keyed on its kind and payload) to its index in the constant pool, so that
+    // finding an item does not require a scan over cpItems.
+    private HashMap<CLCPInfo, Integer> cpIndexOf;
+
     /**
      * Constructs an empty constant pool.
      */
     public CLConstantPool() {
         cpIndex = 1;
         cpItems = new ArrayList<CLCPInfo>();
+        cpIndexOf = new HashMap<CLCPInfo, Integer>();
     }
 
     /**
@@ -39,8 +46,8 @@ class CLConstantPool {
      * @return the index of the specified item in the constant pool or -1.
      */
     public int find(CLCPInfo cpInfo) {
-        int index = cpItems.indexOf(cpInfo);
-        return (index != -1) ? cpItems.get(index).cpIndex : index;
+        Integer index = cpIndexOf.get(cpInfo);
+        return (index != null) ? index : -1;
     }
 
     /**
@@ -65,6 +72,7 @@ class CLConstantPool {
     public int addCPItem(CLCPInfo cpInfo) {
         cpInfo.cpIndex = cpIndex++;
         cpItems.add(cpInfo);
+        cpIndexOf.putIfAbsent(cpInfo, cpInfo.cpIndex);
 
         // long and double, with their lower and higher words, are treated by JVM as two items in
         // the constant pool. We have a single representation for each, so we add a null as
@@ -210,6 +218,38 @@ class CLConstantPool {
         return findOrAdd(c);
     }
 
+    /**
+     * Returns the constant pool index of a singleton instance of CLConstantMethodHandleInfo, for
+     * a handle to a method.
+     *
+     * @param referenceKind kind of the handle (eg, REF_invokeStatic).
+     * @param className     class name in internal form.
+     * @param name          name of the method.
+     * @param type          descriptor of the method.
+     * @return constant pool index.
+     */
+    public int constantMethodHandleInfo(int referenceKind, String className, String name,
+                                        String type) {
+        CLCPInfo c = new CLConstantMethodHandleInfo(referenceKind,
+                constantMethodRefInfo(className, name, type));
+        return findOrAdd(c);
+    }
+
+    /**
+     * Returns the constant pool index of a singleton instance of CLConstantInvokeDynamicInfo.
+     *
+     * @param bootstrapMethodAttrIndex index of the bootstrap method in the BootstrapMethods
+     *                                 attribute of the class.
+     * @param name                     name of the call site.
+     * @param type                     descriptor of the call site.
+     * @return constant pool index.
+     */
+    public int constantInvokeDynamicInfo(int bootstrapMethodAttrIndex, String name, String type) {
+        CLCPInfo c = new CLConstantInvokeDynamicInfo(bootstrapMethodAttrIndex,
+                constantNameAndTypeInfo(name, type));
+        return findOrAdd(c);
+    }
+
     /**
      * Returns the constant pool index of a singleton instance of CLConstantUtf8Info.
      *
@@ -217,10 +257,31 @@ class CLConstantPool {
      * @return constant pool index.
      */
     public int constantUtf8Info(String s) {
-        CLCPInfo c = new CLConstantUtf8Info(s.getBytes());
+        CLCPInfo c = new CLConstantUtf8Info(modifiedUtf8(s));
         return findOrAdd(c);
     }
 
+    // Returns the bytes of the specified string in the modified UTF-8 of class files, in which
+    // '\u0000' takes two bytes, and each char of a surrogate pair is encoded by itself; unlike
+    // getBytes(), which loses the chars that the platform's charset can't encode.
+    private static byte[] modifiedUtf8(String s) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                bytes.write(c);
+            } else if (c <= 0x07FF) {
+                bytes.write(0xC0 | c >> 6);
+                bytes.write(0x80 | c & 0x3F);
+            } else {
+                bytes.write(0xE0 | c >> 12);
+                bytes.write(0x80 | c >> 6 & 0x3F);
+                bytes.write(0x80 | c & 0x3F);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
     // Returns the index of the specified item in the constant pool. If the item does not exist,
     // adds the item to the pool and return its (new) index.
     private int findOrAdd(CLCPInfo cpInfo) {
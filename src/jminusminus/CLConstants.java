@@ -21,6 +21,18 @@ public class CLConstants {
      */
     public static final int MINOR_VERSION = 0;
 
+    /**
+     * Earliest major version (Java 6) for which j-- computes stack map frames, and the class
+     * files carry them in StackMapTable attributes.
+     */
+    public static final int STACK_MAP_MAJOR_VERSION = 50;
+
+    /**
+     * Earliest major version (Java 9) for which j-- compiles string concatenation to an
+     * invokedynamic instruction, bootstrapped by java.lang.invoke.StringConcatFactory.
+     */
+    public static final int INDY_STRING_CONCAT_MAJOR_VERSION = 53;
+
     /**
      * public access flag.
      */
@@ -166,6 +178,42 @@ public class CLConstants {
      */
     public static final short CONSTANT_NameAndType = 12;
 
+    /**
+     * Identifies CONSTANT_MethodHandle_info constant pool structure.
+     */
+    public static final short CONSTANT_MethodHandle = 15;
+
+    /**
+     * Identifies CONSTANT_MethodType_info constant pool structure.
+     */
+    public static final short CONSTANT_MethodType = 16;
+
+    /**
+     * Identifies CONSTANT_Dynamic_info constant pool structure.
+     */
+    public static final short CONSTANT_Dynamic = 17;
+
+    /**
+     * Identifies CONSTANT_InvokeDynamic_info constant pool structure.
+     */
+    public static final short CONSTANT_InvokeDynamic = 18;
+
+    /**
+     * Identifies CONSTANT_Module_info constant pool structure.
+     */
+    public static final short CONSTANT_Module = 19;
+
+    /**
+     * Identifies CONSTANT_Package_info constant pool structure.
+     */
+    public static final short CONSTANT_Package = 20;
+
+    /**
+     * Identifies a method handle of kind REF_invokeStatic, in a CONSTANT_MethodHandle_info
+     * constant pool structure.
+     */
+    public static final int REF_invokeStatic = 6;
+
     /**
      * Identifies ConstantValue attribute.
      */
@@ -258,6 +306,97 @@ public class CLConstants {
      */
     public static final String ATT_ANNOTATION_DEFAULT = "AnnotationDefault";
 
+    /**
+     * Identifies StackMapTable attribute.
+     */
+    public static final String ATT_STACK_MAP_TABLE = "StackMapTable";
+
+    /**
+     * Identifies BootstrapMethods attribute.
+     */
+    public static final String ATT_BOOTSTRAP_METHODS = "BootstrapMethods";
+
+    /**
+     * Identifies Top verification type.
+     */
+    public static final short ITEM_Top = 0;
+
+    /**
+     * Identifies Integer verification type.
+     */
+    public static final short ITEM_Integer = 1;
+
+    /**
+     * Identifies Float verification type.
+     */
+    public static final short ITEM_Float = 2;
+
+    /**
+     * Identifies Double verification type.
+     */
+    public static final short ITEM_Double = 3;
+
+    /**
+     * Identifies Long verification type.
+     */
+    public static final short ITEM_Long = 4;
+
+    /**
+     * Identifies Null verification type.
+     */
+    public static final short ITEM_Null = 5;
+
+    /**
+     * Identifies UninitializedThis verification type.
+     */
+    public static final short ITEM_UninitializedThis = 6;
+
+    /**
+     * Identifies Object verification type.
+     */
+    public static final short ITEM_Object = 7;
+
+    /**
+     * Identifies Uninitialized verification type.
+     */
+    public static final short ITEM_Uninitialized = 8;
+
+    /**
+     * Smallest frame type of same_frame stack map frames (which range up to 63).
+     */
+    public static final int SAME_FRAME = 0;
+
+    /**
+     * Smallest frame type of same_locals_1_stack_item_frame stack map frames (which range up to
+     * 127).
+     */
+    public static final int SAME_LOCALS_1_STACK_ITEM = 64;
+
+    /**
+     * Frame type of same_locals_1_stack_item_frame_extended stack map frames.
+     */
+    public static final int SAME_LOCALS_1_STACK_ITEM_EXTENDED = 247;
+
+    /**
+     * Smallest frame type of chop_frame stack map frames (which range up to 250).
+     */
+    public static final int CHOP_FRAME = 248;
+
+    /**
+     * Frame type of same_frame_extended stack map frames.
+     */
+    public static final int SAME_FRAME_EXTENDED = 251;
+
+    /**
+     * Smallest frame type of append_frame stack map frames (which range up to 254).
+     */
+    public static final int APPEND_FRAME = 252;
+
+    /**
+     * Frame type of full_frame stack map frames.
+     */
+    public static final int FULL_FRAME = 255;
+
     /**
      * Identifies boolean type of annotation element value.
      */
@@ -2,8 +2,7 @@
 
 package jminusminus;
 
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -12,7 +11,9 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Stack;
 import java.util.StringTokenizer;
 import java.util.TreeMap;
@@ -66,6 +67,12 @@ public class CLEmitter {
     // Inner classes of the class.
     private ArrayList<CLInnerClassInfo> innerClasses;
 
+    // Bootstrap methods of the invokedynamic instructions in the class.
+    private ArrayList<CLBootstrapMethodInfo> bootstrapMethods;
+
+    // BootstrapMethods attribute of the class, as of the method last added.
+    private CLBootstrapMethodsAttribute bootstrapMethodsAttribute;
+
     // Code (instruction) section of the method last added.
     private ArrayList<CLInstruction> mCode;
 
@@ -82,6 +89,9 @@ public class CLEmitter {
     // last added.
     private int mDescriptorIndex;
 
+    // Descriptor of the method last added.
+    private String mDescriptor;
+
     // Number of arguments for the method last added.
     private int mArgumentCount;
 
@@ -109,14 +119,21 @@ public class CLEmitter {
     // added.
     private int mPC;
 
+    // Amount added to the index of the local variable that each load, store and IINC instruction
+    // refers to (see shiftLocals()).
+    private int mLocalShift;
+
     // Name of the method last added; used for error reporting.
     private String eCurrentMethod;
 
     // Whether an error occurred while creating/writing the class.
     private boolean errorHasOccurred;
 
-    // Class loader to use for creating in-memory representation of classes from byte streams.
-    private static ByteClassLoader byteClassLoader;
+    // Major version of the class files that emitters produce.
+    private static int majorVersion = MAJOR_VERSION;
+
+    // Whether emitters run the peephole optimizer over the code of each method.
+    private static boolean optimize = false;
 
     /**
      * Constructs a CLEmitter instance given a boolean on whether or not the class file will be
@@ -171,9 +188,11 @@ public class CLEmitter {
         methods = new ArrayList<CLMethodInfo>();
         attributes = new ArrayList<CLAttributeInfo>();
         innerClasses = new ArrayList<CLInnerClassInfo>();
+        bootstrapMethods = new ArrayList<CLBootstrapMethodInfo>();
+        bootstrapMethodsAttribute = null;
         errorHasOccurred = false;
         clFile.magic = MAGIC;
-        clFile.majorVersion = MAJOR_VERSION;
+        clFile.majorVersion = majorVersion;
         clFile.minorVersion = MINOR_VERSION;
         if (!validInternalForm(thisClass)) {
             reportEmitterError("'%s' is not in internal form", thisClass);
@@ -340,6 +359,7 @@ public class CLEmitter {
         mArgumentCount = argumentCount(descriptor) + (accessFlags.contains("static") ? 0 : 1);
         mNameIndex = constantPool.constantUtf8Info(name);
         mDescriptorIndex = constantPool.constantUtf8Info(descriptor);
+        mDescriptor = descriptor;
         if (exceptions != null && exceptions.size() > 0) {
             addMethodAttribute(exceptionsAttribute(exceptions));
         }
@@ -451,7 +471,16 @@ public class CLEmitter {
      */
     public void addNoArgInstruction(int opcode) {
         CLInstruction instr = null;
-        switch (CLInstruction.instructionInfo[opcode].category) {
+        CLInsInfo info = CLInstruction.instructionInfo[opcode];
+        if (mLocalShift != 0 && info.category == Category.LOAD_STORE1 &&
+                info.localVariableIndex != IRRELEVANT) {
+            // A shifted local variable needs the instruction's one argument form, which
+            // addOneArgInstruction() shifts (and shortens again if it can).
+            addOneArgInstruction(opcode < ISTORE ? ILOAD + (opcode - ILOAD_0) / 4 :
+                    ISTORE + (opcode - ISTORE_0) / 4, info.localVariableIndex);
+            return;
+        }
+        switch (info.category) {
             case ARITHMETIC1:
                 instr = new CLArithmeticInstruction(opcode, mPC++);
                 break;
@@ -520,6 +549,13 @@ public class CLEmitter {
         boolean isWidened = false;
         switch (CLInstruction.instructionInfo[opcode].category) {
             case LOAD_STORE2:
+                arg += mLocalShift;
+                if (mLocalShift != 0 && arg <= 3) {
+                    instr = new CLLoadStoreInstruction(opcode < ISTORE ?
+                            ILOAD_0 + 4 * (opcode - ILOAD) + arg :
+                            ISTORE_0 + 4 * (opcode - ISTORE) + arg, mPC++);
+                    break;
+                }
                 isWidened = arg > 255;
                 if (isWidened) {
                     CLLoadStoreInstruction wideInstr = new CLLoadStoreInstruction(WIDE, mPC++);
@@ -556,6 +592,7 @@ public class CLEmitter {
      * @param constVal increment value.
      */
     public void addIINCInstruction(int index, int constVal) {
+        index += mLocalShift;
         boolean isWidened = index > 255 || constVal < Byte.MIN_VALUE || constVal > Byte.MAX_VALUE;
         if (isWidened) {
             CLLoadStoreInstruction wideInstr = new CLLoadStoreInstruction(WIDE, mPC++);
@@ -568,6 +605,18 @@ public class CLEmitter {
         mInstructionAfterLabel = true;
     }
 
+    /**
+     * Adds the specified amount (which may be negative) to the index of the local variable that
+     * each load, store and IINC instruction added from now on (in the current method) refers to.
+     * This allows the code for the body of one method to be generated inside another, with its
+     * local variables laid out above those of the other.
+     *
+     * @param shift the amount to add.
+     */
+    public void shiftLocals(int shift) {
+        mLocalShift += shift;
+    }
+
     /**
      * Adds a member (field and method) access instruction. The following instructions can be
      * added using this method:
@@ -583,10 +632,11 @@ public class CLEmitter {
      * Method Instructions:
      *
      * <pre>
-     *   INVOKEVIRTUAL, INVOKESPECIAL, INVOKESTATIC, INVOKEINTERFACE, INVOKEDYNAMIC
+     *   INVOKEVIRTUAL, INVOKESPECIAL, INVOKESTATIC, INVOKEINTERFACE
      * </pre>
      * <p>
-     * The opcodes for instructions are defined in CLConstants class.
+     * (INVOKEDYNAMIC is added using addINVOKEDYNAMICInstruction().) The opcodes for
+     * instructions are defined in CLConstants class.
      *
      * @param opcode opcode of the instruction.
      * @param target fully qualified name in internal form of the class to which the member belongs.
@@ -740,6 +790,52 @@ public class CLEmitter {
         }
     }
 
+    /**
+     * Adds an INVOKEDYNAMIC instruction, whose call site is linked by a static bootstrap method
+     * taking String constants for its static arguments. The bootstrap method is recorded in the
+     * BootstrapMethods attribute of the class, which needs a major version of 51 (Java 7) or
+     * later.
+     *
+     * @param bootstrapClass     fully qualified name in internal form of the class declaring the
+     *                           bootstrap method.
+     * @param bootstrapName      name of the bootstrap method.
+     * @param bootstrapType      type descriptor of the bootstrap method.
+     * @param bootstrapArguments the String constants passed to the bootstrap method.
+     * @param name               name of the call site.
+     * @param type               type descriptor of the call site.
+     */
+    public void addINVOKEDYNAMICInstruction(String bootstrapClass, String bootstrapName,
+                                            String bootstrapType,
+                                            ArrayList<String> bootstrapArguments, String name,
+                                            String type) {
+        if (majorVersion < 51) {
+            reportEmitterError("%s: invokedynamic needs a major version of 51 or later",
+                    eCurrentMethod);
+        }
+        if (!validMethodDescriptor(type)) {
+            reportEmitterError("%s: '%s' is not a valid type descriptor for method",
+                    eCurrentMethod, type);
+        }
+        ArrayList<Integer> arguments = new ArrayList<Integer>();
+        for (String argument : bootstrapArguments) {
+            arguments.add(constantPool.constantStringInfo(argument));
+        }
+        CLBootstrapMethodInfo bootstrapMethod = new CLBootstrapMethodInfo(
+                constantPool.constantMethodHandleInfo(REF_invokeStatic, bootstrapClass,
+                        bootstrapName, bootstrapType), arguments.size(), arguments);
+        int bootstrapIndex = bootstrapMethods.indexOf(bootstrapMethod);
+        if (bootstrapIndex == -1) {
+            bootstrapIndex = bootstrapMethods.size();
+            bootstrapMethods.add(bootstrapMethod);
+        }
+        int index = constantPool.constantInvokeDynamicInfo(bootstrapIndex, name, type);
+        CLInstruction instr = new CLMethodInstruction(INVOKEDYNAMIC, mPC++, index,
+                methodStackResidue(type));
+        mPC += instr.operandCount();
+        mCode.add(instr);
+        mInstructionAfterLabel = true;
+    }
+
     /**
      * Adds a MULTIANEWARRAY instruction for creating multi-dimensional arrays.
      *
@@ -953,10 +1049,24 @@ public class CLEmitter {
     }
 
     /**
-     * Sets a new ByteClassLoader for loading classes from byte streams.
+     * Sets the major version of the class files that emitters produce from now on to the
+     * specified value; the default is MAJOR_VERSION. From STACK_MAP_MAJOR_VERSION on, the code of
+     * each method carries the stack map frames that the verifier checks it against.
+     *
+     * @param majorVersion the major version.
      */
-    public static void initializeByteClassLoader() {
-        byteClassLoader = new ByteClassLoader();
+    public static void setMajorVersion(int majorVersion) {
+        CLEmitter.majorVersion = majorVersion;
+    }
+
+    /**
+     * Sets whether emitters from now on run the peephole optimizer (see CLPeepholeOptimizer)
+     * over the code of each method; they don't by default.
+     *
+     * @param optimize whether to run the peephole optimizer.
+     */
+    public static void setOptimize(boolean optimize) {
+        CLEmitter.optimize = optimize;
     }
 
     /**
@@ -969,29 +1079,19 @@ public class CLEmitter {
     }
 
     /**
-     * Returns the class being constructed as a Java Class instance.
+     * Returns a view of the class being constructed, as the compiler sees the classes it reads
+     * from class files. The class is not loaded.
      *
-     * @return Java Class instance.
+     * @return a view of the class.
      */
-    public Class toClass() {
+    public CLClass toCLClass() {
         endOpenMethodIfAny();
-        Class theClass = null;
+        CLClass theClass = null;
         try {
-            // Extract the bytes from the class representation in memory into an array of bytes.
-            ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-            CLOutputStream out = new CLOutputStream(new BufferedOutputStream(byteStream));
-            clFile.write(out);
-            out.close();
-            byte[] classBytes = byteStream.toByteArray();
-            byteStream.close();
-
-            // Load a Java Class instance from its byte representation.
-            byteClassLoader.setClassBytes(classBytes);
-            theClass = byteClassLoader.loadClass(name, true);
+            theClass = CLClass.read(new CLInputStream(
+                    new ByteArrayInputStream(toBytes().toByteArray())));
         } catch (IOException e) {
-            reportEmitterError("Cannot write class to byte stream");
-        } catch (ClassNotFoundException e) {
-            reportEmitterError("Cannot load class from byte stream");
+            reportEmitterError("Cannot read class from byte stream");
         }
         return theClass;
     }
@@ -1010,9 +1110,9 @@ public class CLEmitter {
             File file = new File(destDir + File.separator +
                     name.substring(0, name.lastIndexOf("/") + 1));
             file.mkdirs();
-            CLOutputStream out =
-                    new CLOutputStream(new BufferedOutputStream(new FileOutputStream(outFile)));
-            clFile.write(out);
+            CLByteBuffer classBytes = toBytes();
+            FileOutputStream out = new FileOutputStream(outFile);
+            classBytes.writeTo(out);
             out.close();
         } catch (FileNotFoundException e) {
             reportEmitterError("File %s not found", outFile);
@@ -1021,12 +1121,22 @@ public class CLEmitter {
         }
     }
 
+    // Writes the in-memory representation of the class into a byte buffer and returns it.
+    private CLByteBuffer toBytes() throws IOException {
+        CLByteBuffer classBytes = new CLByteBuffer(4096);
+        CLOutputStream out = new CLOutputStream(classBytes);
+        clFile.write(out);
+        out.flush();
+        return classBytes;
+    }
+
     // Initializes all variables used for adding a method to the ClassFile structure to their
     // appropriate values.
     private void initializeMethodVariables() {
         mAccessFlags = 0;
         mNameIndex = -1;
         mDescriptorIndex = -1;
+        mDescriptor = null;
         mArgumentCount = 0;
         mPC = 0;
         mAttributes = new ArrayList<CLAttributeInfo>();
@@ -1036,6 +1146,7 @@ public class CLEmitter {
         mLabels = new Hashtable<String, Integer>();
         mLabelCount = 1;
         mInstructionAfterLabel = false;
+        mLocalShift = 0;
     }
 
     // Adds the method created using addMethod() to the ClassFile structure. This involves adding
@@ -1048,6 +1159,17 @@ public class CLEmitter {
                 addNoArgInstruction(NOP);
             }
 
+            // Rewrite the code with the peephole optimizer.
+            if (optimize) {
+                optimizeCode();
+            }
+
+            // Widen the branches that are out of range, which only a method with more than 32K
+            // of code can have.
+            if (mPC > Short.MAX_VALUE) {
+                relaxBranches();
+            }
+
             // Resolve jump labels in exception handlers.
             ArrayList<CLExceptionInfo> exceptionTable = new ArrayList<CLExceptionInfo>();
             for (CLException e : mExceptionHandlers) {
@@ -1055,6 +1177,10 @@ public class CLEmitter {
                     reportEmitterError("%s: Unable to resolve exception handler label(s)",
                             eCurrentMethod);
                 }
+                if (e.startPC == e.endPC) {
+                    // The handler covers no code (the optimizer may have removed it all).
+                    continue;
+                }
 
                 // We allow catchType to be null (mapping to index 0), implying this exception
                 // handler is called for all exceptions. This is used to implement "finally"
@@ -1065,8 +1191,7 @@ public class CLEmitter {
                 exceptionTable.add(c);
             }
 
-            // Convert Instruction objects to bytes.
-            ArrayList<Integer> byteCode = new ArrayList<Integer>();
+            // Resolve jump labels in flow control instructions, and compute maxLocals.
             int maxLocals = mArgumentCount;
             for (CLInstruction instr : mCode) {
                 // Compute maxLocals.
@@ -1103,13 +1228,26 @@ public class CLEmitter {
                         reportEmitterError("%s: Unable to resolve jump label(s)", eCurrentMethod);
                     }
                 }
-
-                byteCode.addAll(instr.toBytes());
             }
 
             // Code attribute; add only if method is neither native nor abstract.
             if (!((mAccessFlags & ACC_NATIVE) == ACC_NATIVE ||
                     (mAccessFlags & ACC_ABSTRACT) == ACC_ABSTRACT)) {
+                // StackMapTable attribute, for the verifier of newer class files. Computing the
+                // frames may replace unreachable code, so it comes before conversion to bytes.
+                if (majorVersion >= STACK_MAP_MAJOR_VERSION) {
+                    CLStackMapTableAttribute stackMapTable = stackMapTable(maxLocals,
+                            exceptionTable);
+                    if (stackMapTable != null) {
+                        addCodeAttribute(stackMapTable);
+                    }
+                }
+
+                // Convert Instruction objects to bytes.
+                CLByteBuffer byteCode = new CLByteBuffer(mPC);
+                for (CLInstruction instr : mCode) {
+                    instr.write(byteCode);
+                }
                 addMethodAttribute(codeAttribute(byteCode, exceptionTable, stackDepth(),
                         maxLocals));
             }
@@ -1125,6 +1263,14 @@ public class CLEmitter {
             addClassAttribute(innerClassesAttribute());
         }
 
+        // Add the BootstrapMethods attribute if this class has invokedynamic instructions, in place
+        // of the one added (for fewer of them, perhaps) when the previous method was wrapped up.
+        if (bootstrapMethods.size() > 0) {
+            attributes.remove(bootstrapMethodsAttribute);
+            bootstrapMethodsAttribute = bootstrapMethodsAttribute();
+            addClassAttribute(bootstrapMethodsAttribute);
+        }
+
         // Set the members of the ClassFile structure to their appropriate values.
         clFile.constantPoolCount = constantPool.size() + 1;
         clFile.constantPool = constantPool;
@@ -1365,91 +1511,409 @@ public class CLEmitter {
         return false;
     }
 
-    // Returns the instruction with the specified pc within the code array of the current method
-    // being added, or null.
-    private CLInstruction instruction(int pc) {
-        for (CLInstruction instruction : mCode) {
-            if (instruction.pc() == pc) {
-                return instruction;
+    // Runs the peephole optimizer over the code of the method being added, and lays out the
+    // code that results.
+    private void optimizeCode() {
+        ArrayList<String> handlerLabels = new ArrayList<String>();
+        for (CLException e : mExceptionHandlers) {
+            handlerLabels.add(e.startLabel);
+            handlerLabels.add(e.endLabel);
+            handlerLabels.add(e.handlerLabel);
+        }
+        CLPeepholeOptimizer optimizer = new CLPeepholeOptimizer(mCode, mLabels, mPC,
+                handlerLabels);
+        optimizer.optimize(CLPeepholeOptimizer.RULES);
+        mCode = new ArrayList<CLInstruction>();
+        mLabels = new Hashtable<String, Integer>();
+        mPC = 0;
+        for (int i = 0; i <= optimizer.size(); i++) {
+            for (String label : optimizer.labels(i)) {
+                mLabels.put(label, mPC);
+            }
+            if (i < optimizer.size()) {
+                CLInstruction instr = optimizer.instruction(i);
+                instr.relocate(mPC);
+                mCode.add(instr);
+                mPC += 1 + instr.operandCount();
+            }
+        }
+    }
+
+    // Widens the branches of the method being added whose offsets don't fit in the two bytes of
+    // their operands, which only a method with more than 32K of code can have: a GOTO (or JSR)
+    // becomes a GOTO_W (or JSR_W), and a conditional branch becomes the opposite branch around a
+    // GOTO_W. Widening a branch moves the code that follows it, and so may put other branches
+    // out of range; so this is repeated until all the branches are in range.
+    private void relaxBranches() {
+        while (true) {
+            int n = mCode.size();
+            boolean[] outOfRange = new boolean[n];
+            boolean relax = false;
+            for (int i = 0; i < n; i++) {
+                CLInstruction instr = mCode.get(i);
+                int opcode = instr.opcode();
+                if ((opcode >= IFEQ && opcode <= JSR) || opcode == IFNULL || opcode == IFNONNULL) {
+                    CLFlowControlInstruction b = (CLFlowControlInstruction) instr;
+                    b.resolveLabels(mLabels);
+                    if (b.jumpToOffset() < Short.MIN_VALUE || b.jumpToOffset() > Short.MAX_VALUE) {
+                        outOfRange[i] = relax = true;
+                    }
+                }
+            }
+            if (!relax) {
+                return;
+            }
+
+            // Lay out the code anew, mapping the old pc of each instruction (and the end of the
+            // code) to the new.
+            ArrayList<CLInstruction> code = new ArrayList<CLInstruction>();
+            Hashtable<String, Integer> skipLabels = new Hashtable<String, Integer>();
+            int[] newPC = new int[mPC + 1];
+            int pc = 0;
+            for (int i = 0; i < n; i++) {
+                CLInstruction instr = mCode.get(i);
+                int opcode = instr.opcode();
+                newPC[instr.pc()] = pc;
+                if (!outOfRange[i]) {
+                    instr.relocate(pc);
+                    code.add(instr);
+                } else if (opcode == GOTO || opcode == JSR) {
+                    instr = new CLFlowControlInstruction(opcode == GOTO ? GOTO_W : JSR_W, pc,
+                            ((CLFlowControlInstruction) instr).jumpToLabel());
+                    code.add(instr);
+                } else {
+                    String skipLabel = createLabel();
+                    int inverse = opcode >= IFNULL ? IFNULL + ((opcode - IFNULL) ^ 1) :
+                            IFEQ + ((opcode - IFEQ) ^ 1);
+                    code.add(new CLFlowControlInstruction(inverse, pc, skipLabel));
+                    pc += 1 + code.get(code.size() - 1).operandCount();
+                    instr = new CLFlowControlInstruction(GOTO_W, pc,
+                            ((CLFlowControlInstruction) instr).jumpToLabel());
+                    code.add(instr);
+                    skipLabels.put(skipLabel, pc + 1 + instr.operandCount());
+                }
+                pc += 1 + instr.operandCount();
+            }
+            newPC[mPC] = pc;
+            Hashtable<String, Integer> labels = new Hashtable<String, Integer>(skipLabels);
+            for (String label : mLabels.keySet()) {
+                labels.put(label, newPC[mLabels.get(label)]);
             }
+            mCode = code;
+            mLabels = labels;
+            mPC = pc;
         }
-        return null;
     }
 
-    // Returns the index of the instruction with the specified pc, within the code array of the
-    // current method being added, or -1.
-    private int instructionIndex(int pc) {
+    // Returns an array mapping the pc of each instruction within the code array of the current
+    // method being added to its index, and any other pc (up to and including mPC) to -1.
+    private int[] instructionIndexes() {
+        int[] indexAt = new int[mPC + 1];
+        Arrays.fill(indexAt, -1);
         for (int i = 0; i < mCode.size(); i++) {
-            if (mCode.get(i).pc() == pc) {
-                return i;
-            }
+            indexAt[mCode.get(i).pc()] = i;
         }
-        return -1;
+        return indexAt;
     }
 
-    // Computes and returns the maximum depth of the operand stack for the method last added.
+    // Computes and returns the maximum depth of the operand stack for the method last added. The
+    // depth of the stack before each reachable instruction is computed once, by a walk over the
+    // control flow graph from the start of the method and from the handlers (where the stack
+    // holds just the exception that was thrown); so the time taken is linear in the size of the
+    // code.
     private int stackDepth() {
-        CLBranchStack branchTargets = new CLBranchStack();
+        int n = mCode.size();
+        int[] indexAt = instructionIndexes();
+        int[] depth = new int[n];
+        Arrays.fill(depth, -1);
+        Stack<Integer> worklist = new Stack<Integer>();
+        if (n > 0) {
+            depth[0] = 0;
+            worklist.push(0);
+        }
         for (CLException e : mExceptionHandlers) {
-            CLInstruction h = instruction(e.handlerPC);
-            if (h != null) {
-                // 1 because the exception that is thrown is pushed on top of the operand stack.
-                branchTargets.push(h, 1);
+            int h = e.handlerPC >= 0 && e.handlerPC <= mPC ? indexAt[e.handlerPC] : -1;
+            if (h != -1 && depth[h] == -1) {
+                depth[h] = 1;
+                worklist.push(h);
             }
         }
-        int stackDepth = 0, maxStackDepth = 0, c = 0;
-        CLInstruction instr = (mCode.size() == 0) ? null : mCode.get(c);
-        while (instr != null) {
+        int maxStackDepth = 0;
+        while (!worklist.isEmpty()) {
+            int i = worklist.pop();
+            CLInstruction instr = mCode.get(i);
             int opcode = instr.opcode();
             int stackUnits = instr.stackUnits();
-            if (stackUnits == EMPTY_STACK) {
-                stackDepth = 0;
-            } else if (stackUnits == UNIT_SIZE_STACK) {
-                stackDepth = 1;
-            } else {
-                stackDepth += stackUnits;
+            int stackDepth = stackUnits == EMPTY_STACK ? 0 : stackUnits == UNIT_SIZE_STACK ? 1 :
+                    depth[i] + stackUnits;
+            maxStackDepth = Math.max(maxStackDepth, Math.max(depth[i], stackDepth));
+            if (opcode == JSR || opcode == JSR_W || opcode == RET || opcode == ATHROW ||
+                    (opcode >= IRETURN && opcode <= RETURN)) {
+                continue;
             }
-            if (stackDepth > maxStackDepth) {
-                maxStackDepth = stackDepth;
+            if (instr instanceof CLFlowControlInstruction) {
+                for (int offset : ((CLFlowControlInstruction) instr).jumpToOffsets()) {
+                    int pc = instr.pc() + offset;
+                    int t = pc >= 0 && pc <= mPC ? indexAt[pc] : -1;
+                    if (t != -1 && depth[t] == -1) {
+                        depth[t] = stackDepth;
+                        worklist.push(t);
+                    }
+                }
+                if (opcode == GOTO || opcode == GOTO_W || opcode == TABLESWITCH ||
+                        opcode == LOOKUPSWITCH) {
+                    continue;
+                }
+            }
+            if (i + 1 < n && depth[i + 1] == -1) {
+                depth[i + 1] = stackDepth;
+                worklist.push(i + 1);
+            }
+        }
+        return maxStackDepth;
+    }
+
+    // Computes the stack map frames for the method last added, and returns them as a
+    // StackMapTable attribute, or null if its code needs none. The verifier of class files of
+    // version 50 and later checks the code against these frames rather than inferring the types
+    // itself. The frames are computed by data flow analysis over mCode: starting from the frame
+    // that the method descriptor implies, the effect of each reachable instruction on the types
+    // of the local variables and of the operand stack is propagated to its successors, and to the
+    // handlers that cover it, merging frames where control flow joins, until nothing changes. A
+    // frame is recorded at each instruction that is the target of a jump or the start of a
+    // handler, or that follows an unconditional jump. The verifier checks unreachable code all
+    // the same, so each run of it is replaced by NOPs and an ATHROW (which verify in a frame of
+    // their own), and dropped from the ranges of the exception handlers.
+    private CLStackMapTableAttribute stackMapTable(int maxLocals,
+                                                   ArrayList<CLExceptionInfo> exceptionTable) {
+        int n = mCode.size();
+        int[] indexAt = instructionIndexes();
+
+        // Propagate the frames over the code.
+        CLFrame[] frames = new CLFrame[n];
+        boolean[] needsFrame = new boolean[n];
+        Stack<Integer> worklist = new Stack<Integer>();
+        frames[0] = initialFrame(maxLocals);
+        worklist.push(0);
+        while (!worklist.isEmpty()) {
+            int i = worklist.pop();
+            CLInstruction instr = mCode.get(i);
+            int opcode = instr.opcode();
+            CLFrame frame = frames[i].copy();
+            frame.execute(instr, constantPool);
+            for (CLExceptionInfo e : exceptionTable) {
+                if (e.startPC <= instr.pc() && instr.pc() < e.endPC) {
+                    String catchType = e.catchType == 0 ? "Ljava/lang/Throwable;" :
+                            CLFrame.typeForClass(constantPool, e.catchType);
+                    int h = indexAt[e.handlerPC];
+                    if (mergeFrame(frames, h, frames[i].handlerFrame(catchType))) {
+                        worklist.push(h);
+                    }
+                    if (mergeFrame(frames, h, frame.handlerFrame(catchType))) {
+                        worklist.push(h);
+                    }
+                }
+            }
+            if (opcode == JSR || opcode == JSR_W || opcode == RET) {
+                reportEmitterError("%s: %s is not allowed in class files of version %d",
+                        eCurrentMethod, instr.mnemonic(), majorVersion);
+                continue;
             }
             if (instr instanceof CLFlowControlInstruction) {
-                CLFlowControlInstruction b = (CLFlowControlInstruction) instr;
-                int jumpToIndex = b.pc() + b.jumpToOffset();
-                CLInstruction instrAt = null;
-                switch (opcode) {
-                    case JSR:
-                    case JSR_W:
-                    case RET:
-                        instr = null;
-                        break;
-                    case GOTO:
-                    case GOTO_W:
-                        instr = null;
-                    default:
-                        instrAt = instruction(jumpToIndex);
-                        if (instrAt != null) {
-                            branchTargets.push(instrAt, stackDepth);
+                for (int offset : ((CLFlowControlInstruction) instr).jumpToOffsets()) {
+                    int pc = instr.pc() + offset;
+                    int t = pc >= 0 && pc <= mPC ? indexAt[pc] : -1;
+                    if (t != -1) {
+                        needsFrame[t] = true;
+                        if (mergeFrame(frames, t, frame)) {
+                            worklist.push(t);
                         }
+                    }
                 }
-            } else {
-                if ((opcode == ATHROW) || ((opcode >= IRETURN) && (opcode <= RETURN))) {
-                    instr = null;
+            }
+            if (i + 1 < n) {
+                if (opcode == GOTO || opcode == GOTO_W || opcode == TABLESWITCH ||
+                        opcode == LOOKUPSWITCH || opcode == ATHROW ||
+                        (opcode >= IRETURN && opcode <= RETURN)) {
+                    needsFrame[i + 1] = true;
+                } else if (mergeFrame(frames, i + 1, frame)) {
+                    worklist.push(i + 1);
                 }
             }
-            if (instr != null) {
-                c++;
-                instr = (c >= mCode.size()) ? null : mCode.get(c);
+        }
+        for (CLExceptionInfo e : exceptionTable) {
+            int h = indexAt[e.handlerPC];
+            if (h != -1 && frames[h] != null) {
+                needsFrame[h] = true;
+            }
+        }
+
+        // Pick the frames to record, replacing unreachable code as we go.
+        ArrayList<CLInstruction> code = new ArrayList<CLInstruction>();
+        TreeMap<Integer, CLFrame> stackMap = new TreeMap<Integer, CLFrame>();
+        boolean[] isLive = new boolean[mPC];
+        for (int i = 0; i < n; ) {
+            CLInstruction instr = mCode.get(i);
+            if (frames[i] != null) {
+                int end = i + 1 < n ? mCode.get(i + 1).pc() : mPC;
+                Arrays.fill(isLive, instr.pc(), end, true);
+                code.add(instr);
+                if (needsFrame[i]) {
+                    stackMap.put(instr.pc(), frames[i]);
+                }
+                i++;
+            } else {
+                int j = i;
+                while (j < n && frames[j] == null) {
+                    j++;
+                }
+                int end = j < n ? mCode.get(j).pc() : mPC;
+                for (int pc = instr.pc(); pc < end - 1; pc++) {
+                    code.add(new CLMiscInstruction(NOP, pc));
+                }
+                code.add(new CLMiscInstruction(ATHROW, end - 1));
+                ArrayList<String> stack = new ArrayList<String>();
+                stack.add("Ljava/lang/Throwable;");
+                stackMap.put(instr.pc(), new CLFrame(new String[0], stack));
+                i = j;
             }
-            if (instr == null) {
-                CLBranchTarget bt = branchTargets.pop();
-                if (bt != null) {
-                    instr = bt.target;
-                    stackDepth = bt.stackDepth;
-                    c = instructionIndex(instr.pc());
+        }
+        mCode = code;
+
+        // Drop the unreachable code from the ranges of the exception handlers, splitting a range
+        // where need be.
+        ArrayList<CLExceptionInfo> liveExceptionTable = new ArrayList<CLExceptionInfo>();
+        for (CLExceptionInfo e : exceptionTable) {
+            int start = -1;
+            for (int pc = e.startPC; pc <= e.endPC; pc++) {
+                if (pc < e.endPC && pc < mPC && isLive[pc]) {
+                    start = start == -1 ? pc : start;
+                } else if (start != -1) {
+                    liveExceptionTable.add(new CLExceptionInfo(start, pc, e.handlerPC,
+                            e.catchType));
+                    start = -1;
                 }
             }
         }
-        return maxStackDepth;
+        exceptionTable.clear();
+        exceptionTable.addAll(liveExceptionTable);
+
+        if (stackMap.isEmpty()) {
+            return null;
+        }
+
+        // Encode each frame relative to the one before it; the first, relative to the frame
+        // implied by the method descriptor.
+        ArrayList<CLStackMapFrame> entries = new ArrayList<CLStackMapFrame>();
+        ArrayList<String> previousLocals = initialFrame(maxLocals).localTypes();
+        int previousPC = -1;
+        int attributeLength = 2;
+        for (int pc : stackMap.keySet()) {
+            ArrayList<String> locals = stackMap.get(pc).localTypes();
+            CLStackMapFrame frame = stackMapFrame(pc - previousPC - 1, previousLocals, locals,
+                    stackMap.get(pc).stack);
+            entries.add(frame);
+            attributeLength += frame.length();
+            previousLocals = locals;
+            previousPC = pc;
+        }
+        int attributeNameIndex = constantPool.constantUtf8Info(ATT_STACK_MAP_TABLE);
+        return new CLStackMapTableAttribute(attributeNameIndex, attributeLength, entries.size(),
+                entries);
+    }
+
+    // Returns the frame on entry to the method last added: "this" (uninitialized in a
+    // constructor, but for that of java/lang/Object) followed by the arguments in the local
+    // variables, and an empty operand stack.
+    private CLFrame initialFrame(int maxLocals) {
+        String[] locals = new String[maxLocals];
+        Arrays.fill(locals, "T");
+        int i = 0;
+        if ((mAccessFlags & ACC_STATIC) == 0) {
+            boolean isUninitialized = eCurrentMethod.startsWith("<init>(") &&
+                    !name.equals("java/lang/Object");
+            locals[i++] = (isUninitialized ? "U:" : "") + "L" + name + ";";
+        }
+        for (String argumentType : CLFrame.argumentTypes(mDescriptor)) {
+            locals[i] = CLFrame.typeFor(argumentType);
+            i += locals[i].equals("J") || locals[i].equals("D") ? 2 : 1;
+        }
+        return new CLFrame(locals, new ArrayList<String>());
+    }
+
+    // Merges the specified frame into that (if any) at the instruction with the specified index,
+    // and returns true if that changed (so the instruction must be looked at again), and false
+    // otherwise.
+    private boolean mergeFrame(CLFrame[] frames, int index, CLFrame frame) {
+        if (index == -1) {
+            return false;
+        }
+        if (frames[index] == null) {
+            frames[index] = frame.copy();
+            return true;
+        }
+        if (frames[index].stack.size() != frame.stack.size()) {
+            reportEmitterError("%s: Inconsistent operand stack depths at pc %d", eCurrentMethod,
+                    mCode.get(index).pc());
+            return false;
+        }
+        return frames[index].merge(frame);
+    }
+
+    // Returns the most compact stack map frame, at the specified offset from the one before it,
+    // for the specified types of the local variables and of the operand stack, given the types of
+    // the local variables in the frame before it.
+    private CLStackMapFrame stackMapFrame(int offsetDelta, ArrayList<String> previousLocals,
+                                          ArrayList<String> locals, ArrayList<String> stack) {
+        int k = locals.size() - previousLocals.size();
+        if (stack.isEmpty() && k == 0 && locals.equals(previousLocals)) {
+            return offsetDelta < SAME_LOCALS_1_STACK_ITEM ?
+                    new CLStackMapFrame(SAME_FRAME + offsetDelta, offsetDelta, null, null) :
+                    new CLStackMapFrame(SAME_FRAME_EXTENDED, offsetDelta, null, null);
+        }
+        if (stack.size() == 1 && k == 0 && locals.equals(previousLocals)) {
+            ArrayList<CLVerificationTypeInfo> stackInfo = verificationTypeInfo(stack);
+            return offsetDelta < SAME_LOCALS_1_STACK_ITEM ?
+                    new CLStackMapFrame(SAME_LOCALS_1_STACK_ITEM + offsetDelta, offsetDelta, null,
+                            stackInfo) :
+                    new CLStackMapFrame(SAME_LOCALS_1_STACK_ITEM_EXTENDED, offsetDelta, null,
+                            stackInfo);
+        }
+        if (stack.isEmpty() && k < 0 && k >= -3 &&
+                previousLocals.subList(0, locals.size()).equals(locals)) {
+            return new CLStackMapFrame(SAME_FRAME_EXTENDED + k, offsetDelta, null, null);
+        }
+        if (stack.isEmpty() && k > 0 && k <= 3 &&
+                locals.subList(0, previousLocals.size()).equals(previousLocals)) {
+            return new CLStackMapFrame(SAME_FRAME_EXTENDED + k, offsetDelta,
+                    verificationTypeInfo(locals.subList(previousLocals.size(), locals.size())),
+                    null);
+        }
+        return new CLStackMapFrame(FULL_FRAME, offsetDelta, verificationTypeInfo(locals),
+                verificationTypeInfo(stack));
+    }
+
+    // Returns the verification_type_info structures for the specified types, which are denoted
+    // as in CLFrame.
+    private ArrayList<CLVerificationTypeInfo> verificationTypeInfo(List<String> types) {
+        ArrayList<CLVerificationTypeInfo> infos = new ArrayList<CLVerificationTypeInfo>();
+        for (String type : types) {
+            char c = type.charAt(0);
+            if (c == 'L' || c == '[') {
+                String className = c == 'L' ? type.substring(1, type.length() - 1) : type;
+                infos.add(new CLVerificationTypeInfo(ITEM_Object,
+                        constantPool.constantClassInfo(className)));
+            } else if (c == 'U') {
+                String offset = type.substring(1, type.indexOf(':'));
+                infos.add(offset.isEmpty() ? new CLVerificationTypeInfo(ITEM_UninitializedThis, 0) :
+                        new CLVerificationTypeInfo(ITEM_Uninitialized, Integer.parseInt(offset)));
+            } else {
+                infos.add(new CLVerificationTypeInfo(c == 'I' ? ITEM_Integer : c == 'F' ?
+                        ITEM_Float : c == 'J' ? ITEM_Long : c == 'D' ? ITEM_Double : c == 'N' ?
+                        ITEM_Null : ITEM_Top, 0));
+            }
+        }
+        return infos;
     }
 
     // Adds LDC (LDC_W if index is wide) instruction.
@@ -1480,7 +1944,7 @@ public class CLEmitter {
     // Constructs and returns a Code attribute given the list of bytes that make up the
     // instructions and their operands, exception table, maximum depth of operand stack, and
     // maximum number of local variables.
-    private CLCodeAttribute codeAttribute(ArrayList<Integer> byteCode,
+    private CLCodeAttribute codeAttribute(CLByteBuffer byteCode,
                                           ArrayList<CLExceptionInfo> exceptionTable, int stackDepth,
                                           int maxLocals) {
         int codeLength = byteCode.size();
@@ -1513,6 +1977,17 @@ public class CLEmitter {
                 innerClasses.size(), innerClasses);
     }
 
+    // Constructs and returns a BootstrapMethods attribute.
+    private CLBootstrapMethodsAttribute bootstrapMethodsAttribute() {
+        int attributeNameIndex = constantPool.constantUtf8Info(ATT_BOOTSTRAP_METHODS);
+        long attributeLength = 2;
+        for (CLBootstrapMethodInfo bootstrapMethod : bootstrapMethods) {
+            attributeLength += 4 + 2 * bootstrapMethod.numBootstrapArguments;
+        }
+        return new CLBootstrapMethodsAttribute(attributeNameIndex, attributeLength,
+                bootstrapMethods.size(), bootstrapMethods);
+    }
+
     // Constructs and returns a Synthetic attribute.
     private CLAttributeInfo syntheticAttribute() {
         int attributeNameIndex = constantPool.constantUtf8Info(ATT_SYNTHETIC);
@@ -1532,8 +2007,7 @@ public class CLEmitter {
 
     // Used to report any error that occurs while creating/writing the class, to STDERR.
     private void reportEmitterError(String message, Object... args) {
-        System.err.printf(message, args);
-        System.err.println();
+        System.err.println(String.format(message, args));
         errorHasOccurred = true;
     }
 }
@@ -1617,147 +2091,723 @@ class CLException {
 }
 
 /**
- * Instances of this class form the elements of the CLBranchStack which is used for control flow
- * analysis to compute maximum depth of operand stack for a method.
+ * Representation of a frame as the verifier sees it: the types of the local variables and of the
+ * operand stack before some instruction. CLEmitter computes frames to produce the stack map
+ * frames of a method. A type is denoted by a string: a field descriptor (eg, Ljava/lang/String;
+ * or [I) for a reference type; I, F, J, or D for a primitive type (int standing for boolean,
+ * byte, char, and short too); T for top, the type of an unusable local variable; N for the type
+ * of null; and U, an offset, a colon, and a descriptor for an uninitialized object of the
+ * described type, created by the NEW instruction at the offset, or if there is no offset, the
+ * uninitialized "this" of a constructor. A long or double takes up two local variables, the
+ * second of which is T, but only one entry on the operand stack.
  */
-class CLBranchTarget {
+class CLFrame {
     /**
-     * Target instruction.
+     * Types of the local variables.
      */
-    public CLInstruction target;
+    public String[] locals;
 
     /**
-     * Depth of stack before the target instruction is executed.
+     * Types of the entries on the operand stack, from bottom to top.
      */
-    public int stackDepth;
+    public ArrayList<String> stack;
 
     /**
-     * Constructs a CLBranchTarget object.
+     * Constructs a CLFrame object.
      *
-     * @param target     the target instruction.
-     * @param stackDepth depth of stack before the target instruction is executed.
+     * @param locals types of the local variables.
+     * @param stack  types of the entries on the operand stack, from bottom to top.
      */
-    public CLBranchTarget(CLInstruction target, int stackDepth) {
-        this.target = target;
-        this.stackDepth = stackDepth;
+    public CLFrame(String[] locals, ArrayList<String> stack) {
+        this.locals = locals;
+        this.stack = stack;
     }
-}
 
-/**
- * This class is used for control flow analysis to compute maximum depth of operand stack for a
- * method.
- */
-class CLBranchStack {
-    // Branch targets yet to visit.
-    private Stack<CLBranchTarget> branchTargets;
+    /**
+     * Returns a copy of this frame.
+     *
+     * @return a copy of this frame.
+     */
+    public CLFrame copy() {
+        return new CLFrame(locals.clone(), new ArrayList<String>(stack));
+    }
 
-    // Branch targets already visited.
-    private Hashtable<CLInstruction, CLBranchTarget> visitedTargets;
+    /**
+     * Returns the frame on entry to an exception handler catching the specified type, for an
+     * exception thrown in this frame: the local variables are the same, and the operand stack
+     * holds just the exception.
+     *
+     * @param catchType the type that the handler catches.
+     * @return the frame on entry to the handler.
+     */
+    public CLFrame handlerFrame(String catchType) {
+        ArrayList<String> stack = new ArrayList<String>();
+        stack.add(catchType);
+        return new CLFrame(locals.clone(), stack);
+    }
 
     /**
-     * Constructs a CLBranchStack object.
+     * Merges the specified frame, which must have as many local variables and entries on the
+     * operand stack, into this one: each type becomes the most specific type that both frames'
+     * types are assignable to. Returns true if this frame changed, and false otherwise.
+     *
+     * @param other the frame to merge into this one.
+     * @return true if this frame changed, and false otherwise.
      */
-    public CLBranchStack() {
-        this.branchTargets = new Stack<CLBranchTarget>();
-        this.visitedTargets = new Hashtable<CLInstruction, CLBranchTarget>();
+    public boolean merge(CLFrame other) {
+        boolean changed = false;
+        for (int i = 0; i < locals.length; i++) {
+            String type = commonType(locals[i], other.locals[i]);
+            changed |= !type.equals(locals[i]);
+            locals[i] = type;
+        }
+        for (int i = 0; i < stack.size(); i++) {
+            String type = commonType(stack.get(i), other.stack.get(i));
+            changed |= !type.equals(stack.get(i));
+            stack.set(i, type);
+        }
+        return changed;
     }
 
     /**
-     * Pushes the specified information into the stack as a CLBranchTarget instance if the target
-     * has not been visited yet.
+     * Returns the types of the local variables as a stack map frame lists them: a long or double
+     * is listed once (for both the local variables it takes up), and the unusable local
+     * variables at the end are left out.
      *
-     * @param target     the target instruction.
-     * @param stackDepth depth of stack before the target instruction is executed.
+     * @return the types of the local variables as a stack map frame lists them.
      */
-    public void push(CLInstruction target, int stackDepth) {
-        if (visited(target)) {
-            return;
+    public ArrayList<String> localTypes() {
+        int end = locals.length;
+        while (end > 0 && locals[end - 1].equals("T")) {
+            end--;
+        }
+        ArrayList<String> localTypes = new ArrayList<String>();
+        for (int i = 0; i < end; i++) {
+            localTypes.add(locals[i]);
+            if (isCategory2(locals[i])) {
+                i++;
+            }
+        }
+        return localTypes;
+    }
+
+    /**
+     * Changes this frame (taken to be the frame before the specified instruction) to the frame
+     * after the instruction. Flow control is not followed.
+     *
+     * @param instr        the instruction.
+     * @param constantPool the constant pool that the instruction refers to.
+     */
+    public void execute(CLInstruction instr, CLConstantPool constantPool) {
+        int opcode = instr.opcode();
+        int index = instr.localVariableIndex();
+        String type1, type2, type3, type4;
+        switch (opcode) {
+            case ACONST_NULL:
+                push("N");
+                break;
+            case ICONST_M1:
+            case ICONST_0:
+            case ICONST_1:
+            case ICONST_2:
+            case ICONST_3:
+            case ICONST_4:
+            case ICONST_5:
+            case BIPUSH:
+            case SIPUSH:
+            case ILOAD:
+            case ILOAD_0:
+            case ILOAD_1:
+            case ILOAD_2:
+            case ILOAD_3:
+                push("I");
+                break;
+            case LCONST_0:
+            case LCONST_1:
+            case LLOAD:
+            case LLOAD_0:
+            case LLOAD_1:
+            case LLOAD_2:
+            case LLOAD_3:
+                push("J");
+                break;
+            case FCONST_0:
+            case FCONST_1:
+            case FCONST_2:
+            case FLOAD:
+            case FLOAD_0:
+            case FLOAD_1:
+            case FLOAD_2:
+            case FLOAD_3:
+                push("F");
+                break;
+            case DCONST_0:
+            case DCONST_1:
+            case DLOAD:
+            case DLOAD_0:
+            case DLOAD_1:
+            case DLOAD_2:
+            case DLOAD_3:
+                push("D");
+                break;
+            case LDC:
+            case LDC_W:
+            case LDC2_W:
+                CLCPInfo item = constantPool.cpItem(((CLLoadStoreInstruction) instr).constVal());
+                push(item.tag == CONSTANT_Integer ? "I" : item.tag == CONSTANT_Float ? "F" :
+                        item.tag == CONSTANT_Long ? "J" : item.tag == CONSTANT_Double ? "D" :
+                        item.tag == CONSTANT_String ? "Ljava/lang/String;" :
+                        "Ljava/lang/Class;");
+                break;
+            case ALOAD:
+            case ALOAD_0:
+            case ALOAD_1:
+            case ALOAD_2:
+            case ALOAD_3:
+                push(locals[index]);
+                break;
+            case ISTORE:
+            case ISTORE_0:
+            case ISTORE_1:
+            case ISTORE_2:
+            case ISTORE_3:
+            case LSTORE:
+            case LSTORE_0:
+            case LSTORE_1:
+            case LSTORE_2:
+            case LSTORE_3:
+            case FSTORE:
+            case FSTORE_0:
+            case FSTORE_1:
+            case FSTORE_2:
+            case FSTORE_3:
+            case DSTORE:
+            case DSTORE_0:
+            case DSTORE_1:
+            case DSTORE_2:
+            case DSTORE_3:
+            case ASTORE:
+            case ASTORE_0:
+            case ASTORE_1:
+            case ASTORE_2:
+            case ASTORE_3:
+                store(index, pop());
+                break;
+            case IALOAD:
+            case BALOAD:
+            case CALOAD:
+            case SALOAD:
+            case IADD:
+            case ISUB:
+            case IMUL:
+            case IDIV:
+            case IREM:
+            case ISHL:
+            case ISHR:
+            case IUSHR:
+            case IAND:
+            case IOR:
+            case IXOR:
+            case LCMP:
+            case FCMPL:
+            case FCMPG:
+            case DCMPL:
+            case DCMPG:
+                pop(2);
+                push("I");
+                break;
+            case LALOAD:
+            case LADD:
+            case LSUB:
+            case LMUL:
+            case LDIV:
+            case LREM:
+            case LSHL:
+            case LSHR:
+            case LUSHR:
+            case LAND:
+            case LOR:
+            case LXOR:
+                pop(2);
+                push("J");
+                break;
+            case FALOAD:
+            case FADD:
+            case FSUB:
+            case FMUL:
+            case FDIV:
+            case FREM:
+                pop(2);
+                push("F");
+                break;
+            case DALOAD:
+            case DADD:
+            case DSUB:
+            case DMUL:
+            case DDIV:
+            case DREM:
+                pop(2);
+                push("D");
+                break;
+            case AALOAD:
+                pop();
+                type1 = pop();
+                push(type1.startsWith("[") ? type1.substring(1) : "N");
+                break;
+            case I2B:
+            case I2C:
+            case I2S:
+            case L2I:
+            case F2I:
+            case D2I:
+            case ARRAYLENGTH:
+            case INSTANCEOF:
+                pop();
+                push("I");
+                break;
+            case I2L:
+            case F2L:
+            case D2L:
+                pop();
+                push("J");
+                break;
+            case I2F:
+            case L2F:
+            case D2F:
+                pop();
+                push("F");
+                break;
+            case I2D:
+            case L2D:
+            case F2D:
+                pop();
+                push("D");
+                break;
+            case POP:
+            case IFEQ:
+            case IFNE:
+            case IFLT:
+            case IFGE:
+            case IFGT:
+            case IFLE:
+            case IFNULL:
+            case IFNONNULL:
+            case TABLESWITCH:
+            case LOOKUPSWITCH:
+            case IRETURN:
+            case LRETURN:
+            case FRETURN:
+            case DRETURN:
+            case ARETURN:
+            case ATHROW:
+            case MONITORENTER:
+            case MONITOREXIT:
+            case PUTSTATIC:
+                pop();
+                break;
+            case IF_ICMPEQ:
+            case IF_ICMPNE:
+            case IF_ICMPLT:
+            case IF_ICMPGE:
+            case IF_ICMPGT:
+            case IF_ICMPLE:
+            case IF_ACMPEQ:
+            case IF_ACMPNE:
+            case PUTFIELD:
+                pop(2);
+                break;
+            case IASTORE:
+            case LASTORE:
+            case FASTORE:
+            case DASTORE:
+            case AASTORE:
+            case BASTORE:
+            case CASTORE:
+            case SASTORE:
+                pop(3);
+                break;
+            case POP2:
+                pop(isCategory2(pop()) ? 0 : 1);
+                break;
+            case DUP:
+                type1 = pop();
+                push(type1, type1);
+                break;
+            case DUP_X1:
+                type1 = pop();
+                type2 = pop();
+                push(type1, type2, type1);
+                break;
+            case DUP_X2:
+                type1 = pop();
+                type2 = pop();
+                if (isCategory2(type2)) {
+                    push(type1, type2, type1);
+                } else {
+                    type3 = pop();
+                    push(type1, type3, type2, type1);
+                }
+                break;
+            case DUP2:
+                type1 = pop();
+                if (isCategory2(type1)) {
+                    push(type1, type1);
+                } else {
+                    type2 = pop();
+                    push(type2, type1, type2, type1);
+                }
+                break;
+            case DUP2_X1:
+                type1 = pop();
+                type2 = pop();
+                if (isCategory2(type1)) {
+                    push(type1, type2, type1);
+                } else {
+                    type3 = pop();
+                    push(type2, type1, type3, type2, type1);
+                }
+                break;
+            case DUP2_X2:
+                type1 = pop();
+                type2 = pop();
+                if (isCategory2(type1) && isCategory2(type2)) {
+                    push(type1, type2, type1);
+                } else if (isCategory2(type1)) {
+                    type3 = pop();
+                    push(type1, type3, type2, type1);
+                } else {
+                    type3 = pop();
+                    if (isCategory2(type3)) {
+                        push(type2, type1, type3, type2, type1);
+                    } else {
+                        type4 = pop();
+                        push(type2, type1, type4, type3, type2, type1);
+                    }
+                }
+                break;
+            case SWAP:
+                type1 = pop();
+                type2 = pop();
+                push(type1, type2);
+                break;
+            case GETSTATIC:
+            case GETFIELD:
+                if (opcode == GETFIELD) {
+                    pop();
+                }
+                push(typeFor(memberDescriptor(constantPool,
+                        ((CLFieldInstruction) instr).index())));
+                break;
+            case INVOKEVIRTUAL:
+            case INVOKESPECIAL:
+            case INVOKESTATIC:
+            case INVOKEINTERFACE:
+            case INVOKEDYNAMIC:
+                int methodIndex = ((CLMethodInstruction) instr).index();
+                String descriptor = memberDescriptor(constantPool, methodIndex);
+                pop(argumentTypes(descriptor).size());
+                if (opcode != INVOKESTATIC && opcode != INVOKEDYNAMIC) {
+                    type1 = pop();
+                    if (type1.startsWith("U") &&
+                            memberName(constantPool, methodIndex).equals("<init>")) {
+                        initialize(type1);
+                    }
+                }
+                String returnType = descriptor.substring(descriptor.indexOf(')') + 1);
+                if (!returnType.equals("V")) {
+                    push(typeFor(returnType));
+                }
+                break;
+            case NEW:
+                push("U" + instr.pc() + ":" +
+                        typeForClass(constantPool, ((CLObjectInstruction) instr).index()));
+                break;
+            case NEWARRAY:
+                pop();
+                push("[" + "ZCFDBSIJ".charAt(((CLArrayInstruction) instr).type() - 4));
+                break;
+            case ANEWARRAY:
+                pop();
+                push("[" + typeForClass(constantPool, ((CLArrayInstruction) instr).type()));
+                break;
+            case MULTIANEWARRAY:
+                pop(((CLArrayInstruction) instr).dim());
+                push(typeForClass(constantPool, ((CLArrayInstruction) instr).type()));
+                break;
+            case CHECKCAST:
+                pop();
+                push(typeForClass(constantPool, ((CLObjectInstruction) instr).index()));
+                break;
         }
-        branchTargets.push(visit(target, stackDepth));
     }
 
     /**
-     * Pops and returns an element from the stack, or null.
+     * Returns the type (as denoted in a frame) of a value having the type with the specified
+     * field descriptor.
      *
-     * @return an element from the stack, or null.
+     * @param descriptor the field descriptor.
+     * @return the type of a value having the described type.
      */
-    public CLBranchTarget pop() {
-        if (!branchTargets.empty()) {
-            CLBranchTarget bt = (CLBranchTarget) branchTargets.pop();
-            return bt;
+    public static String typeFor(String descriptor) {
+        char c = descriptor.charAt(0);
+        return c == 'Z' || c == 'B' || c == 'C' || c == 'S' ? "I" : descriptor;
+    }
+
+    /**
+     * Returns the type (as denoted in a frame) of an instance of the class at the specified index
+     * in the constant pool.
+     *
+     * @param constantPool the constant pool.
+     * @param index        index of a CONSTANT_Class_info item in the constant pool.
+     * @return the type of an instance of the class.
+     */
+    public static String typeForClass(CLConstantPool constantPool, int index) {
+        String name = utf8(constantPool, ((CLConstantClassInfo) constantPool.cpItem(index))
+                .nameIndex);
+        return name.startsWith("[") ? name : "L" + name + ";";
+    }
+
+    /**
+     * Returns the field descriptors of the argument types in the specified method descriptor.
+     *
+     * @param descriptor the method descriptor.
+     * @return the field descriptors of the argument types.
+     */
+    public static ArrayList<String> argumentTypes(String descriptor) {
+        ArrayList<String> argumentTypes = new ArrayList<String>();
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            int start = i;
+            while (descriptor.charAt(i) == '[') {
+                i++;
+            }
+            i = descriptor.charAt(i) == 'L' ? descriptor.indexOf(';', i) + 1 : i + 1;
+            argumentTypes.add(descriptor.substring(start, i));
         }
-        return null;
+        return argumentTypes;
     }
 
-    // Returns an instance of CLBranchTarget with the specified information and records the
-    // target as visited.
-    private CLBranchTarget visit(CLInstruction target, int stackDepth) {
-        CLBranchTarget bt = new CLBranchTarget(target, stackDepth);
-        visitedTargets.put(target, bt);
-        return bt;
+    // Pushes the specified types on the operand stack.
+    private void push(String... types) {
+        for (String type : types) {
+            stack.add(type);
+        }
     }
 
-    // Returns true if the specified instruction has been visited, and false otherwise.
-    private boolean visited(CLInstruction target) {
-        return (visitedTargets.get(target) != null);
+    // Pops the top of the operand stack and returns its type (top, if the stack is empty).
+    private String pop() {
+        return stack.isEmpty() ? "T" : stack.remove(stack.size() - 1);
+    }
+
+    // Pops the specified number of entries off the operand stack.
+    private void pop(int n) {
+        for (int i = 0; i < n; i++) {
+            pop();
+        }
+    }
+
+    // Stores a value of the specified type in the local variable with the specified index. A
+    // long or double stored in (or at the second half of) the local variable before is lost.
+    private void store(int index, String type) {
+        if (index > 0 && isCategory2(locals[index - 1])) {
+            locals[index - 1] = "T";
+        }
+        locals[index] = type;
+        if (isCategory2(type)) {
+            locals[index + 1] = "T";
+        }
+    }
+
+    // Initializes the specified uninitialized object (which a constructor was just invoked on),
+    // wherever it is in this frame.
+    private void initialize(String uninitialized) {
+        String type = uninitialized.substring(uninitialized.indexOf(':') + 1);
+        for (int i = 0; i < locals.length; i++) {
+            if (locals[i].equals(uninitialized)) {
+                locals[i] = type;
+            }
+        }
+        for (int i = 0; i < stack.size(); i++) {
+            if (stack.get(i).equals(uninitialized)) {
+                stack.set(i, type);
+            }
+        }
+    }
+
+    // Returns true if the specified type is long or double, and false otherwise.
+    private static boolean isCategory2(String type) {
+        return type.equals("J") || type.equals("D");
+    }
+
+    // Returns true if the specified type is a reference type (or the type of null), and false
+    // otherwise.
+    private static boolean isReference(String type) {
+        return type.startsWith("L") || type.startsWith("[") || type.equals("N");
+    }
+
+    // Returns the most specific type that both the specified types are assignable to: for two
+    // class types, their first common super class; for two arrays of references, an array of
+    // the common type of their components; and for types that have nothing in common, top.
+    // Interfaces are treated as java/lang/Object, as by the verifier.
+    private static String commonType(String type1, String type2) {
+        if (type1.equals(type2)) {
+            return type1;
+        }
+        if (!isReference(type1) || !isReference(type2)) {
+            return "T";
+        }
+        if (type1.equals("N") || type2.equals("N")) {
+            return type1.equals("N") ? type2 : type1;
+        }
+        if (type1.startsWith("[") && type2.startsWith("[")) {
+            String component1 = type1.substring(1);
+            String component2 = type2.substring(1);
+            if (isReference(component1) && isReference(component2)) {
+                return "[" + commonType(component1, component2);
+            }
+        } else if (type1.startsWith("L") && type2.startsWith("L")) {
+            ArrayList<String> superClasses = new ArrayList<String>();
+            for (Type t = Type.typeForDescriptor(type1); t != null; t = t.superClass()) {
+                superClasses.add(t.toDescriptor());
+            }
+            for (Type t = Type.typeForDescriptor(type2); t != null; t = t.superClass()) {
+                if (superClasses.contains(t.toDescriptor())) {
+                    return t.toDescriptor();
+                }
+            }
+        }
+        return "Ljava/lang/Object;";
+    }
+
+    // Returns the string at the specified index in the constant pool.
+    private static String utf8(CLConstantPool constantPool, int index) {
+        return new String(((CLConstantUtf8Info) constantPool.cpItem(index)).b);
+    }
+
+    // Returns the name of the field or method referred to at the specified index in the constant
+    // pool.
+    private static String memberName(CLConstantPool constantPool, int index) {
+        CLConstantMemberRefInfo member = (CLConstantMemberRefInfo) constantPool.cpItem(index);
+        return utf8(constantPool, ((CLConstantNameAndTypeInfo) constantPool.cpItem(
+                member.nameAndTypeIndex)).nameIndex);
+    }
+
+    // Returns the descriptor of the field, method or (invokedynamic) call site referred to at the
+    // specified index in the constant pool.
+    private static String memberDescriptor(CLConstantPool constantPool, int index) {
+        CLCPInfo member = constantPool.cpItem(index);
+        int nameAndTypeIndex = member instanceof CLConstantInvokeDynamicInfo ?
+                ((CLConstantInvokeDynamicInfo) member).nameAndTypeIndex :
+                ((CLConstantMemberRefInfo) member).nameAndTypeIndex;
+        return utf8(constantPool, ((CLConstantNameAndTypeInfo) constantPool.cpItem(
+                nameAndTypeIndex)).descriptorIndex);
     }
 }
 
 /**
- * A class loader to be able to load a class from a byte stream.
+ * A growable array of bytes, used as the sink into which instructions are assembled and class
+ * files are written. Unlike an ArrayList&lt;Integer&gt;, it does not box the individual bytes, and
+ * unlike ByteArrayOutputStream, it is unsynchronized and allows the bytes written so far to be
+ * read back in place.
  */
-class ByteClassLoader extends ClassLoader {
-    // Bytes representing the class.
-    private byte[] bytes;
+class CLByteBuffer extends OutputStream {
+    // The bytes written so far; only the first count of them are valid.
+    private byte[] buf;
+
+    // Number of valid bytes in buf.
+    private int count;
 
-    // Has a package been defined for this class loader?
-    private boolean pkgDefined = false;
+    /**
+     * Constructs an empty CLByteBuffer.
+     */
+    public CLByteBuffer() {
+        this(256);
+    }
 
     /**
-     * Sets the bytes representing the class.
+     * Constructs an empty CLByteBuffer with the specified initial capacity.
      *
-     * @param bytes bytes representing the class.
+     * @param capacity initial capacity in bytes.
      */
-    public void setClassBytes(byte[] bytes) {
-        this.bytes = bytes;
+    public CLByteBuffer(int capacity) {
+        buf = new byte[Math.max(capacity, 16)];
     }
 
     /**
-     * Loads the class with the specified fully qualified name.
+     * Appends the low-order byte of the argument to this buffer.
      *
-     * @param name    the fully qualified name of the class.
-     * @param resolve if true then resolve the class.
-     * @throws ClassNotFoundException if the class could not be found.
+     * @param b the byte to append.
      */
-    public Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
-        Class cls = findLoadedClass(name);
-        if (cls == null) {
-            try {
-                cls = findSystemClass(name);
-            } catch (Exception e) {
-                // Ignore these.
-            } catch (NoClassDefFoundError e) {
-                // If we get here we know the class exists, so change the name to its binary name
-                // as defined in the Java Language Specifications.
-                cls = findSystemClass(name.replace("/", "."));
-            }
-        }
-        if (cls == null) {
-            name = name.replace("/", ".");
-            String pkg = name.lastIndexOf('.') == -1 ? "" : name.substring(0,
-                    name.lastIndexOf('.'));
-            if (!pkgDefined) {
-                // Packages must be created before the class is defined, and package names must
-                // be unique within a class loader and cannot be redefined or changed once created.
-                definePackage(pkg, "", "", "", "", "", "", null);
-                pkgDefined = true;
-            }
-            cls = defineClass(name, bytes, 0, bytes.length);
-            if (resolve && cls != null) {
-                resolveClass(cls);
-            }
+    public void write(int b) {
+        ensureCapacity(count + 1);
+        buf[count++] = (byte) b;
+    }
+
+    /**
+     * Appends len bytes from the specified array, starting at offset off, to this buffer.
+     *
+     * @param b   the bytes to append.
+     * @param off start offset in b.
+     * @param len number of bytes to append.
+     */
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(count + len);
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    /**
+     * Appends the contents of the specified buffer to this buffer.
+     *
+     * @param other the buffer to append.
+     */
+    public void write(CLByteBuffer other) {
+        write(other.buf, 0, other.count);
+    }
+
+    /**
+     * Returns the byte at the specified index as an unsigned value.
+     *
+     * @param i index of the byte.
+     * @return the byte at the specified index as an unsigned value.
+     */
+    public int byteAt(int i) {
+        return buf[i] & 0xFF;
+    }
+
+    /**
+     * Returns the number of bytes in this buffer.
+     *
+     * @return the number of bytes in this buffer.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns a copy of the bytes in this buffer.
+     *
+     * @return a copy of the bytes in this buffer.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    /**
+     * Writes the bytes in this buffer to the specified output stream.
+     *
+     * @param out output stream.
+     * @throws IOException if an error occurs while writing.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, count);
+    }
+
+    // Grows buf, if necessary, so it can hold at least the specified number of bytes.
+    private void ensureCapacity(int capacity) {
+        if (capacity > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(capacity, buf.length * 2));
         }
-        return cls;
     }
 }
 
@@ -244,7 +244,7 @@ abstract class CLInstruction {
             new CLInsInfo(INVOKESPECIAL, "invokespecial", 2, IRRELEVANT, DYNAMIC, METHOD1),
             new CLInsInfo(INVOKESTATIC, "invokestatic", 2, IRRELEVANT, DYNAMIC, METHOD1),
             new CLInsInfo(INVOKEINTERFACE, "invokeinterface", 4, IRRELEVANT, DYNAMIC, METHOD1),
-            new CLInsInfo(INVOKEDYNAMIC, "invokedynamic", 2, IRRELEVANT, DYNAMIC, METHOD1),
+            new CLInsInfo(INVOKEDYNAMIC, "invokedynamic", 4, IRRELEVANT, DYNAMIC, METHOD1),
             new CLInsInfo(NEW, "new", 2, IRRELEVANT, 1, OBJECT),
             new CLInsInfo(NEWARRAY, "newarray", 1, IRRELEVANT, 0, ARRAY1),
             new CLInsInfo(ANEWARRAY, "anewarray", 2, IRRELEVANT, 0, ARRAY1),
@@ -307,6 +307,16 @@ abstract class CLInstruction {
         return pc;
     }
 
+    /**
+     * Moves this instruction to the specified pc. CLEmitter does this when it widens branches
+     * that come before this instruction.
+     *
+     * @param pc the new pc for this instruction.
+     */
+    public void relocate(int pc) {
+        this.pc = pc;
+    }
+
     /**
      * Returns the stack units for this instruction.
      *
@@ -326,11 +336,11 @@ abstract class CLInstruction {
     }
 
     /**
-     * Returns the bytecode for this instruction.
+     * Appends the bytecode for this instruction to the specified buffer.
      *
-     * @return the bytecode for this instruction.
+     * @param out the buffer to append to.
      */
-    public abstract ArrayList<Integer> toBytes();
+    public abstract void write(CLByteBuffer out);
 
     /**
      * Returns the byte from i at position byteNum.
@@ -383,15 +393,22 @@ class CLObjectInstruction extends CLInstruction {
         this.index = index;
     }
 
+    /**
+     * Returns the index into the constant pool, the item at which identifies the object.
+     *
+     * @return the index into the constant pool, the item at which identifies the object.
+     */
+    public int index() {
+        return index;
+    }
+
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
-        bytes.add(byteAt(index, 2));
-        bytes.add(byteAt(index, 1));
-        return bytes;
+    public void write(CLByteBuffer out) {
+        out.write(opcode);
+        out.write(byteAt(index, 2));
+        out.write(byteAt(index, 1));
     }
 }
 
@@ -422,15 +439,24 @@ class CLFieldInstruction extends CLInstruction {
         this.index = index;
     }
 
+    /**
+     * Returns the index into the constant pool, the item at which contains the name and
+     * descriptor of the field.
+     *
+     * @return the index into the constant pool, the item at which contains the name and
+     * descriptor of the field.
+     */
+    public int index() {
+        return index;
+    }
+
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
-        bytes.add(byteAt(index, 2));
-        bytes.add(byteAt(index, 1));
-        return bytes;
+    public void write(CLByteBuffer out) {
+        out.write(opcode);
+        out.write(byteAt(index, 2));
+        out.write(byteAt(index, 1));
     }
 }
 
@@ -479,6 +505,17 @@ class CLMethodInstruction extends CLInstruction {
         localVariableIndex = instructionInfo[opcode].localVariableIndex;
     }
 
+    /**
+     * Returns the index into the constant pool, the item at which contains the name and
+     * descriptor of the method.
+     *
+     * @return the index into the constant pool, the item at which contains the name and
+     * descriptor of the method.
+     */
+    public int index() {
+        return index;
+    }
+
     /**
      * Sets the number of arguments for the method for INVOKEINTERFACE instruction.
      *
@@ -491,21 +528,25 @@ class CLMethodInstruction extends CLInstruction {
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
+    public void write(CLByteBuffer out) {
+        out.write(opcode);
         if (instructionInfo[opcode].category == METHOD1) {
-            bytes.add(byteAt(index, 2));
-            bytes.add(byteAt(index, 1));
+            out.write(byteAt(index, 2));
+            out.write(byteAt(index, 1));
 
             // INVOKEINTERFACE expects the number of arguments of the method as the third operand
             // and a fourth argument which must always be 0.
             if (opcode == INVOKEINTERFACE) {
-                bytes.add(byteAt(nArgs, 1));
-                bytes.add(0);
+                out.write(byteAt(nArgs, 1));
+                out.write(0);
+            }
+
+            // INVOKEDYNAMIC has two more operands, which must always be 0.
+            if (opcode == INVOKEDYNAMIC) {
+                out.write(0);
+                out.write(0);
             }
         }
-        return bytes;
     }
 }
 
@@ -571,27 +612,44 @@ class CLArrayInstruction extends CLInstruction {
         localVariableIndex = instructionInfo[opcode].localVariableIndex;
     }
 
+    /**
+     * Returns the number identifying the type of primitive array (for NEWARRAY), or the index
+     * into the constant pool, the item at which specifies the reference type of the array.
+     *
+     * @return the number or index identifying the type of the array.
+     */
+    public int type() {
+        return type;
+    }
+
+    /**
+     * Returns the number of dimensions (for MULTIANEWARRAY).
+     *
+     * @return the number of dimensions.
+     */
+    public int dim() {
+        return dim;
+    }
+
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
+    public void write(CLByteBuffer out) {
+        out.write(opcode);
         switch (opcode) {
             case NEWARRAY:
-                bytes.add(byteAt(type, 1));
+                out.write(byteAt(type, 1));
                 break;
             case ANEWARRAY:
-                bytes.add(byteAt(type, 2));
-                bytes.add(byteAt(type, 1));
+                out.write(byteAt(type, 2));
+                out.write(byteAt(type, 1));
                 break;
             case MULTIANEWARRAY:
-                bytes.add(byteAt(type, 2));
-                bytes.add(byteAt(type, 1));
-                bytes.add(byteAt(dim, 1));
+                out.write(byteAt(type, 2));
+                out.write(byteAt(type, 1));
+                out.write(byteAt(dim, 1));
                 break;
         }
-        return bytes;
     }
 }
 
@@ -645,21 +703,19 @@ class CLArithmeticInstruction extends CLInstruction {
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
+    public void write(CLByteBuffer out) {
+        out.write(opcode);
         if (opcode == IINC) {
             if (isWidened) {
-                bytes.add(byteAt(localVariableIndex, 2));
-                bytes.add(byteAt(localVariableIndex, 1));
-                bytes.add(byteAt(constVal, 2));
-                bytes.add(byteAt(constVal, 1));
+                out.write(byteAt(localVariableIndex, 2));
+                out.write(byteAt(localVariableIndex, 1));
+                out.write(byteAt(constVal, 2));
+                out.write(byteAt(constVal, 1));
             } else {
-                bytes.add(byteAt(localVariableIndex, 1));
-                bytes.add(byteAt(constVal, 1));
+                out.write(byteAt(localVariableIndex, 1));
+                out.write(byteAt(constVal, 1));
             }
         }
-        return bytes;
     }
 }
 
@@ -685,10 +741,8 @@ class CLBitInstruction extends CLInstruction {
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
-        return bytes;
+    public void write(CLByteBuffer out) {
+        out.write(opcode);
     }
 }
 
@@ -714,10 +768,8 @@ class CLComparisonInstruction extends CLInstruction {
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
-        return bytes;
+    public void write(CLByteBuffer out) {
+        out.write(opcode);
     }
 }
 
@@ -743,10 +795,8 @@ class CLConversionInstruction extends CLInstruction {
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
-        return bytes;
+    public void write(CLByteBuffer out) {
+        out.write(opcode);
     }
 }
 
@@ -948,6 +998,36 @@ class CLFlowControlInstruction extends CLInstruction {
         return allLabelsResolved;
     }
 
+    /**
+     * Returns the label to jump to; applies only to FLOW_CONTROL1 instructions.
+     *
+     * @return the label to jump to.
+     */
+    public String jumpToLabel() {
+        return jumpToLabel;
+    }
+
+    /**
+     * Returns the labels of all the instructions this instruction may jump to: the label of the
+     * jump, or for TABLESWITCH and LOOKUPSWITCH, the default label followed by the match labels.
+     * RET has none.
+     *
+     * @return the labels of the instructions this instruction may jump to.
+     */
+    public ArrayList<String> jumpToLabels() {
+        ArrayList<String> jumpToLabels = new ArrayList<String>();
+        if (opcode == TABLESWITCH) {
+            jumpToLabels.add(defaultLabel);
+            jumpToLabels.addAll(labels);
+        } else if (opcode == LOOKUPSWITCH) {
+            jumpToLabels.add(defaultLabel);
+            jumpToLabels.addAll(matchLabelPairs.values());
+        } else if (opcode != RET) {
+            jumpToLabels.add(jumpToLabel);
+        }
+        return jumpToLabels;
+    }
+
     /**
      * Returns the pc of instruction to jump to.
      *
@@ -957,85 +1037,120 @@ class CLFlowControlInstruction extends CLInstruction {
         return jumpToOffset;
     }
 
+    /**
+     * Returns the offsets (relative to the pc of this instruction) of all the instructions this
+     * instruction may jump to: the offset of the jump, or for TABLESWITCH and LOOKUPSWITCH, the
+     * default offset followed by the match offsets. RET has none.
+     *
+     * @return the offsets of the instructions this instruction may jump to.
+     */
+    public ArrayList<Integer> jumpToOffsets() {
+        ArrayList<Integer> jumpToOffsets = new ArrayList<Integer>();
+        if (opcode == TABLESWITCH) {
+            jumpToOffsets.add(defaultOffset);
+            jumpToOffsets.addAll(offsets);
+        } else if (opcode == LOOKUPSWITCH) {
+            jumpToOffsets.add(defaultOffset);
+            jumpToOffsets.addAll(matchOffsetPairs.values());
+        } else if (opcode != RET) {
+            jumpToOffsets.add(jumpToOffset);
+        }
+        return jumpToOffsets;
+    }
+
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
+    public void relocate(int pc) {
+        super.relocate(pc);
+        if (opcode == TABLESWITCH || opcode == LOOKUPSWITCH) {
+            // The padding (and so the size) depends on the pc.
+            operandCount -= pad;
+            pad = 4 - ((pc + 1) % 4);
+            if (pad == 4) {
+                pad = 0;
+            }
+            operandCount += pad;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void write(CLByteBuffer out) {
+        out.write(opcode);
         switch (opcode) {
             case RET:
                 if (isWidened) {
-                    bytes.add(byteAt(index, 2));
-                    bytes.add(byteAt(index, 1));
+                    out.write(byteAt(index, 2));
+                    out.write(byteAt(index, 1));
                 } else {
-                    bytes.add(byteAt(index, 1));
+                    out.write(byteAt(index, 1));
                 }
                 break;
             case TABLESWITCH:
                 for (int i = 0; i < pad; i++) {
-                    bytes.add(0);
+                    out.write(0);
                 }
-                bytes.add(byteAt(defaultOffset, 4));
-                bytes.add(byteAt(defaultOffset, 3));
-                bytes.add(byteAt(defaultOffset, 2));
-                bytes.add(byteAt(defaultOffset, 1));
-                bytes.add(byteAt(low, 4));
-                bytes.add(byteAt(low, 3));
-                bytes.add(byteAt(low, 2));
-                bytes.add(byteAt(low, 1));
-                bytes.add(byteAt(high, 4));
-                bytes.add(byteAt(high, 3));
-                bytes.add(byteAt(high, 2));
-                bytes.add(byteAt(high, 1));
+                out.write(byteAt(defaultOffset, 4));
+                out.write(byteAt(defaultOffset, 3));
+                out.write(byteAt(defaultOffset, 2));
+                out.write(byteAt(defaultOffset, 1));
+                out.write(byteAt(low, 4));
+                out.write(byteAt(low, 3));
+                out.write(byteAt(low, 2));
+                out.write(byteAt(low, 1));
+                out.write(byteAt(high, 4));
+                out.write(byteAt(high, 3));
+                out.write(byteAt(high, 2));
+                out.write(byteAt(high, 1));
                 for (int i = 0; i < offsets.size(); i++) {
                     int jumpOffset = offsets.get(i);
-                    bytes.add(byteAt(jumpOffset, 4));
-                    bytes.add(byteAt(jumpOffset, 3));
-                    bytes.add(byteAt(jumpOffset, 2));
-                    bytes.add(byteAt(jumpOffset, 1));
+                    out.write(byteAt(jumpOffset, 4));
+                    out.write(byteAt(jumpOffset, 3));
+                    out.write(byteAt(jumpOffset, 2));
+                    out.write(byteAt(jumpOffset, 1));
                 }
                 break;
             case LOOKUPSWITCH:
                 for (int i = 0; i < pad; i++) {
-                    bytes.add(0);
+                    out.write(0);
                 }
-                bytes.add(byteAt(defaultOffset, 4));
-                bytes.add(byteAt(defaultOffset, 3));
-                bytes.add(byteAt(defaultOffset, 2));
-                bytes.add(byteAt(defaultOffset, 1));
-                bytes.add(byteAt(numPairs, 4));
-                bytes.add(byteAt(numPairs, 3));
-                bytes.add(byteAt(numPairs, 2));
-                bytes.add(byteAt(numPairs, 1));
+                out.write(byteAt(defaultOffset, 4));
+                out.write(byteAt(defaultOffset, 3));
+                out.write(byteAt(defaultOffset, 2));
+                out.write(byteAt(defaultOffset, 1));
+                out.write(byteAt(numPairs, 4));
+                out.write(byteAt(numPairs, 3));
+                out.write(byteAt(numPairs, 2));
+                out.write(byteAt(numPairs, 1));
                 Set<Entry<Integer, Integer>> matches = matchOffsetPairs.entrySet();
                 Iterator<Entry<Integer, Integer>> iter = matches.iterator();
                 while (iter.hasNext()) {
                     Entry<Integer, Integer> entry = iter.next();
                     int match = entry.getKey();
                     int offset = entry.getValue();
-                    bytes.add(byteAt(match, 4));
-                    bytes.add(byteAt(match, 3));
-                    bytes.add(byteAt(match, 2));
-                    bytes.add(byteAt(match, 1));
-                    bytes.add(byteAt(offset, 4));
-                    bytes.add(byteAt(offset, 3));
-                    bytes.add(byteAt(offset, 2));
-                    bytes.add(byteAt(offset, 1));
+                    out.write(byteAt(match, 4));
+                    out.write(byteAt(match, 3));
+                    out.write(byteAt(match, 2));
+                    out.write(byteAt(match, 1));
+                    out.write(byteAt(offset, 4));
+                    out.write(byteAt(offset, 3));
+                    out.write(byteAt(offset, 2));
+                    out.write(byteAt(offset, 1));
                 }
                 break;
             case GOTO_W:
             case JSR_W:
-                bytes.add(byteAt(jumpToOffset, 4));
-                bytes.add(byteAt(jumpToOffset, 3));
-                bytes.add(byteAt(jumpToOffset, 2));
-                bytes.add(byteAt(jumpToOffset, 1));
+                out.write(byteAt(jumpToOffset, 4));
+                out.write(byteAt(jumpToOffset, 3));
+                out.write(byteAt(jumpToOffset, 2));
+                out.write(byteAt(jumpToOffset, 1));
                 break;
             default:
-                bytes.add(byteAt(jumpToOffset, 2));
-                bytes.add(byteAt(jumpToOffset, 1));
+                out.write(byteAt(jumpToOffset, 2));
+                out.write(byteAt(jumpToOffset, 1));
         }
-        return bytes;
     }
 }
 
@@ -1104,33 +1219,41 @@ class CLLoadStoreInstruction extends CLInstruction {
         this.constVal = constVal;
     }
 
+    /**
+     * Returns the byte (for BIPUSH), the short (for SIPUSH), or the constant pool index (for LDC
+     * instructions) that is the operand of this instruction.
+     *
+     * @return the operand of this instruction.
+     */
+    public int constVal() {
+        return constVal;
+    }
+
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
+    public void write(CLByteBuffer out) {
+        out.write(opcode);
         if (instructionInfo[opcode].operandCount > 0) {
             if (localVariableIndex != IRRELEVANT) {
                 if (isWidened) {
-                    bytes.add(byteAt(localVariableIndex, 2));
+                    out.write(byteAt(localVariableIndex, 2));
                 }
-                bytes.add(byteAt(localVariableIndex, 1));
+                out.write(byteAt(localVariableIndex, 1));
             } else {
                 switch (opcode) {
                     case BIPUSH:
                     case LDC:
-                        bytes.add(byteAt(constVal, 1));
+                        out.write(byteAt(constVal, 1));
                         break;
                     case SIPUSH:
                     case LDC_W:
                     case LDC2_W:
-                        bytes.add(byteAt(constVal, 2));
-                        bytes.add(byteAt(constVal, 1));
+                        out.write(byteAt(constVal, 2));
+                        out.write(byteAt(constVal, 1));
                 }
             }
         }
-        return bytes;
     }
 }
 
@@ -1156,10 +1279,8 @@ class CLStackInstruction extends CLInstruction {
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
-        return bytes;
+    public void write(CLByteBuffer out) {
+        out.write(opcode);
     }
 }
 
@@ -1185,10 +1306,8 @@ class CLMiscInstruction extends CLInstruction {
     /**
      * {@inheritDoc}
      */
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
-        return bytes;
+    public void write(CLByteBuffer out) {
+        out.write(opcode);
     }
 }
 
@@ -4,18 +4,40 @@ package jminusminus;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.StringTokenizer;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 /**
  * This class can be used to locate and load system, extension, and user-defined class files from
- * directories and zip (jar) files.
+ * directories and zip (jar) files, and from the run-time image of the JDK when there is no rt.jar.
+ * <p>
+ * The class path is indexed once, when the CLPath is constructed: every class file in its
+ * directories and zip files is entered into a map from the class's internal name to its location,
+ * with each zip file opened just once, and kept open for reading the classes in it. Looking up a
+ * class is then a single map lookup. The run-time image is too large to index up front, and its
+ * class files are read as resources of the platform class loader, which finds them in the image
+ * without loading the classes (and much more cheaply than the jrt:/ file system would). As with
+ * the JVM's class loaders, the system classes take precedence over the extension classes, and
+ * those over the classes on the class path; within each, the first entry that has a class wins.
  */
 class CLPath {
-    // Stores the individual directories, zip, and jar files from the class path.
+    // Stores the individual directories, zip, and jar files from the class path, system classes
+    // and extension classes first.
     private ArrayList<String> dirs;
 
+    // Maps internal names of classes to their locations.
+    private HashMap<String, Location> index;
+
+    // The zip (jar) files on the class path, opened once.
+    private ArrayList<ZipFile> zips;
+
+    // The class loader through which class files are read from the run-time image, or null if
+    // system classes are in rt.jar (or sun.boot.class.path).
+    private ClassLoader image;
+
     /**
      * Returns a list of conceptual directories defining the class path.
      *
@@ -30,18 +52,32 @@ class CLPath {
         while (entries.hasMoreTokens()) {
             container.add(entries.nextToken());
         }
+        return container;
+    }
 
-        // Add system directories.
+    /**
+     * Returns a list of conceptual directories holding the system classes, which is empty if the
+     * system classes are in the run-time image (in which case image is set to the class loader
+     * that reads them).
+     *
+     * @return a list of conceptual directories holding the system classes.
+     */
+    private ArrayList<String> loadSystemPath() {
+        ArrayList<String> container = new ArrayList<String>();
         if (System.getProperty("sun.boot.class.path") != null) {
-            entries = new StringTokenizer(System.getProperty("sun.boot.class.path"),
-                    File.pathSeparator);
+            StringTokenizer entries = new StringTokenizer(
+                    System.getProperty("sun.boot.class.path"), File.pathSeparator);
             while (entries.hasMoreTokens()) {
                 container.add(entries.nextToken());
             }
         } else {
             String dir = System.getProperty("java.home") + File.separatorChar + "lib" +
                     File.separatorChar + "rt.jar";
-            container.add(dir);
+            if (new File(dir).isFile()) {
+                container.add(dir);
+            } else {
+                image = ClassLoader.getPlatformClassLoader();
+            }
         }
         return container;
     }
@@ -69,7 +105,7 @@ class CLPath {
             // Last resort, use current directory.
             path = ".";
         }
-        dirs = loadClassPath(path);
+        dirs = loadSystemPath();
         if (extdir == null) {
             // Java extension classes.
             extdir = System.getProperty("java.ext.dirs");
@@ -81,13 +117,26 @@ class CLPath {
                 for (File file : extFiles) {
                     if (file.isFile() &&
                             (file.getName().endsWith(".zip") || file.getName().endsWith(".jar"))) {
-                        dirs.add(file.getName());
+                        dirs.add(file.getPath());
                     } else {
                         // Wrong suffix; ignore.
                     }
                 }
             }
         }
+        dirs.addAll(loadClassPath(path));
+        index = new HashMap<String, Location>();
+        zips = new ArrayList<ZipFile>();
+        for (String dir : dirs) {
+            File file = new File(dir);
+            if (file.isDirectory()) {
+                indexDirectory(file, "");
+            } else if (file.isFile()) {
+                indexZip(dir);
+            } else {
+                // Bogus entry; ignore
+            }
+        }
     }
 
     /**
@@ -98,36 +147,109 @@ class CLPath {
      * @return a CLInputStream instance for the class with specified name or null if the class
      * was not found.
      */
-    public CLInputStream loadClass(String name) {
-        CLInputStream reader = null;
-        for (int i = 0; i < dirs.size(); i++) {
-            String dir = dirs.get(i);
-            File file = new File(dir);
+    public synchronized CLInputStream loadClass(String name) {
+        if (image != null) {
+            InputStream in = image.getResourceAsStream(name + ".class");
+            if (in != null) {
+                return new CLInputStream(new BufferedInputStream(in));
+            }
+        }
+        Location location = index.get(name);
+        if (location == null) {
+            return null;
+        }
+        try {
+            return location.open();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Closes the zip (jar) files on the class path. Classes cannot be loaded from them after this
+     * call.
+     */
+    public void close() {
+        for (ZipFile zip : zips) {
+            try {
+                zip.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+        zips.clear();
+    }
+
+    // Enters the class files in the specified directory, and recursively those in its
+    // subdirectories, into the index. The prefix is the package (in internal form, followed by a
+    // '/') that the directory corresponds to.
+    private void indexDirectory(File dir, String prefix) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String fileName = file.getName();
             if (file.isDirectory()) {
-                File theClass = new File(dir, name.replace('/', File.separatorChar) + ".class");
-                if (theClass.canRead()) {
-                    try {
-                        reader = new CLInputStream(new BufferedInputStream(new
-                                FileInputStream(theClass)));
-                    } catch (FileNotFoundException e) {
-                        // Ignore
-                    }
+                indexDirectory(file, prefix + fileName + "/");
+            } else if (fileName.endsWith(".class")) {
+                String name = prefix + fileName.substring(0, fileName.length() - 6);
+                if (!index.containsKey(name)) {
+                    index.put(name, new Location(file));
                 }
-            } else if (file.isFile()) {
-                try {
-                    ZipFile zip = new ZipFile(dir);
-                    ZipEntry entry = zip.getEntry(name + ".class");
-                    if (entry != null) {
-                        reader = new CLInputStream(zip.getInputStream(entry));
+            }
+        }
+    }
+
+    // Opens the specified zip (jar) file and enters the class files in it into the index.
+    private void indexZip(String fileName) {
+        try {
+            ZipFile zip = new ZipFile(fileName);
+            zips.add(zip);
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String entryName = entry.getName();
+                if (entryName.endsWith(".class")) {
+                    String name = entryName.substring(0, entryName.length() - 6);
+                    if (!index.containsKey(name)) {
+                        index.put(name, new Location(zip, entry));
                     }
-                } catch (IOException e) {
-                    // Ignore
                 }
+            }
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    // The location of a class file: a file in a directory, or an entry in a zip (jar) file.
+    private static class Location {
+        // The class file in a directory, or null.
+        private File file;
+
+        // The zip file and the entry in it, or null.
+        private ZipFile zip;
+        private ZipEntry entry;
+
+        // Constructs the location of a class file in a directory.
+        private Location(File file) {
+            this.file = file;
+        }
+
+        // Constructs the location of a class file in a zip file.
+        private Location(ZipFile zip, ZipEntry entry) {
+            this.zip = zip;
+            this.entry = entry;
+        }
+
+        // Opens the class file.
+        private CLInputStream open() throws IOException {
+            if (file != null) {
+                return new CLInputStream(new BufferedInputStream(new FileInputStream(file)));
             } else {
-                // Bogus entry; ignore
+                return new CLInputStream(new BufferedInputStream(zip.getInputStream(entry)));
             }
         }
-        return reader;
     }
 }
 
@@ -163,7 +285,7 @@ class CLInputStream extends DataInputStream {
     public long readUnsignedInt() throws IOException {
         byte[] b = new byte[4];
         long mask = 0xFF, l;
-        in.read(b);
+        readFully(b);
         l = ((b[0] & mask) << 24) | ((b[1] & mask) << 16) | ((b[2] & mask) << 8) | (b[3] & mask);
         return l;
     }
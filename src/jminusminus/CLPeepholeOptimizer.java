@@ -0,0 +1,446 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Hashtable;
+
+import static jminusminus.CLConstants.*;
+
+/**
+ * A peephole optimizer for the code of a method. The optimizer holds the code as a list of
+ * instructions, along with the labels that mark each instruction (and the end of the code). It
+ * slides over the code, trying the rules of a rule table at each instruction; a rule that matches
+ * the instructions there replaces them with fewer or cheaper ones. Since one rewrite may make way
+ * for another, the slide is repeated until no rule matches anywhere.
+ * <p>
+ * A rule may match a run of several instructions only if nothing jumps to any but the first of
+ * them, which isTarget() tells. The labels that mark the instructions a rule replaces are moved
+ * to the instructions that replace them (or, if there are none, to the instruction that follows).
+ * CLEmitter runs the optimizer, with the rules of RULES, over the code of each method before it
+ * resolves the labels, if optimization is enabled (the -O option of the compiler).
+ */
+class CLPeepholeOptimizer {
+    /**
+     * The rule table: the rules that CLEmitter applies, in the order in which they are tried.
+     * More rules may be added to the table before compilation starts.
+     */
+    public static final ArrayList<CLPeepholeRule> RULES = new ArrayList<CLPeepholeRule>();
+
+    // The code.
+    private ArrayList<CLInstruction> code;
+
+    // The labels marking each instruction of the code, and (last) the end of the code.
+    private ArrayList<ArrayList<String>> labels;
+
+    // The labels of the exception handlers.
+    private ArrayList<String> handlerLabels;
+
+    // The labels that are referred to, by an instruction or an exception handler.
+    private HashSet<String> referencedLabels;
+
+    // Maps each label to the index of the instruction it marks; null if the code has changed
+    // since it was computed.
+    private Hashtable<String, Integer> labelIndex;
+
+    /**
+     * Constructs a CLPeepholeOptimizer object for the specified code.
+     *
+     * @param code          the code.
+     * @param labelToPC     label to pc mapping.
+     * @param endPC         the pc of the end of the code.
+     * @param handlerLabels the labels of the exception handlers.
+     */
+    public CLPeepholeOptimizer(ArrayList<CLInstruction> code, Hashtable<String, Integer> labelToPC,
+                               int endPC, ArrayList<String> handlerLabels) {
+        this.code = new ArrayList<CLInstruction>(code);
+        this.handlerLabels = handlerLabels;
+        labels = new ArrayList<ArrayList<String>>();
+        int[] indexAt = new int[endPC + 1];
+        for (int i = 0; i < code.size(); i++) {
+            labels.add(new ArrayList<String>());
+            indexAt[code.get(i).pc()] = i;
+        }
+        labels.add(new ArrayList<String>());
+        indexAt[endPC] = code.size();
+        for (String label : labelToPC.keySet()) {
+            labels.get(indexAt[labelToPC.get(label)]).add(label);
+        }
+    }
+
+    /**
+     * Rewrites the code with the specified rules, until none of them matches anywhere.
+     *
+     * @param rules the rules.
+     */
+    public void optimize(ArrayList<CLPeepholeRule> rules) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            referencedLabels = referencedLabels();
+            for (int i = 0; i < code.size(); i++) {
+                for (CLPeepholeRule rule : rules) {
+                    changed |= rule.apply(this, i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of instructions in the code.
+     *
+     * @return the number of instructions in the code.
+     */
+    public int size() {
+        return code.size();
+    }
+
+    /**
+     * Returns the instruction at the specified index, or null if there is none.
+     *
+     * @param i index of the instruction.
+     * @return the instruction at the specified index, or null.
+     */
+    public CLInstruction instruction(int i) {
+        return i >= 0 && i < code.size() ? code.get(i) : null;
+    }
+
+    /**
+     * Returns the opcode of the instruction at the specified index, or -1 if there is none.
+     *
+     * @param i index of the instruction.
+     * @return the opcode of the instruction at the specified index, or -1.
+     */
+    public int opcode(int i) {
+        return i >= 0 && i < code.size() ? code.get(i).opcode() : -1;
+    }
+
+    /**
+     * Returns the labels that mark the instruction at the specified index, or the end of the
+     * code if the index is size().
+     *
+     * @param i index of the instruction.
+     * @return the labels that mark the instruction at the specified index.
+     */
+    public ArrayList<String> labels(int i) {
+        return labels.get(i);
+    }
+
+    /**
+     * Returns true if an instruction or an exception handler refers to the instruction at the
+     * specified index (that is, to a label marking it), and false otherwise.
+     *
+     * @param i index of the instruction.
+     * @return true if the instruction at the specified index is referred to, and false
+     * otherwise.
+     */
+    public boolean isTarget(int i) {
+        for (String label : labels.get(i)) {
+            if (referencedLabels.contains(label)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the index of the instruction that the specified label marks, or -1 if there is
+     * none.
+     *
+     * @param label the label.
+     * @return the index of the instruction that the label marks, or -1.
+     */
+    public int indexOf(String label) {
+        if (labelIndex == null) {
+            labelIndex = new Hashtable<String, Integer>();
+            for (int i = 0; i < labels.size(); i++) {
+                for (String l : labels.get(i)) {
+                    labelIndex.put(l, i);
+                }
+            }
+        }
+        Integer i = labelIndex.get(label);
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * Replaces the specified number of instructions, from the specified index on, with the
+     * specified instructions; the labels that marked the instructions replaced mark the first of
+     * the new instructions (or the instruction that follows, if there are none). The pc of a new
+     * instruction doesn't matter; CLEmitter lays out the code anew.
+     *
+     * @param i            index of the first instruction to replace.
+     * @param n            the number of instructions to replace.
+     * @param instructions the new instructions.
+     */
+    public void replace(int i, int n, CLInstruction... instructions) {
+        ArrayList<String> replacedLabels = new ArrayList<String>();
+        for (int j = 0; j < n; j++) {
+            code.remove(i);
+            replacedLabels.addAll(labels.remove(i));
+        }
+        for (int j = instructions.length - 1; j >= 0; j--) {
+            code.add(i, instructions[j]);
+            labels.add(i, new ArrayList<String>());
+        }
+        labels.get(i).addAll(0, replacedLabels);
+        labelIndex = null;
+    }
+
+    // Returns the labels that the instructions and the exception handlers refer to.
+    private HashSet<String> referencedLabels() {
+        HashSet<String> referencedLabels = new HashSet<String>(handlerLabels);
+        for (CLInstruction instr : code) {
+            if (instr instanceof CLFlowControlInstruction) {
+                referencedLabels.addAll(((CLFlowControlInstruction) instr).jumpToLabels());
+            }
+        }
+        return referencedLabels;
+    }
+
+    // Returns true if the specified opcode is that of a conditional branch, and false otherwise.
+    private static boolean isConditionalBranch(int opcode) {
+        return opcode >= IFEQ && opcode <= IF_ACMPNE || opcode == IFNULL || opcode == IFNONNULL;
+    }
+
+    // Returns true if the specified opcode is that of GOTO or GOTO_W, and false otherwise.
+    private static boolean isGoto(int opcode) {
+        return opcode == GOTO || opcode == GOTO_W;
+    }
+
+    // Returns true if control never passes from an instruction with the specified opcode to the
+    // instruction that follows, and false otherwise.
+    private static boolean isUnconditional(int opcode) {
+        return isGoto(opcode) || opcode == TABLESWITCH || opcode == LOOKUPSWITCH ||
+                opcode == RET || opcode == ATHROW || opcode >= IRETURN && opcode <= RETURN;
+    }
+
+    // Returns the opcode of the conditional branch that jumps exactly when the one with the
+    // specified opcode doesn't.
+    private static int inverse(int opcode) {
+        return opcode >= IFNULL ? IFNULL + ((opcode - IFNULL) ^ 1) : IFEQ + ((opcode - IFEQ) ^ 1);
+    }
+
+    // Returns the type (0 to 4, for int, long, float, double, and reference) of the local
+    // variable that an instruction with the specified opcode loads, or -1 if it is not a load.
+    private static int loadType(int opcode) {
+        return opcode >= ILOAD && opcode <= ALOAD ? opcode - ILOAD :
+                opcode >= ILOAD_0 && opcode <= ALOAD_3 ? (opcode - ILOAD_0) / 4 : -1;
+    }
+
+    // Returns the type (0 to 4, for int, long, float, double, and reference) of the local
+    // variable that an instruction with the specified opcode stores, or -1 if it is not a store.
+    private static int storeType(int opcode) {
+        return opcode >= ISTORE && opcode <= ASTORE ? opcode - ISTORE :
+                opcode >= ISTORE_0 && opcode <= ASTORE_3 ? (opcode - ISTORE_0) / 4 : -1;
+    }
+
+    // Returns the value of the int constant that the instruction at the specified index pushes,
+    // or null if it doesn't push one (that ICONST_M1 to ICONST_5, or BIPUSH, would).
+    private static Integer intConstant(CLPeepholeOptimizer code, int i) {
+        int opcode = code.opcode(i);
+        if (opcode >= ICONST_M1 && opcode <= ICONST_5) {
+            return opcode - ICONST_0;
+        }
+        if (opcode == BIPUSH) {
+            return ((CLLoadStoreInstruction) code.instruction(i)).constVal();
+        }
+        return null;
+    }
+
+    static {
+        // An instruction that follows an unconditional transfer of control, and that nothing
+        // jumps to, is unreachable: remove it (along with the instruction it prefixes, if it is
+        // WIDE).
+        RULES.add(new CLPeepholeRule() {
+            public boolean apply(CLPeepholeOptimizer code, int i) {
+                if (!isUnconditional(code.opcode(i)) || code.opcode(i + 1) == -1 ||
+                        code.isTarget(i + 1)) {
+                    return false;
+                }
+                code.replace(i + 1, code.opcode(i + 1) == WIDE ? 2 : 1);
+                return true;
+            }
+        });
+
+        // GOTO L; L: ... => L: ...
+        RULES.add(new CLPeepholeRule() {
+            public boolean apply(CLPeepholeOptimizer code, int i) {
+                if (!isGoto(code.opcode(i)) || code.indexOf(jumpToLabel(code, i)) != i + 1) {
+                    return false;
+                }
+                code.replace(i, 1);
+                return true;
+            }
+        });
+
+        // GOTO L1 (or IFxx L1); ... L1: GOTO L2 => GOTO L2 (or IFxx L2)
+        RULES.add(new CLPeepholeRule() {
+            public boolean apply(CLPeepholeOptimizer code, int i) {
+                int opcode = code.opcode(i);
+                if (!isGoto(opcode) && !isConditionalBranch(opcode)) {
+                    return false;
+                }
+                String label = jumpToLabel(code, i);
+                int target = code.indexOf(label);
+                if (target == i || !isGoto(code.opcode(target)) ||
+                        jumpToLabel(code, target).equals(label)) {
+                    return false;
+                }
+                code.replace(i, 1, new CLFlowControlInstruction(opcode, 0,
+                        jumpToLabel(code, target)));
+                return true;
+            }
+        });
+
+        // GOTO L; ... L: xRETURN => xRETURN
+        RULES.add(new CLPeepholeRule() {
+            public boolean apply(CLPeepholeOptimizer code, int i) {
+                if (!isGoto(code.opcode(i))) {
+                    return false;
+                }
+                int target = code.indexOf(jumpToLabel(code, i));
+                int opcode = code.opcode(target);
+                if (opcode < IRETURN || opcode > RETURN) {
+                    return false;
+                }
+                code.replace(i, 1, new CLMethodInstruction(opcode, 0));
+                return true;
+            }
+        });
+
+        // IFxx L1; GOTO L2; L1: ... => IFnotxx L2; L1: ...
+        RULES.add(new CLPeepholeRule() {
+            public boolean apply(CLPeepholeOptimizer code, int i) {
+                int opcode = code.opcode(i);
+                if (!isConditionalBranch(opcode) || !isGoto(code.opcode(i + 1)) ||
+                        code.isTarget(i + 1) || code.indexOf(jumpToLabel(code, i)) != i + 2) {
+                    return false;
+                }
+                code.replace(i, 2, new CLFlowControlInstruction(inverse(opcode), 0,
+                        jumpToLabel(code, i + 1)));
+                return true;
+            }
+        });
+
+        // ICONST_0; IF_ICMPxx L => IFxx L, and ACONST_NULL; IF_ACMPxx L => IF[NON]NULL L
+        RULES.add(new CLPeepholeRule() {
+            public boolean apply(CLPeepholeOptimizer code, int i) {
+                int opcode = code.opcode(i + 1);
+                int replacement;
+                if (code.opcode(i) == ICONST_0 && opcode >= IF_ICMPEQ && opcode <= IF_ICMPLE) {
+                    replacement = IFEQ + (opcode - IF_ICMPEQ);
+                } else if (code.opcode(i) == ACONST_NULL &&
+                        (opcode == IF_ACMPEQ || opcode == IF_ACMPNE)) {
+                    replacement = opcode == IF_ACMPEQ ? IFNULL : IFNONNULL;
+                } else {
+                    return false;
+                }
+                if (code.isTarget(i + 1)) {
+                    return false;
+                }
+                code.replace(i, 2, new CLFlowControlInstruction(replacement, 0,
+                        jumpToLabel(code, i + 1)));
+                return true;
+            }
+        });
+
+        // xLOAD n; xSTORE n => (nothing)
+        RULES.add(new CLPeepholeRule() {
+            public boolean apply(CLPeepholeOptimizer code, int i) {
+                int type = loadType(code.opcode(i));
+                if (type == -1 || type != storeType(code.opcode(i + 1)) ||
+                        code.opcode(i - 1) == WIDE || code.isTarget(i + 1) ||
+                        code.instruction(i).localVariableIndex() !=
+                                code.instruction(i + 1).localVariableIndex()) {
+                    return false;
+                }
+                code.replace(i, 2);
+                return true;
+            }
+        });
+
+        // DUP; POP => (nothing), and DUP2; POP2 => (nothing)
+        RULES.add(new CLPeepholeRule() {
+            public boolean apply(CLPeepholeOptimizer code, int i) {
+                int opcode = code.opcode(i);
+                if (!(opcode == DUP && code.opcode(i + 1) == POP ||
+                        opcode == DUP2 && code.opcode(i + 1) == POP2) || code.isTarget(i + 1)) {
+                    return false;
+                }
+                code.replace(i, 2);
+                return true;
+            }
+        });
+
+        // ICONST_0; IADD (or ISUB, IOR, IXOR, ISHL, ISHR, IUSHR) => (nothing), and ICONST_1;
+        // IMUL (or IDIV) => (nothing)
+        RULES.add(new CLPeepholeRule() {
+            public boolean apply(CLPeepholeOptimizer code, int i) {
+                int opcode = code.opcode(i + 1);
+                boolean identity = code.opcode(i) == ICONST_0 && (opcode == IADD ||
+                        opcode == ISUB || opcode == IOR || opcode == IXOR || opcode == ISHL ||
+                        opcode == ISHR || opcode == IUSHR) ||
+                        code.opcode(i) == ICONST_1 && (opcode == IMUL || opcode == IDIV);
+                if (!identity || code.isTarget(i + 1)) {
+                    return false;
+                }
+                code.replace(i, 2);
+                return true;
+            }
+        });
+
+        // ILOAD n; ICONST c (or BIPUSH c); IADD (or ISUB); ISTORE n => IINC n c (or -c), or
+        // nothing if c is 0
+        RULES.add(new CLPeepholeRule() {
+            public boolean apply(CLPeepholeOptimizer code, int i) {
+                if (loadType(code.opcode(i)) != 0 || storeType(code.opcode(i + 3)) != 0 ||
+                        code.opcode(i - 1) == WIDE) {
+                    return false;
+                }
+                int index = code.instruction(i).localVariableIndex();
+                Integer c = intConstant(code, i + 1);
+                int opcode = code.opcode(i + 2);
+                if (c == null || opcode != IADD && opcode != ISUB ||
+                        code.instruction(i + 3).localVariableIndex() != index || index > 255) {
+                    return false;
+                }
+                int constVal = opcode == IADD ? c : -c;
+                if (constVal < Byte.MIN_VALUE || constVal > Byte.MAX_VALUE ||
+                        code.isTarget(i + 1) || code.isTarget(i + 2) || code.isTarget(i + 3)) {
+                    return false;
+                }
+                if (constVal == 0) {
+                    code.replace(i, 4);
+                } else {
+                    code.replace(i, 4, new CLArithmeticInstruction(IINC, 0, index, constVal,
+                            false));
+                }
+                return true;
+            }
+        });
+    }
+
+    // Returns the label that the (FLOW_CONTROL1) instruction at the specified index jumps to.
+    private static String jumpToLabel(CLPeepholeOptimizer code, int i) {
+        return ((CLFlowControlInstruction) code.instruction(i)).jumpToLabel();
+    }
+}
+
+/**
+ * A rule of the peephole optimizer: a pattern of instructions, and how to rewrite the
+ * instructions that match it.
+ */
+interface CLPeepholeRule {
+    /**
+     * Rewrites the instructions of the specified code from the specified index on, if they match
+     * this rule's pattern, and returns true; returns false (leaving the code as it is) if they
+     * don't.
+     *
+     * @param code the code.
+     * @param i    index of the first instruction.
+     * @return true if the instructions were rewritten, and false otherwise.
+     */
+    boolean apply(CLPeepholeOptimizer code, int i);
+}
@@ -75,7 +75,7 @@ class Context {
      */
     public void addEntry(int line, String name, IDefn definition) {
         if (entries.containsKey(name)) {
-            JAST.compilationUnit.reportSemanticError(line, "redefining name: " + name);
+            JAST.compilationUnit().reportSemanticError(line, "redefining name: " + name);
         } else {
             entries.put(name, definition);
         }
@@ -155,6 +155,16 @@ class Context {
         return compilationUnitContext;
     }
 
+    /**
+     * Returns the closest surrounding statement that a break statement in this context breaks out
+     * of (a switch statement or a loop), or null (if there is none).
+     *
+     * @return the closest surrounding switch statement or loop, or null.
+     */
+    public JStatement breakTarget() {
+        return null;
+    }
+
     /**
      * Returns the closest surrounding method context, or null (if we are not within a method).
      *
@@ -196,7 +206,17 @@ class CompilationUnitContext extends Context {
      * Constructs a new compilation unit context.
      */
     public CompilationUnitContext() {
-        super(null, null, null);
+        this(null);
+    }
+
+    /**
+     * Constructs a new compilation unit context surrounded by the specified context, in which the
+     * types declared in the other compilation units of a compilation are registered.
+     *
+     * @param registry the surrounding (type registry) context, or null.
+     */
+    public CompilationUnitContext(CompilationUnitContext registry) {
+        super(registry, null, null);
         compilationUnitContext = this;
     }
 
@@ -268,6 +288,10 @@ class LocalContext extends Context {
      */
     protected int offset;
 
+    // The statement that a break statement in this context breaks out of, or null (if it's that
+    // of the surrounding context).
+    private JStatement breakTarget;
+
     /**
      * Constructs a local context. A local context is constructed for each block.
      *
@@ -278,6 +302,25 @@ class LocalContext extends Context {
         offset = (surrounding instanceof LocalContext) ? ((LocalContext) surrounding).offset() : 0;
     }
 
+    /**
+     * Constructs a local context for the body of a switch statement or a loop, which a break
+     * statement in the context breaks out of.
+     *
+     * @param surrounding the surrounding context.
+     * @param breakTarget the switch statement or loop.
+     */
+    public LocalContext(Context surrounding, JStatement breakTarget) {
+        this(surrounding);
+        this.breakTarget = breakTarget;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public JStatement breakTarget() {
+        return breakTarget != null ? breakTarget : surroundingContext.breakTarget();
+    }
+
     /**
      * Returns the "next" offset. Not to be used for allocating new offsets (the nextOffset()
      * method is used for that).
@@ -338,6 +381,11 @@ class MethodContext extends LocalContext {
      */
     private boolean hasReturnStatement;
 
+    /**
+     * The method declaration, or null (for a constructor).
+     */
+    private JMethodDeclaration methodDeclaration;
+
     /**
      * Constructs a method context.
      *
@@ -353,6 +401,29 @@ class MethodContext extends LocalContext {
         hasReturnStatement = false;
     }
 
+    /**
+     * Constructs a method context for a method declaration.
+     *
+     * @param surrounding       the surrounding (class) context.
+     * @param methodDeclaration the method declaration.
+     * @param isStatic          is this method static?
+     * @param methodReturnType  return type of this method.
+     */
+    public MethodContext(Context surrounding, JMethodDeclaration methodDeclaration,
+                         boolean isStatic, Type methodReturnType) {
+        this(surrounding, isStatic, methodReturnType);
+        this.methodDeclaration = methodDeclaration;
+    }
+
+    /**
+     * Returns the method declaration, or null (for a constructor).
+     *
+     * @return the method declaration, or null.
+     */
+    public JMethodDeclaration methodDeclaration() {
+        return methodDeclaration;
+    }
+
     /**
      * Returns true if this is a static method, and false otherwise.
      *
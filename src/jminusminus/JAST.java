@@ -8,10 +8,10 @@ import java.util.ArrayList;
  * JAST is the abstract superclass of all nodes in the abstract syntax tree (AST).
  */
 abstract class JAST {
-    /**
-     * Current compilation unit (set in JCompilationUnit()).
-     */
-    public static JCompilationUnit compilationUnit;
+    // Current compilation unit of each thread (set in JCompilationUnit), so that compilation
+    // units may be compiled concurrently, each by a task on its own thread.
+    private static final ThreadLocal<JCompilationUnit> currentCompilationUnit =
+            new ThreadLocal<JCompilationUnit>();
 
     /**
      * Line in which the source for the AST was found.
@@ -27,6 +27,24 @@ abstract class JAST {
         this.line = line;
     }
 
+    /**
+     * Returns the compilation unit being compiled by the current thread.
+     *
+     * @return the compilation unit being compiled by the current thread.
+     */
+    public static JCompilationUnit compilationUnit() {
+        return currentCompilationUnit.get();
+    }
+
+    /**
+     * Sets the compilation unit being compiled by the current thread.
+     *
+     * @param compilationUnit the compilation unit.
+     */
+    public static void compilationUnit(JCompilationUnit compilationUnit) {
+        currentCompilationUnit.set(compilationUnit);
+    }
+
     /**
      * Returns the line in which the source for the AST was found.
      *
@@ -119,6 +137,49 @@ abstract class JAST {
         }
         return b.toString();
     }
+
+    /**
+     * Escapes the characters in the specified string that unescape() unescapes, and returns the
+     * escaped string.
+     *
+     * @param s string to escape.
+     * @return the escaped string.
+     */
+    public static String escape(String s) {
+        StringBuffer b = new StringBuffer();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\b':
+                    b.append("\\b");
+                    break;
+                case '\t':
+                    b.append("\\t");
+                    break;
+                case '\n':
+                    b.append("\\n");
+                    break;
+                case '\f':
+                    b.append("\\f");
+                    break;
+                case '\r':
+                    b.append("\\r");
+                    break;
+                case '"':
+                    b.append("\\\"");
+                    break;
+                case '\'':
+                    b.append("\\'");
+                    break;
+                case '\\':
+                    b.append("\\\\");
+                    break;
+                default:
+                    b.append(c);
+            }
+        }
+        return b.toString();
+    }
 }
 
 /**
@@ -10,6 +10,13 @@ import static jminusminus.CLConstants.*;
  * The AST node for an array initializer.
  */
 class JArrayInitializer extends JExpression {
+    // Smallest number of elements of an int, char or boolean array initializer whose elements are
+    // all constants, for the elements to be packed into strings rather than stored one by one.
+    private static int packThreshold = Integer.MAX_VALUE;
+
+    // Largest number of bytes of a string constant (in the modified UTF-8 of the class file).
+    private static final int MAX_PACKED_BYTES = 65535;
+
     // The initializations.
     private ArrayList<JExpression> initials;
 
@@ -26,14 +33,28 @@ class JArrayInitializer extends JExpression {
         this.initials = initials;
     }
 
+    /**
+     * Sets the smallest number of elements of an int, char or boolean array initializer whose
+     * elements are all constants, for the elements to be packed (from now on) into string
+     * constants, which a loop decodes into the array, rather than stored one by one. An element
+     * costs up to 10 bytes of JVM code when stored by itself, and one to six bytes of a string
+     * constant when packed; so packing keeps large tables well below the 64 KB limit on the code
+     * of a method (a class initializer, most often).
+     *
+     * @param packThreshold the smallest number of elements to pack.
+     */
+    public static void setPackThreshold(int packThreshold) {
+        JArrayInitializer.packThreshold = packThreshold;
+    }
+
     /**
      * {@inheritDoc}
      */
     public JExpression analyze(Context context) {
         type = type.resolve(context);
         if (!type.isArray()) {
-            JAST.compilationUnit.reportSemanticError(line, "Cannot initialize a " + type.toString()
-                    + " with an array sequence {...}");
+            JAST.compilationUnit().reportSemanticError(line, "Cannot initialize a " +
+                    type.toString() + " with an array sequence {...}");
             return this;
         }
         Type componentType = type.componentType();
@@ -52,6 +73,10 @@ class JArrayInitializer extends JExpression {
      */
     public void codegen(CLEmitter output) {
         Type componentType = type.componentType();
+        if (initials.size() >= packThreshold && isPackable()) {
+            codegenPacked(output);
+            return;
+        }
 
         // Code to push array length.
         (new JLiteralInt(line, String.valueOf(initials.size()))).codegen(output);
@@ -98,4 +123,143 @@ class JArrayInitializer extends JExpression {
             }
         }
     }
+
+    // Returns true if this is an int, char or boolean array initializer whose elements are all
+    // constants, and false otherwise.
+    private boolean isPackable() {
+        Type componentType = type.componentType();
+        if (componentType != Type.INT && componentType != Type.CHAR &&
+                componentType != Type.BOOLEAN) {
+            return false;
+        }
+        for (JExpression initial : initials) {
+            if (initial.constantValue() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Generates code that creates the array and decodes its elements from string constants. A
+    // char is packed as itself, a boolean as '0' or '1', and an int as one char if all the ints
+    // fit in a char (or a short), and as two chars (its high and low halves) otherwise.
+    private void codegenPacked(CLEmitter output) {
+        Type componentType = type.componentType();
+        int min = 0;
+        int max = 0;
+        if (componentType == Type.INT) {
+            for (JExpression initial : initials) {
+                int value = (Integer) initial.constantValue();
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+        boolean isShort = min < 0 && min >= Short.MIN_VALUE && max <= Short.MAX_VALUE;
+        int width = min >= 0 && max <= Character.MAX_VALUE || isShort ? 1 : 2;
+
+        // Pack the elements into strings, each one short enough to be a constant.
+        ArrayList<String> strings = new ArrayList<String>();
+        StringBuilder string = new StringBuilder();
+        int bytes = 0;
+        for (JExpression initial : initials) {
+            Object value = initial.constantValue();
+            char[] chars;
+            if (componentType == Type.CHAR) {
+                chars = new char[] {(Character) value};
+            } else if (componentType == Type.BOOLEAN) {
+                chars = new char[] {(Boolean) value ? '1' : '0'};
+            } else if (width == 1) {
+                chars = new char[] {(char) (int) (Integer) value};
+            } else {
+                int i = (Integer) value;
+                chars = new char[] {(char) (i >>> 16), (char) i};
+            }
+            int length = 0;
+            for (char c : chars) {
+                length += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+            }
+            if (bytes + length > MAX_PACKED_BYTES) {
+                strings.add(string.toString());
+                string = new StringBuilder();
+                bytes = 0;
+            }
+            string.append(chars);
+            bytes += length;
+        }
+        strings.add(string.toString());
+
+        // A char array in a single string is the string's chars.
+        if (componentType == Type.CHAR && strings.size() == 1) {
+            output.addLDCInstruction(strings.get(0));
+            output.addMemberAccessInstruction(INVOKEVIRTUAL, "java/lang/String", "toCharArray",
+                    "()[C");
+            return;
+        }
+
+        // Code to create the (empty) array.
+        (new JLiteralInt(line, String.valueOf(initials.size()))).codegen(output);
+        output.addArrayInstruction(NEWARRAY, componentType.jvmName());
+
+        // For each string, a loop that decodes the elements i = start, ..., end - 1 from the
+        // string, keeping the array and i on the stack.
+        int start = 0;
+        for (String s : strings) {
+            int end = start + s.length() / width;
+            String bodyLabel = output.createLabel();
+            String testLabel = output.createLabel();
+            (new JLiteralInt(line, String.valueOf(start))).codegen(output);
+            output.addBranchInstruction(GOTO, testLabel);
+            output.addLabel(bodyLabel);
+            output.addNoArgInstruction(DUP2);
+
+            // Code to compute the index into the string.
+            output.addNoArgInstruction(DUP);
+            if (start > 0) {
+                (new JLiteralInt(line, String.valueOf(start))).codegen(output);
+                output.addNoArgInstruction(ISUB);
+            }
+            if (width == 2) {
+                output.addNoArgInstruction(ICONST_1);
+                output.addNoArgInstruction(ISHL);
+                output.addNoArgInstruction(DUP);
+            }
+
+            // Code to decode the element.
+            codegenCharAt(output, s);
+            if (width == 2) {
+                output.addOneArgInstruction(BIPUSH, 16);
+                output.addNoArgInstruction(ISHL);
+                output.addNoArgInstruction(SWAP);
+                output.addNoArgInstruction(ICONST_1);
+                output.addNoArgInstruction(IADD);
+                codegenCharAt(output, s);
+                output.addNoArgInstruction(IOR);
+            } else if (isShort) {
+                output.addNoArgInstruction(I2S);
+            } else if (componentType == Type.BOOLEAN) {
+                output.addNoArgInstruction(ICONST_1);
+                output.addNoArgInstruction(IAND);
+            }
+            output.addNoArgInstruction(componentType == Type.INT ? IASTORE :
+                    componentType == Type.CHAR ? CASTORE : BASTORE);
+
+            // Code to increment i, and to loop while i < end.
+            output.addNoArgInstruction(ICONST_1);
+            output.addNoArgInstruction(IADD);
+            output.addLabel(testLabel);
+            output.addNoArgInstruction(DUP);
+            (new JLiteralInt(line, String.valueOf(end))).codegen(output);
+            output.addBranchInstruction(IF_ICMPLT, bodyLabel);
+            output.addNoArgInstruction(POP);
+            start = end;
+        }
+    }
+
+    // Generates code that replaces the index on top of the stack with the char at that index in
+    // the specified string.
+    private void codegenCharAt(CLEmitter output, String s) {
+        output.addLDCInstruction(s);
+        output.addNoArgInstruction(SWAP);
+        output.addMemberAccessInstruction(INVOKEVIRTUAL, "java/lang/String", "charAt", "(I)C");
+    }
 }
@@ -39,6 +39,37 @@ abstract class JBinaryExpression extends JExpression {
         this.rhs = rhs;
     }
 
+    /**
+     * Returns the value of this expression given the values of its (constant) operands, or null
+     * if the value is not a constant, or can't be computed at compile time. Overflow wraps
+     * around, and shift distances are masked, as at run time (JLS 15.17 to 15.22); an operator
+     * that would throw an exception (an integer division by zero) is not folded.
+     *
+     * @param lhsValue the value of the lhs operand.
+     * @param rhsValue the value of the rhs operand.
+     * @return the value of this expression, or null.
+     */
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        return null;
+    }
+
+    /**
+     * Returns a literal for the value of this (analyzed) expression if its operands are constants
+     * and fold() computes its value, and this expression otherwise. Operators call this at the
+     * end of analysis, so that constant subexpressions are folded bottom-up.
+     *
+     * @return a literal for the value of this expression, or this expression.
+     */
+    protected JExpression folded() {
+        if (type == null || type == Type.ANY) {
+            return this;
+        }
+        Object lhsValue = lhs.constantValue();
+        Object rhsValue = rhs.constantValue();
+        Object value = lhsValue == null || rhsValue == null ? null : fold(lhsValue, rhsValue);
+        return value == null ? this : JExpression.literal(line, value);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -81,7 +112,17 @@ class JMultiplyOp extends JBinaryExpression {
         lhs.type().mustMatchExpected(line(), Type.INT);
         rhs.type().mustMatchExpected(line(), Type.INT);
         type = Type.INT;
-        return this;
+        return folded();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        if (lhsValue instanceof Integer && rhsValue instanceof Integer) {
+            return (Integer) lhsValue * (Integer) rhsValue;
+        }
+        return null;
     }
 
     /**
@@ -122,9 +163,19 @@ class JPlusOp extends JBinaryExpression {
             type = Type.INT;
         } else {
             type = Type.ANY;
-            JAST.compilationUnit.reportSemanticError(line(), "Invalid operand types for +");
+            JAST.compilationUnit().reportSemanticError(line(), "Invalid operand types for +");
+        }
+        return folded();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        if (lhsValue instanceof Integer && rhsValue instanceof Integer) {
+            return (Integer) lhsValue + (Integer) rhsValue;
         }
-        return this;
+        return null;
     }
 
     /**
@@ -161,7 +212,17 @@ class JSubtractOp extends JBinaryExpression {
         lhs.type().mustMatchExpected(line(), Type.INT);
         rhs.type().mustMatchExpected(line(), Type.INT);
         type = Type.INT;
-        return this;
+        return folded();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        if (lhsValue instanceof Integer && rhsValue instanceof Integer) {
+            return (Integer) lhsValue - (Integer) rhsValue;
+        }
+        return null;
     }
 
     /**
@@ -212,7 +273,19 @@ class JDivideOp extends JBinaryExpression {
         lhs.type().mustMatchExpected(line(), type);
         rhs.type().mustMatchExpected(line(), type);
 
-        return this;
+        return folded();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        // Division by zero is left to throw an ArithmeticException at run time.
+        if (lhsValue instanceof Integer && rhsValue instanceof Integer &&
+                (Integer) rhsValue != 0) {
+            return (Integer) lhsValue / (Integer) rhsValue;
+        }
+        return null;
     }
 
     /**
@@ -276,7 +349,19 @@ class JRemainderOp extends JBinaryExpression {
         lhs.type().mustMatchExpected(line(), type);
         rhs.type().mustMatchExpected(line(), type);
 
-        return this;
+        return folded();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        // Division by zero is left to throw an ArithmeticException at run time.
+        if (lhsValue instanceof Integer && rhsValue instanceof Integer &&
+                (Integer) rhsValue != 0) {
+            return (Integer) lhsValue % (Integer) rhsValue;
+        }
+        return null;
     }
 
     /**
@@ -334,13 +419,25 @@ class JOrOp extends JBinaryExpression {
             // Promote to long if either operand is long
             type = Type.LONG;
         } else {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Invalid operand types for | operator");
             // Set to ANY to avoid further errors in case of invalid types
             type = Type.ANY;
         }
 
-        return this;
+        return folded();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        if (lhsValue instanceof Integer && rhsValue instanceof Integer) {
+            return (Integer) lhsValue | (Integer) rhsValue;
+        } else if (lhsValue instanceof Long && rhsValue instanceof Long) {
+            return (Long) lhsValue | (Long) rhsValue;
+        }
+        return null;
     }
 
     /**
@@ -397,13 +494,25 @@ class JXorOp extends JBinaryExpression {
             type = Type.LONG;
         } else {
             // Report error for invalid operand types
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Invalid operand types for ^ operator");
             // Set to ANY to avoid further errors in case of invalid types
             type = Type.ANY;
         }
 
-        return this;
+        return folded();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        if (lhsValue instanceof Integer && rhsValue instanceof Integer) {
+            return (Integer) lhsValue ^ (Integer) rhsValue;
+        } else if (lhsValue instanceof Long && rhsValue instanceof Long) {
+            return (Long) lhsValue ^ (Long) rhsValue;
+        }
+        return null;
     }
 
     /**
@@ -460,13 +569,25 @@ class JAndOp extends JBinaryExpression {
             type = Type.LONG;
         } else {
             // Report error for invalid operand types
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Invalid operand types for & operator");
             // Set to ANY to avoid further errors in case of invalid types
             type = Type.ANY;
         }
 
-        return this;
+        return folded();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        if (lhsValue instanceof Integer && rhsValue instanceof Integer) {
+            return (Integer) lhsValue & (Integer) rhsValue;
+        } else if (lhsValue instanceof Long && rhsValue instanceof Long) {
+            return (Long) lhsValue & (Long) rhsValue;
+        }
+        return null;
     }
 
     /**
@@ -517,14 +638,26 @@ class JALeftShiftOp extends JBinaryExpression {
 
         // Type checking to ensure lhs is integer or long and rhs is integer
         if (!((lhs.type().equals(Type.INT) || lhs.type().equals(Type.LONG)) && rhs.type().equals(Type.INT))) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Invalid operand types for << operator: left operand must be int or long, right operand must be int");
         }
 
         // The result type of the shift operation is the type of the left operand
         type = lhs.type();
 
-        return this;
+        return folded();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        if (lhsValue instanceof Integer && rhsValue instanceof Integer) {
+            return (Integer) lhsValue << (Integer) rhsValue;
+        } else if (lhsValue instanceof Long && rhsValue instanceof Integer) {
+            return (Long) lhsValue << (Integer) rhsValue;
+        }
+        return null;
     }
 
     /**
@@ -575,14 +708,26 @@ class JARightShiftOp extends JBinaryExpression {
 
         // Type checking to ensure lhs is integer or long and rhs is integer
         if (!((lhs.type().equals(Type.INT) || lhs.type().equals(Type.LONG)) && rhs.type().equals(Type.INT))) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Invalid operand types for >> operator: left operand must be int or long, right operand must be int");
         }
 
         // The result type of the shift operation is the type of the left operand
         type = lhs.type();
 
-        return this;
+        return folded();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        if (lhsValue instanceof Integer && rhsValue instanceof Integer) {
+            return (Integer) lhsValue >> (Integer) rhsValue;
+        } else if (lhsValue instanceof Long && rhsValue instanceof Integer) {
+            return (Long) lhsValue >> (Integer) rhsValue;
+        }
+        return null;
     }
 
     /**
@@ -633,14 +778,26 @@ class JLRightShiftOp extends JBinaryExpression {
 
         // Type checking to ensure lhs is integer or long and rhs is integer
         if (!((lhs.type().equals(Type.INT) || lhs.type().equals(Type.LONG)) && rhs.type().equals(Type.INT))) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Invalid operand types for >>> operator: left operand must be int or long, right operand must be int");
         }
 
         // The result type of the shift operation is the type of the left operand
         type = lhs.type();
 
-        return this;
+        return folded();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        if (lhsValue instanceof Integer && rhsValue instanceof Integer) {
+            return (Integer) lhsValue >>> (Integer) rhsValue;
+        } else if (lhsValue instanceof Long && rhsValue instanceof Integer) {
+            return (Long) lhsValue >>> (Integer) rhsValue;
+        }
+        return null;
     }
 
     /**
@@ -680,12 +837,22 @@ class JBitwiseAndOp extends JBinaryExpression {
             type = lhs.type(); // The type of this expression matches the operands
         } else {
             // Report an error if the operands are of different types or not INT/LONG
-            JAST.compilationUnit.reportSemanticError(line,
+            JAST.compilationUnit().reportSemanticError(line,
                     "Operands to & must be the same type and either INT or LONG.");
             type = Type.ANY; // Use ANY to indicate an error state
         }
 
-        return this;
+        return folded();
+    }
+
+    @Override
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        if (lhsValue instanceof Integer && rhsValue instanceof Integer) {
+            return (Integer) lhsValue & (Integer) rhsValue;
+        } else if (lhsValue instanceof Long && rhsValue instanceof Long) {
+            return (Long) lhsValue & (Long) rhsValue;
+        }
+        return null;
     }
 
     @Override
@@ -719,11 +886,21 @@ class JBitwiseOrOp extends JBinaryExpression {
         if (lhs.type() == Type.INT && rhs.type() == Type.INT) {
             type = Type.INT;
         } else {
-            JAST.compilationUnit.reportSemanticError(line,
+            JAST.compilationUnit().reportSemanticError(line,
                     "Operands to | must be of type INT.");
         }
 
-        return this;
+        return folded();
+    }
+
+    @Override
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        if (lhsValue instanceof Integer && rhsValue instanceof Integer) {
+            return (Integer) lhsValue | (Integer) rhsValue;
+        } else if (lhsValue instanceof Long && rhsValue instanceof Long) {
+            return (Long) lhsValue | (Long) rhsValue;
+        }
+        return null;
     }
 
     @Override
@@ -748,11 +925,21 @@ class JBitwiseXorOp extends JBinaryExpression {
         if (lhs.type() == Type.INT && rhs.type() == Type.INT) {
             type = Type.INT;
         } else {
-            JAST.compilationUnit.reportSemanticError(line,
+            JAST.compilationUnit().reportSemanticError(line,
                     "Operands to ^ must be of type INT.");
         }
 
-        return this;
+        return folded();
+    }
+
+    @Override
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        if (lhsValue instanceof Integer && rhsValue instanceof Integer) {
+            return (Integer) lhsValue ^ (Integer) rhsValue;
+        } else if (lhsValue instanceof Long && rhsValue instanceof Long) {
+            return (Long) lhsValue ^ (Long) rhsValue;
+        }
+        return null;
     }
 
     @Override
@@ -61,7 +61,18 @@ class JEqualOp extends JBooleanBinaryExpression {
         rhs = (JExpression) rhs.analyze(context);
         lhs.type().mustMatchExpected(line(), rhs.type());
         type = Type.BOOLEAN;
-        return this;
+        return folded();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        // Strings are left alone; they're references, compared by identity.
+        if (!(lhsValue instanceof String) && lhsValue.getClass() == rhsValue.getClass()) {
+            return lhsValue.equals(rhsValue);
+        }
+        return null;
     }
 
     /**
@@ -102,7 +113,17 @@ class JLogicalAndOp extends JBooleanBinaryExpression {
         lhs.type().mustMatchExpected(line(), Type.BOOLEAN);
         rhs.type().mustMatchExpected(line(), Type.BOOLEAN);
         type = Type.BOOLEAN;
-        return this;
+        return folded();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        if (lhsValue instanceof Boolean && rhsValue instanceof Boolean) {
+            return (Boolean) lhsValue && (Boolean) rhsValue;
+        }
+        return null;
     }
 
     /**
@@ -145,7 +166,17 @@ class JLogicalOrOp extends JBooleanBinaryExpression {
         lhs.type().mustMatchExpected(line(), Type.BOOLEAN);
         rhs.type().mustMatchExpected(line(), Type.BOOLEAN);
         type = Type.BOOLEAN;
-        return this;
+        return folded();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        if (lhsValue instanceof Boolean && rhsValue instanceof Boolean) {
+            return (Boolean) lhsValue || (Boolean) rhsValue;
+        }
+        return null;
     }
 
     /**
@@ -190,11 +221,22 @@ class JNotEqualOp extends JBooleanBinaryExpression {
         lhs = (JExpression) lhs.analyze(context);
         rhs = (JExpression) rhs.analyze(context);
         if (!lhs.type().equals(rhs.type())) {
-            JAST.compilationUnit.reportSemanticError(line,
+            JAST.compilationUnit().reportSemanticError(line,
                     "Operands to != have different types: %s, %s", lhs.type(), rhs.type());
         }
         type = Type.BOOLEAN;
-        return this;
+        return folded();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        // Strings are left alone; they're references, compared by identity.
+        if (!(lhsValue instanceof String) && lhsValue.getClass() == rhsValue.getClass()) {
+            return !lhsValue.equals(rhsValue);
+        }
+        return null;
     }
 
 
@@ -8,6 +8,9 @@ import static jminusminus.CLConstants.*;
  * An AST node for a break-statement.
  */
 public class JBreakStatement extends JStatement {
+    // The switch statement or loop that the break statement breaks out of.
+    private JStatement target;
+
     /**
      * Constructs an AST node for a break-statement.
      *
@@ -21,7 +24,10 @@ public class JBreakStatement extends JStatement {
      * {@inheritDoc}
      */
     public JStatement analyze(Context context) {
-        // TODO
+        target = context.breakTarget();
+        if (target == null) {
+            JAST.compilationUnit().reportSemanticError(line, "break outside switch or loop");
+        }
         return this;
     }
 
@@ -29,7 +35,7 @@ public class JBreakStatement extends JStatement {
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
-        // TODO
+        output.addBranchInstruction(GOTO, target.breakLabel());
     }
 
     /**
@@ -17,7 +17,7 @@ class JCastOp extends JExpression {
     private JExpression expr;
 
     // The conversions table.
-    private static Conversions conversions;
+    private static final Conversions conversions = new Conversions();
 
     // The converter to use for this cast.
     private Converter converter;
@@ -33,7 +33,6 @@ class JCastOp extends JExpression {
         super(line);
         this.cast = cast;
         this.expr = expr;
-        conversions = new Conversions();
     }
 
     /**
@@ -51,7 +50,7 @@ class JCastOp extends JExpression {
         } else if (conversions.get(expr.type(), cast) != null) {
             converter = conversions.get(expr.type(), cast);
         } else {
-            JAST.compilationUnit.reportSemanticError(line,
+            JAST.compilationUnit().reportSemanticError(line,
                     "Cannot cast a " + expr.type().toString() + " to a " + cast.toString());
         }
         return this;
@@ -76,11 +76,11 @@ class JClassDeclaration extends JAST implements JTypeDecl {
      * {@inheritDoc}
      */
     public void declareThisType(Context context) {
-        String qualifiedName = JAST.compilationUnit.packageName() == "" ?
-                name : JAST.compilationUnit.packageName() + "/" + name;
+        String qualifiedName = JAST.compilationUnit().packageName() == "" ?
+                name : JAST.compilationUnit().packageName() + "/" + name;
         CLEmitter partial = new CLEmitter(false);
         partial.addClass(mods, qualifiedName, Type.OBJECT.jvmName(), null, false);
-        thisType = Type.typeFor(partial.toClass());
+        thisType = Type.typeFor(partial.toCLClass());
         context.addType(line, thisType);
     }
 
@@ -98,7 +98,7 @@ class JClassDeclaration extends JAST implements JTypeDecl {
         // semantics below are violated, so we can't defer these checks to analyze().
         thisType.checkAccess(line, superType);
         if (superType.isFinal()) {
-            JAST.compilationUnit.reportSemanticError(line, "Cannot extend a final type: %s",
+            JAST.compilationUnit().reportSemanticError(line, "Cannot extend a final type: %s",
                     superType.toString());
         }
 
@@ -106,8 +106,8 @@ class JClassDeclaration extends JAST implements JTypeDecl {
         CLEmitter partial = new CLEmitter(false);
 
         // Add the class header to the partial class
-        String qualifiedName = JAST.compilationUnit.packageName() == "" ?
-                name : JAST.compilationUnit.packageName() + "/" + name;
+        String qualifiedName = JAST.compilationUnit().packageName() == "" ?
+                name : JAST.compilationUnit().packageName() + "/" + name;
         partial.addClass(mods, qualifiedName, superType.jvmName(), null, false);
 
         // Pre-analyze the members and add them to the partial class.
@@ -122,10 +122,10 @@ class JClassDeclaration extends JAST implements JTypeDecl {
             codegenPartialImplicitConstructor(partial);
         }
 
-        // Get the ClassRep for the (partial) class and make it the representation for this type.
+        // Get the view of the (partial) class and make it the representation for this type.
         Type id = this.context.lookupType(name);
-        if (id != null && !JAST.compilationUnit.errorHasOccurred()) {
-            id.setClassRep(partial.toClass());
+        if (id != null && !JAST.compilationUnit().errorHasOccurred()) {
+            id.setCLClass(partial.toCLClass());
         }
     }
 
@@ -157,6 +157,27 @@ class JClassDeclaration extends JAST implements JTypeDecl {
         return superInterfaces;
     }
 
+    /**
+     * Returns the declaration of the method (not constructor) in this class with the specified
+     * name and descriptor, or null if there is none.
+     *
+     * @param name       the method name.
+     * @param descriptor the method descriptor.
+     * @return the method declaration, or null.
+     */
+    public JMethodDeclaration methodDeclaration(String name, String descriptor) {
+        for (JMember member : classBlock) {
+            if (member instanceof JMethodDeclaration &&
+                    !(member instanceof JConstructorDeclaration)) {
+                JMethodDeclaration method = (JMethodDeclaration) member;
+                if (method.name().equals(name) && method.descriptor().equals(descriptor)) {
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -168,7 +189,8 @@ class JClassDeclaration extends JAST implements JTypeDecl {
 
         // Separate declared fields for purposes of initialization.
         for (JMember member : classBlock) {
-            if (member instanceof JFieldDeclaration) {
+            if (member instanceof JFieldDeclaration &&
+                    ((JFieldDeclaration) member).hasInitializations()) {
                 JFieldDeclaration fieldDecl = (JFieldDeclaration) member;
                 if (fieldDecl.mods().contains("static")) {
                     staticFieldInitializations.add(fieldDecl);
@@ -184,7 +206,7 @@ class JClassDeclaration extends JAST implements JTypeDecl {
             for (Method method : thisType.abstractMethods()) {
                 methods += "\n" + method;
             }
-            JAST.compilationUnit.reportSemanticError(line,
+            JAST.compilationUnit().reportSemanticError(line,
                     "Class must be abstract since it defines abstract methods: %s", methods);
         }
         return this;
@@ -195,8 +217,8 @@ class JClassDeclaration extends JAST implements JTypeDecl {
      */
     public void codegen(CLEmitter output) {
         // The class header.
-        String qualifiedName = JAST.compilationUnit.packageName() == "" ?
-                name : JAST.compilationUnit.packageName() + "/" + name;
+        String qualifiedName = JAST.compilationUnit().packageName() == "" ?
+                name : JAST.compilationUnit().packageName() + "/" + name;
         output.addClass(mods, qualifiedName, superType.jvmName(), null, false);
 
         // The implicit empty constructor?
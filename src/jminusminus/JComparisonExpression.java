@@ -29,7 +29,7 @@ abstract class JComparisonExpression extends JBooleanBinaryExpression {
         lhs.type().mustMatchExpected(line(), Type.INT);
         rhs.type().mustMatchExpected(line(), lhs.type());
         type = Type.BOOLEAN;
-        return this;
+        return folded();
     }
 }
 
@@ -48,6 +48,16 @@ class JGreaterThanOp extends JComparisonExpression {
         super(line, ">", lhs, rhs);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        if (lhsValue instanceof Integer && rhsValue instanceof Integer) {
+            return (Integer) lhsValue > (Integer) rhsValue;
+        }
+        return null;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -74,6 +84,16 @@ class JLessEqualOp extends JComparisonExpression {
         super(line, "<=", lhs, rhs);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        if (lhsValue instanceof Integer && rhsValue instanceof Integer) {
+            return (Integer) lhsValue <= (Integer) rhsValue;
+        }
+        return null;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -100,6 +120,16 @@ class JGreaterEqualOp extends JComparisonExpression {
         super(line, ">=", lhs, rhs);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        if (lhsValue instanceof Integer && rhsValue instanceof Integer) {
+            return (Integer) lhsValue >= (Integer) rhsValue;
+        }
+        return null;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -123,6 +153,16 @@ class JLessThanOp extends JComparisonExpression {
         super(line, "<", lhs, rhs);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        if (lhsValue instanceof Integer && rhsValue instanceof Integer) {
+            return (Integer) lhsValue < (Integer) rhsValue;
+        }
+        return null;
+    }
+
     /**
      * {@inheritDoc}
      */
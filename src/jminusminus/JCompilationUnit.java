@@ -67,7 +67,16 @@ class JCompilationUnit extends JAST {
         this.imports = imports;
         this.typeDeclarations = typeDeclarations;
         clFiles = new ArrayList<CLFile>();
-        compilationUnit = this;
+        compilationUnit(this);
+    }
+
+    /**
+     * Returns the name of the source file.
+     *
+     * @return the name of the source file.
+     */
+    public String fileName() {
+        return fileName;
     }
 
     /**
@@ -108,17 +117,22 @@ class JCompilationUnit extends JAST {
      */
     public void reportSemanticError(int line, String message, Object... arguments) {
         isInError = true;
-        System.err.printf("%s:%d: error: ", fileName, line);
-        System.err.printf(message, arguments);
-        System.err.println();
+        System.err.printf("%s:%d: error: %s\n", fileName, line,
+                String.format(message, arguments));
     }
 
     /**
-     * Constructs a context for the compilation unit, initializing it with imported types. Then
-     * pre-analyzes the unit's type declarations, adding their types to the context.
+     * Constructs a context for the compilation unit, initializing it with imported types, and
+     * declares the unit's own types in that context and in the specified type registry. The
+     * registry is shared by all the compilation units in a compilation, and surrounds each unit's
+     * context, so that a unit may refer to the types declared in the others.
+     *
+     * @param registry the context in which the types declared in all compilation units are
+     *                 registered.
      */
-    public void preAnalyze() {
-        context = new CompilationUnitContext();
+    public void declareTypes(CompilationUnitContext registry) {
+        compilationUnit(this);
+        context = new CompilationUnitContext(registry);
 
         // Declare the two implicit types java.lang.Object and java.lang.String.
         context.addType(0, Type.OBJECT);
@@ -126,33 +140,131 @@ class JCompilationUnit extends JAST {
 
         // Declare any imported types.
         for (TypeName imported : imports) {
-            try {
-                Class<?> classRep = Class.forName(imported.toString());
-                context.addType(imported.line(), Type.typeFor(classRep));
-            } catch (Exception e) {
-                JAST.compilationUnit.reportSemanticError(imported.line(), "Unable to find %s",
+            Type type = Type.typeForName(imported.toString());
+            if (type != null) {
+                context.addType(imported.line(), type);
+            } else {
+                JAST.compilationUnit().reportSemanticError(imported.line(), "Unable to find %s",
                         imported.toString());
             }
         }
 
-        // Declare the locally declared type(s).
-        CLEmitter.initializeByteClassLoader();
+        // Declare the locally declared type(s), and register them for the other units. A name
+        // redefined within this unit has already been reported, so it is registered only once.
+        ArrayList<String> registered = new ArrayList<String>();
+        for (JAST typeDeclaration : typeDeclarations) {
+            JTypeDecl typeDecl = (JTypeDecl) typeDeclaration;
+            typeDecl.declareThisType(context);
+            if (!registered.contains(typeDecl.name())) {
+                registered.add(typeDecl.name());
+                registry.addType(typeDeclaration.line(), typeDecl.thisType());
+            }
+        }
+    }
+
+    /**
+     * Returns true if a type declared in this compilation unit extends a type declared in the
+     * specified (other) compilation unit, and false otherwise. Must be called before
+     * pre-analysis resolves the super types.
+     *
+     * @param other the other compilation unit.
+     * @return true if a type declared in this compilation unit extends a type declared in the
+     * specified compilation unit, and false otherwise.
+     */
+    public boolean dependsOn(JCompilationUnit other) {
         for (JAST typeDeclaration : typeDeclarations) {
-            ((JTypeDecl) typeDeclaration).declareThisType(context);
+            Type superType = ((JTypeDecl) typeDeclaration).superType();
+            if (superType instanceof TypeName && other.declares(superType.simpleName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Pre-analyzes the unit's type declarations, declaring them first (in a registry of their
+     * own) if declareTypes() has not been called.
+     */
+    public void preAnalyze() {
+        if (context == null) {
+            declareTypes(new CompilationUnitContext());
         }
+        compilationUnit(this);
 
         // Pre-analyze the locally declared type(s). Generate (partial) Class instances,
         // reflecting only the member declaration information.
-        CLEmitter.initializeByteClassLoader();
+        ArrayList<JAST> preAnalyzed = new ArrayList<JAST>();
         for (JAST typeDeclaration : typeDeclarations) {
-            ((JTypeDecl) typeDeclaration).preAnalyze(context);
+            preAnalyze(typeDeclaration, preAnalyzed);
+        }
+    }
+
+    /**
+     * Pre-analyzes the specified compilation units, which must all have declared their types in
+     * the same registry. A unit that declares the superclass of a type in another unit is
+     * pre-analyzed before that unit.
+     *
+     * @param units the compilation units.
+     */
+    public static void preAnalyze(ArrayList<JCompilationUnit> units) {
+        ArrayList<JCompilationUnit> preAnalyzed = new ArrayList<JCompilationUnit>();
+        for (JCompilationUnit unit : units) {
+            preAnalyze(unit, units, preAnalyzed);
+        }
+    }
+
+    // Pre-analyzes the specified type declaration, unless it is in the list of type declarations
+    // already pre-analyzed. A locally declared superclass is pre-analyzed first, so that while
+    // its subclasses are pre-analyzed its type is backed by its partial class, with its own
+    // superclass and members, rather than by the bare class header declareTypes() built.
+    private void preAnalyze(JAST typeDeclaration, ArrayList<JAST> preAnalyzed) {
+        if (preAnalyzed.contains(typeDeclaration)) {
+            return;
+        }
+        preAnalyzed.add(typeDeclaration);
+        Type superType = ((JTypeDecl) typeDeclaration).superType();
+        if (superType instanceof TypeName) {
+            for (JAST other : typeDeclarations) {
+                if (((JTypeDecl) other).name().equals(superType.simpleName())) {
+                    preAnalyze(other, preAnalyzed);
+                }
+            }
+        }
+        ((JTypeDecl) typeDeclaration).preAnalyze(context);
+    }
+
+    // Pre-analyzes the specified compilation unit, unless it is in the list of units already
+    // pre-analyzed, after the units it depends on.
+    private static void preAnalyze(JCompilationUnit unit, ArrayList<JCompilationUnit> units,
+                                   ArrayList<JCompilationUnit> preAnalyzed) {
+        if (preAnalyzed.contains(unit)) {
+            return;
+        }
+        preAnalyzed.add(unit);
+        for (JCompilationUnit other : units) {
+            if (other != unit && unit.dependsOn(other)) {
+                preAnalyze(other, units, preAnalyzed);
+            }
+        }
+        unit.preAnalyze();
+    }
+
+    // Returns true if this compilation unit declares a type with the specified simple name, and
+    // false otherwise.
+    private boolean declares(String name) {
+        for (JAST typeDeclaration : typeDeclarations) {
+            if (((JTypeDecl) typeDeclaration).name().equals(name)) {
+                return true;
+            }
         }
+        return false;
     }
 
     /**
      * {@inheritDoc}
      */
     public JAST analyze(Context context) {
+        compilationUnit(this);
         for (JAST typeDeclaration : typeDeclarations) {
             typeDeclaration.analyze(this.context);
         }
@@ -163,6 +275,7 @@ class JCompilationUnit extends JAST {
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
+        compilationUnit(this);
         for (JAST typeDeclaration : typeDeclarations) {
             typeDeclaration.codegen(output);
             output.write();
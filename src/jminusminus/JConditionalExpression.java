@@ -24,7 +24,7 @@ public class JConditionalExpression extends JExpression {
         // Analyze the condition and ensure it's a boolean expression
         condition = condition.analyze(context);
         if (condition.type() != Type.BOOLEAN) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Condition in conditional expression must be of type boolean.");
         }
 
@@ -34,7 +34,7 @@ public class JConditionalExpression extends JExpression {
 
         // Ensure the true and false parts have compatible types
         if (!truePart.type().equals(falsePart.type())) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "True and false parts of the conditional expression must have compatible types.");
         }
 
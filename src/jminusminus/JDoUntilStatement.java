@@ -13,6 +13,9 @@ class JDoUntilStatement extends JStatement {
     // The loop's termination condition.
     private JExpression condition;
 
+    // Label that a break statement out of the loop jumps to.
+    private String breakLabel;
+
     /**
      * Constructs an AST node for a do-until statement.
      *
@@ -34,7 +37,7 @@ class JDoUntilStatement extends JStatement {
     @Override
     public JAST analyze(Context context) {
         // Analyze the body and condition within the loop's scope
-        body = (JBlock) body.analyze(context);
+        body = (JBlock) body.analyze(new LocalContext(context, this));
         condition = condition.analyze(context);
         condition.type().mustMatchExpected(line(), Type.BOOLEAN);
         return this;
@@ -48,20 +51,23 @@ class JDoUntilStatement extends JStatement {
     public void codegen(CLEmitter output) {
         String startLabel = output.createLabel();
         String endLabel = output.createLabel();
+        breakLabel = endLabel;
 
         output.addLabel(startLabel);
         body.codegen(output);
 
         // Evaluate the condition; jump to startLabel if false (since it's a do-until loop)
-        condition.codegen(output, endLabel, false);
-
-        // Loop back to the beginning of the loop body
-        output.addBranchInstruction(GOTO, startLabel);
+        condition.codegen(output, startLabel, false);
 
         // Label marking the end of the loop
         output.addLabel(endLabel);
     }
 
+    @Override
+    public String breakLabel() {
+        return breakLabel;
+    }
+
     @Override
     public void toJSON(JSONElement json) {
         JSONElement e = new JSONElement();
@@ -3,6 +3,7 @@ package jminusminus;
 public class JDoWhileStatement extends JStatement {
     private JStatement body;
     private JExpression condition;
+    private String breakLabel;
 
     public JDoWhileStatement(int line, JStatement body, JExpression condition) {
         super(line);
@@ -12,7 +13,7 @@ public class JDoWhileStatement extends JStatement {
 
     @Override
     public JStatement analyze(Context context) {
-        body = (JStatement) body.analyze(context);
+        body = (JStatement) body.analyze(new LocalContext(context, this));
         condition = condition.analyze(context);
         condition.type().mustMatchExpected(line(), Type.BOOLEAN);
         return this;
@@ -22,6 +23,7 @@ public class JDoWhileStatement extends JStatement {
     public void codegen(CLEmitter output) {
         String startLoop = output.createLabel();
         String endLoop = output.createLabel();
+        breakLabel = endLoop;
 
         output.addLabel(startLoop);
         body.codegen(output);
@@ -30,4 +32,9 @@ public class JDoWhileStatement extends JStatement {
         output.addLabel(endLoop);
     }
 
+    @Override
+    public String breakLabel() {
+        return breakLabel;
+    }
+
 }
@@ -46,6 +46,42 @@ abstract class JExpression extends JStatement {
         return isStatementExpression;
     }
 
+    /**
+     * Returns the value of this expression if it's a constant (a literal, or a reference to a
+     * constant field), and null otherwise. The value is an Integer, Character, Boolean, Long, or
+     * String, according to the type of the expression. Analysis folds an operator whose operands
+     * are constants into a literal for its value, so after analysis, the constant expressions of
+     * JLS 15.29 are all constants in this sense.
+     *
+     * @return the value of this expression if it's a constant, and null otherwise.
+     */
+    public Object constantValue() {
+        return null;
+    }
+
+    /**
+     * Returns an (analyzed) literal for the specified constant value.
+     *
+     * @param line  line in which the literal occurs in the source file.
+     * @param value the constant value, an Integer, Character, Boolean, Long, or String.
+     * @return an (analyzed) literal for the specified constant value.
+     */
+    public static JExpression literal(int line, Object value) {
+        JExpression literal;
+        if (value instanceof Integer) {
+            literal = new JLiteralInt(line, value.toString());
+        } else if (value instanceof Character) {
+            literal = new JLiteralChar(line, "'" + JAST.escape(value.toString()) + "'");
+        } else if (value instanceof Boolean) {
+            literal = new JLiteralBoolean(line, value.toString());
+        } else if (value instanceof Long) {
+            literal = new JLiteralLong(line, value.toString());
+        } else {
+            literal = new JLiteralString(line, "\"" + JAST.escape((String) value) + "\"");
+        }
+        return literal.analyze(null);
+    }
+
     /**
      * Analyzes and returns a JExpression.
      *
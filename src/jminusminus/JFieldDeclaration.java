@@ -17,6 +17,9 @@ class JFieldDeclaration extends JAST implements JMember {
     // Variable initializations.
     private ArrayList<JStatement> initializations;
 
+    // Values of the variables that are constants, and null for the others.
+    private ArrayList<Object> constantValues;
+
     /**
      * Constructs an AST node for a field declaration.
      *
@@ -30,6 +33,7 @@ class JFieldDeclaration extends JAST implements JMember {
         this.mods = mods;
         this.decls = decls;
         initializations = new ArrayList<JStatement>();
+        constantValues = new ArrayList<Object>();
     }
 
     /**
@@ -41,16 +45,34 @@ class JFieldDeclaration extends JAST implements JMember {
         return mods;
     }
 
+    /**
+     * Returns true if there is code for initializing the variables, and false otherwise (there
+     * is no initializer, or the variables are constants, initialized from their ConstantValue
+     * attributes).
+     *
+     * @return true if there is code for initializing the variables, and false otherwise.
+     */
+    public boolean hasInitializations() {
+        return initializations.size() > 0;
+    }
+
     /**
      * {@inheritDoc}
+     * <p>
+     * A static final variable of primitive or String type whose initializer is made up of
+     * literals and operators is a constant: its initializer is analyzed (and so folded) here,
+     * ahead of the rest of the program, and the field is added to the partial class with its
+     * value, so that uses of it, from any class, may be folded.
      */
     public void preAnalyze(Context context, CLEmitter partial) {
         if (mods.contains("abstract")) {
-            JAST.compilationUnit.reportSemanticError(line(), "Field cannot be declared abstract");
+            JAST.compilationUnit().reportSemanticError(line(), "Field cannot be declared abstract");
         }
         for (JVariableDeclarator decl : decls) {
             decl.setType(decl.type().resolve(context));
-            partial.addField(mods, decl.name(), decl.type().toDescriptor(), false);
+            Object value = constantValue(context, decl);
+            constantValues.add(value);
+            addField(partial, decl, value);
         }
     }
 
@@ -58,8 +80,9 @@ class JFieldDeclaration extends JAST implements JMember {
      * {@inheritDoc}
      */
     public JFieldDeclaration analyze(Context context) {
-        for (JVariableDeclarator decl : decls) {
-            if (decl.initializer() != null) {
+        for (int i = 0; i < decls.size(); i++) {
+            JVariableDeclarator decl = decls.get(i);
+            if (decl.initializer() != null && constantValues.get(i) == null) {
                 JAssignOp assignOp = new JAssignOp(decl.line(), new JVariable(decl.line(),
                         decl.name()), decl.initializer());
                 assignOp.isStatementExpression = true;
@@ -74,8 +97,8 @@ class JFieldDeclaration extends JAST implements JMember {
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
-        for (JVariableDeclarator decl : decls) {
-            output.addField(mods, decl.name(), decl.type().toDescriptor(), false);
+        for (int i = 0; i < decls.size(); i++) {
+            addField(output, decls.get(i), constantValues.get(i));
         }
     }
 
@@ -90,6 +113,57 @@ class JFieldDeclaration extends JAST implements JMember {
         }
     }
 
+    // Returns the value of the specified variable if it's a constant, and null otherwise.
+    private Object constantValue(Context context, JVariableDeclarator decl) {
+        if (!mods.contains("static") || !mods.contains("final") || decl.initializer() == null ||
+                !isLiteralExpression(decl.initializer())) {
+            return null;
+        }
+        decl.setInitializer(decl.initializer().analyze(context));
+        Object value = decl.initializer().constantValue();
+        Type type = decl.type();
+        if (value instanceof Integer && type.equals(Type.INT) ||
+                value instanceof Character && type.equals(Type.CHAR) ||
+                value instanceof Boolean && type.equals(Type.BOOLEAN) ||
+                value instanceof Long && type.equals(Type.LONG) ||
+                value instanceof String && type.equals(Type.STRING)) {
+            return value;
+        }
+        return null;
+    }
+
+    // Returns true if the specified (unanalyzed) expression is made up of literals and
+    // operators alone, and so can be analyzed without a context.
+    private static boolean isLiteralExpression(JExpression expr) {
+        if (expr instanceof JBinaryExpression && !(expr instanceof JAssignment)) {
+            return isLiteralExpression(((JBinaryExpression) expr).lhs) &&
+                    isLiteralExpression(((JBinaryExpression) expr).rhs);
+        } else if (expr instanceof JNegateOp || expr instanceof JLogicalNotOp) {
+            return isLiteralExpression(((JUnaryExpression) expr).operand);
+        }
+        return expr.constantValue() != null;
+    }
+
+    // Adds the specified variable to the class, with a ConstantValue attribute if the variable
+    // is a constant.
+    private void addField(CLEmitter output, JVariableDeclarator decl, Object value) {
+        String name = decl.name();
+        String descriptor = decl.type().toDescriptor();
+        if (value instanceof Integer) {
+            output.addField(mods, name, descriptor, false, (Integer) value);
+        } else if (value instanceof Character) {
+            output.addField(mods, name, descriptor, false, (int) (Character) value);
+        } else if (value instanceof Boolean) {
+            output.addField(mods, name, descriptor, false, (Boolean) value ? 1 : 0);
+        } else if (value instanceof Long) {
+            output.addField(mods, name, false, (long) (Long) value);
+        } else if (value instanceof String) {
+            output.addField(mods, name, false, (String) value);
+        } else {
+            output.addField(mods, name, descriptor, false);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -4,7 +4,8 @@ import java.util.ArrayList;
 import static jminusminus.CLConstants.*;
 
 /**
- * The AST node for a for-statement.
+ * The AST node for a for-statement. As for a while-statement, the loop is rotated, so that the
+ * test comes after the body and the update statements.
  */
 class JForStatement extends JStatement {
     // Initialization statements.
@@ -19,6 +20,9 @@ class JForStatement extends JStatement {
     // The body of the loop.
     private JStatement body;
 
+    // Label that a break statement out of the loop jumps to.
+    private String breakLabel;
+
     /**
      * Constructs an AST node for a for-statement.
      *
@@ -42,7 +46,7 @@ class JForStatement extends JStatement {
      */
     @Override
     public JForStatement analyze(Context context) {
-        Context loopContext = new LocalContext(context);
+        Context loopContext = new LocalContext(context, this);
 
         if (init != null) {
             for (JStatement stmt : init) {
@@ -69,12 +73,15 @@ class JForStatement extends JStatement {
     }
 
     /**
-     * Generates the bytecode for the for-statement, including loops and conditions.
+     * Generates the bytecode for the for-statement: the initialization statements, a jump to the
+     * test, the body and the update statements, and the test, which branches back to the body.
      */
     @Override
     public void codegen(CLEmitter output) {
+        String testLabel = output.createLabel();
         String startLoopLabel = output.createLabel();
         String endLoopLabel = output.createLabel();
+        breakLabel = endLoopLabel;
 
         if (init != null) {
             for (JStatement stmt : init) {
@@ -82,12 +89,12 @@ class JForStatement extends JStatement {
             }
         }
 
-        output.addLabel(startLoopLabel);
-
-        if (condition != null) {
-            condition.codegen(output, endLoopLabel, false);
+        if (condition != null && !Boolean.TRUE.equals(condition.constantValue())) {
+            output.addBranchInstruction(GOTO, testLabel);
         }
 
+        output.addLabel(startLoopLabel);
+
         if (body != null) {
             body.codegen(output);
         }
@@ -98,10 +105,23 @@ class JForStatement extends JStatement {
             }
         }
 
-        output.addBranchInstruction(GOTO, startLoopLabel);
+        output.addLabel(testLabel);
+        if (condition != null) {
+            condition.codegen(output, startLoopLabel, true);
+        } else {
+            output.addBranchInstruction(GOTO, startLoopLabel);
+        }
         output.addLabel(endLoopLabel);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String breakLabel() {
+        return breakLabel;
+    }
+
     /**
      * Writes this AST node in a JSON format for debugging and visualization purposes.
      */
@@ -141,7 +161,8 @@ class JForStatement extends JStatement {
 }
 
 /**
- * The AST node for an enhanced for-statement.
+ * The AST node for an enhanced for-statement over an array. The array and the index into it are
+ * kept in locals of their own, and the loop is rotated as for a for-statement.
  */
 class JEnhancedForStatement extends JStatement {
     // The loop variable declaration.
@@ -153,6 +174,15 @@ class JEnhancedForStatement extends JStatement {
     // The body of the loop.
     private JStatement body;
 
+    // Offsets of the locals holding the array and the index into it.
+    private int arrayOffset, indexOffset;
+
+    // Definition of the loop variable.
+    private LocalVariableDefn variable;
+
+    // Label that a break statement out of the loop jumps to.
+    private String breakLabel;
+
     /**
      * Constructs an AST node for an enhanced for-statement.
      *
@@ -171,79 +201,81 @@ class JEnhancedForStatement extends JStatement {
 
     @Override
     public JAST analyze(Context context) {
-        Context loopContext = new LocalContext(context);
+        LocalContext loopContext = new LocalContext(context, this);
 
-        declaration.analyze(loopContext);
         iterable = iterable.analyze(loopContext);
+        arrayOffset = loopContext.nextOffset();
+        indexOffset = loopContext.nextOffset();
+        declaration.analyze(loopContext);
+        variable = (LocalVariableDefn) loopContext.lookup(declaration.decls().get(0).name());
+        variable.initialize();
 
         // Check if iterable is an array
         if (!iterable.type().isArray()) {
             // Since direct isIterable() check isn't available, you might limit
             // enhanced for-loops to arrays, or implement your own check here
             // based on your type system's capabilities.
-            JAST.compilationUnit.reportSemanticError(line,
+            JAST.compilationUnit().reportSemanticError(line,
                     "The right-hand side of a for-each loop must be an array in this simplified j--.");
+        } else {
+            iterable.type().componentType().mustMatchExpected(line, variable.type());
         }
 
-        body.analyze(loopContext);
+        body = (JStatement) body.analyze(loopContext);
 
         return this;
     }
 
     @Override
     public void codegen(CLEmitter output) {
-        // Assume indices for local variables based on your method's layout
-        // For simplicity, let's assume:
-        // 0 - "this" reference (for non-static methods)
-        // 1 - first method argument or first local variable (if no arguments)
-        // Adjust these indices according to your actual method context
-
-        int arrayRefIndex = 1; // Index for the array reference
-        int index = 2; // Index for the loop counter
-
-        // Start: Code to push the array onto the stack
-        iterable.codegen(output);
-        // Store the array reference in a local variable
-        output.addOneArgInstruction(ASTORE, arrayRefIndex);
-
-        // Initialize loop counter to 0
-        output.addNoArgInstruction(ICONST_0);
-        output.addOneArgInstruction(ISTORE, index);
-
+        Type type = iterable.type().componentType();
         String test = output.createLabel();
+        String top = output.createLabel();
         String end = output.createLabel();
+        breakLabel = end;
 
-        // Condition check start
-        output.addLabel(test);
-
-        // Load loop counter and array length, compare them
-        output.addOneArgInstruction(ALOAD, arrayRefIndex);
-        output.addNoArgInstruction(ARRAYLENGTH);
-        output.addOneArgInstruction(ILOAD, index);
-        output.addBranchInstruction(IF_ICMPGE, end);
+        // Store the array, and start the index at 0
+        iterable.codegen(output);
+        output.addOneArgInstruction(ASTORE, arrayOffset);
+        output.addNoArgInstruction(ICONST_0);
+        output.addOneArgInstruction(ISTORE, indexOffset);
+        output.addBranchInstruction(GOTO, test);
 
         // Load the current array element into the loop variable
-        output.addOneArgInstruction(ALOAD, arrayRefIndex);
-        output.addOneArgInstruction(ILOAD, index);
-        output.addNoArgInstruction(AALOAD);
-
-        // Assuming the loop variable is directly after the index
-        int loopVarIndex = 3; // Adjust based on your context
-        output.addOneArgInstruction(ASTORE, loopVarIndex);
+        output.addLabel(top);
+        output.addOneArgInstruction(ALOAD, arrayOffset);
+        output.addOneArgInstruction(ILOAD, indexOffset);
+        if (type == Type.INT) {
+            output.addNoArgInstruction(IALOAD);
+        } else if (type == Type.BOOLEAN) {
+            output.addNoArgInstruction(BALOAD);
+        } else if (type == Type.CHAR) {
+            output.addNoArgInstruction(CALOAD);
+        } else {
+            output.addNoArgInstruction(AALOAD);
+        }
+        output.addOneArgInstruction(type.isPrimitive() ? ISTORE : ASTORE, variable.offset());
 
         // Body of the loop
         body.codegen(output);
 
-        // Increment the loop counter
-        output.addIINCInstruction(index, 1);
+        // Increment the index
+        output.addIINCInstruction(indexOffset, 1);
 
-        // Jump back to the condition check
-        output.addBranchInstruction(GOTO, test);
-
-        // Condition check end
+        // Loop while the index is within the array
+        output.addLabel(test);
+        output.addOneArgInstruction(ILOAD, indexOffset);
+        output.addOneArgInstruction(ALOAD, arrayOffset);
+        output.addNoArgInstruction(ARRAYLENGTH);
+        output.addBranchInstruction(IF_ICMPLT, top);
         output.addLabel(end);
     }
 
+    @Override
+    public String breakLabel() {
+        return breakLabel;
+    }
+
     @Override
     public void toJSON(JSONElement json) {
         JSONElement e = new JSONElement();
@@ -49,6 +49,16 @@ class JIfStatement extends JStatement {
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
+        Object value = condition.constantValue();
+        if (value instanceof Boolean) {
+            // The condition is a constant, so only the part that is taken is generated.
+            if ((Boolean) value) {
+                thenPart.codegen(output);
+            } else if (elsePart != null) {
+                elsePart.codegen(output);
+            }
+            return;
+        }
         String elseLabel = output.createLabel();
         String endLabel = output.createLabel();
         condition.codegen(output, elseLabel, false);
@@ -31,6 +31,13 @@ class JLiteralBoolean extends JExpression {
         return text.equals("true");
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public Object constantValue() {
+        return toBoolean();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -31,6 +31,13 @@ class JLiteralChar extends JExpression {
         return (int) JAST.unescape(text).charAt(1);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public Object constantValue() {
+        return (char) toInt();
+    }
+
     /**
      * {@inheritDoc}
      */
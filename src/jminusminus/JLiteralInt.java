@@ -31,6 +31,13 @@ class JLiteralInt extends JExpression {
         return Integer.parseInt(text);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public Object constantValue() {
+        return toInt();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -45,6 +52,9 @@ class JLiteralInt extends JExpression {
     public void codegen(CLEmitter output) {
         int i = toInt();
         switch (i) {
+            case -1:
+                output.addNoArgInstruction(ICONST_M1);
+                break;
             case 0:
                 output.addNoArgInstruction(ICONST_0);
                 break;
@@ -64,9 +74,9 @@ class JLiteralInt extends JExpression {
                 output.addNoArgInstruction(ICONST_5);
                 break;
             default:
-                if (i >= 6 && i <= 127) {
+                if (i >= Byte.MIN_VALUE && i <= Byte.MAX_VALUE) {
                     output.addOneArgInstruction(BIPUSH, i);
-                } else if (i >= 128 && i <= 32767) {
+                } else if (i >= Short.MIN_VALUE && i <= Short.MAX_VALUE) {
                     output.addOneArgInstruction(SIPUSH, i);
                 } else {
                     output.addLDCInstruction(i);
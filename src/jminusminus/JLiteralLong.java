@@ -20,6 +20,13 @@ class JLiteralLong extends JExpression {
         this.text = text;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public Object constantValue() {
+        return Long.parseLong(text);
+    }
+
     /**
      * Analyzes the long literal. In this context, analysis could simply set the correct type.
      *
@@ -20,6 +20,13 @@ class JLiteralString extends JExpression {
         this.text = text;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public Object constantValue() {
+        return JAST.unescape(text.substring(1, text.length() - 1));
+    }
+
     /**
      * {@inheritDoc}
      */
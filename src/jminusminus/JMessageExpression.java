@@ -29,6 +29,13 @@ class JMessageExpression extends JExpression {
     // The Method representing this message.
     private Method method;
 
+    // The declaration of the method, if it is a static method of the same class, or a private
+    // one invoked on this, and so the message may be inlined; and null otherwise.
+    private JMethodDeclaration methodDeclaration;
+
+    // Offset of the first local variable that is free where the message occurs.
+    private int freeOffset;
+
     /**
      * Constructs an AST node for a message expression without an ambiguous part.
      *
@@ -72,7 +79,7 @@ class JMessageExpression extends JExpression {
                     target = expr;
                 } else {
                     // Can't even happen syntactically.
-                    JAST.compilationUnit.reportSemanticError(line(), "Badly formed suffix");
+                    JAST.compilationUnit().reportSemanticError(line(), "Badly formed suffix");
                 }
             }
         }
@@ -98,7 +105,7 @@ class JMessageExpression extends JExpression {
         } else {
             target = (JExpression) target.analyze(context);
             if (target.type().isPrimitive()) {
-                JAST.compilationUnit.reportSemanticError(line(),
+                JAST.compilationUnit().reportSemanticError(line(),
                         "Cannot invoke a message on a primitive type: " + target.type());
             }
         }
@@ -106,7 +113,7 @@ class JMessageExpression extends JExpression {
         // Find appropriate Method for this message expression.
         method = target.type().methodFor(messageName, argTypes);
         if (method == null) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Cannot find method for: " + Type.signatureFor(messageName, argTypes));
             type = Type.ANY;
         } else {
@@ -117,15 +124,48 @@ class JMessageExpression extends JExpression {
             if (!method.isStatic()) {
                 if (target instanceof JVariable &&
                         ((JVariable) target).iDefn() instanceof TypeNameDefn) {
-                    JAST.compilationUnit.reportSemanticError(line(),
+                    JAST.compilationUnit().reportSemanticError(line(),
                             "Non-static method " + Type.signatureFor(messageName, argTypes) +
                                     " cannot be referenced from a static context");
                 }
             }
+
+            JAST definition = context.classContext().definition();
+            if (context instanceof LocalContext && definition instanceof JClassDeclaration &&
+                    method.declaringType().jvmName().equals(context.definingType().jvmName()) &&
+                    (method.isStatic() || method.isPrivate() && target instanceof JThis)) {
+                methodDeclaration = ((JClassDeclaration) definition).methodDeclaration(messageName,
+                        method.toDescriptor());
+                freeOffset = ((LocalContext) context).offset();
+                MethodContext methodContext = context.methodContext();
+                if (methodDeclaration != null && methodContext != null &&
+                        methodContext.methodDeclaration() == methodDeclaration) {
+                    methodDeclaration.confirmRecursive();
+                }
+            }
         }
         return this;
     }
 
+    /**
+     * Returns the method this message invokes (valid after analysis), or null (if there is
+     * none).
+     *
+     * @return the method this message invokes, or null.
+     */
+    public Method method() {
+        return method;
+    }
+
+    /**
+     * Returns the message arguments.
+     *
+     * @return the message arguments.
+     */
+    public ArrayList<JExpression> arguments() {
+        return arguments;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -136,10 +176,14 @@ class JMessageExpression extends JExpression {
         for (JExpression argument : arguments) {
             argument.codegen(output);
         }
-        int mnemonic = method.isStatic() ? INVOKESTATIC : target.type().isInterface() ?
-                INVOKEINTERFACE : INVOKEVIRTUAL;
-        output.addMemberAccessInstruction(mnemonic, target.type().jvmName(), messageName,
-                method.toDescriptor());
+        if (methodDeclaration != null && methodDeclaration.canInline()) {
+            methodDeclaration.codegenInline(output, freeOffset);
+        } else {
+            int mnemonic = method.isStatic() ? INVOKESTATIC : target.type().isInterface() ?
+                    INVOKEINTERFACE : INVOKEVIRTUAL;
+            output.addMemberAccessInstruction(mnemonic, target.type().jvmName(), messageName,
+                    method.toDescriptor());
+        }
         if (isStatementExpression && type != Type.VOID) {
             // Pop any value left on the stack.
             output.addNoArgInstruction(POP);
@@ -10,6 +10,16 @@ import static jminusminus.CLConstants.*;
  * The AST node for a method declaration.
  */
 class JMethodDeclaration extends JAST implements JMember {
+    // Whether self tail calls in static methods are compiled as jumps to the method's entry.
+    private static boolean eliminateTailCalls = false;
+
+    // Whether calls to small methods of the same class are compiled by inlining the methods'
+    // bodies (see canInline()).
+    private static boolean inlineCalls = false;
+
+    // Size, in bytes of JVM code, of the largest method body that is inlined; as in HotSpot.
+    private static final int MAX_INLINE_SIZE = 35;
+
     /**
      * Method modifiers.
      */
@@ -65,6 +75,30 @@ class JMethodDeclaration extends JAST implements JMember {
      */
     protected boolean isPrivate;
 
+    /**
+     * Label at the entry of the method, which self tail calls jump to (created in codegen()).
+     */
+    protected String entryLabel;
+
+    // Whether the method calls itself, or has a try statement, as found in analyze(); neither
+    // kind of method is inlined, and self tail calls in a method with a try statement are not
+    // eliminated.
+    private boolean isRecursive, hasTryStatement;
+
+    // Number of return statements in the method body.
+    private int returnCount;
+
+    // Size of the JVM code for the method body (computed by inlineSize()), or -1.
+    private int inlineSize = -1;
+
+    // Whether code for the method body is being generated at a call site; if so, the amount its
+    // local variables are shifted by, and the label at the end of the inlined code (null if the
+    // body ends with its only return statement). The returned value, if any, is stored just
+    // below the shifted local variables before jumping to that label.
+    private boolean isBeingInlined;
+    private int inlineShift;
+    private String inlineExitLabel;
+
     /**
      * Constructs an AST node for a method declaration.
      *
@@ -91,6 +125,24 @@ class JMethodDeclaration extends JAST implements JMember {
         isPrivate = mods.contains("private");
     }
 
+    /**
+     * Returns the method name.
+     *
+     * @return the method name.
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the method descriptor (valid after pre-analysis).
+     *
+     * @return the method descriptor.
+     */
+    public String descriptor() {
+        return descriptor;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -105,14 +157,15 @@ class JMethodDeclaration extends JAST implements JMember {
 
         // Check proper local use of abstract
         if (isAbstract && body != null) {
-            JAST.compilationUnit.reportSemanticError(line(), "abstract method cannot have a body");
+            JAST.compilationUnit().reportSemanticError(line(),
+                    "abstract method cannot have a body");
         } else if (body == null && !isAbstract) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Method without body must be abstract");
         } else if (isAbstract && isPrivate) {
-            JAST.compilationUnit.reportSemanticError(line(), "private method cannot be abstract");
+            JAST.compilationUnit().reportSemanticError(line(), "private method cannot be abstract");
         } else if (isAbstract && isStatic) {
-            JAST.compilationUnit.reportSemanticError(line(), "static method cannot be abstract");
+            JAST.compilationUnit().reportSemanticError(line(), "static method cannot be abstract");
         }
 
         // Compute descriptor.
@@ -130,7 +183,7 @@ class JMethodDeclaration extends JAST implements JMember {
      * {@inheritDoc}
      */
     public JAST analyze(Context context) {
-        MethodContext methodContext = new MethodContext(context, isStatic, returnType);
+        MethodContext methodContext = new MethodContext(context, this, isStatic, returnType);
         this.context = methodContext;
 
         if (!isStatic) {
@@ -149,7 +202,7 @@ class JMethodDeclaration extends JAST implements JMember {
         if (body != null) {
             body = body.analyze(this.context);
             if (returnType != Type.VOID && !methodContext.methodHasReturn()) {
-                JAST.compilationUnit.reportSemanticError(line(),
+                JAST.compilationUnit().reportSemanticError(line(),
                         "Non-void method must have a return statement");
             }
         }
@@ -157,6 +210,155 @@ class JMethodDeclaration extends JAST implements JMember {
         return this;
     }
 
+    /**
+     * Sets whether self tail calls in static methods are from now on compiled as jumps to the
+     * method's entry, rather than as invocations.
+     *
+     * @param eliminateTailCalls whether to eliminate self tail calls.
+     */
+    public static void setEliminateTailCalls(boolean eliminateTailCalls) {
+        JMethodDeclaration.eliminateTailCalls = eliminateTailCalls;
+    }
+
+    /**
+     * Returns true if the specified (analyzed) message expression, returned by a return statement
+     * in this (analyzed) method, is a self tail call that can be compiled as a jump to the
+     * method's entry, and false otherwise. Only calls from a static method to itself qualify, and
+     * only when tail call elimination is enabled. A method with a try statement doesn't qualify
+     * either: the jump would re-enter code outside the range of the try's handlers, so exceptions
+     * thrown by later iterations would no longer be caught as they were by the call.
+     *
+     * @param message the message expression.
+     * @return true if the message expression is a self tail call to be eliminated, and false
+     * otherwise.
+     */
+    public boolean isSelfTailCall(JMessageExpression message) {
+        Method method = message.method();
+        return eliminateTailCalls && isStatic && !hasTryStatement && method != null &&
+                method.isStatic() && method.name().equals(name) &&
+                method.toDescriptor().equals(descriptor) &&
+                method.declaringType().jvmName().equals(context.definingType().jvmName());
+    }
+
+    /**
+     * Generates code for a self tail call, whose arguments are on the operand stack: stores the
+     * arguments into the formal parameters, and jumps to the method's entry.
+     *
+     * @param output the code emitter.
+     */
+    public void codegenTailCall(CLEmitter output) {
+        codegenStoreParameters(output);
+        output.addBranchInstruction(GOTO, entryLabel);
+    }
+
+    /**
+     * Sets whether calls to small, non-recursive, static or private methods declared in the same
+     * class are from now on compiled by inlining the bodies of the methods, rather than as
+     * invocations.
+     *
+     * @param inlineCalls whether to inline calls.
+     */
+    public static void setInlineCalls(boolean inlineCalls) {
+        JMethodDeclaration.inlineCalls = inlineCalls;
+    }
+
+    /**
+     * Records the fact that this method calls itself.
+     */
+    public void confirmRecursive() {
+        isRecursive = true;
+    }
+
+    /**
+     * Records the fact that this method has a try statement.
+     */
+    public void confirmTryStatement() {
+        hasTryStatement = true;
+    }
+
+    /**
+     * Records the fact that this method has one more return statement.
+     */
+    public void confirmReturnStatement() {
+        returnCount++;
+    }
+
+    /**
+     * Returns true if a call to this (analyzed) method, from another method of the same class,
+     * can be compiled by inlining this method's body, and false otherwise. That is the case when
+     * inlining is enabled, the method neither calls itself nor has a try statement (whose
+     * handlers would discard the caller's operand stack), it is not already being inlined at an
+     * enclosing call site, and the JVM code for its body takes at most MAX_INLINE_SIZE bytes.
+     *
+     * @return true if a call to this method can be inlined, and false otherwise.
+     */
+    public boolean canInline() {
+        return inlineCalls && body != null && !isRecursive && !hasTryStatement &&
+                !isBeingInlined && inlineSize() <= MAX_INLINE_SIZE;
+    }
+
+    /**
+     * Returns true if code for this method's body is being generated at a call site, and false
+     * otherwise.
+     *
+     * @return true if this method is being inlined, and false otherwise.
+     */
+    public boolean isBeingInlined() {
+        return isBeingInlined;
+    }
+
+    /**
+     * Generates code for a call to this method in place of an invocation, given the arguments
+     * (preceded by the target, for an instance method) on the operand stack: stores them into
+     * this method's local variables, shifted to start at the specified offset in the caller's
+     * frame, and generates code for the body, leaving the returned value, if any, on the operand
+     * stack.
+     *
+     * @param output the code emitter.
+     * @param offset offset of the first local variable that is free at the call site.
+     */
+    public void codegenInline(CLEmitter output, int offset) {
+        ArrayList<JStatement> statements = body.statements();
+        boolean endsWithOnlyReturn = returnCount == 0 || returnCount == 1 &&
+                statements.get(statements.size() - 1) instanceof JReturnStatement;
+        inlineShift = endsWithOnlyReturn || returnType == Type.VOID ? offset : offset + 1;
+        inlineExitLabel = endsWithOnlyReturn ? null : output.createLabel();
+        output.shiftLocals(inlineShift);
+        codegenStoreParameters(output);
+        if (!isStatic) {
+            output.addNoArgInstruction(ASTORE_0);
+        }
+        isBeingInlined = true;
+        body.codegen(output);
+        isBeingInlined = false;
+        output.shiftLocals(-inlineShift);
+        if (inlineExitLabel != null) {
+            output.addLabel(inlineExitLabel);
+            if (returnType != Type.VOID) {
+                codegenLocal(output, returnType, offset, true);
+            }
+        }
+    }
+
+    /**
+     * Generates code for a return statement in this method while it is being inlined, given the
+     * returned value, if any, on the operand stack.
+     *
+     * @param output the code emitter.
+     */
+    public void codegenInlineReturn(CLEmitter output) {
+        if (inlineExitLabel == null) {
+            // The only return statement ends the body, so the value is left where it is.
+            return;
+        }
+        if (returnType != Type.VOID) {
+            output.shiftLocals(-inlineShift);
+            codegenLocal(output, returnType, inlineShift - 1, false);
+            output.shiftLocals(inlineShift);
+        }
+        output.addBranchInstruction(GOTO, inlineExitLabel);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -181,15 +383,19 @@ class JMethodDeclaration extends JAST implements JMember {
     public void codegen(CLEmitter output) {
         // Convert the exception type names to their internal JVM names as expected by CLEmitter
         ArrayList<String> exceptionTypeNames = new ArrayList<>();
-        for (TypeName exception : exceptions) {
-            // Here we assume TypeName::name gives you the fully qualified name.
-            exceptionTypeNames.add(exception.getName().replace('.', '/'));
+        if (exceptions != null) {
+            for (TypeName exception : exceptions) {
+                // Here we assume TypeName::name gives you the fully qualified name.
+                exceptionTypeNames.add(exception.getName().replace('.', '/'));
+            }
         }
 
         // Add the method with exceptions to the class
         output.addMethod(mods, name, descriptor, exceptionTypeNames, false);
 
         // Generate code for the method body
+        entryLabel = output.createLabel();
+        output.addLabel(entryLabel);
         if (body != null) {
             body.codegen(output);
         }
@@ -204,6 +410,44 @@ class JMethodDeclaration extends JAST implements JMember {
     }
 
 
+    // Returns the size of the JVM code for the method body, generated (once) with a scratch
+    // emitter. While that happens, the size is taken to be too large for the method to be
+    // inlined into its own body, through mutually recursive calls.
+    private int inlineSize() {
+        if (inlineSize == -1) {
+            inlineSize = Integer.MAX_VALUE;
+            CLEmitter scratch = new CLEmitter(false);
+            scratch.addClass(null, context.definingType().jvmName(), Type.OBJECT.jvmName(), null,
+                    false);
+            scratch.addMethod(mods, name, descriptor, null, false);
+            body.codegen(scratch);
+            inlineSize = scratch.pc();
+        }
+        return inlineSize;
+    }
+
+    // Generates code that stores the arguments on the operand stack into the formal parameters,
+    // last to first.
+    private void codegenStoreParameters(CLEmitter output) {
+        for (int i = params.size() - 1; i >= 0; i--) {
+            LocalVariableDefn defn = (LocalVariableDefn) context.lookup(params.get(i).name());
+            codegenLocal(output, defn.type(), defn.offset(), false);
+        }
+    }
+
+    // Generates code that loads (or stores) a value of the specified type from (or into) the
+    // local variable at the specified offset.
+    private void codegenLocal(CLEmitter output, Type type, int offset, boolean isLoad) {
+        boolean isInt = type == Type.INT || type == Type.BOOLEAN || type == Type.CHAR;
+        if (offset <= 3) {
+            output.addNoArgInstruction((isLoad ? isInt ? ILOAD_0 : ALOAD_0 :
+                    isInt ? ISTORE_0 : ASTORE_0) + offset);
+        } else {
+            output.addOneArgInstruction(isLoad ? isInt ? ILOAD : ALOAD : isInt ? ISTORE : ASTORE,
+                    offset);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -12,6 +12,9 @@ class JReturnStatement extends JStatement {
     // The returned expression.
     private JExpression expr;
 
+    // The enclosing method, or null (for a constructor).
+    private JMethodDeclaration method;
+
     /**
      * Constructs an AST node for a return-statement.
      *
@@ -36,17 +39,21 @@ class JReturnStatement extends JStatement {
         if (methodContext.methodReturnType() == Type.CONSTRUCTOR) {
             if (expr != null) {
                 // Can't return a value from a constructor.
-                JAST.compilationUnit.reportSemanticError(line(),
+                JAST.compilationUnit().reportSemanticError(line(),
                         "Cannot return a value from a constructor");
             }
         } else {
             // Must be a method.
             Type returnType = methodContext.methodReturnType();
             methodContext.confirmMethodHasReturn();
+            method = methodContext.methodDeclaration();
+            if (method != null) {
+                method.confirmReturnStatement();
+            }
             if (expr != null) {
                 if (returnType == Type.VOID) {
                     // Can't return a value from void method.
-                    JAST.compilationUnit.reportSemanticError(line(),
+                    JAST.compilationUnit().reportSemanticError(line(),
                             "Cannot return a value from a void method");
                 } else {
                     // There's a (non-void) return value. Its type must match the return type of
@@ -57,7 +64,7 @@ class JReturnStatement extends JStatement {
             } else {
                 // The method better have void as return type.
                 if (returnType != Type.VOID) {
-                    JAST.compilationUnit.reportSemanticError(line(), "Missing return value");
+                    JAST.compilationUnit().reportSemanticError(line(), "Missing return value");
                 }
             }
         }
@@ -68,8 +75,18 @@ class JReturnStatement extends JStatement {
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
-        if (expr == null) {
+        if (method != null && method.isBeingInlined()) {
+            if (expr != null) {
+                expr.codegen(output);
+            }
+            method.codegenInlineReturn(output);
+        } else if (expr == null) {
             output.addNoArgInstruction(RETURN);
+        } else if (isSelfTailCall()) {
+            for (JExpression argument : ((JMessageExpression) expr).arguments()) {
+                argument.codegen(output);
+            }
+            method.codegenTailCall(output);
         } else {
             expr.codegen(output);
             if (expr.type() == Type.INT || expr.type() == Type.BOOLEAN ||
@@ -93,4 +110,12 @@ class JReturnStatement extends JStatement {
             expr.toJSON(e1);
         }
     }
+
+    // Returns true if the returned expression is a self tail call to be compiled as a jump to the
+    // method's entry, and false otherwise. This is only known once the whole method is analyzed,
+    // since a try statement after this statement rules it out.
+    private boolean isSelfTailCall() {
+        return expr instanceof JMessageExpression && method != null &&
+                method.isSelfTailCall((JMessageExpression) expr);
+    }
 }
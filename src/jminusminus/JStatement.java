@@ -14,4 +14,14 @@ abstract class JStatement extends JAST {
     protected JStatement(int line) {
         super(line);
     }
+
+    /**
+     * Returns the label that a break statement out of this statement (a switch statement or a
+     * loop) jumps to. Only valid while code for the statement is being generated.
+     *
+     * @return the label that a break statement out of this statement jumps to.
+     */
+    public String breakLabel() {
+        return null;
+    }
 }
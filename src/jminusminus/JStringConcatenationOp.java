@@ -2,6 +2,8 @@
 
 package jminusminus;
 
+import java.util.ArrayList;
+
 import static jminusminus.CLConstants.*;
 
 /**
@@ -10,6 +12,26 @@ import static jminusminus.CLConstants.*;
  * rewritten to be string concatenation operations.
  */
 class JStringConcatenationOp extends JBinaryExpression {
+    // Whether string concatenation is compiled to an invokedynamic instruction, bootstrapped by
+    // StringConcatFactory.makeConcatWithConstants(), rather than to StringBuilder appends.
+    private static boolean useInvokeDynamic = false;
+
+    // Largest number of argument slots of a single concatenation call site; as in javac, which
+    // splits longer concatenations, since a method type can't have more than 255.
+    private static final int MAX_INDY_CONCAT_SLOTS = 200;
+
+    // Tags in the recipe of a call site for an argument, and for a constant passed to the
+    // bootstrap method.
+    private static final char TAG_ARG = '\u0001';
+    private static final char TAG_CONST = '\u0002';
+
+    // Bootstrap method for concatenation call sites.
+    private static final String BOOTSTRAP_CLASS = "java/lang/invoke/StringConcatFactory";
+    private static final String BOOTSTRAP_NAME = "makeConcatWithConstants";
+    private static final String BOOTSTRAP_TYPE = "(Ljava/lang/invoke/MethodHandles$Lookup;"
+            + "Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/String;"
+            + "[Ljava/lang/Object;)Ljava/lang/invoke/CallSite;";
+
     /**
      * Constructs an AST node for a string concatenation expression.
      *
@@ -21,18 +43,44 @@ class JStringConcatenationOp extends JBinaryExpression {
         super(line, "+", lhs, rhs);
     }
 
+    /**
+     * Sets whether string concatenation is from now on compiled to a single invokedynamic
+     * instruction per concatenation, whose call site StringConcatFactory links (Java 9 on), with
+     * the constant operands folded into the recipe of the call site; or to a StringBuilder, an
+     * append() call per operand, and a toString() call.
+     *
+     * @param useInvokeDynamic whether to compile string concatenation to invokedynamic.
+     */
+    public static void setUseInvokeDynamic(boolean useInvokeDynamic) {
+        JStringConcatenationOp.useInvokeDynamic = useInvokeDynamic;
+    }
+
     /**
      * {@inheritDoc}
      */
     public JExpression analyze(Context context) {
         type = Type.STRING;
-        return this;
+        return folded();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Object fold(Object lhsValue, Object rhsValue) {
+        return String.valueOf(lhsValue) + String.valueOf(rhsValue);
     }
 
     /**
      * {@inheritDoc}
      */
     public void codegen(CLEmitter output) {
+        if (useInvokeDynamic) {
+            ArrayList<JExpression> operands = new ArrayList<JExpression>();
+            flatten(operands);
+            codegenInvokeDynamic(output, operands);
+            return;
+        }
+
         // Firstly, create a StringBuilder.
         output.addReferenceInstruction(NEW, "java/lang/StringBuilder");
         output.addNoArgInstruction(DUP);
@@ -70,4 +118,69 @@ class JStringConcatenationOp extends JBinaryExpression {
                     "(" + rhs.type().argumentTypeForAppend() + ")Ljava/lang/StringBuilder;");
         }
     }
+
+    // Adds the operands of this concatenation, and of the concatenations nested in it, to the
+    // specified list, from left to right.
+    private void flatten(ArrayList<JExpression> operands) {
+        for (JExpression operand : new JExpression[] {lhs, rhs}) {
+            if (operand instanceof JStringConcatenationOp) {
+                ((JStringConcatenationOp) operand).flatten(operands);
+            } else {
+                operands.add(operand);
+            }
+        }
+    }
+
+    // Generates code that concatenates the specified operands with an invokedynamic instruction.
+    // A constant operand is folded into the recipe of the call site (or passed to the bootstrap
+    // method if its value has a tag character in it); the other operands are arguments of the
+    // call site. A concatenation with too many arguments for one call site is split: the string
+    // that one call site returns is the first argument of the next.
+    private void codegenInvokeDynamic(CLEmitter output, ArrayList<JExpression> operands) {
+        StringBuilder recipe = new StringBuilder();
+        StringBuilder descriptor = new StringBuilder("(");
+        ArrayList<String> constants = new ArrayList<String>();
+        int slots = 0;
+        for (JExpression operand : operands) {
+            Object value = operand.constantValue();
+            if (value != null) {
+                String s = String.valueOf(value);
+                if (s.indexOf(TAG_ARG) >= 0 || s.indexOf(TAG_CONST) >= 0) {
+                    recipe.append(TAG_CONST);
+                    constants.add(s);
+                } else {
+                    recipe.append(s);
+                }
+                continue;
+            }
+            Type type = operand.type();
+            int size = type.equals(Type.LONG) || type.equals(Type.DOUBLE) ? 2 : 1;
+            if (slots + size > MAX_INDY_CONCAT_SLOTS) {
+                output.addINVOKEDYNAMICInstruction(BOOTSTRAP_CLASS, BOOTSTRAP_NAME, BOOTSTRAP_TYPE,
+                        constantsFor(recipe, constants), BOOTSTRAP_NAME,
+                        descriptor + ")Ljava/lang/String;");
+                recipe = new StringBuilder().append(TAG_ARG);
+                descriptor = new StringBuilder("(Ljava/lang/String;");
+                constants = new ArrayList<String>();
+                slots = 1;
+            }
+            operand.codegen(output);
+            recipe.append(TAG_ARG);
+            descriptor.append(type.argumentTypeForAppend());
+            slots += size;
+        }
+        output.addINVOKEDYNAMICInstruction(BOOTSTRAP_CLASS, BOOTSTRAP_NAME, BOOTSTRAP_TYPE,
+                constantsFor(recipe, constants), BOOTSTRAP_NAME,
+                descriptor + ")Ljava/lang/String;");
+    }
+
+    // Returns the static arguments of a concatenation call site: the specified recipe, followed
+    // by the specified constants.
+    private static ArrayList<String> constantsFor(StringBuilder recipe,
+                                                  ArrayList<String> constants) {
+        ArrayList<String> arguments = new ArrayList<String>();
+        arguments.add(recipe.toString());
+        arguments.addAll(constants);
+        return arguments;
+    }
 }
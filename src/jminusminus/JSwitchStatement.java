@@ -3,11 +3,16 @@
 package jminusminus;
 
 import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.TreeMap;
 
 import static jminusminus.CLConstants.*;
 
 /**
- * The AST node for a switch-statement.
+ * The AST node for a switch-statement. A switch on an int is compiled to a tableswitch instruction
+ * when its case labels are dense, and to a lookupswitch instruction when they are sparse; a switch
+ * on a String is compiled to a switch on the hash code of the String, followed by calls to
+ * equals() for the case labels with that hash code.
  */
 public class JSwitchStatement extends JStatement {
     // Test expression.
@@ -16,7 +21,21 @@ public class JSwitchStatement extends JStatement {
     // List of switch-statement groups
     private ArrayList<SwitchStatementGroup> stmtGroup;
 
-    public JSwitchStatement(int line, JExpression condition, ArrayList<SwitchStatementGroup> stmtGroup) {
+    // Offset of the local variable holding the value of a String test expression.
+    private int offset;
+
+    // Label that a break statement out of the switch jumps to.
+    private String breakLabel;
+
+    /**
+     * Constructs an AST node for a switch-statement.
+     *
+     * @param line      line in which the switch-statement occurs in the source file.
+     * @param condition test expression.
+     * @param stmtGroup list of switch-statement groups.
+     */
+    public JSwitchStatement(int line, JExpression condition,
+                            ArrayList<SwitchStatementGroup> stmtGroup) {
         super(line);
         this.condition = condition;
         this.stmtGroup = stmtGroup;
@@ -25,60 +44,92 @@ public class JSwitchStatement extends JStatement {
     @Override
     public JStatement analyze(Context context) {
         condition = condition.analyze(context);
-        // Check for String, int (char is subsumed under int in this context)
-        if (condition.type() != Type.STRING && condition.type() != Type.INT) {
-            JAST.compilationUnit.reportSemanticError(line,
+        Type type = condition.type();
+        if (type != Type.STRING && type != Type.INT) {
+            JAST.compilationUnit().reportSemanticError(line,
                     "Switch condition must be of type int or String, found type: %s",
-                    condition.type());
+                    type);
         }
 
+        LocalContext switchContext = new LocalContext(context, this);
+        if (type == Type.STRING) {
+            offset = switchContext.nextOffset();
+        }
+        Hashtable<Object, Object> values = new Hashtable<Object, Object>();
+        boolean hasDefault = false;
         for (SwitchStatementGroup group : stmtGroup) {
-            group.analyze(context, condition.type());
+            group.analyze(switchContext, type);
+            for (JExpression label : group.getSwitchLabels()) {
+                if (label == null) {
+                    if (hasDefault) {
+                        JAST.compilationUnit().reportSemanticError(line,
+                                "Duplicate default label in switch");
+                    }
+                    hasDefault = true;
+                    continue;
+                }
+                Object value = label.constantValue();
+                if (value == null) {
+                    JAST.compilationUnit().reportSemanticError(label.line(),
+                            "Switch label must be a constant expression");
+                } else if (values.put(value, value) != null) {
+                    JAST.compilationUnit().reportSemanticError(label.line(),
+                            "Duplicate switch label: %s", label.type() == Type.STRING ?
+                                    "\"" + JAST.escape((String) value) + "\"" : value.toString());
+                }
+            }
         }
         return this;
     }
 
     @Override
     public void codegen(CLEmitter output) {
-        // First, generate code for the switch condition and store it in a local variable.
-        condition.codegen(output);
-
-        // Assuming index 1 (or another specific index) is available for use.
-        // This assumes you're not in a static method with no other local variables declared before this point.
-        // If this is not the case, adjust the index accordingly.
-        int conditionIndex = 1; // Adjust based on actual method context
-        output.addOneArgInstruction(ASTORE, conditionIndex);
+        breakLabel = output.createLabel();
 
-        String endSwitchLabel = output.createLabel();
-        ArrayList<String> caseLabels = new ArrayList<>();
-
-        for (int i = 0; i < stmtGroup.size(); i++) {
-            caseLabels.add(output.createLabel());
+        // The label of each group, and the values of its case labels.
+        ArrayList<String> groupLabels = new ArrayList<String>();
+        String defaultLabel = breakLabel;
+        for (SwitchStatementGroup group : stmtGroup) {
+            String groupLabel = output.createLabel();
+            groupLabels.add(groupLabel);
+            for (JExpression label : group.getSwitchLabels()) {
+                if (label == null) {
+                    defaultLabel = groupLabel;
+                }
+            }
         }
 
-        // Load the condition from the local variable for each comparison
-        for (int i = 0; i < stmtGroup.size(); i++) {
-            output.addOneArgInstruction(ALOAD, conditionIndex);
-
-            // Insert comparison logic here, similar to previously discussed, adjusting for String vs. int
-
-            // For each case label...
-            // Note: Actual comparison logic will vary based on the type (String vs. int)
-            // and needs to be inserted here.
+        if (condition.type() == Type.STRING) {
+            stringSwitch(output, groupLabels, defaultLabel);
+        } else {
+            TreeMap<Integer, String> targets = new TreeMap<Integer, String>();
+            for (int i = 0; i < stmtGroup.size(); i++) {
+                for (JExpression label : stmtGroup.get(i).getSwitchLabels()) {
+                    if (label != null) {
+                        targets.put((Integer) label.constantValue(), groupLabels.get(i));
+                    }
+                }
+            }
+            condition.codegen(output);
+            intSwitch(output, targets, defaultLabel);
         }
 
-        // Code generation for each case's block of statements
+        // The groups, in order; control falls through from each group to the next.
         for (int i = 0; i < stmtGroup.size(); i++) {
-            output.addLabel(caseLabels.get(i));
+            output.addLabel(groupLabels.get(i));
             for (JStatement statement : stmtGroup.get(i).getBlock()) {
                 statement.codegen(output);
             }
-            output.addBranchInstruction(GOTO, endSwitchLabel);
         }
-
-        output.addLabel(endSwitchLabel);
+        output.addLabel(breakLabel);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public String breakLabel() {
+        return breakLabel;
+    }
 
     /**
      * {@inheritDoc}
@@ -93,6 +144,81 @@ public class JSwitchStatement extends JStatement {
             group.toJSON(e);
         }
     }
+
+    // Generates code for a switch on the int on top of the operand stack, which jumps to
+    // targets.get(value), or to defaultLabel when there is no target for the value. Uses a
+    // tableswitch when its size and its (constant) speed outweigh the size and speed of a
+    // lookupswitch. The costs are weighed the way javac does: the time of a lookupswitch is taken
+    // to be linear in the number of targets (a conservative estimate, as the JVM may search the
+    // sorted pairs faster), and time counts thrice as much as space.
+    private void intSwitch(CLEmitter output, TreeMap<Integer, String> targets,
+                           String defaultLabel) {
+        if (targets.isEmpty()) {
+            output.addNoArgInstruction(POP);
+            output.addBranchInstruction(GOTO, defaultLabel);
+            return;
+        }
+        int lo = targets.firstKey();
+        int hi = targets.lastKey();
+        long n = targets.size();
+        long tableSpaceCost = 4 + ((long) hi - lo + 1);
+        long tableTimeCost = 3;
+        long lookupSpaceCost = 3 + 2 * n;
+        long lookupTimeCost = n;
+        if (tableSpaceCost + 3 * tableTimeCost <= lookupSpaceCost + 3 * lookupTimeCost) {
+            ArrayList<String> labels = new ArrayList<String>();
+            for (long value = lo; value <= hi; value++) {
+                String target = targets.get((int) value);
+                labels.add(target != null ? target : defaultLabel);
+            }
+            output.addTABLESWITCHInstruction(defaultLabel, lo, hi, labels);
+        } else {
+            output.addLOOKUPSWITCHInstruction(defaultLabel, targets.size(), targets);
+        }
+    }
+
+    // Generates code for a switch on a String, which saves the String in a local variable,
+    // switches on its hash code to a bucket of the case labels with that hash code, and in the
+    // bucket compares the String with each of the labels in turn.
+    private void stringSwitch(CLEmitter output, ArrayList<String> groupLabels,
+                              String defaultLabel) {
+        // The case labels with each hash code, and the groups they belong to.
+        TreeMap<Integer, ArrayList<String>> buckets = new TreeMap<Integer, ArrayList<String>>();
+        Hashtable<String, String> groupOf = new Hashtable<String, String>();
+        for (int i = 0; i < stmtGroup.size(); i++) {
+            for (JExpression label : stmtGroup.get(i).getSwitchLabels()) {
+                if (label != null) {
+                    String value = (String) label.constantValue();
+                    if (!buckets.containsKey(value.hashCode())) {
+                        buckets.put(value.hashCode(), new ArrayList<String>());
+                    }
+                    buckets.get(value.hashCode()).add(value);
+                    groupOf.put(value, groupLabels.get(i));
+                }
+            }
+        }
+
+        condition.codegen(output);
+        output.addOneArgInstruction(ASTORE, offset);
+        output.addOneArgInstruction(ALOAD, offset);
+        output.addMemberAccessInstruction(INVOKEVIRTUAL, "java/lang/String", "hashCode", "()I");
+        TreeMap<Integer, String> targets = new TreeMap<Integer, String>();
+        for (int hash : buckets.keySet()) {
+            targets.put(hash, output.createLabel());
+        }
+        intSwitch(output, targets, defaultLabel);
+        for (int hash : buckets.keySet()) {
+            output.addLabel(targets.get(hash));
+            for (String value : buckets.get(hash)) {
+                output.addOneArgInstruction(ALOAD, offset);
+                output.addLDCInstruction(value);
+                output.addMemberAccessInstruction(INVOKEVIRTUAL, "java/lang/String", "equals",
+                        "(Ljava/lang/Object;)Z");
+                output.addBranchInstruction(IFNE, groupOf.get(value));
+            }
+            output.addBranchInstruction(GOTO, defaultLabel);
+        }
+    }
 }
 
 /**
@@ -132,12 +258,14 @@ class SwitchStatementGroup {
      */
     public void analyze(Context context, Type switchType) {
         // Analyze each label
-        for (JExpression label : switchLabels) {
+        for (int i = 0; i < switchLabels.size(); i++) {
+            JExpression label = switchLabels.get(i);
             if (label != null) { // Skip for default case
                 label = label.analyze(context);
+                switchLabels.set(i, label);
                 // Ensure label type matches the switch expression's type
                 if (!label.type().equals(switchType)) {
-                    JAST.compilationUnit.reportSemanticError(label.line(),
+                    JAST.compilationUnit().reportSemanticError(label.line(),
                             "Switch label type %s does not match switch expression type %s.",
                             label.type(), switchType);
                 }
@@ -145,44 +273,9 @@ class SwitchStatementGroup {
         }
 
         // Analyze each statement in the block
-        for (JStatement statement : block) {
-            statement.analyze(context);
-        }
-    }
-
-    /**
-     * Generates the bytecode for the switch statement group.
-     *
-     * @param output      the CLEmitter for generating bytecode.
-     * @param switchExpr  the switch expression, needed for comparison in case of strings.
-     * @param defaultLabel the label to jump to if no case matches; only used if this group represents the default case.
-     * @param endLabel    the label to jump to after executing the block.
-     */
-    public void codegen(CLEmitter output, JExpression switchExpr, String defaultLabel, String endLabel) {
-        for (JExpression label : switchLabels) {
-            if (label != null) {
-                // Comparison logic for int and String types
-                switchExpr.codegen(output);
-                label.codegen(output);
-
-                if (switchExpr.type() == Type.STRING) {
-                    // Invoke String.equals for String type labels
-                    output.addMemberAccessInstruction(INVOKEVIRTUAL, "java/lang/String", "equals", "(Ljava/lang/Object;)Z");
-                    output.addBranchInstruction(IFNE, defaultLabel);
-                } else {
-                    // Direct comparison for int type labels
-                    output.addBranchInstruction(IF_ICMPEQ, defaultLabel);
-                }
-            }
+        for (int i = 0; i < block.size(); i++) {
+            block.set(i, (JStatement) block.get(i).analyze(context));
         }
-
-        // Generate bytecode for the block statements
-        for (JStatement statement : block) {
-            statement.codegen(output);
-        }
-
-        // Jump to end of switch after block execution, unless it's a fall-through case
-        output.addBranchInstruction(GOTO, endLabel);
     }
 
     /**
@@ -55,7 +55,7 @@ class JThisConstruction extends JExpression {
         }
 
         if (!properUseOfConstructor) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "this" + Type.argTypesAsString(argTypes)
                     + " must be first statement in the constructor's body");
             return this;
@@ -66,7 +66,7 @@ class JThisConstruction extends JExpression {
                 ((JTypeDecl) context.classContext.definition()).thisType().constructorFor(argTypes);
 
         if (constructor == null) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "No such constructor: this" + Type.argTypesAsString(argTypes));
 
         }
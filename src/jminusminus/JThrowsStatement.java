@@ -21,7 +21,7 @@ class JThrowsStatement extends JStatement {
         // Example of a naming convention check, not ideal but a workaround
         String typeName = expr.type().toString();
         if (!(typeName.endsWith("Exception") || typeName.endsWith("Error"))) {
-            JAST.compilationUnit.reportSemanticError(line,
+            JAST.compilationUnit().reportSemanticError(line,
                     "Expression in a throw statement must be an exception type, found: %s",
                     typeName);
         }
@@ -36,6 +36,12 @@ class JTryStatement extends JStatement {
 
     @Override
     public JTryStatement analyze(Context context) {
+        // The enclosing method can't be inlined (see JMethodDeclaration.canInline()).
+        MethodContext methodContext = context.methodContext();
+        if (methodContext != null && methodContext.methodDeclaration() != null) {
+            methodContext.methodDeclaration().confirmTryStatement();
+        }
+
         // Analyze the try block
         tryBlock = tryBlock.analyze(context);
 
@@ -32,6 +32,29 @@ abstract class JUnaryExpression extends JExpression {
         this.operand = operand;
     }
 
+    /**
+     * Returns the value of this expression given the value of its (constant) operand, or null if
+     * the value is not a constant.
+     *
+     * @param operandValue the value of the operand.
+     * @return the value of this expression, or null.
+     */
+    protected Object fold(Object operandValue) {
+        return null;
+    }
+
+    /**
+     * Returns a literal for the value of this (analyzed) expression if its operand is a constant
+     * and fold() computes its value, and this expression otherwise.
+     *
+     * @return a literal for the value of this expression, or this expression.
+     */
+    protected JExpression folded() {
+        Object operandValue = operand.constantValue();
+        Object value = operandValue == null || type == Type.ANY ? null : fold(operandValue);
+        return value == null ? this : JExpression.literal(line, value);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -67,7 +90,14 @@ class JLogicalNotOp extends JUnaryExpression {
         operand = (JExpression) operand.analyze(context);
         operand.type().mustMatchExpected(line(), Type.BOOLEAN);
         type = Type.BOOLEAN;
-        return this;
+        return folded();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Object fold(Object operandValue) {
+        return operandValue instanceof Boolean ? !(Boolean) operandValue : null;
     }
 
     /**
@@ -113,7 +143,14 @@ class JNegateOp extends JUnaryExpression {
         operand = operand.analyze(context);
         operand.type().mustMatchExpected(line(), Type.INT);
         type = Type.INT;
-        return this;
+        return folded();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Object fold(Object operandValue) {
+        return operandValue instanceof Integer ? -(Integer) operandValue : null;
     }
 
     /**
@@ -144,7 +181,7 @@ class JPostDecrementOp extends JUnaryExpression {
      */
     public JExpression analyze(Context context) {
         if (!(operand instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line, "Operand to -- must have an LValue.");
+            JAST.compilationUnit().reportSemanticError(line, "Operand to -- must have an LValue.");
             type = Type.ANY;
         } else {
             operand = (JExpression) operand.analyze(context);
@@ -200,7 +237,7 @@ class JPreIncrementOp extends JUnaryExpression {
      */
     public JExpression analyze(Context context) {
         if (!(operand instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line, "Operand to ++ must have an LValue.");
+            JAST.compilationUnit().reportSemanticError(line, "Operand to ++ must have an LValue.");
             type = Type.ANY;
         } else {
             operand = (JExpression) operand.analyze(context);
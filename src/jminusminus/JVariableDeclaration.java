@@ -28,6 +28,15 @@ class JVariableDeclaration extends JStatement {
         initializations = new ArrayList<JStatement>();
     }
 
+    /**
+     * Returns the variable declarators.
+     *
+     * @return the variable declarators.
+     */
+    public ArrayList<JVariableDeclarator> decls() {
+        return decls;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -40,7 +49,7 @@ class JVariableDeclaration extends JStatement {
             // First, check for shadowing.
             IDefn previousDefn = context.lookup(decl.name());
             if (previousDefn != null && previousDefn instanceof LocalVariableDefn) {
-                JAST.compilationUnit.reportSemanticError(decl.line(),
+                JAST.compilationUnit().reportSemanticError(decl.line(),
                         "The name " + decl.name() + " overshadows another local variable");
             }
 
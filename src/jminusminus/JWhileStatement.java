@@ -5,7 +5,9 @@ package jminusminus;
 import static jminusminus.CLConstants.*;
 
 /**
- * The AST node for a while-statement.
+ * The AST node for a while-statement. The loop is rotated, so that the test comes after the body:
+ * control enters the loop by jumping to the test, which branches back to the body while it holds.
+ * Each iteration thus takes one (conditional) branch rather than two.
  */
 class JWhileStatement extends JStatement {
     // Test expression.
@@ -14,6 +16,9 @@ class JWhileStatement extends JStatement {
     // Body.
     private JStatement body;
 
+    // Label that a break statement out of the loop jumps to.
+    private String breakLabel;
+
     /**
      * Constructs an AST node for a while-statement.
      *
@@ -33,7 +38,7 @@ class JWhileStatement extends JStatement {
     public JWhileStatement analyze(Context context) {
         condition = condition.analyze(context);
         condition.type().mustMatchExpected(line(), Type.BOOLEAN);
-        body = (JStatement) body.analyze(context);
+        body = (JStatement) body.analyze(new LocalContext(context, this));
         return this;
     }
 
@@ -42,14 +47,26 @@ class JWhileStatement extends JStatement {
      */
     public void codegen(CLEmitter output) {
         String test = output.createLabel();
+        String top = output.createLabel();
         String out = output.createLabel();
-        output.addLabel(test);
-        condition.codegen(output, out, false);
+        breakLabel = out;
+        if (!Boolean.TRUE.equals(condition.constantValue())) {
+            output.addBranchInstruction(GOTO, test);
+        }
+        output.addLabel(top);
         body.codegen(output);
-        output.addBranchInstruction(GOTO, test);
+        output.addLabel(test);
+        condition.codegen(output, top, true);
         output.addLabel(out);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public String breakLabel() {
+        return breakLabel;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -4,14 +4,19 @@ package jminusminus;
 
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Driver class for j-- compiler using JavaCC front-end. This is the main entry point for the
  * compiler. The compiler proceeds as follows:
  * <ol>
- *   <li>It reads arguments that affects its behavior.</li>
+ *   <li>It reads arguments that affects its behavior, and the names of the source files to
+ *   compile, which may also be listed in an @argfile.</li>
  *
- *   <li>It builds a scanner.</li>
+ *   <li>It builds a scanner for each source file.</li>
  *
  *   <li>It builds a parser (using the scanner) and parses the input for producing an abstact
  *   syntax tree (AST).</li>
@@ -41,17 +46,27 @@ public class JavaCCMain {
      */
     public static void main(String args[]) {
         String caller = "java jminusminus.JavaCCMain";
-        String sourceFile = "";
+        ArrayList<String> sourceFiles = new ArrayList<String>();
         String debugOption = "";
         String outputDir = ".";
         boolean spimOutput = false;
         String registerAllocation = "";
+        int threads = 1;
+        int majorVersion = CLConstants.MAJOR_VERSION;
+        int optimizationLevel = 0;
+        int packThreshold = 32;
         errorHasOccurred = false;
+        try {
+            args = Main.expandArgFiles(args);
+        } catch (IOException e) {
+            System.err.println("Error: cannot read argfile " + e.getMessage() + ".");
+            return;
+        }
         for (int i = 0; i < args.length; i++) {
             if (args[i].equals("javaccj--")) {
                 caller = "javaccj--";
             } else if (args[i].endsWith(".java")) {
-                sourceFile = args[i];
+                sourceFiles.add(args[i]);
             } else if (args[i].equals("-t") || args[i].equals("-p")
                     || args[i].equals("-pa") || args[i].equals("-a")) {
                 debugOption = args[i];
@@ -64,7 +79,7 @@ public class JavaCCMain {
                         !registerAllocation.equals("linear") &&
                         !registerAllocation.equals("graph")
                         || registerAllocation.equals("")) {
-                    printUsage(caller);
+                    Main.printUsage(caller);
                     return;
                 }
             } else if (args[i].endsWith("-r") && (i + 1) < args.length) {
@@ -72,118 +87,118 @@ public class JavaCCMain {
                         .parseInt(args[++i]));
                 NPhysicalRegister.MAX_COUNT = Math.max(1,
                         NPhysicalRegister.MAX_COUNT);
+            } else if (args[i].endsWith("-j") && (i + 1) < args.length) {
+                threads = Math.max(1, Integer.parseInt(args[++i]));
+            } else if (args[i].equals("-pack") && (i + 1) < args.length) {
+                packThreshold = Math.max(1, Integer.parseInt(args[++i]));
+            } else if (args[i].equals("-O")) {
+                optimizationLevel = 2;
+            } else if (args[i].matches("-O[0-2]")) {
+                optimizationLevel = args[i].charAt(2) - '0';
+            } else if (args[i].equals("-target") && (i + 1) < args.length) {
+                majorVersion = Main.majorVersionFor(args[++i]);
+                if (majorVersion == -1) {
+                    Main.printUsage(caller);
+                    return;
+                }
             } else {
-                printUsage(caller);
+                Main.printUsage(caller);
                 return;
             }
         }
-        if (sourceFile.equals("")) {
-            printUsage(caller);
+        if (sourceFiles.isEmpty()) {
+            Main.printUsage(caller);
             return;
         }
+        Main.setOptions(spimOutput, majorVersion, optimizationLevel, packThreshold);
+
+        if (debugOption.equals("-t")) {
+            // Just tokenize input and print the tokens to STDOUT.
+            for (String sourceFile : sourceFiles) {
+                JavaCCParserTokenManager javaCCScanner = null;
+                try {
+                    javaCCScanner = new JavaCCParserTokenManager(new
+                            SimpleCharStream(new FileInputStream(sourceFile), 1, 1));
+                } catch (FileNotFoundException e) {
+                    System.err.println("Error: file " + sourceFile + " not found.");
+                    errorHasOccurred = true;
+                    continue;
+                }
+                Token token;
+                do {
+                    token = javaCCScanner.getNextToken();
+                    if (token.kind == JavaCCParserConstants.ERROR) {
+                        System.err.printf("%s:%d: Unidentified input token: '%s'\n", sourceFile,
+                                token.beginLine, token.image);
+                        errorHasOccurred |= true;
+                    } else {
+                        System.out.printf("%d\t : %s = %s\n", token.beginLine,
+                                JavaCCParserConstants.tokenImage[token.kind], token.image);
+                    }
+                } while (token.kind != JavaCCParserConstants.EOF);
+            }
+            return;
+        }
+
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        try {
+            // Parse input, one compilation unit per source file.
+            final boolean[] parseErrors = new boolean[sourceFiles.size()];
+            ArrayList<Callable<JCompilationUnit>> parses =
+                    new ArrayList<Callable<JCompilationUnit>>();
+            for (int i = 0; i < sourceFiles.size(); i++) {
+                final String sourceFile = sourceFiles.get(i);
+                final int index = i;
+                parses.add(new Callable<JCompilationUnit>() {
+                    public JCompilationUnit call() {
+                        return parse(sourceFile, parseErrors, index);
+                    }
+                });
+            }
+            ArrayList<JCompilationUnit> asts = Main.invokeAll(pool, parses);
+            for (int i = 0; i < asts.size(); i++) {
+                errorHasOccurred |= parseErrors[i];
+                if (debugOption.equals("-p") && asts.get(i) != null) {
+                    JSONElement json = new JSONElement();
+                    asts.get(i).toJSON(json);
+                    System.out.println(json.toString());
+                }
+            }
+            if (errorHasOccurred || debugOption.equals("-p")) {
+                return;
+            }
+
+            errorHasOccurred |= Main.compile(asts, pool, debugOption, outputDir, spimOutput,
+                    registerAllocation);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
 
+    // Parses the specified source file and returns its AST, or null if the file cannot be read
+    // or parsed. Sets errors[index] if the file cannot be read or is in error.
+    private static JCompilationUnit parse(String sourceFile, boolean[] errors, int index) {
         JavaCCParserTokenManager javaCCScanner = null;
         try {
             javaCCScanner = new JavaCCParserTokenManager(new
                     SimpleCharStream(new FileInputStream(sourceFile), 1, 1));
         } catch (FileNotFoundException e) {
             System.err.println("Error: file " + sourceFile + " not found.");
+            errors[index] = true;
+            return null;
         }
-
-        if (debugOption.equals("-t")) {
-            // Just tokenize input and print the tokens to STDOUT.
-            Token token;
-            do {
-                token = javaCCScanner.getNextToken();
-                if (token.kind == JavaCCParserConstants.ERROR) {
-                    System.err.printf("%s:%d: Unidentified input token: '%s'\n", sourceFile,
-                            token.beginLine, token.image);
-                    errorHasOccurred |= true;
-                } else {
-                    System.out.printf("%d\t : %s = %s\n", token.beginLine,
-                            JavaCCParserConstants.tokenImage[token.kind], token.image);
-                }
-            } while (token.kind != JavaCCParserConstants.EOF);
-            return;
-        }
-
-        // Parse input.
-        JCompilationUnit ast = null;
         JavaCCParser javaCCParser = new JavaCCParser(javaCCScanner);
         javaCCParser.fileName(sourceFile);
         try {
-            ast = javaCCParser.compilationUnit();
-            errorHasOccurred |= javaCCParser.errorHasOccurred();
+            JCompilationUnit ast = javaCCParser.compilationUnit();
+            errors[index] = javaCCParser.errorHasOccurred();
+            return ast;
         } catch (ParseException e) {
             System.err.println(e.getMessage());
+            errors[index] = true;
+            return null;
         }
-        if (debugOption.equals("-p")) {
-            JSONElement json = new JSONElement();
-            ast.toJSON(json);
-            System.out.println(json.toString());
-            return;
-        }
-        if (errorHasOccurred) {
-            return;
-        }
-
-        // Do pre-analysis.
-        ast.preAnalyze();
-        errorHasOccurred |= JAST.compilationUnit.errorHasOccurred();
-        if (debugOption.equals("-pa")) {
-            JSONElement json = new JSONElement();
-            ast.toJSON(json);
-            System.out.println(json.toString());
-            return;
-        }
-        if (errorHasOccurred) {
-            return;
-        }
-
-        // Do analysis.
-        ast.analyze(null);
-        errorHasOccurred |= JAST.compilationUnit.errorHasOccurred();
-        if (debugOption.equals("-a")) {
-            JSONElement json = new JSONElement();
-            ast.toJSON(json);
-            System.out.println(json.toString());
-            return;
-        }
-        if (errorHasOccurred) {
-            return;
-        }
-
-        // Generate JVM code.
-        CLEmitter clEmitter = new CLEmitter(!spimOutput);
-        clEmitter.destinationDir(outputDir);
-        ast.codegen(clEmitter);
-        errorHasOccurred |= clEmitter.errorHasOccurred();
-        if (errorHasOccurred) {
-            return;
-        }
-
-        // If SPIM output was asked for, convert the in-memory JVM instructions to SPIM using the
-        // specified register allocation scheme.
-        if (spimOutput) {
-            NEmitter nEmitter = new NEmitter(sourceFile, ast.clFiles(), registerAllocation);
-            nEmitter.destinationDir(outputDir);
-            nEmitter.write();
-            errorHasOccurred |= nEmitter.errorHasOccurred();
-        }
-    }
-
-    // Prints command usage to STDOUT.
-    private static void printUsage(String caller) {
-        String usage = "Usage: " + caller
-                + " <options> <source file>\n"
-                + "Where possible options include:\n"
-                + "  -t  Only tokenize input and print tokens to STDOUT\n"
-                + "  -p  Only parse input and print AST to STDOUT\n"
-                + "  -pa Only parse and pre-analyze input and print AST to STDOUT\n"
-                + "  -a  Only parse, pre-analyze, and analyze input and print AST to STDOUT\n"
-                + "  -s  <naive|linear|graph> Generate SPIM code\n"
-                + "  -r  <num> Physical registers (1-18) available for allocation; default = 8\n"
-                + "  -d  <dir> Specify where to place output files; default = .";
-        System.out.println(usage);
     }
 }
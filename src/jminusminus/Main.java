@@ -3,6 +3,14 @@
 package jminusminus;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import static jminusminus.TokenKind.EOF;
 
@@ -10,9 +18,10 @@ import static jminusminus.TokenKind.EOF;
  * Driver class for j-- compiler using hand-written front-end. This is the main entry point for
  * the compiler. The compiler proceeds as follows:
  * <ol>
- *   <li>It reads arguments that affects its behavior.</li>
+ *   <li>It reads arguments that affects its behavior, and the names of the source files to
+ *   compile, which may also be listed in an @argfile.</li>
  *
- *   <li>It builds a scanner.</li>
+ *   <li>It builds a scanner for each source file.</li>
  *
  *   <li>It builds a parser (using the scanner) and parses the input for producing an abstact
  *   syntax tree (AST).</li>
@@ -42,17 +51,27 @@ public class Main {
      */
     public static void main(String args[]) {
         String caller = "java jminusminus.Main";
-        String sourceFile = "";
+        ArrayList<String> sourceFiles = new ArrayList<String>();
         String debugOption = "";
         String outputDir = ".";
         boolean spimOutput = false;
         String registerAllocation = "";
+        int threads = 1;
+        int majorVersion = CLConstants.MAJOR_VERSION;
+        int optimizationLevel = 0;
+        int packThreshold = 32;
         errorHasOccurred = false;
+        try {
+            args = expandArgFiles(args);
+        } catch (IOException e) {
+            System.err.println("Error: cannot read argfile " + e.getMessage() + ".");
+            return;
+        }
         for (int i = 0; i < args.length; i++) {
             if (args[i].equals("j--")) {
                 caller = "j--";
             } else if (args[i].endsWith(".java")) {
-                sourceFile = args[i];
+                sourceFiles.add(args[i]);
             } else if (args[i].equals("-t") || args[i].equals("-p") || args[i].equals("-pa") ||
                     args[i].equals("-a")) {
                 debugOption = args[i];
@@ -69,100 +88,331 @@ public class Main {
             } else if (args[i].endsWith("-r") && (i + 1) < args.length) {
                 NPhysicalRegister.MAX_COUNT = Math.min(18, Integer.parseInt(args[++i]));
                 NPhysicalRegister.MAX_COUNT = Math.max(1, NPhysicalRegister.MAX_COUNT);
+            } else if (args[i].endsWith("-j") && (i + 1) < args.length) {
+                threads = Math.max(1, Integer.parseInt(args[++i]));
+            } else if (args[i].equals("-pack") && (i + 1) < args.length) {
+                packThreshold = Math.max(1, Integer.parseInt(args[++i]));
+            } else if (args[i].equals("-O")) {
+                optimizationLevel = 2;
+            } else if (args[i].matches("-O[0-2]")) {
+                optimizationLevel = args[i].charAt(2) - '0';
+            } else if (args[i].equals("-target") && (i + 1) < args.length) {
+                majorVersion = majorVersionFor(args[++i]);
+                if (majorVersion == -1) {
+                    printUsage(caller);
+                    return;
+                }
             } else {
                 printUsage(caller);
                 return;
             }
         }
-        if (sourceFile.equals("")) {
+        if (sourceFiles.isEmpty()) {
             printUsage(caller);
             return;
         }
-
-        LookaheadScanner scanner = null;
-        try {
-            scanner = new LookaheadScanner(sourceFile);
-        } catch (FileNotFoundException e) {
-            System.err.println("Error: file " + sourceFile + " not found.");
-            return;
-        }
+        setOptions(spimOutput, majorVersion, optimizationLevel, packThreshold);
 
         if (debugOption.equals("-t")) {
             // Just tokenize input and print the tokens to STDOUT.
-            TokenInfo token;
-            do {
-                scanner.next();
-                token = scanner.token();
-                System.out.printf("%d\t : %s = %s\n", token.line(), token.tokenRep(),
-                        token.image());
-            } while (token.kind() != EOF);
-            errorHasOccurred |= scanner.errorHasOccured();
+            for (String sourceFile : sourceFiles) {
+                LookaheadScanner scanner = null;
+                try {
+                    scanner = new LookaheadScanner(sourceFile);
+                } catch (FileNotFoundException e) {
+                    System.err.println("Error: file " + sourceFile + " not found.");
+                    errorHasOccurred = true;
+                    continue;
+                }
+                TokenInfo token;
+                do {
+                    scanner.next();
+                    token = scanner.token();
+                    System.out.printf("%d\t : %s = %s\n", token.line(), token.tokenRep(),
+                            token.image());
+                } while (token.kind() != EOF);
+                errorHasOccurred |= scanner.errorHasOccured();
+            }
             return;
         }
 
-        // Parse input.
-        Parser parser = new Parser(scanner);
-        JCompilationUnit ast = parser.compilationUnit();
-        errorHasOccurred |= parser.errorHasOccurred();
-        if (debugOption.equals("-p")) {
-            JSONElement json = new JSONElement();
-            ast.toJSON(json);
-            System.out.println(json.toString());
-            return;
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        try {
+            // Parse input, one compilation unit per source file.
+            final boolean[] parseErrors = new boolean[sourceFiles.size()];
+            ArrayList<Callable<JCompilationUnit>> parses =
+                    new ArrayList<Callable<JCompilationUnit>>();
+            for (int i = 0; i < sourceFiles.size(); i++) {
+                final String sourceFile = sourceFiles.get(i);
+                final int index = i;
+                parses.add(new Callable<JCompilationUnit>() {
+                    public JCompilationUnit call() {
+                        return parse(sourceFile, parseErrors, index);
+                    }
+                });
+            }
+            ArrayList<JCompilationUnit> asts = invokeAll(pool, parses);
+            for (int i = 0; i < asts.size(); i++) {
+                errorHasOccurred |= parseErrors[i];
+                if (debugOption.equals("-p") && asts.get(i) != null) {
+                    JSONElement json = new JSONElement();
+                    asts.get(i).toJSON(json);
+                    System.out.println(json.toString());
+                }
+            }
+            if (errorHasOccurred || debugOption.equals("-p")) {
+                return;
+            }
+
+            errorHasOccurred |= compile(asts, pool, debugOption, outputDir, spimOutput,
+                    registerAllocation);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
         }
-        if (errorHasOccurred) {
-            return;
+    }
+
+    /**
+     * Sets the code generation options that the command-line options call for, those of the
+     * compiler and of the SPIM back end.
+     *
+     * @param spimOutput        whether to generate SPIM code.
+     * @param majorVersion      the major version of the class files to generate.
+     * @param optimizationLevel the optimization level (0, 1 or 2).
+     * @param packThreshold     the number of constant elements from which array initializers are
+     *                          packed into strings.
+     */
+    static void setOptions(boolean spimOutput, int majorVersion, int optimizationLevel,
+                           int packThreshold) {
+        CLEmitter.setMajorVersion(majorVersion);
+
+        // The SPIM back end translates only the JVM code that j-- itself generates, so the
+        // peephole optimizer is for class files only. So is tail call elimination, since the
+        // back end does not yet resolve the phi functions at a method's entry correctly.
+        boolean optimize = optimizationLevel >= 1;
+        CLEmitter.setOptimize(optimize && !spimOutput);
+        JMethodDeclaration.setEliminateTailCalls(optimize && !spimOutput);
+
+        // Inlining small methods, on the other hand, saves SPIM the most, as calls are dear there.
+        JMethodDeclaration.setInlineCalls(optimize);
+
+        // The back end optimizes the HIR (in SSA form) of each method before translating it to
+        // LIR.
+        NHIROptimizer.setLevel(optimizationLevel);
+
+        // String concatenation compiles to invokedynamic where the target has StringConcatFactory;
+        // the SPIM back end knows only StringBuilder, though.
+        JStringConcatenationOp.setUseInvokeDynamic(!spimOutput &&
+                majorVersion >= CLConstants.INDY_STRING_CONCAT_MAJOR_VERSION);
+
+        // Packing large constant arrays into strings is also for class files only, since the SPIM
+        // back end has no String methods to decode them with.
+        JArrayInitializer.setPackThreshold(spimOutput ? Integer.MAX_VALUE : packThreshold);
+    }
+
+    /**
+     * Returns the specified command-line arguments, with each argument of the form @argfile
+     * replaced by the whitespace-separated arguments (options and source files) in the file
+     * argfile.
+     *
+     * @param args the command-line arguments.
+     * @return the expanded command-line arguments.
+     * @throws IOException if an argfile cannot be read.
+     */
+    static String[] expandArgFiles(String[] args) throws IOException {
+        ArrayList<String> expanded = new ArrayList<String>();
+        for (String arg : args) {
+            if (arg.startsWith("@") && arg.length() > 1) {
+                for (String line : Files.readAllLines(Paths.get(arg.substring(1)))) {
+                    for (String token : line.trim().split("\\s+")) {
+                        if (!token.isEmpty()) {
+                            expanded.add(token);
+                        }
+                    }
+                }
+            } else {
+                expanded.add(arg);
+            }
         }
+        return expanded.toArray(new String[0]);
+    }
+
+    /**
+     * Returns the major version of the class files for the specified Java release (eg, 5, 1.6,
+     * or 17), or -1 if the release is not one that j-- can target: a release before 5, or after
+     * that of the JVM that runs the compiler.
+     *
+     * @param release the Java release.
+     * @return the major version of the class files for the release, or -1.
+     */
+    static int majorVersionFor(String release) {
+        try {
+            int feature = Integer.parseInt(release.startsWith("1.") ? release.substring(2) :
+                    release);
+            return feature >= 5 && feature <= Runtime.version().feature() ? feature + 44 : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Pre-analyzes, analyzes, and generates code for the specified (parsed) compilation units.
+     * The types declared in all of the units are registered in one context before any of them is
+     * pre-analyzed, so the units may refer to one another's types; each phase runs over all the
+     * units before the next begins.
+     * <p>
+     * If a pool is given, the units are analyzed, and their JVM code generated, concurrently on
+     * the pool, and so are the methods of each unit when SPIM code is generated. Pre-analysis
+     * builds the units' partial classes superclasses first, since a unit reads the partial
+     * classes of the units it extends, so it runs on the calling thread.
+     *
+     * @param asts               the compilation units.
+     * @param pool               the pool on which to compile the units, or null.
+     * @param debugOption        the debug option (-pa or -a), or the empty string.
+     * @param outputDir          where to place output files.
+     * @param spimOutput         whether to generate SPIM code.
+     * @param registerAllocation the register allocation scheme for SPIM code.
+     * @return true if an error occurred in any of the units, and false otherwise.
+     */
+    static boolean compile(ArrayList<JCompilationUnit> asts, ForkJoinPool pool,
+                           String debugOption, String outputDir, final boolean spimOutput,
+                           String registerAllocation) {
+        boolean isInError = false;
 
         // Do pre-analysis.
-        ast.preAnalyze();
-        errorHasOccurred |= JAST.compilationUnit.errorHasOccurred();
-        if (debugOption.equals("-pa")) {
-            JSONElement json = new JSONElement();
-            ast.toJSON(json);
-            System.out.println(json.toString());
-            return;
+        CompilationUnitContext registry = new CompilationUnitContext();
+        for (JCompilationUnit ast : asts) {
+            ast.declareTypes(registry);
         }
-        if (errorHasOccurred) {
-            return;
+        JCompilationUnit.preAnalyze(asts);
+        for (JCompilationUnit ast : asts) {
+            isInError |= ast.errorHasOccurred();
+            if (debugOption.equals("-pa")) {
+                JSONElement json = new JSONElement();
+                ast.toJSON(json);
+                System.out.println(json.toString());
+            }
+        }
+        if (isInError || debugOption.equals("-pa")) {
+            return isInError;
         }
 
         // Do analysis.
-        ast.analyze(null);
-        errorHasOccurred |= JAST.compilationUnit.errorHasOccurred();
+        ArrayList<Callable<Boolean>> analyses = new ArrayList<Callable<Boolean>>();
+        for (final JCompilationUnit ast : asts) {
+            analyses.add(new Callable<Boolean>() {
+                public Boolean call() {
+                    ast.analyze(null);
+                    return ast.errorHasOccurred();
+                }
+            });
+        }
+        isInError |= invokeAll(pool, analyses).contains(true);
         if (debugOption.equals("-a")) {
-            JSONElement json = new JSONElement();
-            ast.toJSON(json);
-            System.out.println(json.toString());
-            return;
+            for (JCompilationUnit ast : asts) {
+                JSONElement json = new JSONElement();
+                ast.toJSON(json);
+                System.out.println(json.toString());
+            }
         }
-        if (errorHasOccurred) {
-            return;
+        if (isInError || debugOption.equals("-a")) {
+            return isInError;
         }
 
-        // Generate JVM code.
-        CLEmitter clEmitter = new CLEmitter(!spimOutput);
-        clEmitter.destinationDir(outputDir);
-        ast.codegen(clEmitter);
-        errorHasOccurred |= clEmitter.errorHasOccurred();
-        if (errorHasOccurred) {
-            return;
+        // Generate JVM code, with an emitter for each unit.
+        final String destinationDir = outputDir;
+        ArrayList<Callable<Boolean>> codegens = new ArrayList<Callable<Boolean>>();
+        for (final JCompilationUnit ast : asts) {
+            codegens.add(new Callable<Boolean>() {
+                public Boolean call() {
+                    CLEmitter clEmitter = new CLEmitter(!spimOutput);
+                    clEmitter.destinationDir(destinationDir);
+                    ast.codegen(clEmitter);
+                    return clEmitter.errorHasOccurred();
+                }
+            });
+        }
+        isInError |= invokeAll(pool, codegens).contains(true);
+        if (isInError) {
+            return isInError;
         }
 
         // If SPIM output was asked for, convert the in-memory JVM instructions to SPIM using the
         // specified register allocation scheme.
         if (spimOutput) {
-            NEmitter nEmitter = new NEmitter(sourceFile, ast.clFiles(), registerAllocation);
-            nEmitter.destinationDir(outputDir);
-            nEmitter.write();
-            errorHasOccurred |= nEmitter.errorHasOccurred();
+            for (JCompilationUnit ast : asts) {
+                NEmitter nEmitter = new NEmitter(ast.fileName(), ast.clFiles(), registerAllocation,
+                        pool);
+                nEmitter.destinationDir(outputDir);
+                nEmitter.write();
+                isInError |= nEmitter.errorHasOccurred();
+            }
+        }
+        return isInError;
+    }
+
+    /**
+     * Runs the specified tasks on the specified pool, or one after another on the calling thread
+     * if the pool is null, and returns their results in the order of the tasks. An exception
+     * thrown by a task is rethrown on the calling thread.
+     *
+     * @param pool  the pool on which to run the tasks, or null.
+     * @param tasks the tasks.
+     * @return the results of the tasks.
+     */
+    static <T> ArrayList<T> invokeAll(ForkJoinPool pool, ArrayList<Callable<T>> tasks) {
+        ArrayList<T> results = new ArrayList<T>();
+        try {
+            if (pool == null) {
+                for (Callable<T> task : tasks) {
+                    results.add(task.call());
+                }
+            } else {
+                for (Future<T> result : pool.invokeAll(tasks)) {
+                    results.add(result.get());
+                }
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        return results;
+    }
+
+    // Parses the specified source file and returns its AST, or null if the file cannot be read.
+    // Sets errors[index] if the file cannot be read or is in error.
+    private static JCompilationUnit parse(String sourceFile, boolean[] errors, int index) {
+        LookaheadScanner scanner = null;
+        try {
+            scanner = new LookaheadScanner(sourceFile);
+        } catch (FileNotFoundException e) {
+            System.err.println("Error: file " + sourceFile + " not found.");
+            errors[index] = true;
+            return null;
         }
+        Parser parser = new Parser(scanner);
+        JCompilationUnit ast = parser.compilationUnit();
+        errors[index] = parser.errorHasOccurred();
+        return ast;
     }
 
-    // Prints command usage to STDOUT.
-    private static void printUsage(String caller) {
+    /**
+     * Prints command usage to STDOUT.
+     *
+     * @param caller the command that runs the compiler.
+     */
+    static void printUsage(String caller) {
         String usage = "Usage: " + caller
-                + " <options> <source file>\n"
+                + " <options> <source files>\n"
                 + "Where possible options include:\n"
                 + "  -t  Only tokenize input and print tokens to STDOUT\n"
                 + "  -p  Only parse input and print AST to STDOUT\n"
@@ -170,7 +420,18 @@ public class Main {
                 + "  -a  Only parse, pre-analyze, and analyze input and print AST to STDOUT\n"
                 + "  -s  <naive|linear|graph> Generate SPIM code\n"
                 + "  -r  <num> Physical registers (1-18) available for allocation; default = 8\n"
-                + "  -d  <dir> Specify where to place output files; default = .";
+                + "  -d  <dir> Specify where to place output files; default = .\n"
+                + "  -j  <num> Threads on which to compile the source files; default = 1\n"
+                + "  -target <release> Java release (5 on) to compile for; default = 5\n"
+                + "  -pack <num> Pack the elements of int, char and boolean array initializers\n"
+                + "      with <num> or more constant elements into strings; default = 32\n"
+                + "  -O[<level>] Optimize at level 0 (none; the default), 1, or 2 (the same as\n"
+                + "      -O): inline calls to small static and private methods, compile self\n"
+                + "      tail calls in static methods as jumps, and rewrite the JVM code of each\n"
+                + "      method with a peephole optimizer; for SPIM, propagate constants and\n"
+                + "      copies through the HIR and eliminate dead code, and at level 2, also\n"
+                + "      eliminate redundant expressions\n"
+                + "Source files may also be listed, with options, in an @argfile.";
         System.out.println(usage);
     }
 }
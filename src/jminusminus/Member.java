@@ -2,18 +2,33 @@
 
 package jminusminus;
 
+import java.lang.reflect.Modifier;
+
 /**
  * This abstract base class provides a wrapper for class members (ie, fields, methods, and
- * constructors).
+ * constructors). A member is represented underneath by its entry in the class file of the class
+ * that declares it.
  */
 abstract class Member {
+    // Internal representation of this member.
+    private CLClass.MemberInfo member;
+
+    /**
+     * Constructs a member given its internal representation.
+     *
+     * @param member the internal representation.
+     */
+    protected Member(CLClass.MemberInfo member) {
+        this.member = member;
+    }
+
     /**
      * Returns this member's (simple) name.
      *
      * @return this member's (simple) name.
      */
     public String name() {
-        return member().getName();
+        return member.name;
     }
 
     /**
@@ -22,7 +37,7 @@ abstract class Member {
      * @return the type in which this member was declared.
      */
     public Type declaringType() {
-        return Type.typeFor(member().getDeclaringClass());
+        return Type.typeForDescriptor("L" + member.declaringClass.name + ";");
     }
 
     /**
@@ -31,7 +46,7 @@ abstract class Member {
      * @return true if this member is static, and false otherwise.
      */
     public boolean isStatic() {
-        return java.lang.reflect.Modifier.isStatic(member().getModifiers());
+        return Modifier.isStatic(member.accessFlags);
     }
 
     /**
@@ -40,7 +55,7 @@ abstract class Member {
      * @return true if this member is public, and false otherwise.
      */
     public boolean isPublic() {
-        return java.lang.reflect.Modifier.isPublic(member().getModifiers());
+        return Modifier.isPublic(member.accessFlags);
     }
 
     /**
@@ -49,7 +64,7 @@ abstract class Member {
      * @return true if this member is protected, and false otherwise.
      */
     public boolean isProtected() {
-        return java.lang.reflect.Modifier.isProtected(member().getModifiers());
+        return Modifier.isProtected(member.accessFlags);
     }
 
     /**
@@ -58,7 +73,7 @@ abstract class Member {
      * @return true if this member is private, and false otherwise.
      */
     public boolean isPrivate() {
-        return java.lang.reflect.Modifier.isPrivate(member().getModifiers());
+        return Modifier.isPrivate(member.accessFlags);
     }
 
     /**
@@ -67,7 +82,7 @@ abstract class Member {
      * @return true if this member is abstract, and false otherwise.
      */
     public boolean isAbstract() {
-        return java.lang.reflect.Modifier.isAbstract(member().getModifiers());
+        return Modifier.isAbstract(member.accessFlags);
     }
 
     /**
@@ -76,7 +91,7 @@ abstract class Member {
      * @return true if this member is final, and false otherwise.
      */
     public boolean isFinal() {
-        return java.lang.reflect.Modifier.isFinal(member().getModifiers());
+        return Modifier.isFinal(member.accessFlags);
     }
 
     /**
@@ -84,49 +99,22 @@ abstract class Member {
      *
      * @return the JVM descriptor for this member.
      */
-    public abstract String toDescriptor();
-
-    /**
-     * Returns this member's internal representation.
-     *
-     * @return this member's internal representation.
-     */
-    protected abstract java.lang.reflect.Member member();
+    public String toDescriptor() {
+        return member.descriptor;
+    }
 }
 
 /**
  * This class provides a wrapper for constructors.
  */
 class Constructor extends Member {
-    // Internal representation of this constructor.
-    private java.lang.reflect.Constructor constructor;
-
     /**
      * Constructs a constructor given its internal representation.
      *
      * @param constructor internal representation.
      */
-    public Constructor(java.lang.reflect.Constructor constructor) {
-        this.constructor = constructor;
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public String toDescriptor() {
-        String descriptor = "(";
-        for (Class paramType : constructor.getParameterTypes()) {
-            descriptor += Type.typeFor(paramType).toDescriptor();
-        }
-        descriptor += ")V";
-        return descriptor;
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    protected java.lang.reflect.Member member() {
-        return constructor;
+    public Constructor(CLClass.MemberInfo constructor) {
+        super(constructor);
     }
 }
 
@@ -135,38 +123,52 @@ class Constructor extends Member {
  */
 class Field extends Member {
     // Internal representation of this field.
-    private java.lang.reflect.Field field;
+    private CLClass.MemberInfo field;
 
     /**
      * Constructs a field given its internal representation.
      *
      * @param field internal representation.
      */
-    public Field(java.lang.reflect.Field field) {
+    public Field(CLClass.MemberInfo field) {
+        super(field);
         this.field = field;
     }
 
     /**
-     * Returns this field's type.
+     * Returns the value of this field if it's a constant (a static final field of primitive or
+     * String type, initialized with a constant expression), and null otherwise. The value is an
+     * Integer, Character, Boolean, Long, or String, according to the type of the field; constants
+     * of the other types (float and double among them) are left alone, as j-- can't fold them.
      *
-     * @return this field's type.
-     */
-    public Type type() {
-        return Type.typeFor(field.getType());
-    }
-
-    /**
-     * {@inheritDoc}
+     * @return the value of this field if it's a constant, and null otherwise.
      */
-    public String toDescriptor() {
-        return type().toDescriptor();
+    public Object constantValue() {
+        Object value = field.constantValue;
+        if (value == null || !isStatic() || !isFinal()) {
+            return null;
+        }
+        switch (field.descriptor.charAt(0)) {
+            case 'Z':
+                return (Integer) value != 0;
+            case 'C':
+                return (char) ((Integer) value).intValue();
+            case 'I':
+            case 'J':
+            case 'L':
+                return value;
+            default:
+                return null;
+        }
     }
 
     /**
-     * {@inheritDoc}
+     * Returns this field's type.
+     *
+     * @return this field's type.
      */
-    protected java.lang.reflect.Member member() {
-        return field;
+    public Type type() {
+        return Type.typeForDescriptor(toDescriptor());
     }
 }
 
@@ -174,16 +176,13 @@ class Field extends Member {
  * This class provides a wrapper for methods.
  */
 class Method extends Member {
-    // Internal representation of this method.
-    private java.lang.reflect.Method method;
-
     /**
      * Constructs a method given its internal representation.
      *
      * @param method the internal representation.
      */
-    public Method(java.lang.reflect.Method method) {
-        this.method = method;
+    public Method(CLClass.MemberInfo method) {
+        super(method);
     }
 
     /**
@@ -192,25 +191,7 @@ class Method extends Member {
      * @return this method's return type.
      */
     public Type returnType() {
-        return Type.typeFor(method.getReturnType());
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public String toDescriptor() {
-        String descriptor = "(";
-        for (Class paramType : method.getParameterTypes()) {
-            descriptor += Type.typeFor(paramType).toDescriptor();
-        }
-        descriptor += ")" + Type.typeFor(method.getReturnType()).toDescriptor();
-        return descriptor;
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    protected java.lang.reflect.Member member() {
-        return method;
+        String descriptor = toDescriptor();
+        return Type.typeForDescriptor(descriptor.substring(descriptor.indexOf(')') + 1));
     }
 }
\ No newline at end of file
@@ -5,10 +5,10 @@ package jminusminus;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Stack;
 import java.util.TreeMap;
-import java.util.Queue;
 
 import static jminusminus.CLConstants.*;
 
@@ -166,6 +166,12 @@ class NBasicBlock {
      */
     public NBasicBlock dom;
 
+    /**
+     * The dominance frontier of this block, ie, the blocks that this block doesn't strictly
+     * dominate but which have a predecessor that it dominates.
+     */
+    public ArrayList<NBasicBlock> frontier;
+
     /**
      * All virtual registers locally defined within this block.
      */
@@ -200,6 +206,7 @@ class NBasicBlock {
         successors = new ArrayList<NBasicBlock>();
         hir = new ArrayList<Integer>();
         lir = new ArrayList<NLIRInstruction>();
+        frontier = new ArrayList<NBasicBlock>();
         isLoopHead = false;
     }
 
@@ -274,7 +281,8 @@ class NBasicBlock {
         s = "Locals: ";
         if (locals != null) {
             for (int i = 0; i < locals.length; i++) {
-                if (!(cfg.hirMap.get(locals[i]) instanceof NHIRLocal)) {
+                if (cfg.hirMap.get(locals[i]) != null &&
+                        !(cfg.hirMap.get(locals[i]) instanceof NHIRLocal)) {
                     s += cfg.hirMap.get(locals[i]).id() + " ";
                 }
             }
@@ -384,25 +392,28 @@ class NControlFlowGraph {
     // Maps the pc of a JVM instruction to the block it's in.
     private HashMap<Integer, NBasicBlock> pcToBasicBlock;
 
+    // The optimizations carried out on the HIR, or null if there were none.
+    private NHIROptimizer optimizer;
+
     /**
      * Block identifier.
      */
-    public static int blockId;
+    public int blockId;
 
     /**
      * HIR instruction identifier.
      */
-    public static int hirId;
+    public int hirId;
 
     /**
      * HIR instruction identifier.
      */
-    public static int lirId;
+    public int lirId;
 
     /**
      * Virtual register identifier.
      */
-    public static int regId;
+    public int regId;
 
     /**
      * Stack offset counter..
@@ -412,7 +423,7 @@ class NControlFlowGraph {
     /**
      * Loop identifier.
      */
-    public static int loopIndex;
+    public int loopIndex;
 
     /**
      * Name of the method this cfg corresponds to.
@@ -478,7 +489,7 @@ class NControlFlowGraph {
         desc = new String(((CLConstantUtf8Info) cp.cpItem(m.descriptorIndex)).b);
         basicBlocks = new ArrayList<NBasicBlock>();
         pcToBasicBlock = new HashMap<Integer, NBasicBlock>();
-        ArrayList<Integer> code = getByteCode();
+        CLByteBuffer code = getByteCode();
         ArrayList<NTuple> tuples = bytecodeToTuples(code);
         if (tuples.size() == 0) {
             return;
@@ -590,25 +601,64 @@ class NControlFlowGraph {
     }
 
     /**
-     * Implements loop detection algorithm to figure out if the specified block is a loop head or
-     * a loop tail. Also calculates the number of backward branches to the block.
-     *
-     * @param block a block.
-     * @param pred  block's predecessor or null.
+     * Implements loop detection algorithm to figure out if each block is a loop head or a loop
+     * tail. Also calculates the number of backward branches to each block. The blocks are
+     * visited depth-first from the begin block (B0), with an explicit stack, and a branch to a
+     * block that is on the stack (ie, active) is a backward branch.
      */
-    public void detectLoops(NBasicBlock block, NBasicBlock pred) {
-        if (!block.visited) {
-            block.visited = true;
-            block.active = true;
-            for (NBasicBlock succ : block.successors) {
-                detectLoops(succ, block);
+    public void detectLoops() {
+        NBasicBlock beginBlock = basicBlocks.get(0);
+        Stack<NBasicBlock> stack = new Stack<NBasicBlock>();
+        Stack<Integer> next = new Stack<Integer>();
+        beginBlock.visited = true;
+        beginBlock.active = true;
+        stack.push(beginBlock);
+        next.push(0);
+        while (!stack.isEmpty()) {
+            NBasicBlock block = stack.peek();
+            int i = next.pop();
+            if (i < block.successors.size()) {
+                next.push(i + 1);
+                NBasicBlock succ = block.successors.get(i);
+                if (!succ.visited) {
+                    succ.visited = true;
+                    succ.active = true;
+                    stack.push(succ);
+                    next.push(0);
+                } else if (succ.active) {
+                    succ.isLoopHead = true;
+                    block.isLoopTail = true;
+                    succ.bwdBranches++;
+                    succ.loopIndex = loopIndex++;
+                }
+            } else {
+                stack.pop().active = false;
+            }
+        }
+    }
+
+    /**
+     * Computes the loop depth of each block in this cfg, ie, the number of loops (identified by
+     * the loop heads that detectLoops() found) that the block belongs to. The blocks of the loop
+     * with a given head are the head, and those that lie on a path from the head back to it.
+     */
+    public void computeLoopDepths() {
+        for (NBasicBlock block : basicBlocks) {
+            block.loopDepth = 0;
+        }
+        for (NBasicBlock head : basicBlocks) {
+            if (!head.isLoopHead) {
+                continue;
+            }
+            BitSet reachable = reach(head, true);
+            BitSet reaching = reach(head, false);
+            reachable.and(reaching);
+            reachable.set(head.id);
+            for (NBasicBlock block : basicBlocks) {
+                if (reachable.get(block.id)) {
+                    block.loopDepth++;
+                }
             }
-            block.active = false;
-        } else if (block.active) {
-            block.isLoopHead = true;
-            pred.isLoopTail = true;
-            block.bwdBranches++;
-            block.loopIndex = NControlFlowGraph.loopIndex++;
         }
     }
 
@@ -639,33 +689,111 @@ class NControlFlowGraph {
     }
 
     /**
-     * Computes the dominator of each block in this cfg recursively given the starting block and
-     * its predecessor.
-     *
-     * @param block starting block.
-     * @param pred  block's predecessor.
+     * Computes the (immediate) dominator of each block in this cfg, using the iterative algorithm
+     * of Cooper, Harvey and Kennedy: the dominator of a block is the common dominator of its
+     * (already processed) predecessors, and the blocks are processed in reverse post-order until
+     * nothing changes. The begin block (B0) has no dominator.
      */
-    public void computeDominators(NBasicBlock block, NBasicBlock pred) {
-        if (block.ref > 0) {
-            block.ref--;
+    public void computeDominators() {
+        LinkedList<NBasicBlock> order = postOrder();
+        int[] number = new int[maxBlockId() + 1];
+        int n = 0;
+        for (NBasicBlock block : order) {
+            number[block.id] = n++;
+            block.dom = null;
         }
-        if (block.dom == null) {
-            block.dom = pred;
-        } else {
-            block.dom = commonDom(block.dom, pred);
+        NBasicBlock beginBlock = basicBlocks.get(0);
+        beginBlock.dom = beginBlock;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Iterator<NBasicBlock> it = order.descendingIterator(); it.hasNext(); ) {
+                NBasicBlock block = it.next();
+                if (block == beginBlock) {
+                    continue;
+                }
+                NBasicBlock dom = null;
+                for (NBasicBlock pred : block.predecessors) {
+                    if (pred.dom != null) {
+                        dom = dom == null ? pred : commonDom(pred, dom, number);
+                    }
+                }
+                if (dom != block.dom) {
+                    block.dom = dom;
+                    changed = true;
+                }
+            }
+        }
+        beginBlock.dom = null;
+    }
+
+    /**
+     * Computes the dominance frontier of each block in this cfg. A join block is in the frontier
+     * of each block on the dominator tree path from each of its predecessors up to (but not
+     * including) its own dominator.
+     */
+    public void computeDominanceFrontiers() {
+        for (NBasicBlock block : basicBlocks) {
+            block.frontier.clear();
         }
-        if (block.ref == block.bwdBranches) {
-            for (NBasicBlock s : block.successors) {
-                computeDominators(s, block);
+        for (NBasicBlock block : basicBlocks) {
+            if (block.predecessors.size() < 2) {
+                continue;
+            }
+            for (NBasicBlock pred : block.predecessors) {
+                for (NBasicBlock b = pred; b != null && b != block.dom; b = b.dom) {
+                    if (!b.frontier.contains(block)) {
+                        b.frontier.add(block);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the basic blocks in this cfg in the post-order of a depth-first traversal from the
+     * begin block (B0), followed by those (if any) that can't be reached from it.
+     *
+     * @return the basic blocks in this cfg in post-order.
+     */
+    public LinkedList<NBasicBlock> postOrder() {
+        LinkedList<NBasicBlock> order = new LinkedList<NBasicBlock>();
+        BitSet visited = new BitSet();
+        Stack<NBasicBlock> stack = new Stack<NBasicBlock>();
+        Stack<Integer> next = new Stack<Integer>();
+        NBasicBlock beginBlock = basicBlocks.get(0);
+        visited.set(beginBlock.id);
+        stack.push(beginBlock);
+        next.push(0);
+        while (!stack.isEmpty()) {
+            NBasicBlock block = stack.peek();
+            int i = next.pop();
+            if (i < block.successors.size()) {
+                next.push(i + 1);
+                NBasicBlock succ = block.successors.get(i);
+                if (!visited.get(succ.id)) {
+                    visited.set(succ.id);
+                    stack.push(succ);
+                    next.push(0);
+                }
+            } else {
+                order.add(stack.pop());
             }
         }
+        for (NBasicBlock block : basicBlocks) {
+            if (!visited.get(block.id)) {
+                order.add(block);
+            }
+        }
+        return order;
     }
 
     /**
-     * Converts tuples in each block to their high-level (HIR) representations.
+     * Converts tuples in each block to their high-level (HIR) representations, in SSA form. A
+     * block gets a phi function for a local variable only if the local is live at the start of
+     * the block and the block is in the iterated dominance frontier of a store to it.
      */
     public void tuplesToHir() {
-        clearBlockVisitations();
         hirId = 0;
         loopIndex = 0;
         hirMap = new TreeMap<Integer, NHIRInstruction>();
@@ -686,50 +814,34 @@ class NControlFlowGraph {
             locals[i] = ins.id;
         }
         beginBlock.locals = locals;
+        BitSet[] phiLocals = placePhiFunctions(numLocals);
+        ArrayList<NHIRPhiFunction> phis = new ArrayList<NHIRPhiFunction>();
         Stack<Integer> operandStack = new Stack<Integer>();
-        Queue<NBasicBlock> q = new LinkedList<NBasicBlock>();
-        beginBlock.visited = true;
-        q.add(beginBlock);
-        while (!q.isEmpty()) {
-            NBasicBlock block = q.remove();
-            for (NBasicBlock succ : block.successors) {
-                if (!succ.visited) {
-                    succ.visited = true;
-                    q.add(succ);
+
+        // The blocks are converted in reverse post-order, so a block's dominator is converted
+        // before the block. The locals at the start of a block are those at the end of its
+        // dominator, save for the ones that get a phi function in the block.
+        for (Iterator<NBasicBlock> it = postOrder().descendingIterator(); it.hasNext(); ) {
+            NBasicBlock block = it.next();
+            if (block != beginBlock) {
+                if (block.dom == null) {
+                    // Unreachable.
+                    continue;
+                }
+                block.locals = block.dom.locals.clone();
+                BitSet blockPhiLocals = phiLocals[block.id];
+                for (int i = blockPhiLocals.nextSetBit(0); i >= 0;
+                     i = blockPhiLocals.nextSetBit(i + 1)) {
+                    ArrayList<Integer> args = new ArrayList<Integer>();
+                    NHIRPhiFunction phi = new NHIRPhiFunction(block, hirId++, args, i);
+                    block.hir.add(phi.id);
+                    block.cfg.hirMap.put(phi.id, phi);
+                    block.locals[i] = phi.id;
+                    phis.add(phi);
                 }
             }
 
             // Convert tuples in block to HIR instructions.
-            if (block.predecessors.size() == 1) {
-                block.locals = block.predecessors.get(0).locals.clone();
-            } else if (block.predecessors.size() > 1) {
-                if (block.isLoopHead) {
-                    for (NBasicBlock pred : block.predecessors) {
-                        if (pred.locals != null) {
-                            block.locals = pred.locals.clone();
-                            break;
-                        }
-                    }
-                    for (int i = 0; i < block.locals.length; i++) {
-                        ArrayList<Integer> args = new ArrayList<Integer>();
-                        NHIRPhiFunction phi = new NHIRPhiFunction(block, hirId++, args, i);
-                        block.hir.add(phi.id);
-                        block.cfg.hirMap.put(phi.id, phi);
-                        phi.getArguments().add(block.locals[i]);
-                        for (int j = 1; j < block.predecessors.size(); j++) {
-                            phi.getArguments().add(phi.id);
-                        }
-                        block.locals[i] = phi.id;
-                        phi.inferType();
-                    }
-                } else {
-                    block.locals = block.predecessors.get(0).locals.clone();
-                    for (int i = 1; i < block.predecessors.size(); i++) {
-                        NBasicBlock pred = block.predecessors.get(i);
-                        mergeLocals(block, pred);
-                    }
-                }
-            }
             for (NTuple tuple : block.tuples) {
                 CLInsInfo insInfo = CLInstruction.instructionInfo[tuple.opcode];
                 int localVariableIndex = insInfo.localVariableIndex;
@@ -838,6 +950,7 @@ class NControlFlowGraph {
                         block.hir.add(ins.id);
                         break;
                     }
+                    case ICONST_M1:
                     case ICONST_0:
                     case ICONST_1:
                     case ICONST_2:
@@ -886,7 +999,7 @@ class NControlFlowGraph {
                     }
                     case BIPUSH: {
                         operandByte1 = tuple.operands.get(0);
-                        ins = new NHIRIntConstant(block, hirId++, operandByte1);
+                        ins = new NHIRIntConstant(block, hirId++, (byte) operandByte1);
                         block.cfg.hirMap.put(ins.id, ins);
                         block.hir.add(ins.id);
                         operandStack.push(ins.id);
@@ -905,11 +1018,17 @@ class NControlFlowGraph {
                     case LDC: {
                         operandByte1 = tuple.operands.get(0);
 
-                        // Only allowing ldc of string constants for now.
-                        int stringIndex =
-                                ((CLConstantStringInfo) cp.cpItem(operandByte1)).stringIndex;
-                        String s = new String(((CLConstantUtf8Info) cp.cpItem(stringIndex)).b);
-                        ins = new NHIRStringConstant(block, hirId++, s);
+                        // Only allowing ldc of int and string constants for now.
+                        CLCPInfo item = cp.cpItem(operandByte1);
+                        if (item instanceof CLConstantIntegerInfo) {
+                            ins = new NHIRIntConstant(block, hirId++,
+                                    ((CLConstantIntegerInfo) item).i);
+                        } else {
+                            int stringIndex = ((CLConstantStringInfo) item).stringIndex;
+                            String s =
+                                    new String(((CLConstantUtf8Info) cp.cpItem(stringIndex)).b);
+                            ins = new NHIRStringConstant(block, hirId++, s);
+                        }
                         block.cfg.hirMap.put(ins.id, ins);
                         block.hir.add(ins.id);
                         operandStack.push(ins.id);
@@ -1048,40 +1167,92 @@ class NControlFlowGraph {
                 }
             }
         }
+
+        // Now that the locals at the end of every block are known, fill in the arguments of the
+        // phi functions, one for each predecessor, and infer their types. A phi function may
+        // have another (that is yet to be typed) as its first argument, so type inference is
+        // repeated until nothing changes.
+        for (NHIRPhiFunction phi : phis) {
+            for (NBasicBlock pred : phi.block.predecessors) {
+                phi.getArguments().add(pred.locals == null ? phi.id : pred.locals[phi.getLocal()]);
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (NHIRPhiFunction phi : phis) {
+                if (phi.sType.equals("")) {
+                    phi.inferType();
+                    changed = changed || !phi.sType.equals("");
+                }
+            }
+        }
     }
 
     /**
-     * Carries out optimizations on the high-level instructions.
+     * Carries out optimizations on the high-level instructions, those of the optimization level
+     * (see NHIROptimizer.setLevel()).
      */
     public void optimize() {
-        // Unsupported.
+        optimizer = new NHIROptimizer(this);
+        optimizer.run();
     }
 
     /**
-     * Eliminates redundant phi functions of the form x = (y, x, x, ..., x) with y.
-     */
-    public void eliminateRedundantPhiFunctions() {
-        for (int ins : hirMap.keySet()) {
-            NHIRInstruction hir = hirMap.get(ins);
-            if (hir instanceof NHIRPhiFunction) {
-                NHIRPhiFunction phi = (NHIRPhiFunction) hir;
-                int firstArg = phi.getArguments().get(0);
-                boolean match = true;
-                NBasicBlock block = phi.block;
-                if (!block.isLoopHead) {
+     * Eliminates redundant phi functions of the form x = (y, x, x, ..., x) with y. Eliminating
+     * one may make others redundant, so this is repeated until nothing changes.
+     *
+     * @return the number of phi functions eliminated.
+     */
+    public int eliminateRedundantPhiFunctions() {
+        int eliminated = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int ins : hirMap.keySet()) {
+                NHIRInstruction hir = hirMap.get(ins);
+                if (!(hir instanceof NHIRPhiFunction) || hir.id != ins) {
                     continue;
                 }
-                for (int i = 1; i < phi.getArguments().size(); i++) {
-                    if (phi.getArguments().get(i) != block.predecessors.get(i).locals[phi.getLocal()]) {
+                NHIRPhiFunction phi = (NHIRPhiFunction) hir;
+                NHIRInstruction value = null;
+                boolean match = true;
+                for (int arg : phi.getArguments()) {
+                    NHIRInstruction other = hirMap.get(arg);
+                    if (other == phi || other == value) {
+                        continue;
+                    }
+                    if (value != null) {
                         match = false;
-                        phi.getArguments().set(i, block.predecessors.get(i).locals[phi.getLocal()]);
+                        break;
                     }
+                    value = other;
                 }
-                if (match && firstArg != phi.id) {
-                    hirMap.put(phi.id, hirMap.get(firstArg));
+                if (match && value != null) {
+                    hirMap.put(phi.id, value);
                     phi.block.hir.remove((Integer) phi.id);
+                    eliminated++;
+                    changed = true;
                 }
             }
+            resolveReplacements();
+        }
+        return eliminated;
+    }
+
+    /**
+     * Makes each id that stands for a replaced HIR instruction (one that the id of another
+     * instruction maps to in hirMap) stand for its replacement, which may have been replaced too.
+     */
+    public void resolveReplacements() {
+        for (int ins : hirMap.keySet()) {
+            NHIRInstruction hir = hirMap.get(ins);
+            NHIRInstruction replacement = hirMap.get(hir.id);
+            while (replacement != null && replacement != hir) {
+                hir = replacement;
+                replacement = hirMap.get(hir.id);
+            }
+            hirMap.put(ins, hir);
         }
     }
 
@@ -1115,29 +1286,67 @@ class NControlFlowGraph {
 
     /**
      * Resolves the phi functions in this cfg, i.e., for each x = phi(x1, x2, ..., xn) generate
-     * an (LIR) move xi, x instruction at the end of the predecessor i of thte block defining the
+     * an (LIR) move xi, x instruction at the end of the predecessor i of the block defining the
      * phi function; if the instruction there is a branch, add the instruction prior to the branch.
+     * The moves at the end of a predecessor happen at once, as if in parallel, so they are
+     * ordered such that no register is written before the moves that read it, with a cycle of
+     * them (eg, a swap) broken by way of a new register.
      */
     public void resolvePhiFunctions() {
-        for (int ins1 : hirMap.keySet()) {
-            NHIRInstruction hir = hirMap.get(ins1);
-            if (hir instanceof NHIRPhiFunction) {
-                NHIRPhiFunction phi = (NHIRPhiFunction) hir;
-                NBasicBlock block = phi.block;
-                for (int i = 0; i < phi.getArguments().size(); i++) {
+        for (NBasicBlock block : basicBlocks) {
+            ArrayList<NHIRPhiFunction> phis = new ArrayList<NHIRPhiFunction>();
+            for (int ins : block.hir) {
+                if (hirMap.get(ins) instanceof NHIRPhiFunction) {
+                    phis.add((NHIRPhiFunction) hirMap.get(ins));
+                }
+            }
+            if (phis.isEmpty()) {
+                continue;
+            }
+            for (int i = 0; i < block.predecessors.size(); i++) {
+                NBasicBlock targetBlock = block.predecessors.get(i);
+                ArrayList<NRegister> from = new ArrayList<NRegister>();
+                ArrayList<NRegister> to = new ArrayList<NRegister>();
+                ArrayList<NHIRPhiFunction> owners = new ArrayList<NHIRPhiFunction>();
+                for (NHIRPhiFunction phi : phis) {
                     NHIRInstruction arg = hirMap.get(phi.getArguments().get(i));
-                    if (arg.sType.equals("")) {
+                    if (arg.sType.equals("") || arg.lir.write == phi.lir.write) {
                         continue;
                     }
-                    NBasicBlock targetBlock = block.predecessors.get(i);
-                    NLIRMove move = new NLIRMove(arg.block, lirId++, arg.lir, phi.lir);
-                    int len = targetBlock.hir.size();
-                    if (isHIRJmp(hirMap.get(targetBlock.hir.get(len - 1)))) {
-                        targetBlock.lir.add(len - 1, move);
+                    from.add(arg.lir.write);
+                    to.add(phi.lir.write);
+                    owners.add(phi);
+                }
+                ArrayList<NLIRInstruction> moves = new ArrayList<NLIRInstruction>();
+                while (!from.isEmpty()) {
+                    int j = 0;
+                    while (j < to.size() && from.contains(to.get(j))) {
+                        j++;
+                    }
+                    if (j < to.size()) {
+                        moves.add(new NLIRMove(targetBlock, lirId++, from.remove(j), to.remove(j)));
+                        owners.remove(j);
                     } else {
-                        targetBlock.lir.add(move);
+                        // Every register written is yet to be read, so save one of them.
+                        NRegister saved = from.get(0);
+                        NHIRPhiFunction phi = owners.get(0);
+                        NVirtualRegister temp = new NVirtualRegister(regId++, phi.sType,
+                                phi.lType);
+                        registers.add(temp);
+                        moves.add(new NLIRMove(targetBlock, lirId++, saved, temp));
+                        for (int k = 0; k < from.size(); k++) {
+                            if (from.get(k) == saved) {
+                                from.set(k, temp);
+                            }
+                        }
                     }
                 }
+                int len = targetBlock.lir.size();
+                if (len > 0 && isLIRJmp(targetBlock.lir.get(len - 1))) {
+                    targetBlock.lir.addAll(len - 1, moves);
+                } else {
+                    targetBlock.lir.addAll(moves);
+                }
             }
         }
     }
@@ -1224,6 +1433,21 @@ class NControlFlowGraph {
         p.indentLeft();
     }
 
+    /**
+     * Writes the statistics of the optimizations carried out on the hir instructions in this cfg
+     * to standard output, if there were any.
+     *
+     * @param p for pretty printing with indentation.
+     */
+    public void writeOptimizationsToStdOut(PrettyPrinter p) {
+        if (optimizer != null && optimizer.hasPasses()) {
+            p.indentRight();
+            p.printf("[[ HIR OPTIMIZATIONS ]]\n\n");
+            optimizer.writeStatisticsToStdOut(p);
+            p.indentLeft();
+        }
+    }
+
     /**
      * Writes the lir instructions in this cfg to standard output.
      *
@@ -1253,6 +1477,24 @@ class NControlFlowGraph {
         p.println();
     }
 
+    // Returns the ids of the blocks reachable from (or, if forward is false, reaching) the
+    // specified block along paths that do not pass through the block itself.
+    private BitSet reach(NBasicBlock block, boolean forward) {
+        BitSet seen = new BitSet();
+        Stack<NBasicBlock> stack = new Stack<NBasicBlock>();
+        stack.push(block);
+        while (!stack.isEmpty()) {
+            NBasicBlock b = stack.pop();
+            for (NBasicBlock next : forward ? b.successors : b.predecessors) {
+                if (next != block && !seen.get(next.id)) {
+                    seen.set(next.id);
+                    stack.push(next);
+                }
+            }
+        }
+        return seen;
+    }
+
     // Finds the leaders for this control flow graph.
     private void findLeaders(ArrayList<NTuple> tuples, NTuple[] tupleAt) {
         tuples.get(0).isLeader = true;
@@ -1337,64 +1579,163 @@ class NControlFlowGraph {
     }
 
     // Returns true if instr is a (conditional or unconditional) jump, and false otherwise.
-    private boolean isHIRJmp(NHIRInstruction instr) {
-        return (instr instanceof NHIRGoto || instr instanceof NHIRConditionalJump);
+    private boolean isLIRJmp(NLIRInstruction instr) {
+        return (instr instanceof NLIRGoto || instr instanceof NLIRConditionalJump);
     }
 
-    // Clears the visitation information in each block in this cfg.
-    private void clearBlockVisitations() {
+    // Returns the largest block id in this cfg.
+    private int maxBlockId() {
+        int max = 0;
         for (NBasicBlock block : basicBlocks) {
-            block.visited = false;
+            max = Math.max(max, block.id);
         }
+        return max;
     }
 
-    // Returns the common dominator of the given basic block and its predecessor.
-    private NBasicBlock commonDom(NBasicBlock b, NBasicBlock pred) {
-        NBasicBlock dom = b;
-        clearBlockVisitations();
-        while (dom != null) {
-            dom.visited = true;
-            dom = dom.dom;
-        }
-        dom = pred;
-        while (!dom.visited) {
-            dom = dom.dom;
+    // Returns the common dominator of the given basic blocks, each of which has a dominator,
+    // given the reverse post-order number of each block (by id).
+    private NBasicBlock commonDom(NBasicBlock a, NBasicBlock b, int[] number) {
+        while (a != b) {
+            while (number[a.id] < number[b.id]) {
+                a = a.dom;
+            }
+            while (number[b.id] < number[a.id]) {
+                b = b.dom;
+            }
         }
-        return dom;
+        return a;
     }
 
-    // Merges the locals from each of the predecessors of the specified block with the locals in
-    // the block.
-    private void mergeLocals(NBasicBlock block) {
-        for (NBasicBlock other : block.predecessors) {
-            mergeLocals(block, other);
+    // Returns, for each block (by id), the set of locals that need a phi function at its start.
+    // These are in the iterated dominance frontier of the blocks that store to the local (the
+    // begin block stores to all of them), but only where the local is live at the start of the
+    // block, ie, where it might be loaded before it's stored to again.
+    private BitSet[] placePhiFunctions(int numLocals) {
+        int n = maxBlockId() + 1;
+        BitSet[] liveUse = new BitSet[n];
+        BitSet[] liveDef = new BitSet[n];
+        BitSet[] liveIn = new BitSet[n];
+        BitSet[] phiLocals = new BitSet[n];
+        for (NBasicBlock block : basicBlocks) {
+            liveUse[block.id] = new BitSet(numLocals);
+            liveDef[block.id] = new BitSet(numLocals);
+            phiLocals[block.id] = new BitSet(numLocals);
+            for (NTuple tuple : block.tuples) {
+                int local = localLoaded(tuple);
+                if (local >= 0 && !liveDef[block.id].get(local)) {
+                    liveUse[block.id].set(local);
+                }
+                local = localStored(tuple);
+                if (local >= 0) {
+                    liveDef[block.id].set(local);
+                }
+            }
+            liveIn[block.id] = (BitSet) liveUse[block.id].clone();
         }
-    }
 
-    // Merges the locals in block b with the locals in block a.
-    private void mergeLocals(NBasicBlock a, NBasicBlock b) {
-        for (int i = 0; i < a.locals.length; i++) {
-            if (a.cfg.hirMap.get(a.locals[i]).equals(b.cfg.hirMap.get(b.locals[i]))) {
+        // Compute the locals live at the start of each block with a worklist of blocks, as the
+        // register allocator does for virtual registers.
+        LinkedList<NBasicBlock> worklist = postOrder();
+        BitSet queued = new BitSet(n);
+        for (NBasicBlock block : worklist) {
+            queued.set(block.id);
+        }
+        while (!worklist.isEmpty()) {
+            NBasicBlock block = worklist.removeFirst();
+            queued.clear(block.id);
+            BitSet live = new BitSet(numLocals);
+            for (NBasicBlock succ : block.successors) {
+                live.or(liveIn[succ.id]);
+            }
+            live.andNot(liveDef[block.id]);
+            live.or(liveUse[block.id]);
+            if (live.equals(liveIn[block.id])) {
                 continue;
-            } else {
-                ArrayList<Integer> args = new ArrayList<Integer>();
-                args.add(a.locals[i]);
-                args.add(b.locals[i]);
-                NHIRInstruction ins = new NHIRPhiFunction(a, NControlFlowGraph.hirId++, args, i);
-                a.locals[i] = ins.id;
-                a.hir.add(ins.id);
-                a.cfg.hirMap.put(ins.id, ins);
-                ((NHIRPhiFunction) ins).inferType();
             }
+            liveIn[block.id] = live;
+            for (NBasicBlock pred : block.predecessors) {
+                if (!queued.get(pred.id)) {
+                    queued.set(pred.id);
+                    worklist.addLast(pred);
+                }
+            }
+        }
+
+        NBasicBlock beginBlock = basicBlocks.get(0);
+        for (int local = 0; local < numLocals; local++) {
+            Stack<NBasicBlock> defs = new Stack<NBasicBlock>();
+            BitSet isDef = new BitSet(n);
+            for (NBasicBlock block : basicBlocks) {
+                if (block == beginBlock || liveDef[block.id].get(local)) {
+                    defs.push(block);
+                    isDef.set(block.id);
+                }
+            }
+            while (!defs.isEmpty()) {
+                NBasicBlock block = defs.pop();
+                for (NBasicBlock join : block.frontier) {
+                    if (phiLocals[join.id].get(local) || !liveIn[join.id].get(local)) {
+                        continue;
+                    }
+                    phiLocals[join.id].set(local);
+                    if (!isDef.get(join.id)) {
+                        defs.push(join);
+                        isDef.set(join.id);
+                    }
+                }
+            }
+        }
+        return phiLocals;
+    }
+
+    // Returns the index of the local variable that the specified tuple loads, or -1.
+    private int localLoaded(NTuple tuple) {
+        switch (tuple.opcode) {
+            case ILOAD:
+            case ALOAD:
+            case IINC:
+                return tuple.operands.get(0);
+            case ILOAD_0:
+            case ILOAD_1:
+            case ILOAD_2:
+            case ILOAD_3:
+            case ALOAD_0:
+            case ALOAD_1:
+            case ALOAD_2:
+            case ALOAD_3:
+                return CLInstruction.instructionInfo[tuple.opcode].localVariableIndex;
+            default:
+                return -1;
+        }
+    }
+
+    // Returns the index of the local variable that the specified tuple stores to, or -1.
+    private int localStored(NTuple tuple) {
+        switch (tuple.opcode) {
+            case ISTORE:
+            case ASTORE:
+            case IINC:
+                return tuple.operands.get(0);
+            case ISTORE_0:
+            case ISTORE_1:
+            case ISTORE_2:
+            case ISTORE_3:
+            case ASTORE_0:
+            case ASTORE_1:
+            case ASTORE_2:
+            case ASTORE_3:
+                return CLInstruction.instructionInfo[tuple.opcode].localVariableIndex;
+            default:
+                return -1;
         }
     }
 
     // Converts the bytecode in the specified list to their tuple representations.
-    private ArrayList<NTuple> bytecodeToTuples(ArrayList<Integer> code) {
+    private ArrayList<NTuple> bytecodeToTuples(CLByteBuffer code) {
         ArrayList<NTuple> tuples = new ArrayList<NTuple>();
         for (int i = 0; i < code.size(); i++) {
             int pc = i;
-            int opcode = code.get(i);
+            int opcode = code.byteAt(i);
             int operandBytes = CLInstruction.instructionInfo[opcode].operandCount;
             short operandByte1, operandByte2, operandByte3, operandByte4;
             ArrayList<Short> operands = new ArrayList<Short>();
@@ -1402,28 +1743,28 @@ class NControlFlowGraph {
                 case 0:
                     break;
                 case 1:
-                    operandByte1 = code.get(++i).shortValue();
+                    operandByte1 = (short) code.byteAt(++i);
                     operands.add(operandByte1);
                     break;
                 case 2:
-                    operandByte1 = code.get(++i).shortValue();
-                    operandByte2 = code.get(++i).shortValue();
+                    operandByte1 = (short) code.byteAt(++i);
+                    operandByte2 = (short) code.byteAt(++i);
                     operands.add(operandByte1);
                     operands.add(operandByte2);
                     break;
                 case 3:
-                    operandByte1 = code.get(++i).shortValue();
-                    operandByte2 = code.get(++i).shortValue();
-                    operandByte3 = code.get(++i).shortValue();
+                    operandByte1 = (short) code.byteAt(++i);
+                    operandByte2 = (short) code.byteAt(++i);
+                    operandByte3 = (short) code.byteAt(++i);
                     operands.add(operandByte1);
                     operands.add(operandByte2);
                     operands.add(operandByte3);
                     break;
                 case 4:
-                    operandByte1 = code.get(++i).shortValue();
-                    operandByte2 = code.get(++i).shortValue();
-                    operandByte3 = code.get(++i).shortValue();
-                    operandByte4 = code.get(++i).shortValue();
+                    operandByte1 = (short) code.byteAt(++i);
+                    operandByte2 = (short) code.byteAt(++i);
+                    operandByte3 = (short) code.byteAt(++i);
+                    operandByte4 = (short) code.byteAt(++i);
                     operands.add(operandByte1);
                     operands.add(operandByte2);
                     operands.add(operandByte3);
@@ -1448,8 +1789,8 @@ class NControlFlowGraph {
     }
 
     // Extracts and returns the JVM bytecode for the method denoted by this cfg.
-    private ArrayList<Integer> getByteCode() {
-        ArrayList<Integer> code = null;
+    private CLByteBuffer getByteCode() {
+        CLByteBuffer code = null;
         for (CLAttributeInfo info : m.attributes) {
             if (info instanceof CLCodeAttribute) {
                 code = ((CLCodeAttribute) info).code;
@@ -1484,7 +1825,7 @@ class NControlFlowGraph {
 
     // Returns the number of local variables in the method denoted by this cfg.
     private int numLocals() {
-        ArrayList<Integer> code = null;
+        CLByteBuffer code = null;
         int numLocals = 0;
         for (CLAttributeInfo info : m.attributes) {
             if (info instanceof CLCodeAttribute) {
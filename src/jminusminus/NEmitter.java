@@ -3,15 +3,19 @@
 package jminusminus;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.FileReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.io.PrintWriter;
 
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * A class for generating native SPIM code.
@@ -21,8 +25,9 @@ public class NEmitter {
     private String sourceFile;
 
     // Map of maps, one per class in the compilation unit. Each one of them maps methods in a
-    // class to their control flow graph.
-    private HashMap<CLFile, HashMap<CLMethodInfo, NControlFlowGraph>> classes;
+    // class to their control flow graph. Both iterate in declaration order, so the SPIM file is
+    // written in the same order every time.
+    private LinkedHashMap<CLFile, LinkedHashMap<CLMethodInfo, NControlFlowGraph>> classes;
 
     // Destination directory for the native SPIM code.
     private String destDir;
@@ -38,92 +43,58 @@ public class NEmitter {
      * @param ra         register allocation scheme (naive, linear, or graph).
      */
     public NEmitter(String sourceFile, ArrayList<CLFile> clFiles, String ra) {
+        this(sourceFile, clFiles, ra, null);
+    }
+
+    /**
+     * Constructs an NEmitter object, compiling the methods concurrently on the specified pool.
+     * Each method's control flow graph numbers its own blocks, instructions, and registers, so
+     * the methods are independent of one another. The tuples, HIR, LIR, and liveness information
+     * written to standard output for each method are buffered, and written out in the order of
+     * the methods once all of them are compiled (or one of them fails).
+     *
+     * @param sourceFile the source j-- program file name.
+     * @param clFiles    list of CLFile objects.
+     * @param ra         register allocation scheme (naive, linear, or graph).
+     * @param pool       the pool on which to compile the methods, or null.
+     */
+    public NEmitter(String sourceFile, ArrayList<CLFile> clFiles, final String ra,
+                    ForkJoinPool pool) {
         this.sourceFile = sourceFile.substring(sourceFile.lastIndexOf(File.separator) + 1);
-        classes = new HashMap<CLFile, HashMap<CLMethodInfo, NControlFlowGraph>>();
+        classes = new LinkedHashMap<CLFile, LinkedHashMap<CLMethodInfo, NControlFlowGraph>>();
+        ArrayList<Callable<NControlFlowGraph>> tasks = new ArrayList<Callable<NControlFlowGraph>>();
+        final ArrayList<ByteArrayOutputStream> logs = new ArrayList<ByteArrayOutputStream>();
         for (CLFile clFile : clFiles) {
-            CLConstantPool cp = clFile.constantPool;
-            HashMap<CLMethodInfo, NControlFlowGraph> methods =
-                    new HashMap<CLMethodInfo, NControlFlowGraph>();
-
+            final CLConstantPool cp = clFile.constantPool;
             for (int i = 0; i < clFile.methodsCount; i++) {
-                CLMethodInfo m = clFile.methods.get(i);
-
-                // Build a control flow graph (cfg) for this method. Each block in the cfg, at
-                // the end of this step, has the JVM bytecode translated into tuple
-                // representation.
-                NControlFlowGraph cfg = new NControlFlowGraph(cp, m);
-
-                // Write the tuples in cfg to standard output.
-                PrettyPrinter p = new PrettyPrinter();
-                p.printf(">>> %s %s\n", cfg.name, cfg.desc);
-                cfg.writeTuplesToStdOut(p);
-
-                // Identify blocks in cfg that are loop heads and loop tails. Also, compute
-                // number of backward branches to blocks.
-                cfg.detectLoops(cfg.basicBlocks.get(0), null);
-
-                // Remove unreachable blocks from cfg.
-                cfg.removeUnreachableBlocks();
-
-                // Compute the dominator of each block in the cfg.
-                cfg.computeDominators(cfg.basicBlocks.get(0), null);
-
-                // Convert the tuples in each block in the cfg to high-level (HIR) instructions.
-                cfg.tuplesToHir();
-
-                // Eliminate redundant phi functions, i.e., replace phi functions of the form x =
-                // (y, x, x, ..., x) with y.
-                cfg.eliminateRedundantPhiFunctions();
-
-                // Perform optimizations on the high-level instructions.
-                cfg.optimize();
-
-                // Write the HIR instructions in cfg to standard output.
-                cfg.writeHirToStdOut(p);
-
-                // Convert the HIR instructions in each block in the cfg to low-level (LIR)
-                // instructions.
-                cfg.hirToLir();
-
-                // Resolve phi functions;
-                cfg.resolvePhiFunctions();
-
-                // Compute block order.
-                cfg.orderBlocks();
-
-                // Assign new ids to LIR instructions.
-                cfg.renumberLirInstructions();
-
-                // Write the LIR instructions in cfg to standard output.
-                cfg.writeLirToStdOut(p);
-
-                // Save the cfg for the method in a map keyed in by the CLMethodInfo object for
-                // the method.
-                methods.put(m, cfg);
-
-                // Perform register allocation.
-                NRegisterAllocator regAllocator;
-                if (ra.equals("naive")) {
-                    regAllocator = new NNaiveRegisterAllocator(cfg);
-                } else if (ra.equals("linear")) {
-                    regAllocator = new NLinearRegisterAllocator(cfg);
-                } else {
-                    regAllocator = new NGraphRegisterAllocator(cfg);
-                }
-                regAllocator.allocation();
-
-                // Replace references to virtual registers in LIR instructions with references to
-                // physical registers.
-                cfg.allocatePhysicalRegisters();
-
-                // Write the liveness information to standard output.
-                regAllocator.writeLivenessInfoToStdOut(p);
-
-                // Write the liveness intervals in cfg to standard output.
-                cfg.writeIntervalsToStdOut(p);
+                final CLMethodInfo m = clFile.methods.get(i);
+                final ByteArrayOutputStream log = new ByteArrayOutputStream();
+                logs.add(log);
+                tasks.add(new Callable<NControlFlowGraph>() {
+                    public NControlFlowGraph call() {
+                        return compile(cp, m, ra, new PrettyPrinter(new PrintStream(log)));
+                    }
+                });
+            }
+        }
+        ArrayList<NControlFlowGraph> cfgs;
+        try {
+            cfgs = Main.invokeAll(pool, tasks);
+        } finally {
+            for (ByteArrayOutputStream log : logs) {
+                System.out.print(log.toString());
             }
+        }
 
-            // Store the cfgs for the methods in this class in a map.
+        // Store the cfgs for the methods of each class in a map, in the order in which the
+        // classes and their methods are declared.
+        int k = 0;
+        for (CLFile clFile : clFiles) {
+            LinkedHashMap<CLMethodInfo, NControlFlowGraph> methods =
+                    new LinkedHashMap<CLMethodInfo, NControlFlowGraph>();
+            for (int i = 0; i < clFile.methodsCount; i++) {
+                methods.put(clFile.methods.get(i), cfgs.get(k++));
+            }
             classes.put(clFile, methods);
         }
     }
@@ -163,7 +134,7 @@ public class NEmitter {
 
             // Translate classes and their methods to SPIM.
             for (CLFile clFile : classes.keySet()) {
-                HashMap<CLMethodInfo, NControlFlowGraph> aClass = classes.get(clFile);
+                LinkedHashMap<CLMethodInfo, NControlFlowGraph> aClass = classes.get(clFile);
                 CLConstantPool cp = clFile.constantPool;
                 int nameIndex = ((CLConstantClassInfo) cp.cpItem(clFile.thisClass)).nameIndex;
                 String className = new String(((CLConstantUtf8Info) cp.cpItem(nameIndex)).b);
@@ -207,6 +178,25 @@ public class NEmitter {
 
                     out.printf("\n\n");
                 }
+
+                // Data segment for the static fields of this class, which start out as 0 (or
+                // null), labeled the way NLIRGetField and NLIRPutField refer to them.
+                boolean hasStaticFields = false;
+                for (CLFieldInfo f : clFile.fields) {
+                    if ((f.accessFlags & CLConstants.ACC_STATIC) == 0) {
+                        continue;
+                    }
+                    if (!hasStaticFields) {
+                        out.printf(".data\n\n");
+                        hasStaticFields = true;
+                    }
+                    String fieldName = new String(((CLConstantUtf8Info) cp.cpItem(f.nameIndex)).b);
+                    out.printf("%s..%s:\n", className.replace("/", "."), fieldName);
+                    out.printf("    .word 0\n");
+                }
+                if (hasStaticFields) {
+                    out.printf("\n\n");
+                }
             }
 
             // Emit SPIM runtime code (just SPIM.s for now).
@@ -227,6 +217,90 @@ public class NEmitter {
         }
     }
 
+    // Builds the control flow graph for the specified method, translates it to LIR, allocates
+    // registers for it using the specified scheme, and returns it. The intermediate forms are
+    // written to the specified pretty printer.
+    private static NControlFlowGraph compile(CLConstantPool cp, CLMethodInfo m, String ra,
+                                             PrettyPrinter p) {
+        // Build a control flow graph (cfg) for this method. Each block in the cfg, at the end of
+        // this step, has the JVM bytecode translated into tuple representation.
+        NControlFlowGraph cfg = new NControlFlowGraph(cp, m);
+
+        // Write the tuples in cfg to standard output.
+        p.printf(">>> %s %s\n", cfg.name, cfg.desc);
+        cfg.writeTuplesToStdOut(p);
+
+        // Identify blocks in cfg that are loop heads and loop tails. Also, compute number of
+        // backward branches to blocks.
+        cfg.detectLoops();
+
+        // Remove unreachable blocks from cfg.
+        cfg.removeUnreachableBlocks();
+
+        // Compute the loop depth of each block in the cfg.
+        cfg.computeLoopDepths();
+
+        // Compute the dominator of each block in the cfg.
+        cfg.computeDominators();
+
+        // Compute the dominance frontier of each block in the cfg, which tells where the phi
+        // functions go.
+        cfg.computeDominanceFrontiers();
+
+        // Convert the tuples in each block in the cfg to high-level (HIR) instructions.
+        cfg.tuplesToHir();
+
+        // Eliminate redundant phi functions, i.e., replace phi functions of the form x =
+        // (y, x, x, ..., x) with y.
+        cfg.eliminateRedundantPhiFunctions();
+
+        // Perform optimizations on the high-level instructions, and write the statistics of each
+        // pass to standard output.
+        cfg.optimize();
+        cfg.writeOptimizationsToStdOut(p);
+
+        // Write the HIR instructions in cfg to standard output.
+        cfg.writeHirToStdOut(p);
+
+        // Convert the HIR instructions in each block in the cfg to low-level (LIR) instructions.
+        cfg.hirToLir();
+
+        // Resolve phi functions;
+        cfg.resolvePhiFunctions();
+
+        // Compute block order.
+        cfg.orderBlocks();
+
+        // Assign new ids to LIR instructions.
+        cfg.renumberLirInstructions();
+
+        // Write the LIR instructions in cfg to standard output.
+        cfg.writeLirToStdOut(p);
+
+        // Perform register allocation.
+        NRegisterAllocator regAllocator;
+        if (ra.equals("naive")) {
+            regAllocator = new NNaiveRegisterAllocator(cfg);
+        } else if (ra.equals("linear")) {
+            regAllocator = new NLinearRegisterAllocator(cfg);
+        } else {
+            regAllocator = new NGraphRegisterAllocator(cfg);
+        }
+        regAllocator.allocation();
+
+        // Replace references to virtual registers in LIR instructions with references to
+        // physical registers.
+        cfg.allocatePhysicalRegisters();
+
+        // Write the liveness information to standard output.
+        regAllocator.writeLivenessInfoToStdOut(p);
+
+        // Write the liveness intervals in cfg to standard output.
+        cfg.writeIntervalsToStdOut(p);
+
+        return cfg;
+    }
+
     // Reports any error that occurs while creating/writing the spim file, to standard error.
     private void reportEmitterError(String message, Object... args) {
         System.err.printf("Error: " + message, args);
@@ -276,7 +350,8 @@ public class NEmitter {
 }
 
 /**
- * A utility class that allows pretty (indented) printing to standard output.
+ * A utility class that allows pretty (indented) printing to standard output, or to another
+ * print stream.
  */
 class PrettyPrinter {
     // Width of an indentation.
@@ -285,6 +360,9 @@ class PrettyPrinter {
     // Current indentation (number of blank spaces).
     private int indent;
 
+    // Stream to print to.
+    private PrintStream out;
+
     /**
      * Constructs a pretty printer with an indentation width of 2.
      */
@@ -298,7 +376,28 @@ class PrettyPrinter {
      * @param indentWidth number of blank spaces for an indent.
      */
     public PrettyPrinter(int indentWidth) {
+        this(indentWidth, System.out);
+    }
+
+    /**
+     * Constructs a pretty printer with an indentation width of 2, that prints to the specified
+     * stream instead of standard output.
+     *
+     * @param out stream to print to.
+     */
+    public PrettyPrinter(PrintStream out) {
+        this(2, out);
+    }
+
+    /**
+     * Constructs a pretty printer that prints to the specified stream instead of standard output.
+     *
+     * @param indentWidth number of blank spaces for an indent.
+     * @param out         stream to print to.
+     */
+    public PrettyPrinter(int indentWidth, PrintStream out) {
         this.indentWidth = indentWidth;
+        this.out = out;
         indent = 0;
     }
 
@@ -323,7 +422,7 @@ class PrettyPrinter {
      */
     public void println() {
         doIndent();
-        System.out.println();
+        out.println();
     }
 
     /**
@@ -334,7 +433,7 @@ class PrettyPrinter {
 
     public void println(String s) {
         doIndent();
-        System.out.println(s);
+        out.println(s);
     }
 
     /**
@@ -344,7 +443,7 @@ class PrettyPrinter {
      */
     public void print(String s) {
         doIndent();
-        System.out.print(s);
+        out.print(s);
     }
 
     /**
@@ -355,13 +454,13 @@ class PrettyPrinter {
      */
     public void printf(String format, Object... args) {
         doIndent();
-        System.out.printf(format, args);
+        out.printf(format, args);
     }
 
     // Indents by printing spaces to standard output.
     private void doIndent() {
         for (int i = 0; i < indent; i++) {
-            System.out.print(" ");
+            out.print(" ");
         }
     }
 }
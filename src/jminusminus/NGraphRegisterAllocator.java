@@ -2,10 +2,55 @@
 
 package jminusminus;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Stack;
+
+import static jminusminus.NPhysicalRegister.*;
+
 /**
- * Implements register allocation using graph coloring algorithm.
+ * Implements register allocation using graph coloring algorithm, along the lines of Chaitin's
+ * allocator, with Briggs's optimistic coloring and conservative coalescing.
+ * <p>
+ * The interference graph has a node for each virtual register, and an edge between two nodes if
+ * the lifetime intervals of their virtual registers overlap. The two virtual registers of a move
+ * (most of which come from the resolution of phi functions) are coalesced into one node when they
+ * don't interfere and the node has fewer than k neighbors of degree k or more (k being the number
+ * of physical registers), so that it can still be colored. The nodes are then removed from the
+ * graph one at a time, one with fewer than k neighbors if there is such a node, and otherwise the
+ * one with the least spill cost (the number of uses and definitions of its virtual registers,
+ * weighted by the loop depths of their blocks) per neighbor, and are given colors (registers) in
+ * the reverse order.
+ * <p>
+ * A node that can't be colored is spilled: its virtual registers live in a stack slot, and are
+ * loaded into new short-lived virtual registers right before they are used, and stored from them
+ * right after they are defined. The allocation is then repeated on the rewritten code, until every
+ * node is colored.
  */
 public class NGraphRegisterAllocator extends NRegisterAllocator {
+    // The physical registers available for allocation.
+    private NPhysicalRegister[] registers;
+
+    // The node (ie, the representative virtual register) that each virtual register was coalesced
+    // into; a virtual register that wasn't coalesced is its own node.
+    private int[] alias;
+
+    // The nodes of the interference graph.
+    private BitSet nodes;
+
+    // The neighbors of each node in the interference graph.
+    private ArrayList<BitSet> adjacent;
+
+    // The color (an index into registers) of each node, or -1.
+    private int[] color;
+
+    // The virtual registers that are formal parameters beyond the fourth, whose values start out
+    // in the frame.
+    private BitSet parameters;
+
+    // The virtual registers introduced by spilling, which are never spilled themselves.
+    private BitSet temporaries;
+
     /**
      * Constructs an NGraphRegisterAllocator object.
      *
@@ -19,6 +64,366 @@ public class NGraphRegisterAllocator extends NRegisterAllocator {
      * {@inheritDoc}
      */
     public void allocation() {
+        // An LIR instruction reads as many as three registers.
+        registers = new NPhysicalRegister[Math.max(3, MAX_COUNT)];
+        for (int i = 0; i < registers.length; i++) {
+            registers[i] = regInfo[T0 + i];
+        }
+        parameters = new BitSet();
+        temporaries = new BitSet();
+
+        // Arguments beyond the fourth are stored on the stack before a call, so the call needn't
+        // read them.
+        for (NBasicBlock block : cfg.basicBlocks) {
+            for (NLIRInstruction lir : block.lir) {
+                for (int j = 0; lir instanceof NLIRInvoke && j < lir.reads.size(); j++) {
+                    if (lir.reads.get(j).number() >= 32) {
+                        lir.reads.remove(j--);
+                    }
+                }
+            }
+        }
+
+        while (true) {
+            build();
+            coalesce();
+            BitSet spilled = simplifyAndSelect();
+            if (spilled.isEmpty()) {
+                break;
+            }
+            spill(spilled);
+        }
+        assign();
+    }
+
+    // Builds the intervals for the current code, and from them, the interference graph.
+    private void build() {
+        cfg.intervals = new ArrayList<NInterval>();
+        for (int i = 0; i < cfg.registers.size(); i++) {
+            cfg.intervals.add(new NInterval(i, cfg));
+        }
+        cfg.maxIntervals = cfg.intervals.size();
         buildIntervals();
+        preprocess();
+
+        int n = cfg.intervals.size();
+        alias = new int[n];
+        color = new int[n];
+        nodes = new BitSet();
+        adjacent = new ArrayList<BitSet>();
+        for (int i = 0; i < n; i++) {
+            alias[i] = i;
+            color[i] = -1;
+            adjacent.add(new BitSet());
+            if (i >= 32 && !cfg.intervals.get(i).ranges.isEmpty()) {
+                nodes.set(i);
+                if (cfg.intervals.get(i).offsetFrom == OffsetFrom.FP) {
+                    parameters.set(i);
+                }
+            }
+        }
+        for (int i = nodes.nextSetBit(0); i >= 0; i = nodes.nextSetBit(i + 1)) {
+            for (int j = nodes.nextSetBit(i + 1); j >= 0; j = nodes.nextSetBit(j + 1)) {
+                if (overlaps(cfg.intervals.get(i), cfg.intervals.get(j))) {
+                    adjacent.get(i).set(j);
+                    adjacent.get(j).set(i);
+                }
+            }
+        }
+    }
+
+    // Returns true if the two intervals overlap, and false otherwise.
+    private boolean overlaps(NInterval a, NInterval b) {
+        for (NRange r : a.ranges) {
+            for (NRange s : b.ranges) {
+                if (r.start < s.stop && s.start < r.stop) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Coalesces the virtual registers of each move into one node, where that's safe, until there
+    // are no more such moves.
+    private void coalesce() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (NBasicBlock block : cfg.basicBlocks) {
+                for (NLIRInstruction lir : block.lir) {
+                    if (!(lir instanceof NLIRMove) || lir.write.number() < 32 ||
+                            lir.reads.get(0).number() < 32) {
+                        continue;
+                    }
+                    int a = find(lir.write.number());
+                    int b = find(lir.reads.get(0).number());
+                    if (a != b && !adjacent.get(a).get(b) && canCoalesce(a) && canCoalesce(b) &&
+                            isConservative(a, b)) {
+                        merge(a, b);
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    // Returns the node that the specified virtual register was coalesced into.
+    private int find(int v) {
+        while (alias[v] != v) {
+            v = alias[v];
+        }
+        return v;
+    }
+
+    // Returns true if the specified node may be coalesced with another, and false otherwise. A
+    // formal parameter beyond the fourth has its own slot in the frame, and a temporary is never
+    // spilled, so neither is coalesced.
+    private boolean canCoalesce(int node) {
+        return !parameters.get(node) && !temporaries.get(node);
+    }
+
+    // Returns true if the node that coalescing a and b would make has fewer than k neighbors of
+    // degree k or more (Briggs's test), and false otherwise.
+    private boolean isConservative(int a, int b) {
+        BitSet neighbors = (BitSet) adjacent.get(a).clone();
+        neighbors.or(adjacent.get(b));
+        int significant = 0;
+        for (int i = neighbors.nextSetBit(0); i >= 0; i = neighbors.nextSetBit(i + 1)) {
+            int degree = adjacent.get(i).cardinality();
+            if (adjacent.get(i).get(a) && adjacent.get(i).get(b)) {
+                degree--;
+            }
+            if (degree >= registers.length) {
+                significant++;
+            }
+        }
+        return significant < registers.length;
+    }
+
+    // Coalesces node b into node a.
+    private void merge(int a, int b) {
+        alias[b] = a;
+        nodes.clear(b);
+        BitSet neighbors = adjacent.get(b);
+        for (int i = neighbors.nextSetBit(0); i >= 0; i = neighbors.nextSetBit(i + 1)) {
+            adjacent.get(i).clear(b);
+            adjacent.get(i).set(a);
+        }
+        adjacent.get(a).or(neighbors);
+        neighbors.clear();
+    }
+
+    // Colors the nodes of the interference graph, and returns the nodes that couldn't be colored.
+    private BitSet simplifyAndSelect() {
+        double[] cost = spillCosts();
+        int k = registers.length;
+        int[] degree = new int[color.length];
+        for (int i = nodes.nextSetBit(0); i >= 0; i = nodes.nextSetBit(i + 1)) {
+            degree[i] = adjacent.get(i).cardinality();
+        }
+
+        // Simplify.
+        Stack<Integer> stack = new Stack<Integer>();
+        BitSet remaining = (BitSet) nodes.clone();
+        while (!remaining.isEmpty()) {
+            int node = -1;
+            for (int i = remaining.nextSetBit(0); i >= 0; i = remaining.nextSetBit(i + 1)) {
+                if (degree[i] < k) {
+                    node = i;
+                    break;
+                }
+            }
+            if (node == -1) {
+                // Every node has k or more neighbors, so pick the one that is cheapest to spill
+                // (per neighbor), and hope that it can be colored after all.
+                for (int i = remaining.nextSetBit(0); i >= 0; i = remaining.nextSetBit(i + 1)) {
+                    if (node == -1 || cost[i] / degree[i] < cost[node] / degree[node]) {
+                        node = i;
+                    }
+                }
+            }
+            remaining.clear(node);
+            stack.push(node);
+            BitSet neighbors = adjacent.get(node);
+            for (int i = neighbors.nextSetBit(0); i >= 0; i = neighbors.nextSetBit(i + 1)) {
+                degree[i]--;
+            }
+        }
+
+        // Select.
+        BitSet spilled = new BitSet();
+        while (!stack.isEmpty()) {
+            int node = stack.pop();
+            BitSet taken = new BitSet();
+            BitSet neighbors = adjacent.get(node);
+            for (int i = neighbors.nextSetBit(0); i >= 0; i = neighbors.nextSetBit(i + 1)) {
+                if (color[i] >= 0) {
+                    taken.set(color[i]);
+                }
+            }
+            int c = taken.nextClearBit(0);
+            if (c < k) {
+                color[node] = c;
+            } else {
+                spilled.set(node);
+            }
+        }
+        return spilled;
+    }
+
+    // Returns the spill cost of each node: the number of loads and stores that spilling it calls
+    // for, each weighted by 10 to the power of the loop depth of its block. Temporaries can't be
+    // spilled, so their cost is infinite.
+    private double[] spillCosts() {
+        double[] cost = new double[color.length];
+        for (NBasicBlock block : cfg.basicBlocks) {
+            double weight = Math.pow(10, block.loopDepth);
+            for (NLIRInstruction lir : block.lir) {
+                for (NRegister register : lir.reads) {
+                    if (register.number() >= 32) {
+                        cost[find(register.number())] += weight;
+                    }
+                }
+                if (lir.write != null && lir.write.number() >= 32 &&
+                        !(lir instanceof NLIRLoadLocal)) {
+                    cost[find(lir.write.number())] += weight;
+                }
+            }
+        }
+        for (int i = temporaries.nextSetBit(0); i >= 0; i = temporaries.nextSetBit(i + 1)) {
+            if (i < cost.length) {
+                cost[find(i)] = Double.POSITIVE_INFINITY;
+            }
+        }
+        return cost;
+    }
+
+    // Rewrites the code so that the virtual registers of the specified nodes are kept in stack
+    // slots, and are loaded into (and stored from) temporaries where they are used (and defined).
+    private void spill(BitSet spilled) {
+        // The stack slot of each spilled virtual register (a formal parameter beyond the fourth
+        // stays in its slot in the frame), or null.
+        NInterval[] slots = new NInterval[color.length];
+        for (int node = spilled.nextSetBit(0); node >= 0; node = spilled.nextSetBit(node + 1)) {
+            NInterval slot = cfg.intervals.get(node);
+            if (!parameters.get(node)) {
+                slot.offset = cfg.offset++;
+                slot.offsetFrom = OffsetFrom.SP;
+            }
+            for (int v = 32; v < color.length; v++) {
+                if (find(v) == node) {
+                    slots[v] = slot;
+                }
+            }
+        }
+
+        for (NBasicBlock block : cfg.basicBlocks) {
+            ArrayList<NLIRInstruction> newLir = new ArrayList<NLIRInstruction>();
+            for (NLIRInstruction lir : block.lir) {
+                int id = lir.id;
+                NInterval to = lir.write == null || lir.write.number() < 32 ? null :
+                        slots[lir.write.number()];
+                if (lir instanceof NLIRLoadLocal && to != null) {
+                    // The parameter is in the frame already.
+                    continue;
+                }
+                if (lir instanceof NLIRMove) {
+                    // A move to or from a stack slot is a store or a load.
+                    NInterval from = lir.reads.get(0).number() < 32 ? null :
+                            slots[lir.reads.get(0).number()];
+                    if (from != null && from == to) {
+                        continue;
+                    } else if (from != null && to == null) {
+                        newLir.add(new NLIRLoad(block, id, from.offset, from.offsetFrom,
+                                lir.write));
+                        continue;
+                    } else if (from == null && to != null) {
+                        newLir.add(new NLIRStore(block, id, to.offset, to.offsetFrom,
+                                lir.reads.get(0)));
+                        continue;
+                    }
+                }
+                int n = lir.reads.size();
+                for (int j = 0; j < n; j++) {
+                    // A read already replaced (by a temporary) is left alone.
+                    NRegister register = lir.reads.get(j);
+                    if (register.number() < 32 || temporaries.get(register.number()) ||
+                            slots[register.number()] == null) {
+                        continue;
+                    }
+                    NInterval from = slots[register.number()];
+                    NRegister temporary = temporary(register);
+                    newLir.add(new NLIRLoad(block, id - n + j, from.offset, from.offsetFrom,
+                            temporary));
+                    for (int i = j; i < n; i++) {
+                        if (lir.reads.get(i).number() == register.number()) {
+                            lir.reads.set(i, temporary);
+                        }
+                    }
+                }
+                newLir.add(lir);
+                if (to != null) {
+                    lir.write = temporary(lir.write);
+                    newLir.add(new NLIRStore(block, id + 1, to.offset, to.offsetFrom,
+                            lir.write));
+                }
+            }
+            block.lir = newLir;
+        }
+    }
+
+    // Returns a new virtual register (a temporary) for the value of the specified one.
+    private NRegister temporary(NRegister register) {
+        NVirtualRegister v = (NVirtualRegister) register;
+        NVirtualRegister temporary = new NVirtualRegister(cfg.regId++, v.sType(), v.lType());
+        cfg.registers.add(temporary);
+        temporaries.set(temporary.number());
+        return temporary;
+    }
+
+    // Replaces the virtual registers in the LIR code with the physical registers of their nodes.
+    private void assign() {
+        BitSet used = new BitSet();
+        for (int v = 32; v < color.length; v++) {
+            NInterval interval = cfg.intervals.get(v);
+            if (color[find(v)] >= 0) {
+                interval.pRegister = registers[color[find(v)]];
+                used.set(color[find(v)]);
+            }
+        }
+        for (int i = used.nextSetBit(0); i >= 0; i = used.nextSetBit(i + 1)) {
+            cfg.pRegisters.add(registers[i]);
+        }
+        for (NPhysicalRegister register : registers) {
+            cfg.intervals.get(register.number()).pRegister = register;
+        }
+
+        for (NBasicBlock block : cfg.basicBlocks) {
+            ArrayList<NLIRInstruction> newLir = new ArrayList<NLIRInstruction>();
+            for (NLIRInstruction lir : block.lir) {
+                for (int j = 0; j < lir.reads.size(); j++) {
+                    int number = lir.reads.get(j).number();
+                    if (number >= 32) {
+                        lir.reads.set(j, cfg.intervals.get(number).pRegister);
+                    }
+                }
+                if (lir.write != null && lir.write.number() >= 32) {
+                    NInterval output = cfg.intervals.get(lir.write.number());
+                    if (lir instanceof NLIRLoadLocal) {
+                        // A formal parameter beyond the fourth, loaded from the frame once.
+                        lir = new NLIRLoad(block, lir.id, output.offset, output.offsetFrom,
+                                output.pRegister);
+                        output.spill = false;
+                    } else {
+                        lir.write = output.pRegister;
+                    }
+                }
+                if (!(lir instanceof NLIRMove && lir.reads.get(0) == lir.write)) {
+                    newLir.add(lir);
+                }
+            }
+            block.lir = newLir;
+        }
     }
 }
@@ -0,0 +1,662 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Stack;
+
+import static jminusminus.CLConstants.*;
+
+/**
+ * The optimizer of the high-level (HIR) instructions of a cfg, which are in SSA form: a pass
+ * manager that runs the passes of the optimization level over the cfg, one after the other, and
+ * keeps the statistics of each. The levels are
+ * <ul>
+ *     <li>0 (the default): no passes.
+ *     <li>1: sparse conditional constant propagation (NConstantPropagation), copy propagation
+ *     (NCopyPropagation) and dead code elimination (NDeadCodeElimination).
+ *     <li>2: the passes of level 1, with global value numbering (NValueNumbering) after copy
+ *     propagation.
+ * </ul>
+ * <p>
+ * A pass replaces an instruction by mapping its id in hirMap to the replacement (and removing it
+ * from its block), so that the instructions using it, which refer to it by id, use the
+ * replacement instead; or, where the replacement has to sit where the instruction was, by
+ * mapping its id to a new instruction with the same id. After each pass, every id is made to map
+ * to the final replacement of its instruction (see NControlFlowGraph.resolveReplacements()).
+ */
+class NHIROptimizer {
+    // The optimization level.
+    private static int level = 0;
+
+    // The cfg.
+    private NControlFlowGraph cfg;
+
+    // The passes.
+    private ArrayList<NHIRPass> passes;
+
+    // The statistics of each pass, written once it has run.
+    private ArrayList<String> statistics;
+
+    /**
+     * Constructs an NHIROptimizer object for the specified cfg, with the passes of the
+     * optimization level.
+     *
+     * @param cfg the cfg.
+     */
+    public NHIROptimizer(NControlFlowGraph cfg) {
+        this.cfg = cfg;
+        passes = new ArrayList<NHIRPass>();
+        statistics = new ArrayList<String>();
+        if (level >= 1) {
+            passes.add(new NConstantPropagation());
+            passes.add(new NCopyPropagation());
+            if (level >= 2) {
+                passes.add(new NValueNumbering());
+            }
+            passes.add(new NDeadCodeElimination());
+        }
+    }
+
+    /**
+     * Sets the optimization level from now on; it's 0 by default.
+     *
+     * @param level the optimization level (0, 1 or 2).
+     */
+    public static void setLevel(int level) {
+        NHIROptimizer.level = level;
+    }
+
+    /**
+     * Returns true if there are passes to run, and false otherwise.
+     *
+     * @return true if there are passes to run, and false otherwise.
+     */
+    public boolean hasPasses() {
+        return passes.size() > 0;
+    }
+
+    /**
+     * Runs the passes over the cfg.
+     */
+    public void run() {
+        if (cfg.basicBlocks.size() == 0) {
+            return;
+        }
+        for (NHIRPass pass : passes) {
+            int before = size();
+            String summary = pass.run(cfg);
+            cfg.resolveReplacements();
+            statistics.add(String.format("%s: %s (%d -> %d instructions)", pass.name(), summary,
+                    before, size()));
+        }
+    }
+
+    /**
+     * Writes the statistics of each pass to standard output.
+     *
+     * @param p for pretty printing with indentation.
+     */
+    public void writeStatisticsToStdOut(PrettyPrinter p) {
+        for (String s : statistics) {
+            p.printf("%s\n", s);
+        }
+        p.println();
+    }
+
+    // Returns the number of HIR instructions in the blocks of the cfg.
+    private int size() {
+        int size = 0;
+        for (NBasicBlock block : cfg.basicBlocks) {
+            size += block.hir.size();
+        }
+        return size;
+    }
+}
+
+/**
+ * A pass of the HIR optimizer.
+ */
+interface NHIRPass {
+    /**
+     * Returns the name of this pass.
+     *
+     * @return the name of this pass.
+     */
+    String name();
+
+    /**
+     * Runs this pass over the HIR instructions of the specified cfg, and returns a summary of what
+     * it did, such as "3 redundant expressions".
+     *
+     * @param cfg the cfg.
+     * @return a summary of what this pass did.
+     */
+    String run(NControlFlowGraph cfg);
+}
+
+/**
+ * Sparse conditional constant propagation, along the lines of Wegman and Zadeck's "Constant
+ * Propagation with Conditional Branches". Each value starts out unknown (TOP) and may be lowered
+ * to a constant and then to varying (BOTTOM); each control flow edge starts out unexecutable and
+ * may be found executable. Only the instructions of executable blocks are evaluated, and a phi
+ * function meets only the arguments that come in along executable edges, so that a constant
+ * condition keeps the branch it rules out, and whatever that branch would merge in, from spoiling
+ * the values that follow.
+ * <p>
+ * Then the values found constant are replaced with int constants, the conditional jumps with
+ * constant operands are replaced with gotos, and the edges and blocks found unexecutable are
+ * removed from the cfg (along with the phi function arguments for the edges).
+ */
+class NConstantPropagation implements NHIRPass {
+    // The lattice values.
+    private static final int TOP = 0;
+    private static final int CONSTANT = 1;
+    private static final int BOTTOM = 2;
+
+    // The cfg.
+    private NControlFlowGraph cfg;
+
+    // The lattice value of each HIR instruction (by id), and its constant value if it has one.
+    private int[] state;
+    private int[] value;
+
+    // The executable blocks (by id).
+    private BitSet executable;
+
+    // The indices of the executable predecessors of each block (by id).
+    private BitSet[] executableEdges;
+
+    // The instructions that use each HIR instruction (by id).
+    private ArrayList<ArrayList<NHIRInstruction>> users;
+
+    // The control flow edges (predecessor and successor) waiting to be visited.
+    private LinkedList<NBasicBlock[]> flowWorkList;
+
+    // The instructions whose operands have changed, waiting to be evaluated.
+    private LinkedList<NHIRInstruction> ssaWorkList;
+
+    /**
+     * {@inheritDoc}
+     */
+    public String name() {
+        return "constant propagation";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String run(NControlFlowGraph cfg) {
+        this.cfg = cfg;
+        state = new int[cfg.hirId];
+        value = new int[cfg.hirId];
+        executable = new BitSet();
+        executableEdges = new BitSet[cfg.blockId];
+        users = new ArrayList<ArrayList<NHIRInstruction>>();
+        for (int i = 0; i < cfg.hirId; i++) {
+            users.add(new ArrayList<NHIRInstruction>());
+        }
+        for (NHIRInstruction hir : cfg.hirMap.values()) {
+            if (hir instanceof NHIRLocal) {
+                // The arguments, and the locals that are read before they are written.
+                state[hir.id] = BOTTOM;
+            }
+        }
+        for (NBasicBlock block : cfg.basicBlocks) {
+            executableEdges[block.id] = new BitSet();
+            for (int ins : block.hir) {
+                NHIRInstruction hir = cfg.hirMap.get(ins);
+                for (int operand : hir.operands()) {
+                    users.get(cfg.hirMap.get(operand).id).add(hir);
+                }
+            }
+        }
+        flowWorkList = new LinkedList<NBasicBlock[]>();
+        ssaWorkList = new LinkedList<NHIRInstruction>();
+
+        // The entry block is executable; everything else has to be found so.
+        NBasicBlock entry = cfg.basicBlocks.get(0);
+        executable.set(entry.id);
+        visitBlock(entry);
+        while (!flowWorkList.isEmpty() || !ssaWorkList.isEmpty()) {
+            if (!flowWorkList.isEmpty()) {
+                NBasicBlock[] edge = flowWorkList.removeFirst();
+                NBasicBlock block = edge[1];
+                boolean newEdge = false;
+                for (int i = 0; i < block.predecessors.size(); i++) {
+                    if (block.predecessors.get(i) == edge[0] &&
+                            !executableEdges[block.id].get(i)) {
+                        executableEdges[block.id].set(i);
+                        newEdge = true;
+                    }
+                }
+                if (!executable.get(block.id)) {
+                    executable.set(block.id);
+                    visitBlock(block);
+                } else if (newEdge) {
+                    for (int ins : block.hir) {
+                        if (cfg.hirMap.get(ins) instanceof NHIRPhiFunction) {
+                            visit(cfg.hirMap.get(ins));
+                        }
+                    }
+                }
+            } else {
+                NHIRInstruction hir = ssaWorkList.removeFirst();
+                if (executable.get(hir.block.id)) {
+                    visit(hir);
+                }
+            }
+        }
+
+        // Replace the values found constant with int constants, with the same ids.
+        int constants = 0;
+        for (NBasicBlock block : cfg.basicBlocks) {
+            if (!executable.get(block.id)) {
+                continue;
+            }
+            for (int ins : block.hir) {
+                if (state[ins] == CONSTANT && !(cfg.hirMap.get(ins) instanceof NHIRIntConstant)) {
+                    cfg.hirMap.put(ins, new NHIRIntConstant(block, ins, value[ins]));
+                    constants++;
+                }
+            }
+        }
+
+        // Replace the conditional jumps with constant operands with gotos, and remove the edges
+        // that they no longer take.
+        int branches = 0;
+        for (NBasicBlock block : cfg.basicBlocks) {
+            if (!executable.get(block.id) || block.hir.size() == 0) {
+                continue;
+            }
+            int last = block.hir.get(block.hir.size() - 1);
+            NHIRInstruction hir = cfg.hirMap.get(last);
+            if (hir instanceof NHIRConditionalJump) {
+                NBasicBlock destination = taken((NHIRConditionalJump) hir);
+                if (destination != null) {
+                    cfg.hirMap.put(last, new NHIRGoto(block, last, destination));
+                    for (NBasicBlock successor : new ArrayList<NBasicBlock>(block.successors)) {
+                        if (successor != destination) {
+                            removeEdge(block, successor);
+                        }
+                    }
+                    branches++;
+                }
+            }
+        }
+
+        // Remove the unexecutable blocks, their edges, and their instructions.
+        int blocks = 0;
+        for (NBasicBlock block : new ArrayList<NBasicBlock>(cfg.basicBlocks)) {
+            if (executable.get(block.id)) {
+                continue;
+            }
+            for (NBasicBlock successor : new ArrayList<NBasicBlock>(block.successors)) {
+                removeEdge(block, successor);
+            }
+            for (NBasicBlock predecessor : new ArrayList<NBasicBlock>(block.predecessors)) {
+                removeEdge(predecessor, block);
+            }
+            cfg.basicBlocks.remove(block);
+            blocks++;
+        }
+        if (blocks > 0) {
+            Iterator<Map.Entry<Integer, NHIRInstruction>> entries =
+                    cfg.hirMap.entrySet().iterator();
+            while (entries.hasNext()) {
+                if (!executable.get(entries.next().getValue().block.id)) {
+                    entries.remove();
+                }
+            }
+        }
+        if (branches > 0 || blocks > 0) {
+            cfg.computeDominators();
+        }
+        return String.format("%d constants, %d branches folded, %d blocks removed", constants,
+                branches, blocks);
+    }
+
+    // Evaluates the instructions of the specified block, which has just been found executable,
+    // and, if it doesn't end in a jump, marks the edges to its successors executable.
+    private void visitBlock(NBasicBlock block) {
+        NHIRInstruction last = null;
+        for (int ins : block.hir) {
+            last = cfg.hirMap.get(ins);
+            visit(last);
+        }
+        if (!(last instanceof NHIRGoto || last instanceof NHIRConditionalJump)) {
+            for (NBasicBlock successor : block.successors) {
+                flowWorkList.add(new NBasicBlock[] {block, successor});
+            }
+        }
+    }
+
+    // Evaluates the specified instruction: marks the edges that a jump takes executable, and
+    // lowers the lattice value of an instruction that has one, adding its users to the work list
+    // if it changes.
+    private void visit(NHIRInstruction hir) {
+        if (hir instanceof NHIRGoto) {
+            for (NBasicBlock successor : hir.block.successors) {
+                flowWorkList.add(new NBasicBlock[] {hir.block, successor});
+            }
+            return;
+        }
+        if (hir instanceof NHIRConditionalJump) {
+            NHIRConditionalJump jump = (NHIRConditionalJump) hir;
+            int lhs = cfg.hirMap.get(jump.operands().get(0)).id;
+            int rhs = cfg.hirMap.get(jump.operands().get(1)).id;
+            NBasicBlock destination = taken(jump);
+            if (destination != null) {
+                flowWorkList.add(new NBasicBlock[] {hir.block, destination});
+            } else if (state[lhs] != TOP && state[rhs] != TOP) {
+                for (NBasicBlock successor : hir.block.successors) {
+                    flowWorkList.add(new NBasicBlock[] {hir.block, successor});
+                }
+            }
+            return;
+        }
+        if (hir.sType.equals("") || state[hir.id] == BOTTOM) {
+            return;
+        }
+        int newState = BOTTOM;
+        int newValue = 0;
+        if (hir instanceof NHIRIntConstant) {
+            newState = CONSTANT;
+            newValue = ((NHIRIntConstant) hir).getValue();
+        } else if (hir instanceof NHIRArithmetic) {
+            int lhs = cfg.hirMap.get(hir.operands().get(0)).id;
+            int rhs = cfg.hirMap.get(hir.operands().get(1)).id;
+            if (state[lhs] == BOTTOM || state[rhs] == BOTTOM) {
+                newState = BOTTOM;
+            } else if (state[lhs] == TOP || state[rhs] == TOP) {
+                newState = TOP;
+            } else {
+                newState = CONSTANT;
+                int opcode = ((NHIRArithmetic) hir).getOpcode();
+                newValue = opcode == IADD ? value[lhs] + value[rhs] :
+                        opcode == ISUB ? value[lhs] - value[rhs] : value[lhs] * value[rhs];
+            }
+        } else if (hir instanceof NHIRPhiFunction) {
+            newState = TOP;
+            ArrayList<Integer> arguments = ((NHIRPhiFunction) hir).getArguments();
+            for (int i = 0; i < arguments.size() && newState != BOTTOM; i++) {
+                int arg = cfg.hirMap.get(arguments.get(i)).id;
+                if (!executableEdges[hir.block.id].get(i) || arg == hir.id ||
+                        state[arg] == TOP) {
+                    continue;
+                }
+                if (state[arg] == BOTTOM || newState == CONSTANT && newValue != value[arg]) {
+                    newState = BOTTOM;
+                } else {
+                    newState = CONSTANT;
+                    newValue = value[arg];
+                }
+            }
+        }
+        if (newState != state[hir.id] || newValue != value[hir.id]) {
+            state[hir.id] = newState;
+            value[hir.id] = newValue;
+            ssaWorkList.addAll(users.get(hir.id));
+        }
+    }
+
+    // Returns the block that the specified conditional jump takes if its operands are constant,
+    // and null otherwise.
+    private NBasicBlock taken(NHIRConditionalJump jump) {
+        int lhs = cfg.hirMap.get(jump.operands().get(0)).id;
+        int rhs = cfg.hirMap.get(jump.operands().get(1)).id;
+        if (state[lhs] != CONSTANT || state[rhs] != CONSTANT) {
+            return null;
+        }
+        boolean result;
+        switch (jump.getOpcode()) {
+            case IF_ICMPNE:
+                result = value[lhs] != value[rhs];
+                break;
+            case IF_ICMPGT:
+                result = value[lhs] > value[rhs];
+                break;
+            case IF_ICMPLE:
+                result = value[lhs] <= value[rhs];
+                break;
+            default:
+                return null;
+        }
+        return result ? jump.getOnTrueDestination() : jump.getOnFalseDestination();
+    }
+
+    // Removes the edges from the specified predecessor to the specified successor, along with the
+    // arguments of the phi functions in the successor for them.
+    private void removeEdge(NBasicBlock predecessor, NBasicBlock successor) {
+        while (predecessor.successors.remove(successor)) {
+            // Remove all of them.
+        }
+        int i = successor.predecessors.indexOf(predecessor);
+        while (i >= 0) {
+            successor.predecessors.remove(i);
+            for (int ins : successor.hir) {
+                NHIRInstruction hir = cfg.hirMap.get(ins);
+                if (hir instanceof NHIRPhiFunction && hir.id == ins) {
+                    ((NHIRPhiFunction) hir).getArguments().remove(i);
+                }
+            }
+            i = successor.predecessors.indexOf(predecessor);
+        }
+    }
+}
+
+/**
+ * Copy propagation. The HIR has no copy instructions as such (a store to a local variable just
+ * makes the local stand for the stored value); the copies are the phi functions that merge a
+ * single value, which the other passes (constant propagation, which removes the arguments for
+ * unexecutable edges) leave behind. Each is replaced with the value it merges (see
+ * NControlFlowGraph.eliminateRedundantPhiFunctions()).
+ */
+class NCopyPropagation implements NHIRPass {
+    /**
+     * {@inheritDoc}
+     */
+    public String name() {
+        return "copy propagation";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String run(NControlFlowGraph cfg) {
+        return String.format("%d copies", cfg.eliminateRedundantPhiFunctions());
+    }
+}
+
+/**
+ * Global value numbering, over the arithmetic instructions, field loads (NHIRGetField) and array
+ * loads (NHIRALoad). The blocks are visited in reverse post-order, so that the dominators of a
+ * block are visited before it, and an instruction that computes the same value from the same
+ * operands (up to order, for + and *) as an instruction in the same or a dominating block is
+ * replaced with that instruction.
+ * <p>
+ * Constants aren't numbered, since loading one again is as cheap as moving it from another
+ * register, and keeping it in one longer only adds to the register pressure. Loads are numbered
+ * across blocks only if the method writes no field or array element and invokes no method;
+ * otherwise they're numbered within a block, until the next such write or invocation.
+ */
+class NValueNumbering implements NHIRPass {
+    // The cfg.
+    private NControlFlowGraph cfg;
+
+    /**
+     * {@inheritDoc}
+     */
+    public String name() {
+        return "value numbering";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String run(NControlFlowGraph cfg) {
+        this.cfg = cfg;
+        boolean writes = false;
+        for (NBasicBlock block : cfg.basicBlocks) {
+            for (int ins : block.hir) {
+                writes = writes || isWrite(cfg.hirMap.get(ins));
+            }
+        }
+
+        // Maps the key of each expression numbered across blocks to the instructions that
+        // compute it.
+        HashMap<String, ArrayList<NHIRInstruction>> available =
+                new HashMap<String, ArrayList<NHIRInstruction>>();
+        int redundant = 0;
+        for (Iterator<NBasicBlock> it = cfg.postOrder().descendingIterator(); it.hasNext(); ) {
+            NBasicBlock block = it.next();
+
+            // The loads numbered within the block.
+            HashMap<String, NHIRInstruction> loads = new HashMap<String, NHIRInstruction>();
+            for (int ins : new ArrayList<Integer>(block.hir)) {
+                NHIRInstruction hir = cfg.hirMap.get(ins);
+                if (isWrite(hir)) {
+                    loads.clear();
+                    continue;
+                }
+                String key = key(hir);
+                if (key == null) {
+                    continue;
+                }
+                NHIRInstruction same = null;
+                boolean isLoad = hir instanceof NHIRGetField || hir instanceof NHIRALoad;
+                if (isLoad && writes) {
+                    same = loads.get(key);
+                    if (same == null) {
+                        loads.put(key, hir);
+                    }
+                } else {
+                    ArrayList<NHIRInstruction> candidates = available.get(key);
+                    if (candidates == null) {
+                        candidates = new ArrayList<NHIRInstruction>();
+                        available.put(key, candidates);
+                    }
+                    for (NHIRInstruction candidate : candidates) {
+                        if (dominates(candidate.block, block)) {
+                            same = candidate;
+                            break;
+                        }
+                    }
+                    if (same == null) {
+                        candidates.add(hir);
+                    }
+                }
+                if (same != null) {
+                    cfg.hirMap.put(ins, same);
+                    block.hir.remove((Integer) ins);
+                    redundant++;
+                }
+            }
+        }
+        return String.format("%d redundant expressions", redundant);
+    }
+
+    // Returns the key of the expression that the specified instruction computes, made of its
+    // operation and the ids of its operands, or null if it's not one that is numbered.
+    private String key(NHIRInstruction hir) {
+        if (hir instanceof NHIRGetField) {
+            NHIRGetField field = (NHIRGetField) hir;
+            return "getstatic " + field.getTarget() + "." + field.getName();
+        } else if (hir instanceof NHIRArithmetic || hir instanceof NHIRALoad) {
+            int opcode = hir instanceof NHIRArithmetic ? ((NHIRArithmetic) hir).getOpcode() :
+                    ((NHIRALoad) hir).getOpcode();
+            int lhs = cfg.hirMap.get(hir.operands().get(0)).id;
+            int rhs = cfg.hirMap.get(hir.operands().get(1)).id;
+            if ((opcode == IADD || opcode == IMUL) && lhs > rhs) {
+                int t = lhs;
+                lhs = rhs;
+                rhs = t;
+            }
+            return opcode + " " + lhs + " " + rhs;
+        }
+        return null;
+    }
+
+    // Returns true if the specified instruction writes a field or array element or invokes a
+    // method, and false otherwise.
+    private boolean isWrite(NHIRInstruction hir) {
+        return hir instanceof NHIRPutField || hir instanceof NHIRAStore ||
+                hir instanceof NHIRInvoke;
+    }
+
+    // Returns true if block a dominates block b, and false otherwise.
+    private boolean dominates(NBasicBlock a, NBasicBlock b) {
+        for (NBasicBlock block = b; block != null; block = block.dom) {
+            if (block == a) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
+
+/**
+ * Dead code elimination. The instructions with effects beyond their values (jumps, returns,
+ * invocations, writes of fields and array elements, and the loads of the arguments into locals)
+ * are live, as are the instructions that compute the operands of live instructions; the rest are
+ * removed from their blocks and from hirMap.
+ */
+class NDeadCodeElimination implements NHIRPass {
+    /**
+     * {@inheritDoc}
+     */
+    public String name() {
+        return "dead code elimination";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String run(NControlFlowGraph cfg) {
+        BitSet live = new BitSet();
+        Stack<NHIRInstruction> workList = new Stack<NHIRInstruction>();
+        for (NBasicBlock block : cfg.basicBlocks) {
+            for (int ins : block.hir) {
+                NHIRInstruction hir = cfg.hirMap.get(ins);
+                if (!(hir instanceof NHIRArithmetic || hir instanceof NHIRIntConstant ||
+                        hir instanceof NHIRStringConstant || hir instanceof NHIRGetField ||
+                        hir instanceof NHIRALoad || hir instanceof NHIRNewArray ||
+                        hir instanceof NHIRPhiFunction)) {
+                    live.set(hir.id);
+                    workList.push(hir);
+                }
+            }
+        }
+        while (!workList.isEmpty()) {
+            for (int operand : workList.pop().operands()) {
+                NHIRInstruction hir = cfg.hirMap.get(operand);
+                if (!live.get(hir.id)) {
+                    live.set(hir.id);
+                    workList.push(hir);
+                }
+            }
+        }
+
+        int dead = 0;
+        for (NBasicBlock block : cfg.basicBlocks) {
+            for (int ins : new ArrayList<Integer>(block.hir)) {
+                if (!live.get(cfg.hirMap.get(ins).id)) {
+                    block.hir.remove((Integer) ins);
+                    dead++;
+                }
+            }
+        }
+        Iterator<Map.Entry<Integer, NHIRInstruction>> entries = cfg.hirMap.entrySet().iterator();
+        while (entries.hasNext()) {
+            if (!live.get(entries.next().getValue().id)) {
+                entries.remove();
+            }
+        }
+        return String.format("%d dead instructions", dead);
+    }
+}
@@ -99,16 +99,17 @@ class NInterval implements Comparable<NInterval> {
     }
 
     /**
-     * Adds a new range to the existing ranges. If the range overlaps then the old start position
-     * will be given the new start range position.
+     * Adds a new range to the existing ranges. Ranges are added in decreasing order of their
+     * positions; if the new range overlaps or abuts the first range, the two are merged.
      *
      * @param newNRange the NRange to add
      */
     public void addOrExtendNRange(NRange newNRange) {
         if (!ranges.isEmpty()) {
-            if (newNRange.stop + 5 == ranges.get(0).start ||
-                    newNRange.rangeOverlaps(ranges.get(0))) {
-                ranges.get(0).start = newNRange.start;
+            NRange first = ranges.get(0);
+            if (newNRange.stop >= first.start) {
+                first.start = Math.min(first.start, newNRange.start);
+                first.stop = Math.max(first.stop, newNRange.stop);
             } else {
                 ranges.add(0, newNRange);
             }
@@ -173,6 +174,30 @@ class NInterval implements Comparable<NInterval> {
         return usePositions.firstKey();
     }
 
+    /**
+     * Returns the first use position in this interval at or after the given position, or
+     * Integer.MAX_VALUE if there is none.
+     *
+     * @param position the position.
+     * @return the first use position at or after the given position.
+     */
+    public int nextUsage(int position) {
+        Integer next = usePositions.ceilingKey(position);
+        return next == null ? Integer.MAX_VALUE : next;
+    }
+
+    /**
+     * Returns the last use position in this interval before the given position, or -1 if there
+     * is none.
+     *
+     * @param position the position.
+     * @return the last use position before the given position.
+     */
+    public int lastUsageBefore(int position) {
+        Integer last = usePositions.lowerKey(position);
+        return last == null ? -1 : last;
+    }
+
     /**
      * Sets the start value of the very first range. Note: There will always be at least one
      * range before this method is used by the NRegisterAllocator.buildIntervals() method.
@@ -210,23 +235,6 @@ class NInterval implements Comparable<NInterval> {
         return false;
     }
 
-    /**
-     * Returns the range in this interval in which the LIR instruction with the given id is live,
-     * or null.
-     *
-     * @param id the LIR instruction id.
-     * @return the range in this interval in which the LIR instruction with the given id is live,
-     * or null.
-     */
-    private NRange liveRangeAt(int id) {
-        for (NRange r : ranges) {
-            if (id >= r.start && id <= r.stop) {
-                return r;
-            }
-        }
-        return null;
-    }
-
     /**
      * Writes the interval information to STDOUT.
      *
@@ -264,10 +272,12 @@ class NInterval implements Comparable<NInterval> {
             } else {
                 s += "-> None";
             }
-            if (offsetFrom == OffsetFrom.FP) {
-                s += " [frame:" + offset + "]";
-            } else {
-                s += " [stack:" + offset + "]";
+            if (spill) {
+                if (offsetFrom == OffsetFrom.FP) {
+                    s += " [frame:" + offset + "]";
+                } else {
+                    s += " [stack:" + offset + "]";
+                }
             }
             p.printf("%s\n", s);
             for (NInterval child : this.children) {
@@ -315,35 +325,24 @@ class NInterval implements Comparable<NInterval> {
     }
 
     /**
-     * Splits the current interval at the given index. Responsible for splitting a range if the
-     * index falls on one, moving remaining ranges over to child, and moving appropriate
-     * usePositions over to the child.
+     * Splits the current interval at the given index. The ranges (or the parts of a range) and
+     * the use positions at or after the index are moved over to a new child interval; those
+     * before the index remain with this interval.
      *
-     * @param idx the index at which this interval is to be split
-     * @return the child interval which is to be sorted onto unhandled. If there was no child
-     * created in the case of a pruning this interval is returned.
+     * @param idx the index at which this interval is to be split.
+     * @return the child interval.
      */
     public NInterval splitAt(int idx) {
         ArrayList<NRange> childsRanges = new ArrayList<NRange>();
-        if (this.isLiveAt(idx)) { // means split falls on a range
-            // Assumptions: if a range is LIVE on an index, then there exist usePositions at or
-            // before the index within this same range.
-            NRange liveRange = this.liveRangeAt(idx);
-            int splitTo = idx;
-            splitTo = usePositions.ceilingKey(idx);
-            childsRanges.add((liveRange.splitRange(splitTo, idx - 5)));
-        }
-
-        // The following two for loops take care of any untouched ranges which start after the
-        // split position and must be moved to the child interval.
-        for (NRange r : ranges) {
-            if (r.start > idx) {
+        for (int i = 0; i < ranges.size(); i++) {
+            NRange r = ranges.get(i);
+            if (r.start >= idx) {
                 childsRanges.add(r);
+                ranges.remove(i--);
+            } else if (r.stop > idx) {
+                childsRanges.add(r.splitRange(idx, idx));
             }
         }
-        for (NRange r : childsRanges) {
-            ranges.remove(r);
-        }
 
         NInterval child = new NInterval(cfg.maxIntervals++, cfg, childsRanges, getParent());
         cfg.registers.add(null); // expand size of cfg.registers to avoid NPE when printing
@@ -118,7 +118,7 @@ class NLIRArithmetic extends NLIRInstruction {
         this.opcode = opcode;
         reads.add(lhs.write);
         reads.add(rhs.write);
-        write = new NVirtualRegister(NControlFlowGraph.regId++, "I", "I");
+        write = new NVirtualRegister(block.cfg.regId++, "I", "I");
         block.cfg.registers.add((NVirtualRegister) write);
     }
 
@@ -177,7 +177,7 @@ class NLIRIntConstant extends NLIRInstruction {
     public NLIRIntConstant(NBasicBlock block, int id, int value) {
         super(block, id);
         this.value = value;
-        write = new NVirtualRegister(NControlFlowGraph.regId++, "I", "I");
+        write = new NVirtualRegister(block.cfg.regId++, "I", "I");
         block.cfg.registers.add((NVirtualRegister) write);
     }
 
@@ -224,7 +224,7 @@ class NLIRStringConstant extends NLIRInstruction {
     public NLIRStringConstant(NBasicBlock block, int id, String value) {
         super(block, id);
         this.value = value;
-        write = new NVirtualRegister(NControlFlowGraph.regId++, "L", "Ljava/lang/String;");
+        write = new NVirtualRegister(block.cfg.regId++, "L", "Ljava/lang/String;");
         block.cfg.registers.add((NVirtualRegister) write);
         labelSuffix = 0;
     }
@@ -306,6 +306,21 @@ class NLIRConditionalJump extends NLIRInstruction {
         this.onFalseDestination = onFalseDestination;
     }
 
+    /**
+     * Replaces the specified destination of this jump with another block.
+     *
+     * @param oldDestination the destination to replace.
+     * @param newDestination the block to jump to instead.
+     */
+    public void replaceDestination(NBasicBlock oldDestination, NBasicBlock newDestination) {
+        if (onTrueDestination == oldDestination) {
+            onTrueDestination = newDestination;
+        }
+        if (onFalseDestination == oldDestination) {
+            onFalseDestination = newDestination;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -528,11 +543,23 @@ class NLIRPutField extends NLIRInstruction {
         reads.add(value.write);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void allocatePhysicalRegisters() {
+        NInterval input = block.cfg.intervals.get(reads.get(0).number()).childAt(id);
+        reads.set(0, input.pRegister);
+    }
+
     /**
      * {@inheritDoc}
      */
     public void toSpim(PrintWriter out) {
-        out.printf("    NLIRPutField.toSpim() not yet implemented!\n");
+        if (opcode == PUTSTATIC) {
+            out.printf("    sw %s,%s..%s\n", reads.get(0), target.replace("/", "."), name);
+        } else {
+            out.printf("    NLIRPutField.toSpim() not yet implemented!\n");
+        }
     }
 
     /**
@@ -573,15 +600,27 @@ class NLIRGetField extends NLIRInstruction {
         this.opcode = opcode;
         this.target = target;
         this.name = name;
-        write = new NVirtualRegister(NControlFlowGraph.regId++, sType, lType);
+        write = new NVirtualRegister(block.cfg.regId++, sType, lType);
         block.cfg.registers.add((NVirtualRegister) write);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void allocatePhysicalRegisters() {
+        NInterval output = block.cfg.intervals.get(write.number()).childAt(id);
+        write = output.pRegister;
+    }
+
     /**
      * {@inheritDoc}
      */
     public void toSpim(PrintWriter out) {
-        out.printf("    NLIRGetField.toSpim() not yet implemented!\n");
+        if (opcode == GETSTATIC) {
+            out.printf("    lw %s,%s..%s\n", write, target.replace("/", "."), name);
+        } else {
+            out.printf("    NLIRGetField.toSpim() not yet implemented!\n");
+        }
     }
 
     /**
@@ -617,7 +656,7 @@ class NLIRNewArray extends NLIRInstruction {
         super(block, id);
         this.opcode = opcode;
         this.dim = dim;
-        write = new NVirtualRegister(NControlFlowGraph.regId++, sType, lType);
+        write = new NVirtualRegister(block.cfg.regId++, sType, lType);
         block.cfg.registers.add((NVirtualRegister) write);
     }
 
@@ -661,7 +700,7 @@ class NLIRALoad extends NLIRInstruction {
         this.opcode = opcode;
         reads.add(arrayRef.write);
         reads.add(index.write);
-        write = new NVirtualRegister(NControlFlowGraph.regId++, sType, lType);
+        write = new NVirtualRegister(block.cfg.regId++, sType, lType);
         block.cfg.registers.add((NVirtualRegister) write);
     }
 
@@ -741,7 +780,7 @@ class NLIRPhiFunction extends NLIRInstruction {
      */
     public NLIRPhiFunction(NBasicBlock block, int id, String sType, String lType) {
         super(block, id);
-        write = new NVirtualRegister(NControlFlowGraph.regId++, sType, lType);
+        write = new NVirtualRegister(block.cfg.regId++, sType, lType);
         block.cfg.registers.add((NVirtualRegister) write);
     }
 
@@ -833,7 +872,7 @@ class NLIRLoadLocal extends NLIRInstruction {
             write = NPhysicalRegister.regInfo[A0 + local];
             block.cfg.registers.set(A0 + local, NPhysicalRegister.regInfo[A0 + local]);
         } else {
-            write = new NVirtualRegister(NControlFlowGraph.regId++, sType, lType);
+            write = new NVirtualRegister(block.cfg.regId++, sType, lType);
             block.cfg.registers.add((NVirtualRegister) write);
         }
     }
@@ -883,6 +922,7 @@ class NLIRLoad extends NLIRInstruction {
         this.offset = offset;
         this.offsetFrom = offsetFrom;
         this.register = register;
+        write = register;
     }
 
     /**
@@ -890,9 +930,9 @@ class NLIRLoad extends NLIRInstruction {
      */
     public void toSpim(PrintWriter out) {
         if (offsetFrom == OffsetFrom.FP) {
-            out.printf("    lw %s,%d($fp)\n", register, offset * 4);
+            out.printf("    lw %s,%d($fp)\n", write, offset * 4);
         } else {
-            out.printf("    lw %s,%d($sp)\n", register, offset * 4);
+            out.printf("    lw %s,%d($sp)\n", write, offset * 4);
         }
     }
 
@@ -901,7 +941,7 @@ class NLIRLoad extends NLIRInstruction {
      */
     public String toString() {
         return id + ": LOAD " + (offsetFrom == OffsetFrom.FP ? "[frame:" : "[stack:") +
-                offset + "] " + register;
+                offset + "] " + write;
     }
 }
 
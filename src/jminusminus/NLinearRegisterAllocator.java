@@ -2,10 +2,62 @@
 
 package jminusminus;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import static jminusminus.NPhysicalRegister.*;
+
 /**
- * Implements register allocation using linear scan algorithm.
+ * Implements register allocation using linear scan algorithm, along the lines of Wimmer and
+ * Mossenbock's "Optimized Interval Splitting in a Linear Scan Register Allocator".
+ * <p>
+ * The lifetime intervals of the virtual registers are visited in the order of their start
+ * positions. An interval gets a physical register that is free for all of its lifetime, or for
+ * as much of it as possible, in which case the rest is split off and visited later. When no
+ * register is free, either the interval or the ones holding the register whose next use is
+ * farthest away are spilled to the stack, until just before their next use. Intervals are split
+ * at block boundaries of the least loop depth where possible, so that the loads and stores that
+ * spilling calls for stay out of loops, and spilled intervals whose lifetimes don't overlap share
+ * a stack slot.
+ * <p>
+ * Finally, the virtual registers in the LIR code are replaced with the physical registers of
+ * their intervals, and loads, stores and moves are inserted where an interval was split within a
+ * block, and on the control flow edges where it is in a different place at the end of a block
+ * than at the start of a successor (edges out of blocks with several successors into blocks with
+ * several predecessors are split for this).
  */
 public class NLinearRegisterAllocator extends NRegisterAllocator {
+    // The physical registers available for allocation.
+    private NPhysicalRegister[] registers;
+
+    // The start and (exclusive) end positions of the blocks, in the order of cfg.basicBlocks. An
+    // empty block starts and ends where the block that follows it starts.
+    private int[] blockFrom, blockTo;
+
+    // The moves between virtual registers that each virtual register takes part in.
+    private ArrayList<ArrayList<NLIRInstruction>> moves;
+
+    // The number of instructions that write to each virtual register.
+    private int[] defCount;
+
+    // Intervals yet to be allocated, in the order of their start positions.
+    private PriorityQueue<NInterval> unhandled;
+
+    // Intervals with a register that are live at the current position.
+    private ArrayList<NInterval> active;
+
+    // Intervals with a register that are in a lifetime hole at the current position.
+    private ArrayList<NInterval> inactive;
+
+    // The registers assigned to intervals so far.
+    private BitSet used;
+
+    // Stack slot for breaking cycles among the moves at a single place, or null.
+    private NInterval scratch;
+
     /**
      * Constructs an NLinearRegisterAllocator object.
      *
@@ -20,5 +72,607 @@ public class NLinearRegisterAllocator extends NRegisterAllocator {
      */
     public void allocation() {
         buildIntervals();
+        preprocess();
+
+        // An LIR instruction reads as many as three registers.
+        registers = new NPhysicalRegister[Math.max(3, MAX_COUNT)];
+        for (int i = 0; i < registers.length; i++) {
+            registers[i] = regInfo[T0 + i];
+        }
+        computeBlockPositions();
+        collectDefsAndMoves();
+
+        used = new BitSet();
+        unhandled = new PriorityQueue<NInterval>();
+        active = new ArrayList<NInterval>();
+        inactive = new ArrayList<NInterval>();
+        for (int i = 32; i < cfg.intervals.size(); i++) {
+            if (!cfg.intervals.get(i).ranges.isEmpty()) {
+                unhandled.add(cfg.intervals.get(i));
+            }
+        }
+        while (!unhandled.isEmpty()) {
+            NInterval current = unhandled.poll();
+            int position = current.firstNRangeStart();
+            for (int i = 0; i < active.size(); i++) {
+                NInterval it = active.get(i);
+                if (it.lastNRangeStop() <= position) {
+                    active.remove(i--);
+                } else if (!it.isLiveAt(position)) {
+                    active.remove(i--);
+                    inactive.add(it);
+                }
+            }
+            for (int i = 0; i < inactive.size(); i++) {
+                NInterval it = inactive.get(i);
+                if (it.lastNRangeStop() <= position) {
+                    inactive.remove(i--);
+                } else if (it.isLiveAt(position)) {
+                    inactive.remove(i--);
+                    active.add(it);
+                }
+            }
+            if (current.parent == null && current.offsetFrom == OffsetFrom.FP) {
+                // A formal parameter beyond the fourth starts out in its slot in the frame.
+                spillUntilNextUse(current, position);
+                continue;
+            }
+            if (!tryAllocateFreeRegister(current, position)) {
+                allocateBlockedRegister(current, position);
+            }
+            if (current.pRegister != null) {
+                active.add(current);
+            }
+        }
+
+        assignStackSlots();
+        for (int i = used.nextSetBit(0); i >= 0; i = used.nextSetBit(i + 1)) {
+            cfg.pRegisters.add(registers[i]);
+        }
+        for (NPhysicalRegister register : registers) {
+            cfg.intervals.get(register.number()).pRegister = register;
+        }
+        rewrite();
+    }
+
+    // Records where each block starts and ends.
+    private void computeBlockPositions() {
+        int n = cfg.basicBlocks.size();
+        blockFrom = new int[n];
+        blockTo = new int[n];
+        int next = 0;
+        for (NBasicBlock block : cfg.basicBlocks) {
+            if (block.lir.size() > 0) {
+                next = block.getLastLIRInstId() + 5;
+            }
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            NBasicBlock block = cfg.basicBlocks.get(i);
+            if (block.lir.size() > 0) {
+                blockFrom[i] = block.lir.get(0).id;
+                blockTo[i] = block.lir.get(block.lir.size() - 1).id + 5;
+            } else {
+                blockFrom[i] = blockTo[i] = next;
+            }
+            next = blockFrom[i];
+        }
+    }
+
+    // Counts the definitions of each virtual register, and collects the moves between virtual
+    // registers, which serve as hints for the choice of registers.
+    private void collectDefsAndMoves() {
+        defCount = new int[cfg.intervals.size()];
+        moves = new ArrayList<ArrayList<NLIRInstruction>>();
+        for (int i = 0; i < cfg.intervals.size(); i++) {
+            moves.add(new ArrayList<NLIRInstruction>());
+        }
+        for (NBasicBlock block : cfg.basicBlocks) {
+            for (NLIRInstruction lir : block.lir) {
+                if (lir.write != null && lir.write.number() >= 32 &&
+                        !(lir instanceof NLIRLoadLocal)) {
+                    defCount[lir.write.number()]++;
+                }
+                if (lir instanceof NLIRMove && lir.write.number() >= 32 &&
+                        lir.reads.get(0).number() >= 32) {
+                    moves.get(lir.write.number()).add(lir);
+                    moves.get(lir.reads.get(0).number()).add(lir);
+                }
+            }
+        }
+    }
+
+    // Assigns current a register that is free at the position where it starts, for all of its
+    // lifetime if possible, and otherwise for a part of it, splitting off the rest. Returns false
+    // if there is no such register.
+    private boolean tryAllocateFreeRegister(NInterval current, int position) {
+        int[] freeUntil = new int[registers.length];
+        for (int i = 0; i < registers.length; i++) {
+            freeUntil[i] = Integer.MAX_VALUE;
+        }
+        for (NInterval it : active) {
+            freeUntil[it.pRegister.number() - T0] = 0;
+        }
+        for (NInterval it : inactive) {
+            int intersection = it.nextIntersection(current);
+            if (intersection >= 0) {
+                int i = it.pRegister.number() - T0;
+                freeUntil[i] = Math.min(freeUntil[i], intersection);
+            }
+        }
+        int end = current.lastNRangeStop();
+        int reg = hint(current, freeUntil, end);
+        if (reg < 0) {
+            reg = best(freeUntil);
+        }
+        if (freeUntil[reg] < end) {
+            int split = splitPosition(current, position, freeUntil[reg], false);
+            if (split < 0) {
+                return false;
+            }
+            unhandled.add(current.splitAt(split));
+        }
+        current.pRegister = registers[reg];
+        used.set(reg);
+        return true;
+    }
+
+    // Assigns current the register whose next use is farthest away, spilling the intervals that
+    // hold it, or spills current if its own first use comes after that.
+    private void allocateBlockedRegister(NInterval current, int position) {
+        int[] nextUse = new int[registers.length];
+        for (int i = 0; i < registers.length; i++) {
+            nextUse[i] = Integer.MAX_VALUE;
+        }
+        for (NInterval it : active) {
+            int i = it.pRegister.number() - T0;
+            nextUse[i] = Math.min(nextUse[i], it.nextUsage(position));
+        }
+        for (NInterval it : inactive) {
+            if (it.nextIntersection(current) >= 0) {
+                int i = it.pRegister.number() - T0;
+                nextUse[i] = Math.min(nextUse[i], it.nextUsage(position));
+            }
+        }
+        int reg = best(nextUse);
+        if (current.nextUsage(position) > nextUse[reg]) {
+            spillUntilNextUse(current, position);
+            return;
+        }
+        current.pRegister = registers[reg];
+        used.set(reg);
+        for (int i = 0; i < active.size(); i++) {
+            NInterval it = active.get(i);
+            if (it.pRegister == current.pRegister) {
+                active.remove(i--);
+                splitAndSpill(it, position);
+            }
+        }
+        for (int i = 0; i < inactive.size(); i++) {
+            NInterval it = inactive.get(i);
+            if (it.pRegister == current.pRegister && it.nextIntersection(current) >= 0) {
+                inactive.remove(i--);
+                splitAndSpill(it, position);
+            }
+        }
+    }
+
+    // Splits the interval it, which holds a register that is needed from the specified position
+    // on, so that it keeps the register only until its last use before the position, and
+    // spills the rest until its next use.
+    private void splitAndSpill(NInterval it, int position) {
+        int min = Math.max(it.firstNRangeStart(), it.lastUsageBefore(position));
+        int split = splitPosition(it, min, position, true);
+        spillUntilNextUse(it.splitAt(split < 0 ? position : split), position);
+    }
+
+    // Spills the specified interval, from where it starts (but the current position at the
+    // earliest) until its next use, which is split off and left for allocation. An interval that
+    // is used where it starts is left for allocation as is.
+    private void spillUntilNextUse(NInterval interval, int position) {
+        int start = interval.firstNRangeStart();
+        int use = interval.nextUsage(start);
+        if (use == start) {
+            unhandled.add(interval);
+            return;
+        }
+        interval.pRegister = null;
+        interval.spill = true;
+        if (use != Integer.MAX_VALUE) {
+            int split = splitPosition(interval, Math.max(start, position - 1), use, false);
+            if (split < 0) {
+                interval.spill = false;
+                unhandled.add(interval);
+            } else {
+                unhandled.add(interval.splitAt(split));
+            }
+        }
+    }
+
+    // Returns a position after min and at or before max at which the specified interval may be
+    // split, or -1 if there is none. Moves are placed before LIR instructions, ie, at positions
+    // that are multiples of 5; the position just after an instruction's read positions is allowed
+    // too where the interval is written by the instruction (which needs no move) or where it is
+    // spilled from there on (as the store can go before the instruction). Between blocks, the
+    // end of the block of least loop depth (the latest such) is preferred.
+    private int splitPosition(NInterval interval, int min, int max, boolean toMemory) {
+        int legal = max;
+        if (legal % 5 != 0 && !(legal % 5 == 1 && (toMemory ||
+                interval.usePositions.get(legal) == InstructionType.write))) {
+            legal -= legal % 5;
+        }
+        if (legal <= min) {
+            return -1;
+        }
+        int minBlock = blockIndexAt(min);
+        int maxBlock = blockIndexAt(legal);
+        if (minBlock == maxBlock) {
+            return legal;
+        }
+        int split = blockFrom[maxBlock];
+        int depth = cfg.basicBlocks.get(maxBlock).loopDepth;
+        for (int i = maxBlock - 1; i >= minBlock; i--) {
+            if (blockFrom[i] < blockTo[i] && cfg.basicBlocks.get(i).loopDepth < depth) {
+                depth = cfg.basicBlocks.get(i).loopDepth;
+                split = blockTo[i];
+            }
+        }
+        return split;
+    }
+
+    // Returns the index (in cfg.basicBlocks) of the (non-empty) block containing the position.
+    private int blockIndexAt(int position) {
+        for (int i = 0; i < blockFrom.length; i++) {
+            if (blockFrom[i] <= position && position < blockTo[i]) {
+                return i;
+            }
+        }
+        return blockFrom.length - 1;
+    }
+
+    // Returns the register that a move involving current suggests, if it is free for the whole
+    // of current's lifetime, and -1 otherwise.
+    private int hint(NInterval current, int[] freeUntil, int end) {
+        NInterval root = current.parent == null ? current : current.parent;
+        for (NLIRInstruction move : moves.get(root.vRegId)) {
+            NInterval other;
+            if (move.write.number() == root.vRegId) {
+                other = intervalAt(move.reads.get(0).number(), move.id);
+            } else {
+                other = intervalAt(move.write.number(), move.id + 1);
+            }
+            if (other != null && other.pRegister != null) {
+                int i = other.pRegister.number() - T0;
+                if (freeUntil[i] >= end) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // Returns the index of the register with the highest value in the specified array, giving
+    // preference to those that are already in use (and so saved and restored) in the method.
+    private int best(int[] values) {
+        int best = 0;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] > values[best] || values[i] == values[best] && used.get(i) &&
+                    !used.get(best)) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    // Returns the interval (or child interval) of the specified virtual register that is live at
+    // the specified position, or null.
+    private NInterval intervalAt(int vRegId, int position) {
+        NInterval interval = cfg.intervals.get(vRegId);
+        if (interval.isLiveAt(position)) {
+            return interval;
+        }
+        for (NInterval child : interval.children) {
+            if (child.isLiveAt(position)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    // Assigns stack slots to the spilled intervals: those of a virtual register share a slot,
+    // which it shares with other virtual registers whose lifetimes don't overlap with its own.
+    private void assignStackSlots() {
+        ArrayList<ArrayList<NInterval>> slots = new ArrayList<ArrayList<NInterval>>();
+        for (int i = 32; i < cfg.intervals.size(); i++) {
+            NInterval root = cfg.intervals.get(i);
+            if (!isSpilled(root)) {
+                continue;
+            }
+            if (root.offsetFrom != OffsetFrom.FP) {
+                int slot = 0;
+                while (slot < slots.size() && overlapsAny(root, slots.get(slot))) {
+                    slot++;
+                }
+                if (slot == slots.size()) {
+                    slots.add(new ArrayList<NInterval>());
+                }
+                slots.get(slot).add(root);
+                root.offset = cfg.offset + slot;
+                root.offsetFrom = OffsetFrom.SP;
+            }
+            for (NInterval child : root.children) {
+                child.offset = root.offset;
+                child.offsetFrom = root.offsetFrom;
+            }
+        }
+        cfg.offset += slots.size();
+    }
+
+    // Returns true if the interval or any of its children is spilled, and false otherwise.
+    private boolean isSpilled(NInterval root) {
+        if (root.spill) {
+            return true;
+        }
+        for (NInterval child : root.children) {
+            if (child.spill) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Returns true if the lifetime of the interval (with its children) overlaps with that of any
+    // of the specified intervals, and false otherwise.
+    private boolean overlapsAny(NInterval root, ArrayList<NInterval> others) {
+        for (NInterval other : others) {
+            for (NRange r : allRanges(root)) {
+                for (NRange s : allRanges(other)) {
+                    // Ranges that merely touch count, as the moves at a split position read
+                    // the ending interval's slot and write the starting interval's at once.
+                    if (r.start <= s.stop && s.start <= r.stop) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // Returns the ranges of the interval and its children.
+    private ArrayList<NRange> allRanges(NInterval root) {
+        ArrayList<NRange> ranges = new ArrayList<NRange>(root.ranges);
+        for (NInterval child : root.children) {
+            ranges.addAll(child.ranges);
+        }
+        return ranges;
+    }
+
+    // Returns true if the stack slot of the specified virtual register always holds its value
+    // (which is the case for formal parameters beyond the fourth, and virtual registers that are
+    // defined once, and stored right after), so moves to the slot are not needed.
+    private boolean storedOnce(int vRegId) {
+        NInterval root = cfg.intervals.get(vRegId);
+        return root.offsetFrom == OffsetFrom.FP || defCount[vRegId] == 1 && isSpilled(root);
+    }
+
+    // Replaces the virtual registers in the LIR code with physical ones, and inserts the loads,
+    // stores and moves called for by the intervals that were split.
+    private void rewrite() {
+        // The moves within blocks, where an interval was split.
+        TreeMap<Integer, ArrayList<NInterval[]>> splitMoves =
+                new TreeMap<Integer, ArrayList<NInterval[]>>();
+        for (int i = 32; i < cfg.intervals.size(); i++) {
+            NInterval root = cfg.intervals.get(i);
+            ArrayList<NInterval> pieces = new ArrayList<NInterval>();
+            pieces.add(root);
+            pieces.addAll(root.children);
+            Collections.sort(pieces);
+            for (int j = 1; j < pieces.size(); j++) {
+                NInterval from = pieces.get(j - 1);
+                NInterval to = pieces.get(j);
+                int position = to.firstNRangeStart();
+                if (from.lastNRangeStop() != position || isBlockStart(position) ||
+                        to.usePositions.get(position) == InstructionType.write ||
+                        to.pRegister == null && storedOnce(i)) {
+                    continue;
+                }
+                if (!splitMoves.containsKey(position)) {
+                    splitMoves.put(position, new ArrayList<NInterval[]>());
+                }
+                splitMoves.get(position).add(new NInterval[] {from, to});
+            }
+        }
+
+        for (NBasicBlock block : cfg.basicBlocks) {
+            ArrayList<NLIRInstruction> newLir = new ArrayList<NLIRInstruction>();
+            for (NLIRInstruction lir : block.lir) {
+                int id = lir.id;
+                // The moves at id + 1 (stores of values the instruction reads) come after those
+                // at id, which may load the very values they store.
+                if (splitMoves.containsKey(id)) {
+                    insertMoves(block, id - 1, splitMoves.get(id), newLir);
+                }
+                if (splitMoves.containsKey(id + 1)) {
+                    insertMoves(block, id - 1, splitMoves.get(id + 1), newLir);
+                }
+                for (int j = 0; j < lir.reads.size(); j++) {
+                    int number = lir.reads.get(j).number();
+                    if (number >= 32 && lir instanceof NLIRInvoke) {
+                        // An argument beyond the fourth, which is on the stack by now.
+                        lir.reads.remove(j--);
+                    } else if (number >= 32) {
+                        lir.reads.set(j, intervalAt(number, id).pRegister);
+                    }
+                }
+                if (lir.write == null || lir.write.number() < 32 ||
+                        lir instanceof NLIRLoadLocal) {
+                    if (!(lir instanceof NLIRMove && lir.reads.get(0) == lir.write)) {
+                        newLir.add(lir);
+                    }
+                    continue;
+                }
+                int number = lir.write.number();
+                NInterval output = intervalAt(number, id + 1);
+                lir.write = output.pRegister;
+                if (!(lir instanceof NLIRMove && lir.reads.get(0) == lir.write)) {
+                    newLir.add(lir);
+                }
+                if (defCount[number] == 1 && isSpilled(cfg.intervals.get(number))) {
+                    NInterval root = cfg.intervals.get(number);
+                    newLir.add(new NLIRStore(block, id + 1, root.offset, root.offsetFrom,
+                            output.pRegister));
+                }
+            }
+            block.lir = newLir;
+        }
+
+        // The moves on the control flow edges.
+        int n = cfg.basicBlocks.size();
+        for (int i = 0; i < n; i++) {
+            NBasicBlock block = cfg.basicBlocks.get(i);
+            int end = blockFrom[i] < blockTo[i] ? blockTo[i] - 1 : blockFrom[i];
+            for (int k = 0; k < block.successors.size(); k++) {
+                NBasicBlock successor = block.successors.get(k);
+                int start = blockFrom[cfg.basicBlocks.indexOf(successor)];
+                ArrayList<NInterval[]> edgeMoves = new ArrayList<NInterval[]>();
+                BitSet liveIn = successor.liveIn;
+                for (int v = liveIn.nextSetBit(32); v >= 0; v = liveIn.nextSetBit(v + 1)) {
+                    NInterval from = intervalAt(v, end);
+                    NInterval to = intervalAt(v, start);
+                    if (from != null && to != null && !sameLocation(from, to) &&
+                            !(to.pRegister == null && storedOnce(v))) {
+                        edgeMoves.add(new NInterval[] {from, to});
+                    }
+                }
+                if (edgeMoves.isEmpty()) {
+                    continue;
+                }
+                if (block.successors.size() == 1) {
+                    // At the end of the block, before its jump (if any).
+                    NLIRInstruction last = block.lir.isEmpty() ? null :
+                            block.lir.get(block.lir.size() - 1);
+                    if (last instanceof NLIRGoto) {
+                        block.lir.remove(block.lir.size() - 1);
+                    }
+                    insertMoves(block, end, edgeMoves, block.lir);
+                    if (last instanceof NLIRGoto) {
+                        block.lir.add(last);
+                    }
+                } else if (successor.predecessors.size() == 1 || block.lir.isEmpty() ||
+                        !(block.lir.get(block.lir.size() - 1) instanceof NLIRConditionalJump)) {
+                    // At the start of the successor (also where the block has no conditional
+                    // jump to redirect, as for the boolean conditions the LIR doesn't lower).
+                    ArrayList<NLIRInstruction> lir = new ArrayList<NLIRInstruction>();
+                    insertMoves(successor, start - 1, edgeMoves, lir);
+                    successor.lir.addAll(0, lir);
+                } else {
+                    // In a new block on the edge.
+                    splitEdge(block, successor, edgeMoves, end);
+                }
+            }
+        }
+    }
+
+    // Splits the edge from block to successor with a new block (placed after all others) that
+    // performs the specified moves and jumps to the successor.
+    private void splitEdge(NBasicBlock block, NBasicBlock successor,
+                           ArrayList<NInterval[]> edgeMoves, int id) {
+        int blockId = 0;
+        for (NBasicBlock b : cfg.basicBlocks) {
+            blockId = Math.max(blockId, b.id + 1);
+        }
+        NBasicBlock split = new NBasicBlock(cfg, blockId);
+        split.liveUse = new BitSet();
+        split.liveDef = new BitSet();
+        split.liveIn = (BitSet) successor.liveIn.clone();
+        split.liveOut = (BitSet) successor.liveIn.clone();
+        insertMoves(split, id + 1, edgeMoves, split.lir);
+        split.lir.add(new NLIRGoto(split, id + 1, successor));
+        split.predecessors.add(block);
+        split.successors.add(successor);
+        block.successors.set(block.successors.indexOf(successor), split);
+        successor.predecessors.set(successor.predecessors.indexOf(block), split);
+        ((NLIRConditionalJump) block.lir.get(block.lir.size() - 1)).replaceDestination(successor,
+                split);
+        cfg.basicBlocks.add(split);
+    }
+
+    // Appends to lir the instructions that perform the specified moves (from one location to
+    // another) at once, ordering them so that no location is written before it is read, and
+    // breaking cycles among them with the scratch stack slot.
+    private void insertMoves(NBasicBlock block, int id, ArrayList<NInterval[]> locations,
+                             ArrayList<NLIRInstruction> lir) {
+        ArrayList<NInterval[]> pending = new ArrayList<NInterval[]>();
+        for (NInterval[] move : locations) {
+            if (!sameLocation(move[0], move[1])) {
+                pending.add(new NInterval[] {move[0], move[1]});
+            }
+        }
+        while (!pending.isEmpty()) {
+            boolean progress = false;
+            for (int i = 0; i < pending.size(); i++) {
+                NInterval[] move = pending.get(i);
+                boolean blocked = false;
+                for (NInterval[] other : pending) {
+                    if (other != move && sameLocation(other[0], move[1])) {
+                        blocked = true;
+                        break;
+                    }
+                }
+                if (!blocked) {
+                    lir.add(move(block, id, move[0], move[1]));
+                    pending.remove(i--);
+                    progress = true;
+                }
+            }
+            if (!progress) {
+                if (scratch == null) {
+                    scratch = new NInterval(-1, cfg);
+                    scratch.spill = true;
+                    scratch.offset = cfg.offset++;
+                    scratch.offsetFrom = OffsetFrom.SP;
+                }
+                // Every pending move is blocked, so there is a cycle among them (of moves between
+                // registers, as each stack slot is either read or written); save the register one
+                // of them reads, which unblocks the move that writes it.
+                NInterval[] move = pending.get(0);
+                for (NInterval[] other : pending) {
+                    if (other[0].pRegister != null) {
+                        move = other;
+                        break;
+                    }
+                }
+                lir.add(move(block, id, move[0], scratch));
+                move[0] = scratch;
+            }
+        }
+    }
+
+    // Returns the LIR instruction that moves a value from one location to another.
+    private NLIRInstruction move(NBasicBlock block, int id, NInterval from, NInterval to) {
+        if (from.pRegister == null) {
+            return new NLIRLoad(block, id, from.offset, from.offsetFrom, to.pRegister);
+        } else if (to.pRegister == null) {
+            return new NLIRStore(block, id, to.offset, to.offsetFrom, from.pRegister);
+        }
+        return new NLIRMove(block, id, from.pRegister, to.pRegister);
+    }
+
+    // Returns true if the two intervals are in the same place (register or stack slot), and false
+    // otherwise.
+    private boolean sameLocation(NInterval a, NInterval b) {
+        if (a.pRegister != null || b.pRegister != null) {
+            return a.pRegister == b.pRegister;
+        }
+        return a.offsetFrom == b.offsetFrom && a.offset == b.offset;
+    }
+
+    // Returns true if a (non-empty) block starts at the specified position, and false otherwise.
+    private boolean isBlockStart(int position) {
+        for (int i = 0; i < blockFrom.length; i++) {
+            if (blockFrom[i] == position && blockFrom[i] < blockTo[i]) {
+                return true;
+            }
+        }
+        return false;
     }
 }
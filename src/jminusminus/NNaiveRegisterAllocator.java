@@ -81,7 +81,7 @@ public class NNaiveRegisterAllocator extends NRegisterAllocator {
                 if (lir.reads.size() == 2) {
                     NInterval input1 = cfg.intervals.get(lir.reads.get(0).number()).childAt(id);
                     NInterval input2 = cfg.intervals.get(lir.reads.get(1).number()).childAt(id);
-                    if (input1.pRegister == input2.pRegister) {
+                    if (input1 != input2 && input1.pRegister == input2.pRegister) {
                         input2.pRegister =
                                 regInfo[T0 + (input2.pRegister.number() + 1) % MAX_COUNT];
                     }
@@ -4,6 +4,7 @@ package jminusminus;
 
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.LinkedList;
 
 import static jminusminus.NPhysicalRegister.*;
 
@@ -32,7 +33,10 @@ public abstract class NRegisterAllocator {
     }
 
     /**
-     * Builds the intervals for a control flow graph.
+     * Builds the intervals for a control flow graph. The ranges of an interval are half-open: a
+     * virtual register read by the LIR instruction with id p is live up to (but not including)
+     * p + 1, one written by it is live from p + 1, and one live out of a block is live up to the
+     * start of the block that follows. The use positions record reads at p and writes at p + 1.
      */
     protected void buildIntervals() {
         this.computeLocalLiveSets();
@@ -43,24 +47,35 @@ public abstract class NRegisterAllocator {
                 continue;
             }
             int blockStart = currBlock.lir.get(0).id;
-            int blockEnd = currBlock.lir.get(currBlock.lir.size() - 1).id;
+            int blockEnd = currBlock.lir.get(currBlock.lir.size() - 1).id + 5;
             BitSet liveOut = currBlock.liveOut;
-            for (int idx = liveOut.nextSetBit(0); idx >= 0; idx = liveOut.nextSetBit(idx + 1)) {
+            for (int idx = liveOut.nextSetBit(32); idx >= 0; idx = liveOut.nextSetBit(idx + 1)) {
                 cfg.intervals.get(idx).addOrExtendNRange(new NRange(blockStart, blockEnd));
             }
             for (int j = currBlock.lir.size() - 1; j >= 0; j--) {
-                int currLIRid = currBlock.lir.get(j).id;
-                NRegister output = currBlock.lir.get(j).write;
-                if (output != null) {
-                    cfg.intervals.get(output.number).newFirstRangeStart(currLIRid);
-                    cfg.intervals.get(output.number).addUsePosition(currLIRid,
-                            InstructionType.write);
+                NLIRInstruction lir = currBlock.lir.get(j);
+                NRegister output = lir.write;
+                if (output != null && output.number() >= 32) {
+                    NInterval interval = cfg.intervals.get(output.number());
+                    if (interval.ranges.isEmpty() || interval.firstNRangeStart() > lir.id + 1) {
+                        // A value that is never read is still written to a register.
+                        interval.addOrExtendNRange(new NRange(lir.id + 1, lir.id + 2));
+                    } else {
+                        interval.newFirstRangeStart(lir.id + 1);
+                    }
+                    if (!(lir instanceof NLIRLoadLocal)) {
+                        interval.addUsePosition(lir.id + 1, InstructionType.write);
+                    }
                 }
-                ArrayList<NRegister> inputs = currBlock.lir.get(j).reads;
-                for (NRegister reg : inputs) {
-                    cfg.intervals.get(reg.number).addOrExtendNRange(new NRange(blockStart,
-                            currLIRid));
-                    cfg.intervals.get(reg.number).addUsePosition(currLIRid, InstructionType.read);
+                for (NRegister reg : lir.reads) {
+                    // Arguments beyond the fourth are read (and stored on the stack) before the
+                    // call.
+                    if (reg.number() >= 32 && !(lir instanceof NLIRInvoke)) {
+                        cfg.intervals.get(reg.number()).addOrExtendNRange(new NRange(blockStart,
+                                lir.id + 1));
+                        cfg.intervals.get(reg.number()).addUsePosition(lir.id,
+                                InstructionType.read);
+                    }
                 }
             }
         }
@@ -178,29 +193,44 @@ public abstract class NRegisterAllocator {
         }
     }
 
-    // Iterates through a list of basic blocks in reverse order, and sets their lliveIn and
-    // liveOut fields to reflect global use-def information.
+    // Sets the liveIn and liveOut fields of the basic blocks to reflect global use-def
+    // information, with a worklist of blocks. The blocks are first visited in post-order, so that
+    // a block is mostly visited after its successors, and a block is visited again only when the
+    // liveIn set of one of its successors, and so its own liveOut set, has grown. The sets only
+    // ever grow, so they are updated in place.
     private void computeGlobalLiveSets() {
-        boolean changed = false;
-        for (NBasicBlock b : cfg.basicBlocks) {
-            b.liveOut = new BitSet(cfg.registers.size());
+        for (NBasicBlock block : cfg.basicBlocks) {
+            block.liveIn = (BitSet) block.liveUse.clone();
+            block.liveOut = new BitSet(cfg.registers.size());
         }
-        do {
-            changed = false;
-            for (int i = cfg.basicBlocks.size() - 1; i >= 0; i--) {
-                NBasicBlock currBlock = cfg.basicBlocks.get(i);
-                BitSet newLiveOut = new BitSet(cfg.registers.size());
-                for (NBasicBlock successor : currBlock.successors) {
-                    newLiveOut.or(successor.liveIn);
-                }
-                if (!currBlock.liveOut.equals(newLiveOut)) {
-                    currBlock.liveOut = newLiveOut;
-                    changed = true;
+        LinkedList<NBasicBlock> worklist = cfg.postOrder();
+        BitSet queued = new BitSet();
+        for (NBasicBlock block : worklist) {
+            queued.set(block.id);
+        }
+        BitSet added = new BitSet(cfg.registers.size());
+        while (!worklist.isEmpty()) {
+            NBasicBlock block = worklist.removeFirst();
+            queued.clear(block.id);
+            for (NBasicBlock successor : block.successors) {
+                block.liveOut.or(successor.liveIn);
+            }
+
+            // liveIn = liveUse + (liveOut - liveDef), of which liveUse is in liveIn from the start.
+            added.clear();
+            added.or(block.liveOut);
+            added.andNot(block.liveDef);
+            added.andNot(block.liveIn);
+            if (added.isEmpty()) {
+                continue;
+            }
+            block.liveIn.or(added);
+            for (NBasicBlock predecessor : block.predecessors) {
+                if (!queued.get(predecessor.id)) {
+                    queued.set(predecessor.id);
+                    worklist.addLast(predecessor);
                 }
-                currBlock.liveIn = (BitSet) currBlock.liveOut.clone();
-                currBlock.liveIn.andNot(currBlock.liveDef);
-                currBlock.liveIn.or(currBlock.liveUse);
             }
-        } while (changed);
+        }
     }
 }
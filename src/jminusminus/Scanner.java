@@ -487,9 +487,8 @@ class Scanner {
     // ascertained from the Scanner by sending it an errorHasOccurred message.
     private void reportScannerError(String message, Object... args) {
         isInError = true;
-        System.err.printf("%s:%d: error: ", fileName, line);
-        System.err.printf(message, args);
-        System.err.println();
+        System.err.printf("%s:%d: error: %s\n", fileName, line,
+                String.format(message, args));
     }
 
     // Returns true if the specified character is a digit (0-9), and false otherwise.
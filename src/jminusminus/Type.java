@@ -2,17 +2,22 @@
 
 package jminusminus;
 
-import java.lang.reflect.Array;
+import java.io.IOException;
 import java.lang.reflect.Modifier;
 
 import java.util.Arrays;
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static jminusminus.CLConstants.*;
 
 /**
- * A class for representing j-- types. All types are represented underneath (in the classRep
- * field) by Java objects of type Class. These objects represent types in Java, so this should
- * ease our interfacing with existing Java classes.
+ * A class for representing j-- types. All types are represented underneath by their JVM
+ * descriptors, and class (and interface) types also by views of their class files (CLClass
+ * objects). A type's class file is located through the class path (CLPath) and read only when
+ * something about the class, such as its super class or its members, is first needed; the class
+ * is never loaded into the compiler's JVM. The types declared in the program being compiled are
+ * represented by views of their partial classes, built by CLEmitter.
  * <p>
  * Class types (reference types that are represented by the identifiers introduced in class
  * declarations) are represented using TypeName. So for now, every TypeName represents a class.
@@ -23,11 +28,28 @@ import java.util.Hashtable;
  */
 class Type {
 
-    // The Type's internal (Java) representation.
-    private Class<?> classRep;
+    // The Type's JVM descriptor, or null (for ANY and CONSTRUCTOR).
+    private String descriptor;
+
+    // The view of the class file for a class type, or null; see clClass().
+    private CLClass clClass;
+
+    // Has the class file for this type been looked for (or set)?
+    private boolean clClassRead;
+
+    // Maps the keys of the members (methods, constructors, and fields) looked up in this type to
+    // the members found, or to NOT_FOUND; see memberKeyFor().
+    private ConcurrentHashMap<String, Object> members = new ConcurrentHashMap<String, Object>();
 
-    // Maps type names to their Type representations.
-    private static Hashtable<String, Type> types = new Hashtable<String, Type>();
+    // Marks a member that was looked up in this type but not found.
+    private static final Object NOT_FOUND = new Object();
+
+    // Maps type descriptors to their Type representations. Compilation units compiled
+    // concurrently share the map, so it must be concurrent.
+    private static ConcurrentHashMap<String, Type> types = new ConcurrentHashMap<String, Type>();
+
+    // The class path from which class files are read, created when first needed.
+    private static CLPath classPath;
 
     /**
      * The float type.
@@ -102,7 +124,7 @@ class Type {
     /**
      * The null type.
      */
-    public final static Type NULLTYPE = new Type(java.lang.Object.class);
+    public final static Type NULLTYPE = new Type("Ljava/lang/Object;");
 
     /**
      * The "any" type (denotes wild expressions).
@@ -117,7 +139,7 @@ class Type {
     /**
      * A type marker for throwable statements.
      **/
-    public final static Type THROWABLE = new Type(java.lang.Throwable.class);
+    public final static Type THROWABLE = new Type("Ljava/lang/Throwable;");
 
     /**
      * This constructor is to keep the compiler happy.
@@ -128,34 +150,76 @@ class Type {
 
     /**
      * Constructs and returns a representation for a type from its (Java) class representation,
-     * making sure there is a unique representation for each unique type.
+     * making sure there is a unique representation for each unique type. The class itself is used
+     * only for its name.
      *
      * @param classRep the Java class representation.
      * @return a type representation of classRep.
      */
     public static Type typeFor(Class<?> classRep) {
-        if (types.get(descriptorFor(classRep)) == null) {
-            types.put(descriptorFor(classRep), new Type(classRep));
+        return typeForDescriptor(descriptorFor(classRep));
+    }
+
+    /**
+     * Constructs and returns a representation for a type from its JVM descriptor, making sure
+     * there is a unique representation for each unique type.
+     *
+     * @param descriptor the JVM descriptor.
+     * @return a type representation of descriptor.
+     */
+    public static Type typeForDescriptor(String descriptor) {
+        if (types.get(descriptor) == null) {
+            types.putIfAbsent(descriptor, new Type(descriptor));
         }
-        return types.get(descriptorFor(classRep));
+        return types.get(descriptor);
+    }
+
+    /**
+     * Constructs and returns a representation for a class type from a view of its class file,
+     * making sure there is a unique representation for each unique type. If there already is a
+     * representation for the type, the view replaces the one it had.
+     *
+     * @param clClass the view of the class file.
+     * @return a type representation of clClass.
+     */
+    public static Type typeFor(CLClass clClass) {
+        Type type = typeForDescriptor("L" + clClass.name + ";");
+        type.setCLClass(clClass);
+        return type;
     }
 
     /**
-     * Returns the class representation for this type.
+     * Returns the representation for the class type with the specified fully qualified name (eg,
+     * java.lang.String), or null if there is no such class on the class path.
      *
-     * @return the class representation for this type.
+     * @param name the fully qualified name of the class.
+     * @return the representation for the class type, or null.
      */
-    public Class<?> classRep() {
-        return classRep;
+    public static Type typeForName(String name) {
+        String descriptor = "L" + name.replace('.', '/') + ";";
+        Type type = types.get(descriptor);
+        if (type == null) {
+            // Look for the class before adding the type, so that a name that doesn't resolve
+            // leaves no type behind.
+            type = new Type(descriptor);
+            if (type.clClass() == null) {
+                return null;
+            }
+            types.putIfAbsent(descriptor, type);
+            type = types.get(descriptor);
+        }
+        return type.clClass() == null ? null : type;
     }
 
     /**
-     * Sets the class representation of this type to the specified partial class.
+     * Sets the class representation of this type to the view of the specified partial class.
      *
-     * @param classRep the partial class.
+     * @param clClass the view of the partial class.
      */
-    public void setClassRep(Class<?> classRep) {
-        this.classRep = classRep;
+    public synchronized void setCLClass(CLClass clClass) {
+        this.clClass = clClass;
+        clClassRead = true;
+        members.clear();
     }
 
     /**
@@ -174,7 +238,7 @@ class Type {
      * @return true if this is an array type, and false otherwise.
      */
     public boolean isArray() {
-        return classRep.isArray();
+        return descriptor.charAt(0) == '[';
     }
 
     /**
@@ -183,7 +247,7 @@ class Type {
      * @return an array type's component type.
      */
     public Type componentType() {
-        return typeFor(classRep.getComponentType());
+        return typeForDescriptor(descriptor.substring(1));
     }
 
     /**
@@ -192,8 +256,15 @@ class Type {
      * @return this type's super type, or null.
      */
     public Type superClass() {
-        return classRep == null || classRep.getSuperclass() == null ? null :
-                typeFor(classRep.getSuperclass());
+        if (descriptor == null || isPrimitive() || isInterface()) {
+            return null;
+        }
+        if (isArray()) {
+            return OBJECT;
+        }
+        CLClass cls = clClass();
+        return cls == null || cls.superName == null ? null :
+                typeForDescriptor("L" + cls.superName + ";");
     }
 
     /**
@@ -202,7 +273,7 @@ class Type {
      * @return true if this is a primitive type, and false otherwise.
      */
     public boolean isPrimitive() {
-        return classRep.isPrimitive();
+        return descriptor.length() == 1;
     }
 
     /**
@@ -211,7 +282,7 @@ class Type {
      * @return true if this is an interface type, and false otherwise.
      */
     public boolean isInterface() {
-        return classRep.isInterface();
+        return (modifiers() & ACC_INTERFACE) != 0;
     }
 
     /**
@@ -229,7 +300,7 @@ class Type {
      * @return true of this type is declared final, and false otherwise.
      */
     public boolean isFinal() {
-        return Modifier.isFinal(classRep.getModifiers());
+        return Modifier.isFinal(modifiers());
     }
 
     /**
@@ -238,7 +309,7 @@ class Type {
      * @return true of this type is declared abstract, and false otherwise.
      */
     public boolean isAbstract() {
-        return Modifier.isAbstract(classRep.getModifiers());
+        return Modifier.isAbstract(modifiers());
     }
 
     /**
@@ -248,7 +319,40 @@ class Type {
      * @return true if this is a supertype of other, and false otherwise.
      */
     public boolean isJavaAssignableFrom(Type that) {
-        return this.classRep.isAssignableFrom(that.classRep);
+        if (this.descriptor.equals(that.descriptor)) {
+            return true;
+        }
+        if (this.isPrimitive() || that.isPrimitive()) {
+            return false;
+        }
+        if (that.isArray()) {
+            if (this.isArray()) {
+                return this.componentType().isReference() &&
+                        this.componentType().isJavaAssignableFrom(that.componentType());
+            }
+            return this.descriptor.equals("Ljava/lang/Object;") ||
+                    this.descriptor.equals("Ljava/lang/Cloneable;") ||
+                    this.descriptor.equals("Ljava/io/Serializable;");
+        }
+        if (this.isArray()) {
+            return false;
+        }
+
+        // Search that class, its superclasses, and their superinterfaces.
+        CLClass cls = that.clClass();
+        if (cls == null) {
+            return false;
+        }
+        if (cls.superName != null &&
+                this.isJavaAssignableFrom(typeForDescriptor("L" + cls.superName + ";"))) {
+            return true;
+        }
+        for (String superInterface : cls.interfaces) {
+            if (this.isJavaAssignableFrom(typeForDescriptor("L" + superInterface + ";"))) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -285,8 +389,8 @@ class Type {
      */
     private ArrayList<Method> declaredAbstractMethods() {
         ArrayList<Method> declaredAbstractMethods = new ArrayList<Method>();
-        for (java.lang.reflect.Method method : classRep.getDeclaredMethods()) {
-            if (Modifier.isAbstract(method.getModifiers())) {
+        for (CLClass.MemberInfo method : declaredMethods()) {
+            if (Modifier.isAbstract(method.accessFlags)) {
                 declaredAbstractMethods.add(new Method(method));
             }
         }
@@ -300,8 +404,8 @@ class Type {
      */
     private ArrayList<Method> declaredConcreteMethods() {
         ArrayList<Method> declaredConcreteMethods = new ArrayList<Method>();
-        for (java.lang.reflect.Method method : classRep.getDeclaredMethods()) {
-            if (!Modifier.isAbstract(method.getModifiers())) {
+        for (CLClass.MemberInfo method : declaredMethods()) {
+            if (!Modifier.isAbstract(method.accessFlags)) {
                 declaredConcreteMethods.add(new Method(method));
             }
         }
@@ -324,7 +428,7 @@ class Type {
                 return;
             }
         }
-        JAST.compilationUnit.reportSemanticError(line,
+        JAST.compilationUnit().reportSemanticError(line,
                 "Type %s doesn't match any of the expected types %s", this,
                 Arrays.toString(expectedTypes));
     }
@@ -338,7 +442,7 @@ class Type {
      */
     public void mustMatchExpected(int line, Type expectedType) {
         if (!matchesExpected(expectedType)) {
-            JAST.compilationUnit.reportSemanticError(line, "Type %s doesn't match type %s", this,
+            JAST.compilationUnit().reportSemanticError(line, "Type %s doesn't match type %s", this,
                     expectedType);
         }
     }
@@ -355,22 +459,15 @@ class Type {
     }
 
     /**
-     * Returns true if the argument types match, and false otherwise.
+     * Returns true if the argument types match the parameter types of a method (or constructor)
+     * having the specified descriptor, and false otherwise.
      *
-     * @param argTypes1 arguments (classReps) of one method.
-     * @param argTypes2 arguments (classReps) of another method.
+     * @param argTypes   the argument types.
+     * @param descriptor the method descriptor.
      * @return true if the argument types match, and false otherwise.
      */
-    public static boolean argTypesMatch(Class<?>[] argTypes1, Class<?>[] argTypes2) {
-        if (argTypes1.length != argTypes2.length) {
-            return false;
-        }
-        for (int i = 0; i < argTypes1.length; i++) {
-            if (!Type.descriptorFor(argTypes1[i]).equals(Type.descriptorFor(argTypes2[i]))) {
-                return false;
-            }
-        }
-        return true;
+    public static boolean argTypesMatch(Type[] argTypes, String descriptor) {
+        return descriptor.startsWith(memberKeyFor("", argTypes));
     }
 
     /**
@@ -379,7 +476,8 @@ class Type {
      * @return the simple (unqualified) name of this type.
      */
     public String simpleName() {
-        return classRep.getSimpleName();
+        String name = toString();
+        return name.substring(Math.max(name.lastIndexOf('.'), name.lastIndexOf('$')) + 1);
     }
 
     /**
@@ -388,7 +486,7 @@ class Type {
      * @return a string representation of this type.
      */
     public String toString() {
-        return toJava(this.classRep);
+        return toJava(descriptor);
     }
 
     /**
@@ -397,7 +495,7 @@ class Type {
      * @return the JVM descriptor of this type.
      */
     public String toDescriptor() {
-        return descriptorFor(classRep);
+        return descriptor == null ? "V" : descriptor;
     }
 
     /**
@@ -407,7 +505,7 @@ class Type {
      */
     public String jvmName() {
         return this.isArray() || this.isPrimitive() ?
-                this.toDescriptor() : classRep.getName().replace('.', '/');
+                this.toDescriptor() : descriptor.substring(1, descriptor.length() - 1);
     }
 
     /**
@@ -438,25 +536,13 @@ class Type {
      * @return a method in this type having the given name and argument types, or null.
      */
     public Method methodFor(String name, Type[] argTypes) {
-        Class[] classes = new Class[argTypes.length];
-        for (int i = 0; i < argTypes.length; i++) {
-            classes[i] = argTypes[i].classRep;
+        String key = memberKeyFor(name, argTypes);
+        Object member = members.get(key);
+        if (member == null) {
+            member = findMethod(name, argTypes);
+            members.put(key, member == null ? NOT_FOUND : member);
         }
-        Class cls = classRep;
-
-        // Search this class and all superclasses.
-        while (cls != null) {
-            java.lang.reflect.Method[] methods = cls.getDeclaredMethods();
-            for (java.lang.reflect.Method method : methods) {
-                if (method.getName().equals(name) && Type.argTypesMatch(classes,
-                        method.getParameterTypes())) {
-                    return new Method(method);
-                }
-            }
-            cls = cls.getSuperclass();
-        }
-
-        return null;
+        return member == NOT_FOUND ? null : (Method) member;
     }
 
     /**
@@ -466,20 +552,13 @@ class Type {
      * @return a constructor in this type having the given argument types, or null.
      */
     public Constructor constructorFor(Type[] argTypes) {
-        Class[] classes = new Class[argTypes.length];
-        for (int i = 0; i < argTypes.length; i++) {
-            classes[i] = argTypes[i].classRep;
+        String key = memberKeyFor("<init>", argTypes);
+        Object member = members.get(key);
+        if (member == null) {
+            member = findConstructor(argTypes);
+            members.put(key, member == null ? NOT_FOUND : member);
         }
-
-        // Search only this class (we don't inherit constructors).
-        java.lang.reflect.Constructor[] constructors = classRep.getDeclaredConstructors();
-        for (java.lang.reflect.Constructor constructor : constructors) {
-            if (argTypesMatch(classes, constructor.getParameterTypes())) {
-                return new Constructor(constructor);
-            }
-        }
-
-        return null;
+        return member == NOT_FOUND ? null : (Constructor) member;
     }
 
     /**
@@ -489,17 +568,12 @@ class Type {
      * @return a field in this type having the given name, or null.
      */
     public Field fieldFor(String name) {
-        Class<?> cls = classRep;
-        while (cls != null) {
-            java.lang.reflect.Field[] fields = cls.getDeclaredFields();
-            for (java.lang.reflect.Field field : fields) {
-                if (field.getName().equals(name)) {
-                    return new Field(field);
-                }
-            }
-            cls = cls.getSuperclass();
+        Object member = members.get(name);
+        if (member == null) {
+            member = findField(name);
+            members.put(name, member == null ? NOT_FOUND : member);
         }
-        return null;
+        return member == NOT_FOUND ? null : (Field) member;
     }
 
     /**
@@ -529,36 +603,30 @@ class Type {
      * @return true if the member is accessible from this type, and false otherwise.
      */
     public boolean checkAccess(int line, Member member) {
-        if (!checkAccess(line, classRep, member.declaringType().classRep)) {
+        if (!checkAccess(line, this, member.declaringType())) {
             return false;
         }
         // The member must be either public, protected, or private.
         if (member.isPublic()) {
             return true;
         }
-        java.lang.Package p1 = classRep.getPackage();
-        java.lang.Package p2 = member.declaringType().classRep.getPackage();
-        if ((p1 == null ? "" : p1.getName()).equals((p2 == null ? "" : p2.getName()))) {
+        if (packageOf(this).equals(packageOf(member.declaringType()))) {
             return true;
         }
         if (member.isProtected()) {
-            if (classRep.getPackage().getName().equals(
-                    member.declaringType().classRep.getPackage().getName())
-                    || typeFor(member.getClass().getDeclaringClass())
-                    .isJavaAssignableFrom(this)) {
+            if (member.declaringType().isJavaAssignableFrom(this)) {
                 return true;
             } else {
-                JAST.compilationUnit.reportSemanticError(line,
+                JAST.compilationUnit().reportSemanticError(line,
                         "The protected member, " + member.name() + ", is not accessible.");
                 return false;
             }
         }
         if (member.isPrivate()) {
-            if (descriptorFor(classRep).equals(
-                    descriptorFor(member.member().getDeclaringClass()))) {
+            if (toDescriptor().equals(member.declaringType().toDescriptor())) {
                 return true;
             } else {
-                JAST.compilationUnit.reportSemanticError(line,
+                JAST.compilationUnit().reportSemanticError(line,
                         "The private member, " + member.name() + ", is not accessible.");
                 return false;
             }
@@ -568,7 +636,7 @@ class Type {
         if (packageName().equals(member.declaringType().packageName())) {
             return true;
         } else {
-            JAST.compilationUnit.reportSemanticError(line, "The member, " + member.name() +
+            JAST.compilationUnit().reportSemanticError(line, "The member, " + member.name() +
                     ", is not accessible because it's in a different package.");
             return false;
         }
@@ -588,7 +656,7 @@ class Type {
         if (targetType.isArray()) {
             return this.checkAccess(line, targetType.componentType());
         }
-        return checkAccess(line, classRep, targetType.classRep);
+        return checkAccess(line, this, targetType);
     }
 
     /**
@@ -601,15 +669,14 @@ class Type {
      * @return true if the referenced type is accessible from the referencing type, and false
      * otherwise.
      */
-    public static boolean checkAccess(int line, Class referencingType, Class type) {
-        java.lang.Package p1 = referencingType.getPackage();
-        java.lang.Package p2 = type.getPackage();
-        if (Modifier.isPublic(type.getModifiers()) ||
-                (p1 == null ? "" : p1.getName()).equals((p2 == null ? "" : p2.getName()))) {
+    public static boolean checkAccess(int line, Type referencingType, Type type) {
+        if (Modifier.isPublic(type.modifiers()) ||
+                packageOf(referencingType).equals(packageOf(type))) {
             return true;
         } else {
-            JAST.compilationUnit.reportSemanticError(line, "The type, " + type.getCanonicalName() +
-                    ", is not accessible from " + referencingType.getCanonicalName());
+            JAST.compilationUnit().reportSemanticError(line, "The type, " +
+                    type.toString().replace('$', '.') + ", is not accessible from " +
+                    referencingType.toString().replace('$', '.'));
             return false;
         }
     }
@@ -643,10 +710,152 @@ class Type {
         return signature;
     }
 
-    // Constructs a representation for a type from its Java (Class) representation. Use typeFor()
-    // that maps types having like classReps to like Types.
-    private Type(Class<?> classRep) {
-        this.classRep = classRep;
+    // Returns the key under which a method (or, if name is "<init>", a constructor) having the
+    // given name and argument types is cached in the members map. Like signatureFor(), but
+    // argument types are denoted by their descriptors, so that the key (less the name) is a
+    // prefix of the descriptor of any method that the argument types match. Field keys are plain
+    // names.
+    private static String memberKeyFor(String name, Type[] argTypes) {
+        StringBuilder key = new StringBuilder(name).append('(');
+        for (Type argType : argTypes) {
+            key.append(argType.toDescriptor());
+        }
+        return key.append(')').toString();
+    }
+
+    // Searches this class and all its superclasses for a method having the given name and
+    // argument types, and returns it, or null. A method that the compiler generated (a bridge
+    // method) is returned only if there is no other.
+    private Method findMethod(String name, Type[] argTypes) {
+        // Search this class and all superclasses.
+        for (Type type = this; type != null; type = type.superClass()) {
+            CLClass.MemberInfo bridge = null;
+            for (CLClass.MemberInfo method : type.declaredMethods()) {
+                if (method.name.equals(name) && argTypesMatch(argTypes, method.descriptor)) {
+                    if ((method.accessFlags & ACC_BRIDGE) == 0) {
+                        return new Method(method);
+                    } else if (bridge == null) {
+                        bridge = method;
+                    }
+                }
+            }
+            if (bridge != null) {
+                return new Method(bridge);
+            }
+        }
+        return null;
+    }
+
+    // Searches this class for a constructor having the given argument types, and returns it, or
+    // null.
+    private Constructor findConstructor(Type[] argTypes) {
+        // Search only this class (we don't inherit constructors).
+        CLClass cls = isPrimitive() || isArray() ? null : clClass();
+        if (cls == null) {
+            return null;
+        }
+        for (CLClass.MemberInfo method : cls.methods) {
+            if (method.name.equals("<init>") && argTypesMatch(argTypes, method.descriptor)) {
+                return new Constructor(method);
+            }
+        }
+        return null;
+    }
+
+    // Searches this class and all its superclasses for a field having the given name, and
+    // returns it, or null.
+    private Field findField(String name) {
+        for (Type type = this; type != null; type = type.superClass()) {
+            CLClass cls = type.isPrimitive() || type.isArray() ? null : type.clClass();
+            if (cls == null) {
+                continue;
+            }
+            for (CLClass.MemberInfo field : cls.fields) {
+                if (field.name.equals(name)) {
+                    return new Field(field);
+                }
+            }
+        }
+        return null;
+    }
+
+    // Returns the methods declared in this class, less its constructors and static initializer.
+    private ArrayList<CLClass.MemberInfo> declaredMethods() {
+        ArrayList<CLClass.MemberInfo> declaredMethods = new ArrayList<CLClass.MemberInfo>();
+        CLClass cls = isPrimitive() || isArray() ? null : clClass();
+        if (cls != null) {
+            for (CLClass.MemberInfo method : cls.methods) {
+                if (method.name.charAt(0) != '<') {
+                    declaredMethods.add(method);
+                }
+            }
+        }
+        return declaredMethods;
+    }
+
+    // Returns the view of the class file for this type, reading it from the class path the first
+    // time, or null if this is not a class type or the class file can't be found (or read).
+    private synchronized CLClass clClass() {
+        if (!clClassRead) {
+            clClassRead = true;
+            if (descriptor != null && descriptor.charAt(0) == 'L') {
+                clClass = readCLClass(descriptor.substring(1, descriptor.length() - 1));
+            }
+        }
+        return clClass;
+    }
+
+    // Returns the modifiers of this type, as Class.getModifiers() would: a primitive type is
+    // public, final, and abstract; an array type is final and abstract, and as accessible as its
+    // component type; and a class type has the access flags in its class file.
+    private int modifiers() {
+        if (isPrimitive()) {
+            return ACC_PUBLIC | ACC_FINAL | ACC_ABSTRACT;
+        }
+        if (isArray()) {
+            return componentType().modifiers() & (ACC_PUBLIC | ACC_PRIVATE | ACC_PROTECTED) |
+                    ACC_FINAL | ACC_ABSTRACT;
+        }
+        CLClass cls = clClass();
+        return cls == null ? 0 : cls.accessFlags & ~ACC_SUPER;
+    }
+
+    // Constructs a representation for a type from its JVM descriptor. Use typeForDescriptor()
+    // that maps like descriptors to like Types.
+    private Type(String descriptor) {
+        this.descriptor = descriptor;
+    }
+
+    // Returns the package of the specified type, in internal form.
+    private static String packageOf(Type type) {
+        String name = type.jvmName();
+        return name.lastIndexOf('/') == -1 ? "" : name.substring(0, name.lastIndexOf('/'));
+    }
+
+    // Reads the class file for the class with the specified name (in internal form) from the
+    // class path, and returns a view of it, or null if it can't be found (or read).
+    private static CLClass readCLClass(String name) {
+        CLInputStream in;
+        synchronized (Type.class) {
+            if (classPath == null) {
+                classPath = new CLPath();
+            }
+            in = classPath.loadClass(name);
+        }
+        if (in == null) {
+            return null;
+        }
+        try {
+            return CLClass.read(in);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
     }
 
     // Returns the JVM descriptor of a type's class representation.
@@ -657,13 +866,25 @@ class Type {
                 : classRep == char.class ? "C"
                 : classRep == boolean.class ? "Z"
                 : classRep == double.class ? "D"
-                : classRep == long.class ? "J" : "?")
+                : classRep == long.class ? "J"
+                : classRep == float.class ? "F"
+                : classRep == byte.class ? "B" : "S")
                 : "L" + classRep.getName().replace('.', '/') + ";";
     }
 
-    // Returns the Java (and so j--) denotation for the specified type.
-    private static String toJava(Class classRep) {
-        return classRep.isArray() ? toJava(classRep.getComponentType()) + "[]" : classRep.getName();
+    // Returns the Java (and so j--) denotation for the type having the specified descriptor.
+    private static String toJava(String descriptor) {
+        char c = descriptor.charAt(0);
+        return c == '[' ? toJava(descriptor.substring(1)) + "[]"
+                : c == 'L' ? descriptor.substring(1, descriptor.length() - 1).replace('/', '.')
+                : c == 'I' ? "int"
+                : c == 'C' ? "char"
+                : c == 'Z' ? "boolean"
+                : c == 'D' ? "double"
+                : c == 'J' ? "long"
+                : c == 'F' ? "float"
+                : c == 'B' ? "byte"
+                : c == 'S' ? "short" : "void";
     }
 }
 
@@ -731,12 +952,12 @@ class TypeName extends Type {
     public Type resolve(Context context) {
         Type resolvedType = context.lookupType(name);
         if (resolvedType == null) {
-            // Try loading a type with the given fullname.
-            try {
-                resolvedType = typeFor(Class.forName(name));
+            // Try finding a class with the given fullname.
+            resolvedType = typeForName(name);
+            if (resolvedType != null) {
                 context.addType(line, resolvedType);
-            } catch (Exception e) {
-                JAST.compilationUnit.reportSemanticError(line, "Unable to locate %s", name);
+            } else {
+                JAST.compilationUnit().reportSemanticError(line, "Unable to locate %s", name);
                 resolvedType = Type.ANY;
             }
         }
@@ -751,8 +972,8 @@ class TypeName extends Type {
 
 /**
  * A representation of an array type. It is built by the Parser to stand in for a Type until the
- * analyze() phase, at which point it is resolved to an actual Type object (having a Class that
- * identifies it).
+ * analyze() phase, at which point it is resolved to an actual Type object (having a descriptor
+ * that identifies it).
  */
 class ArrayTypeName extends Type {
     // The array's base or component type.
@@ -793,7 +1014,6 @@ class ArrayTypeName extends Type {
      */
     public Type resolve(Context context) {
         componentType = componentType.resolve(context);
-        Class classRep = Array.newInstance(componentType().classRep(), 0).getClass();
-        return Type.typeFor(classRep);
+        return Type.typeForDescriptor("[" + componentType.toDescriptor());
     }
 }
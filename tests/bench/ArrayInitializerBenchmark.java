@@ -0,0 +1,157 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas.
+
+import java.io.DataInputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import jminusminus.JavaCCMain;
+
+/**
+ * This class generates j-- programs with a constant int array (a table) of a few sizes, compiles
+ * each with the j-- compiler with its elements stored one by one and packed into strings (see
+ * the -pack option), and reports the size of the class file, the size of the code of the class
+ * initializer, and the time it takes to load and initialize the class. The generated programs
+ * have the form:
+ *
+ * <pre>
+ * public class Table {
+ *     public static int[] TABLE = {..., ..., ...};
+ * }
+ * </pre>
+ * <p>
+ * with random elements, small (0 to 255) or wide (any int) as given by the first command-line
+ * argument (default wide). The number of times each class is loaded (default 1000) may be given
+ * as the second. A class whose class initializer is too large for the JVM is reported as such.
+ */
+public class ArrayInitializerBenchmark {
+    // The sizes of the tables.
+    private static final int[] SIZES = {16, 64, 256, 1024, 4096, 16384};
+
+    public static void main(String[] args) throws Exception {
+        boolean wide = args.length == 0 || args[0].equals("wide");
+        int loads = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        System.out.printf("%s elements, %d loads\n", wide ? "wide" : "small", loads);
+        System.out.println("  elements   one by one: class  <clinit>   load     packed: class  "
+                + "<clinit>   load");
+        for (int size : SIZES) {
+            Path dir = Files.createTempDirectory("array-bench");
+            Path source = dir.resolve("Table.java");
+            Files.write(source, program(size, wide));
+            System.out.printf("  %8d", size);
+            for (String pack : new String[] {"" + Integer.MAX_VALUE, "1"}) {
+                Path out = Files.createDirectory(dir.resolve("pack" + pack));
+                JavaCCMain.main(new String[] {"-pack", pack, "-d", out.toString(),
+                        source.toString()});
+                Path classFile = out.resolve("Table.class");
+                int codeLength = codeLength(classFile, "<clinit>");
+                System.out.printf("  %17d %9d", Files.size(classFile), codeLength);
+                if (codeLength > 65535) {
+                    System.out.print("  too large");
+                } else {
+                    System.out.printf(" %7.1f ms", time(out, loads));
+                }
+            }
+            System.out.println();
+        }
+    }
+
+    // Returns the lines of the generated program with a table of the specified size.
+    private static List<String> program(int size, boolean wide) {
+        Random random = new Random(size);
+        StringBuilder table = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            table.append(i == 0 ? "" : ", ").append(wide ? random.nextInt() :
+                    random.nextInt(256));
+        }
+        ArrayList<String> lines = new ArrayList<String>();
+        lines.add("public class Table {");
+        lines.add("    public static int[] TABLE = {" + table + "};");
+        lines.add("}");
+        return lines;
+    }
+
+    // Loads and initializes the class Table from the specified directory the specified number of
+    // times, each time in a new class loader, a few times over, and returns the best time in
+    // milliseconds.
+    private static double time(Path dir, int loads) throws Exception {
+        URL[] urls = {dir.toUri().toURL()};
+        double best = Double.MAX_VALUE;
+        for (int run = 0; run < 8; run++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < loads; i++) {
+                Class.forName("Table", true, new URLClassLoader(urls));
+            }
+            if (run >= 3) {
+                best = Math.min(best, (System.nanoTime() - start) / 1e6);
+            }
+        }
+        return best;
+    }
+
+    // Returns the length of the code of the method with the specified name in the specified class
+    // file, or -1 if there is no such method.
+    private static int codeLength(Path classFile, String name) throws Exception {
+        DataInputStream in = new DataInputStream(Files.newInputStream(classFile));
+        try {
+            in.skipBytes(8);
+            int count = in.readUnsignedShort();
+            String[] utf8 = new String[count];
+            for (int i = 1; i < count; i++) {
+                int tag = in.readUnsignedByte();
+                if (tag == 1) {
+                    utf8[i] = in.readUTF();
+                } else if (tag == 5 || tag == 6) {
+                    in.skipBytes(8);
+                    i++;
+                } else if (tag == 7 || tag == 8 || tag == 16 || tag == 19 || tag == 20) {
+                    in.skipBytes(2);
+                } else if (tag == 15) {
+                    in.skipBytes(3);
+                } else {
+                    in.skipBytes(4);
+                }
+            }
+            in.skipBytes(6);
+            in.skipBytes(2 * in.readUnsignedShort());
+            skipMembers(in);
+            int methods = in.readUnsignedShort();
+            for (int m = 0; m < methods; m++) {
+                in.skipBytes(2);
+                String methodName = utf8[in.readUnsignedShort()];
+                in.skipBytes(2);
+                int attributes = in.readUnsignedShort();
+                for (int a = 0; a < attributes; a++) {
+                    String attributeName = utf8[in.readUnsignedShort()];
+                    int length = in.readInt();
+                    if (methodName.equals(name) && attributeName.equals("Code")) {
+                        in.skipBytes(4);
+                        return in.readInt();
+                    }
+                    in.skipBytes(length);
+                }
+            }
+            return -1;
+        } finally {
+            in.close();
+        }
+    }
+
+    // Skips the fields (or methods) table of a class file.
+    private static void skipMembers(DataInputStream in) throws Exception {
+        int members = in.readUnsignedShort();
+        for (int m = 0; m < members; m++) {
+            in.skipBytes(6);
+            int attributes = in.readUnsignedShort();
+            for (int a = 0; a < attributes; a++) {
+                in.skipBytes(2);
+                in.skipBytes(in.readInt());
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas.
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import jminusminus.JavaCCMain;
+
+/**
+ * This class compiles j-- programs for Java 5 (class files of version 49, which the JVM verifies
+ * by inferring the types in their code) and for a later release (whose class files carry the
+ * stack map frames that the JVM checks their code against), and reports the time the JVM takes
+ * to load, verify, and link the classes of each. For example, from tests/jvm:
+ *
+ * <pre>
+ *   java ClassVerifyBenchmark 17 HelloWorld.java Factorial.java PrimeCounter.java ...
+ * </pre>
+ * <p>
+ * Each round defines the classes in a fresh class loader and links them; the time per round is
+ * averaged over many rounds, after a few warm-up rounds.
+ */
+public class ClassVerifyBenchmark {
+    public static void main(String[] args) throws Exception {
+        String release = args[0];
+        ArrayList<String> sourceFiles = new ArrayList<String>();
+        for (int i = 1; i < args.length; i++) {
+            sourceFiles.add(args[i]);
+        }
+        HashMap<String, byte[]> java5 = compile("5", sourceFiles);
+        HashMap<String, byte[]> later = compile(release, sourceFiles);
+        for (int round = 0; round < 50; round++) {
+            link(java5);
+            link(later);
+        }
+        double java5Time = 0, laterTime = 0;
+        int rounds = 500;
+        for (int round = 0; round < rounds; round++) {
+            java5Time += link(java5);
+            laterTime += link(later);
+        }
+        System.out.printf("%d classes loaded and verified in %.1f us (-target 5) and %.1f us "
+                + "(-target %s)\n", java5.size(), java5Time / rounds, laterTime / rounds, release);
+    }
+
+    // Compiles the source files for the specified release, and returns the class files by class
+    // name.
+    private static HashMap<String, byte[]> compile(String release, ArrayList<String> sourceFiles)
+            throws IOException {
+        Path dir = Files.createTempDirectory("verify-bench");
+        ArrayList<String> compilerArgs = new ArrayList<String>();
+        compilerArgs.add("-target");
+        compilerArgs.add(release);
+        compilerArgs.add("-d");
+        compilerArgs.add(dir.toString());
+        compilerArgs.addAll(sourceFiles);
+        JavaCCMain.main(compilerArgs.toArray(new String[0]));
+        HashMap<String, byte[]> classes = new HashMap<String, byte[]>();
+        for (Path file : Files.newDirectoryStream(dir, "*.class")) {
+            String name = file.getFileName().toString();
+            classes.put(name.substring(0, name.length() - 6), Files.readAllBytes(file));
+        }
+        return classes;
+    }
+
+    // Defines the specified classes in a fresh class loader, links (and so verifies) them, and
+    // returns the time that took, in microseconds.
+    private static double link(final HashMap<String, byte[]> classes) throws Exception {
+        ClassLoader loader = new ClassLoader(ClassVerifyBenchmark.class.getClassLoader()) {
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                byte[] bytes = classes.get(name);
+                if (bytes == null) {
+                    throw new ClassNotFoundException(name);
+                }
+                return defineClass(name, bytes, 0, bytes.length);
+            }
+        };
+        long start = System.nanoTime();
+        for (String name : classes.keySet()) {
+            Class.forName(name, true, loader);
+        }
+        return (System.nanoTime() - start) / 1e3;
+    }
+}
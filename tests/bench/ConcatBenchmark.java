@@ -0,0 +1,155 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas.
+
+import java.io.DataInputStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import jminusminus.JavaCCMain;
+
+/**
+ * This class generates a j-- program that concatenates strings, compiles it with the j-- compiler
+ * for Java 8 (where concatenation compiles to a StringBuilder and an append() call per operand)
+ * and for Java 17 (where it compiles to an invokedynamic instruction that StringConcatFactory
+ * links), and reports the size of the JVM code of the concatenating method and the time it takes
+ * to run, for each target. The generated program has the form:
+ *
+ * <pre>
+ * public class Concats {
+ *     public static String format(int i, char c, boolean b, String s) {
+ *         return "item " + i + " [" + c + "] " + b + ": " + s + ".";
+ *     }
+ *
+ *     public static int run(String[] names, int reps) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * <p>
+ * The number of concatenations per run (default 1000000) may be given as a command-line argument.
+ * Each target is timed over a few runs, after a few warm-up runs, and the result of its runs (the
+ * total length of the strings) is written, so the two targets can be checked against each other.
+ */
+public class ConcatBenchmark {
+    // The targets compiled for.
+    private static final String[] TARGETS = {"8", "17"};
+
+    public static void main(String[] args) throws Exception {
+        int reps = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        Path dir = Files.createTempDirectory("concat-bench");
+        Path source = dir.resolve("Concats.java");
+        Files.write(source, program());
+        String[] names = {"alpha", "beta", "gamma", "delta"};
+        System.out.printf("%d concatenations\n", reps);
+        for (String target : TARGETS) {
+            Path out = Files.createDirectory(dir.resolve("target" + target));
+            JavaCCMain.main(new String[] {"-target", target, "-d", out.toString(),
+                    source.toString()});
+            URLClassLoader loader = new URLClassLoader(new URL[] {out.toUri().toURL()});
+            Method run = loader.loadClass("Concats").getMethod("run", String[].class, int.class);
+            for (int warmup = 0; warmup < 3; warmup++) {
+                run.invoke(null, names, reps);
+            }
+            double best = Double.MAX_VALUE;
+            int result = 0;
+            for (int i = 0; i < 5; i++) {
+                long start = System.nanoTime();
+                result = (Integer) run.invoke(null, names, reps);
+                best = Math.min(best, (System.nanoTime() - start) / 1e6);
+            }
+            System.out.printf("  -target %-2s  format(): %3d bytes of code  %8.1f ms  result %d\n",
+                    target, codeLength(out.resolve("Concats.class"), "format"), best, result);
+        }
+    }
+
+    // Returns the lines of the generated program.
+    private static List<String> program() {
+        ArrayList<String> lines = new ArrayList<String>();
+        lines.add("public class Concats {");
+        lines.add("    public static String format(int i, char c, boolean b, String s) {");
+        lines.add("        return \"item \" + i + \" [\" + c + \"] \" + b + \": \" + s + \".\";");
+        lines.add("    }");
+        lines.add("");
+        lines.add("    public static int run(String[] names, int reps) {");
+        lines.add("        int sum = 0;");
+        lines.add("        int k = 0;");
+        lines.add("        while (reps > 0) {");
+        lines.add("            sum += format(reps, 'x', k == 0, names[k]).length();");
+        lines.add("            k += 1;");
+        lines.add("            if (k == names.length) {");
+        lines.add("                k = 0;");
+        lines.add("            }");
+        lines.add("            reps = reps - 1;");
+        lines.add("        }");
+        lines.add("        return sum;");
+        lines.add("    }");
+        lines.add("}");
+        return lines;
+    }
+
+    // Returns the length of the code of the method with the specified name in the specified class
+    // file, or -1 if there is no such method.
+    private static int codeLength(Path classFile, String name) throws Exception {
+        DataInputStream in = new DataInputStream(Files.newInputStream(classFile));
+        try {
+            in.skipBytes(8);
+            int count = in.readUnsignedShort();
+            String[] utf8 = new String[count];
+            for (int i = 1; i < count; i++) {
+                int tag = in.readUnsignedByte();
+                if (tag == 1) {
+                    utf8[i] = in.readUTF();
+                } else if (tag == 5 || tag == 6) {
+                    in.skipBytes(8);
+                    i++;
+                } else if (tag == 7 || tag == 8 || tag == 16 || tag == 19 || tag == 20) {
+                    in.skipBytes(2);
+                } else if (tag == 15) {
+                    in.skipBytes(3);
+                } else {
+                    in.skipBytes(4);
+                }
+            }
+            in.skipBytes(6);
+            in.skipBytes(2 * in.readUnsignedShort());
+            skipMembers(in);
+            int methods = in.readUnsignedShort();
+            for (int m = 0; m < methods; m++) {
+                in.skipBytes(2);
+                String methodName = utf8[in.readUnsignedShort()];
+                in.skipBytes(2);
+                int attributes = in.readUnsignedShort();
+                for (int a = 0; a < attributes; a++) {
+                    String attributeName = utf8[in.readUnsignedShort()];
+                    int length = in.readInt();
+                    if (methodName.equals(name) && attributeName.equals("Code")) {
+                        in.skipBytes(4);
+                        return in.readInt();
+                    }
+                    in.skipBytes(length);
+                }
+            }
+            return -1;
+        } finally {
+            in.close();
+        }
+    }
+
+    // Skips the fields (or methods) table of a class file.
+    private static void skipMembers(DataInputStream in) throws Exception {
+        int members = in.readUnsignedShort();
+        for (int m = 0; m < members; m++) {
+            in.skipBytes(6);
+            int attributes = in.readUnsignedShort();
+            for (int a = 0; a < attributes; a++) {
+                in.skipBytes(2);
+                in.skipBytes(in.readInt());
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas.
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import jminusminus.JavaCCMain;
+
+/**
+ * This class generates j-- programs with a single large method, of a few sizes, compiles each to
+ * SPIM with the j-- compiler, and reports the time it takes and the memory it allocates. The
+ * method has a loop whose body is a sequence of if-statements, each of which updates one of a
+ * number of variables, so that its control flow graph has thousands of blocks and, with the phi
+ * functions at the joins, thousands of virtual registers, all of which the liveness analysis of
+ * the register allocator goes over. The generated programs have the form:
+ *
+ * <pre>
+ * import jminusminus.SPIM;
+ *
+ * public class Large {
+ *     public static void main(String[] args) {
+ *         SPIM.printInt(Large.m(10));
+ *         SPIM.printChar('\n');
+ *     }
+ *
+ *     public static int m(int n) {
+ *         int v0 = 0;
+ *         int v1 = 0;
+ *         ...
+ *         int i = 0;
+ *         while (n &gt; i) {
+ *             if (i &gt; 0) {
+ *                 v0 = v0 + i;
+ *             } else {
+ *                 v1 = v1 - 1;
+ *             }
+ *             ...
+ *             i = i + 1;
+ *         }
+ *         return v0 + v1 + ...;
+ *     }
+ * }
+ * </pre>
+ * <p>
+ * The register allocation scheme (default linear) may be given as a command-line argument. The
+ * debugging output of the back end is discarded. Each program is compiled a few times, after a
+ * few warm-up runs. The SPIM runtime is located through the j environment variable, as for the
+ * compiler itself.
+ */
+public class LivenessBenchmark {
+    // The numbers of if-statements in the loop of the generated methods.
+    private static final int[] SIZES = {250, 500, 1000, 2000};
+
+    // The number of variables the if-statements update.
+    private static final int VARIABLES = 100;
+
+    public static void main(String[] args) throws IOException {
+        String ra = args.length > 0 ? args[0] : "linear";
+
+        System.out.printf("%s allocation\n", ra);
+        System.out.println("  if-statements      time     allocated");
+        for (int size : SIZES) {
+            Path dir = Files.createTempDirectory("liveness-bench");
+            Path source = dir.resolve("Large.java");
+            Files.write(source, program(size));
+            String[] compile = {"-s", ra, "-d", dir.toString(), source.toString()};
+            PrintStream stdout = System.out;
+            System.setOut(new PrintStream(new OutputStream() {
+                public void write(int b) {
+                }
+            }));
+            double best = Double.MAX_VALUE;
+            long allocated = Long.MAX_VALUE;
+            try {
+                for (int run = 0; run < 5; run++) {
+                    long bytes = allocatedBytes();
+                    long start = System.nanoTime();
+                    JavaCCMain.main(compile);
+                    if (run >= 2) {
+                        best = Math.min(best, (System.nanoTime() - start) / 1e6);
+                        allocated = Math.min(allocated, allocatedBytes() - bytes);
+                    }
+                }
+            } finally {
+                System.setOut(stdout);
+            }
+            System.out.printf("  %13d %9.1f ms %9.1f MB\n", size, best, allocated / 1e6);
+        }
+    }
+
+    // Returns the lines of the generated program with the specified number of if-statements.
+    private static List<String> program(int size) {
+        ArrayList<String> lines = new ArrayList<String>();
+        lines.add("import jminusminus.SPIM;");
+        lines.add("");
+        lines.add("public class Large {");
+        lines.add("    public static void main(String[] args) {");
+        lines.add("        SPIM.printInt(Large.m(10));");
+        lines.add("        SPIM.printChar('\\n');");
+        lines.add("    }");
+        lines.add("");
+        lines.add("    public static int m(int n) {");
+        for (int v = 0; v < VARIABLES; v++) {
+            lines.add("        int v" + v + " = 0;");
+        }
+        lines.add("        int i = 0;");
+        lines.add("        while (n > i) {");
+        for (int k = 0; k < size; k++) {
+            lines.add("            if (i > " + (k % 7) + ") {");
+            lines.add("                v" + (k % VARIABLES) + " = v" + (k % VARIABLES) + " + i;");
+            lines.add("            } else {");
+            lines.add("                v" + ((k + 1) % VARIABLES) + " = v" +
+                    ((k + 1) % VARIABLES) + " - 1;");
+            lines.add("            }");
+        }
+        lines.add("            i = i + 1;");
+        lines.add("        }");
+        StringBuilder sum = new StringBuilder("v0");
+        for (int v = 1; v < VARIABLES; v++) {
+            sum.append(" + v").append(v);
+        }
+        lines.add("        return " + sum + ";");
+        lines.add("    }");
+        lines.add("}");
+        return lines;
+    }
+
+    // Returns the number of bytes the current thread has allocated so far.
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
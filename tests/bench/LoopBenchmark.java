@@ -0,0 +1,68 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas.
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import jminusminus.JavaCCMain;
+
+/**
+ * This class compiles the loop-heavy programs tests/jvm/PrimeCounter.java and
+ * tests/jvm/MatrixSquared.java with the j-- compiler, and reports the time their main() methods
+ * take to run: PrimeCounter for n (default 5000), and MatrixSquared (whose loops write a 2x2
+ * matrix) a number of times (default 20000) in a row. The directory with the programs (default
+ * tests/jvm) and the two numbers may be given as command-line arguments. Each program is timed
+ * over a few runs, after a few warm-up runs, with its standard output discarded. Running the
+ * benchmark with -Xint shows the cost of the code the compiler generates for loops in the
+ * interpreter, before the JIT compiler rearranges it.
+ */
+public class LoopBenchmark {
+    public static void main(String[] args) throws Exception {
+        String tests = args.length > 0 ? args[0] : "tests/jvm";
+        int n = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        int writes = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+
+        Path dir = Files.createTempDirectory("loop-bench");
+        for (String program : new String[] {"PrimeCounter", "MatrixSquared"}) {
+            JavaCCMain.main(new String[] {"-d", dir.toString(), tests + "/" + program + ".java"});
+        }
+        URLClassLoader loader = new URLClassLoader(new URL[] {dir.toUri().toURL()});
+        Method primeCounter = loader.loadClass("PrimeCounter").getMethod("main", String[].class);
+        Method matrixSquared = loader.loadClass("MatrixSquared").getMethod("main",
+                String[].class);
+
+        System.out.printf("PrimeCounter %d:          %8.1f ms\n", n,
+                time(primeCounter, new String[] {"" + n}, 1));
+        System.out.printf("MatrixSquared 1 2 3 4 x %d: %8.1f ms\n", writes,
+                time(matrixSquared, new String[] {"1", "2", "3", "4"}, writes));
+    }
+
+    // Runs the specified main() method the specified number of times in a row, a few times over,
+    // with standard output discarded, and returns the best time in milliseconds.
+    private static double time(Method main, String[] args, int times) throws Exception {
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            public void write(int b) {
+            }
+        }));
+        double best = Double.MAX_VALUE;
+        try {
+            for (int run = 0; run < 8; run++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < times; i++) {
+                    main.invoke(null, (Object) args);
+                }
+                if (run >= 3) {
+                    best = Math.min(best, (System.nanoTime() - start) / 1e6);
+                }
+            }
+        } finally {
+            System.setOut(stdout);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,99 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas.
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import jminusminus.JavaCCMain;
+
+/**
+ * This class generates a j-- program that makes many calls to System.out.println(), and reports
+ * the time the compiler takes to compile it. Analysis looks up the field System.out and the
+ * method println() for every call, so the program stresses member lookup. The generated program
+ * has the form:
+ *
+ * <pre>
+ * import java.lang.System;
+ *
+ * public class ManyPrints {
+ *     public static void main(String[] args) {
+ *         int i = 42;
+ *         System.out.println(0);
+ *         System.out.println("1");
+ *         System.out.println('2');
+ *         System.out.println(i == 3);
+ *         System.out.println(i + 4);
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * <p>
+ * The statements are spread over methods of 500 statements each, to stay within the JVM's limit
+ * on the size of a method. The number of calls (default 5000) may be given as a command-line
+ * argument. The compilation is timed over a few runs, after a few warm-up runs.
+ */
+public class MemberLookupBenchmark {
+    public static void main(String[] args) throws IOException {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+
+        Path dir = Files.createTempDirectory("member-bench");
+        Path source = dir.resolve("ManyPrints.java");
+        Files.write(source, program(calls));
+
+        String[] compilerArgs = {"-d", dir.toString(), source.toString()};
+        for (int run = 0; run < 3; run++) {
+            JavaCCMain.main(compilerArgs);
+        }
+        double best = Double.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            JavaCCMain.main(compilerArgs);
+            best = Math.min(best, (System.nanoTime() - start) / 1e6);
+        }
+        System.out.printf("%d println calls compiled in %.1f ms\n", calls, best);
+    }
+
+    // Returns the lines of the generated program.
+    private static List<String> program(int calls) {
+        ArrayList<String> lines = new ArrayList<String>();
+        lines.add("import java.lang.System;");
+        lines.add("");
+        lines.add("public class ManyPrints {");
+        for (int k = 0; k < calls; k++) {
+            if (k % 500 == 0) {
+                if (k > 0) {
+                    lines.add("    }");
+                    lines.add("");
+                }
+                lines.add("    public static void m" + k / 500 + "() {");
+                lines.add("        int i = 42;");
+            }
+            switch (k % 5) {
+                case 0:
+                    lines.add("        System.out.println(" + k + ");");
+                    break;
+                case 1:
+                    lines.add("        System.out.println(\"" + k + "\");");
+                    break;
+                case 2:
+                    lines.add("        System.out.println('" + k % 10 + "');");
+                    break;
+                case 3:
+                    lines.add("        System.out.println(i == " + k + ");");
+                    break;
+                default:
+                    lines.add("        System.out.println(i + " + k + ");");
+                    break;
+            }
+        }
+        lines.add("    }");
+        lines.add("");
+        lines.add("    public static void main(String[] args) {");
+        lines.add("        ManyPrints.m0();");
+        lines.add("    }");
+        lines.add("}");
+        return lines;
+    }
+}
@@ -0,0 +1,113 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas.
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import jminusminus.JavaCCMain;
+
+/**
+ * This class compiles j-- programs to SPIM with each register allocation scheme (naive, linear
+ * and graph), for a few numbers of physical registers (-r), and reports the number of loads and
+ * stores in the code for the methods of each program. Save for the stores of arguments beyond the
+ * fourth, these are the loads and stores that spilling calls for; those that save and restore
+ * registers in the method prologues and epilogues aren't counted. The programs are those in the
+ * directories given as command-line arguments (default tests/spim and tests/jvm); those that don't
+ * compile to SPIM (with the naive scheme) are left out. The debugging output of the back end is
+ * discarded. The SPIM runtime is located through the j environment variable, as for the compiler
+ * itself.
+ */
+public class SpillBenchmark {
+    // The register allocation schemes.
+    private static final String[] SCHEMES = {"naive", "linear", "graph"};
+
+    // The numbers of physical registers.
+    private static final int[] REGISTERS = {3, 4, 8};
+
+    public static void main(String[] args) throws IOException {
+        String[] dirs = args.length > 0 ? args : new String[] {"tests/spim", "tests/jvm"};
+        ArrayList<File> programs = new ArrayList<File>();
+        for (String dir : dirs) {
+            File[] files = new File(dir).listFiles();
+            Arrays.sort(files);
+            for (File file : files) {
+                if (file.getName().endsWith(".java")) {
+                    programs.add(file);
+                }
+            }
+        }
+
+        Path out = Files.createTempDirectory("spill-bench");
+        for (int r : REGISTERS) {
+            System.out.printf("-r %d: loads and stores\n", r);
+            System.out.printf("  %-20s %8s %8s %8s\n", "program", "naive", "linear", "graph");
+            int[] totals = new int[SCHEMES.length];
+            for (File program : programs) {
+                int[] counts = new int[SCHEMES.length];
+                for (int i = 0; i < SCHEMES.length && counts[0] != -1; i++) {
+                    counts[i] = count(program, out.resolve(SCHEMES[i] + r), SCHEMES[i], r);
+                }
+                if (counts[0] == -1) {
+                    continue;
+                }
+                String name = program.getName().replace(".java", "");
+                System.out.printf("  %-20s %8d %8d %8d\n", name, counts[0], counts[1],
+                        counts[2]);
+                for (int i = 0; i < SCHEMES.length; i++) {
+                    totals[i] += counts[i];
+                }
+            }
+            System.out.printf("  %-20s %8d %8d %8d\n\n", "total", totals[0], totals[1],
+                    totals[2]);
+        }
+    }
+
+    // Compiles the program to SPIM in the specified directory with the specified register
+    // allocation scheme and number of registers, with standard output discarded, and returns the
+    // number of loads and stores in the code for its methods, or -1 if it doesn't compile (or the
+    // back end fails on it).
+    private static int count(File program, Path outputDir, String ra, int r) throws IOException {
+        outputDir.toFile().mkdirs();
+        Path spim = outputDir.resolve(program.getName().replace(".java", ".s"));
+        Files.deleteIfExists(spim);
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        PrintStream discard = new PrintStream(new OutputStream() {
+            public void write(int b) {
+            }
+        });
+        System.setOut(discard);
+        System.setErr(discard);
+        try {
+            JavaCCMain.main(new String[] {"-s", ra, "-r", "" + r, "-d", outputDir.toString(),
+                    program.getPath()});
+        } catch (RuntimeException e) {
+            return -1;
+        } finally {
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+        if (!Files.exists(spim) || Files.size(spim) == 0) {
+            return -1;
+        }
+
+        // The loads and stores that save and restore registers are commented, and the SPIM
+        // runtime follows the code for the methods.
+        int n = 0;
+        for (String line : Files.readAllLines(spim)) {
+            if (line.startsWith("# SPIM Runtime")) {
+                break;
+            }
+            String s = line.trim();
+            if ((s.startsWith("lw ") || s.startsWith("sw ")) && !s.contains("#")) {
+                n++;
+            }
+        }
+        return n;
+    }
+}
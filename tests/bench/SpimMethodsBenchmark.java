@@ -0,0 +1,136 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas.
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import jminusminus.JavaCCMain;
+
+/**
+ * This class generates a j-- program with many methods, and reports the time the SPIM back end
+ * takes to compile it sequentially and with the methods compiled concurrently (-j). The generated
+ * program has the form:
+ *
+ * <pre>
+ * import jminusminus.SPIM;
+ *
+ * public class ManyMethods {
+ *     public static void main(String[] args) {
+ *         SPIM.printInt(ManyMethods.m0(10));
+ *         SPIM.printChar('\n');
+ *     }
+ *
+ *     public static int m0(int n) {
+ *         int s = 0;
+ *         int i = 0;
+ *         while (n &gt; i) {
+ *             if (i &gt; 0) {
+ *                 s = s + i * 1;
+ *             } else {
+ *                 s = s - 0;
+ *             }
+ *             i = i + 1;
+ *         }
+ *         return s + n * 0;
+ *     }
+ *
+ *     ...
+ * }
+ * </pre>
+ * <p>
+ * The number of methods (default 400), the number of threads (default, the number of available
+ * processors), and the register allocation scheme (default linear) may be given as command-line
+ * arguments. The debugging output of the back end is discarded. Each configuration is timed over
+ * a few runs, after a few warm-up runs, and the SPIM files the two configurations produce are
+ * compared. The SPIM runtime is located through the j environment variable, as for the compiler
+ * itself.
+ */
+public class SpimMethodsBenchmark {
+    public static void main(String[] args) throws IOException {
+        int methods = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) :
+                Runtime.getRuntime().availableProcessors();
+        String ra = args.length > 2 ? args[2] : "linear";
+
+        Path dir = Files.createTempDirectory("spim-bench");
+        Path source = dir.resolve("ManyMethods.java");
+        Files.write(source, program(methods));
+
+        double sequential = time(source, dir.resolve("j1"), 1, ra);
+        double concurrent = time(source, dir.resolve("j" + threads), threads, ra);
+        boolean same = spim(dir.resolve("j1")).equals(spim(dir.resolve("j" + threads)));
+
+        System.out.printf("%d methods, %s allocation\n", methods, ra);
+        System.out.printf("  -j 1:  %8.1f ms\n", sequential);
+        System.out.printf("  -j %d:  %8.1f ms\n", threads, concurrent);
+        System.out.printf("  SPIM output %s\n", same ? "identical" : "DIFFERS");
+    }
+
+    // Returns the lines of the generated program.
+    private static List<String> program(int methods) {
+        ArrayList<String> lines = new ArrayList<String>();
+        lines.add("import jminusminus.SPIM;");
+        lines.add("");
+        lines.add("public class ManyMethods {");
+        lines.add("    public static void main(String[] args) {");
+        lines.add("        SPIM.printInt(ManyMethods.m0(10));");
+        lines.add("        SPIM.printChar('\\n');");
+        lines.add("    }");
+        for (int k = 0; k < methods; k++) {
+            lines.add("");
+            lines.add("    public static int m" + k + "(int n) {");
+            lines.add("        int s = 0;");
+            lines.add("        int i = 0;");
+            lines.add("        while (n > i) {");
+            lines.add("            if (i > " + (k % 7) + ") {");
+            lines.add("                s = s + i * " + (k + 1) + ";");
+            lines.add("            } else {");
+            lines.add("                s = s - " + k + ";");
+            lines.add("            }");
+            lines.add("            i = i + 1;");
+            lines.add("        }");
+            lines.add("        return s + n * " + k + ";");
+            lines.add("    }");
+        }
+        lines.add("}");
+        return lines;
+    }
+
+    // Compiles the source file to SPIM in the specified directory a few times, with standard
+    // output discarded, and returns the best time in milliseconds.
+    private static double time(Path source, Path outputDir, int threads, String ra) {
+        outputDir.toFile().mkdirs();
+        String[] args = {"-j", "" + threads, "-s", ra, "-d", outputDir.toString(),
+                source.toString()};
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            public void write(int b) {
+            }
+        }));
+        double best = Double.MAX_VALUE;
+        try {
+            for (int run = 0; run < 3; run++) {
+                JavaCCMain.main(args);
+            }
+            for (int run = 0; run < 5; run++) {
+                long start = System.nanoTime();
+                JavaCCMain.main(args);
+                best = Math.min(best, (System.nanoTime() - start) / 1e6);
+            }
+        } finally {
+            System.setOut(stdout);
+        }
+        return best;
+    }
+
+    // Returns the contents of the SPIM file in the specified directory, less the header lines
+    // that name the file and the time it was compiled.
+    private static List<String> spim(Path outputDir) throws IOException {
+        List<String> lines = Files.readAllLines(outputDir.resolve("ManyMethods.s"));
+        return lines.subList(Math.min(3, lines.size()), lines.size());
+    }
+}
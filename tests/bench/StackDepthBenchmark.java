@@ -0,0 +1,72 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas.
+
+import java.util.ArrayList;
+
+import jminusminus.CLEmitter;
+
+import static jminusminus.CLConstants.*;
+
+/**
+ * This class generates (with CLEmitter) a class whose one method has many instructions and many
+ * branches, and reports the time the emitter takes to finish the method: to resolve its labels,
+ * compute the maximum depth of its operand stack, and lay out its code. The method is made up of
+ * blocks of the form:
+ *
+ * <pre>
+ *     iload_0
+ *     ifeq L
+ *     iload_1
+ *     iconst_1
+ *     iadd
+ *     istore_1
+ *     iload_1
+ *     iconst_2
+ *     iadd
+ *     istore_1
+ *   L:
+ * </pre>
+ * <p>
+ * followed by iload_1 and ireturn. The number of instructions (default 50000) may be given as a
+ * command-line argument. The method is timed over a few runs, after a few warm-up runs.
+ */
+public class StackDepthBenchmark {
+    public static void main(String[] args) {
+        int instructions = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        for (int run = 0; run < 3; run++) {
+            emit(instructions);
+        }
+        double best = Double.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            best = Math.min(best, emit(instructions));
+        }
+        System.out.printf("method of %d instructions finished in %.1f ms\n", instructions, best);
+    }
+
+    // Emits the class, and returns the time the emitter takes to finish its method, in
+    // milliseconds.
+    private static double emit(int instructions) {
+        CLEmitter e = new CLEmitter(false);
+        ArrayList<String> modifiers = new ArrayList<String>();
+        modifiers.add("public");
+        e.addClass(modifiers, "Branches", "java/lang/Object", null, true);
+        modifiers.add("static");
+        e.addMethod(modifiers, "branches", "(I)I", null, true);
+        for (int i = 0; i + 10 <= instructions - 2; i += 10) {
+            String label = e.createLabel();
+            e.addNoArgInstruction(ILOAD_0);
+            e.addBranchInstruction(IFEQ, label);
+            for (int constant = ICONST_1; constant <= ICONST_2; constant++) {
+                e.addNoArgInstruction(ILOAD_1);
+                e.addNoArgInstruction(constant);
+                e.addNoArgInstruction(IADD);
+                e.addNoArgInstruction(ISTORE_1);
+            }
+            e.addLabel(label);
+        }
+        e.addNoArgInstruction(ILOAD_1);
+        e.addNoArgInstruction(IRETURN);
+        long start = System.nanoTime();
+        e.write();
+        return (System.nanoTime() - start) / 1e6;
+    }
+}
@@ -0,0 +1,154 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas.
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import jminusminus.JavaCCMain;
+
+/**
+ * This class generates a j-- program with switch statements with many cases, compiles it with the
+ * j-- compiler, and reports the time each switch statement takes to dispatch, next to that of the
+ * equivalent chain of if statements. The generated program has the form:
+ *
+ * <pre>
+ * public class Switches {
+ *     public static int dense(int x) {
+ *         switch (x) {
+ *             case 0:
+ *                 return 1;
+ *             case 1:
+ *                 return 2;
+ *             ...
+ *             default:
+ *                 return 0;
+ *         }
+ *     }
+ *
+ *     public static int denseChain(int x) {
+ *         if (x == 0) {
+ *             return 1;
+ *         }
+ *         if (x == 1) {
+ *             return 2;
+ *         }
+ *         ...
+ *         return 0;
+ *     }
+ *
+ *     ...
+ *
+ *     public static int run(int kind, String[] keys, int reps) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * <p>
+ * with a dense switch on an int (compiled to a tableswitch), a sparse one (compiled to a
+ * lookupswitch), and a switch on a String, each with its chain of if statements. The number of
+ * cases (default 128) and the number of dispatches per run (default 1000000) may be given as
+ * command-line arguments. Each switch is timed over a few runs, after a few warm-up runs, and its
+ * results are checked against those of the chain.
+ */
+public class SwitchBenchmark {
+    // The kinds of switches, in the order of the kind argument of the generated run() method.
+    private static final String[] KINDS = {"dense", "denseChain", "sparse", "sparseChain",
+            "string", "stringChain"};
+
+    public static void main(String[] args) throws Exception {
+        int cases = args.length > 0 ? Integer.parseInt(args[0]) : 128;
+        int reps = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+
+        Path dir = Files.createTempDirectory("switch-bench");
+        Path source = dir.resolve("Switches.java");
+        Files.write(source, program(cases));
+        JavaCCMain.main(new String[] {"-d", dir.toString(), source.toString()});
+        URLClassLoader loader = new URLClassLoader(new URL[] {dir.toUri().toURL()});
+        Method run = loader.loadClass("Switches").getMethod("run", int.class, String[].class,
+                int.class);
+
+        String[] keys = new String[cases];
+        for (int k = 0; k < cases; k++) {
+            keys[k] = "key" + k;
+        }
+        System.out.printf("%d cases, %d dispatches\n", cases, reps);
+        for (int kind = 0; kind < KINDS.length; kind += 2) {
+            double[] times = new double[2];
+            int[] results = new int[2];
+            for (int chain = 0; chain < 2; chain++) {
+                for (int warmup = 0; warmup < 3; warmup++) {
+                    run.invoke(null, kind + chain, keys, reps);
+                }
+                times[chain] = Double.MAX_VALUE;
+                for (int i = 0; i < 5; i++) {
+                    long start = System.nanoTime();
+                    results[chain] = (Integer) run.invoke(null, kind + chain, keys, reps);
+                    times[chain] = Math.min(times[chain], (System.nanoTime() - start) / 1e6);
+                }
+            }
+            System.out.printf("  %-7s switch: %8.1f ms   if chain: %8.1f ms   results %s\n",
+                    KINDS[kind], times[0], times[1], results[0] == results[1] ? "agree" :
+                            "DIFFER");
+        }
+    }
+
+    // Returns the lines of the generated program.
+    private static List<String> program(int cases) {
+        ArrayList<String> lines = new ArrayList<String>();
+        lines.add("public class Switches {");
+        for (int kind = 0; kind < KINDS.length; kind += 2) {
+            lines.add("    public static int " + KINDS[kind] + "(" +
+                    (KINDS[kind].equals("string") ? "String" : "int") + " x) {");
+            lines.add("        switch (x) {");
+            for (int k = 0; k < cases; k++) {
+                lines.add("            case " + key(kind, k) + ":");
+                lines.add("                return " + (k + 1) + ";");
+            }
+            lines.add("            default:");
+            lines.add("                return 0;");
+            lines.add("        }");
+            lines.add("    }");
+            lines.add("");
+            lines.add("    public static int " + KINDS[kind + 1] + "(" +
+                    (KINDS[kind].equals("string") ? "String" : "int") + " x) {");
+            for (int k = 0; k < cases; k++) {
+                lines.add("        if (" + (KINDS[kind].equals("string") ? "x.equals((Object) " +
+                        key(kind, k) + ")" : "x == " + key(kind, k)) + ") {");
+                lines.add("            return " + (k + 1) + ";");
+                lines.add("        }");
+            }
+            lines.add("        return 0;");
+            lines.add("    }");
+            lines.add("");
+        }
+        lines.add("    public static int run(int kind, String[] keys, int reps) {");
+        lines.add("        int sum = 0;");
+        lines.add("        int k = 0;");
+        lines.add("        while (reps > 0) {");
+        for (int kind = 0; kind < KINDS.length; kind++) {
+            String argument = kind < 2 ? "k" : kind < 4 ? "k * 1009" : "keys[k]";
+            lines.add("            if (kind == " + kind + ") {");
+            lines.add("                sum += Switches." + KINDS[kind] + "(" + argument + ");");
+            lines.add("            }");
+        }
+        lines.add("            k += 1;");
+        lines.add("            if (k == keys.length) {");
+        lines.add("                k = 0;");
+        lines.add("            }");
+        lines.add("            reps = reps - 1;");
+        lines.add("        }");
+        lines.add("        return sum;");
+        lines.add("    }");
+        lines.add("}");
+        return lines;
+    }
+
+    // Returns the case label of the kth case of a switch of the specified kind.
+    private static String key(int kind, int k) {
+        return kind == 0 ? "" + k : kind == 2 ? "" + k * 1009 : "\"key" + k + "\"";
+    }
+}
@@ -0,0 +1,111 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas.
+
+import java.util.ArrayList;
+
+import jminusminus.CLEmitter;
+
+import static jminusminus.CLConstants.*;
+
+/**
+ * This class programatically generates the class file for the following Java application using
+ * CLEmitter:
+ *
+ * <pre>
+ * public class LongBranches {
+ *     public static void main(String[] args) {
+ *         int n = Integer.parseInt(args[0]);
+ *         int sum = 0;
+ *         int i = 0;
+ *         while (i &lt; n) {
+ *             if (i % 2 == 0) {
+ *                 sum += 1;
+ *                 sum += 1;
+ *                 ...            // 11000 times in all
+ *             }
+ *             i += 1;
+ *         }
+ *         System.out.println(sum);
+ *     }
+ * }
+ * </pre>
+ * <p>
+ * The body of the if statement is more than 32K of code, too far for the two-byte offsets of the
+ * branches around it and back to the top of the loop, so CLEmitter must widen them.
+ */
+public class GenLongBranches {
+    public static void main(String[] args) {
+        // CLEmitter instance
+        CLEmitter e = new CLEmitter(true);
+
+        // ArrayList instance to store modifiers
+        ArrayList<String> modifiers = new ArrayList<String>();
+
+        // public class LongBranches {
+        modifiers.add("public");
+        e.addClass(modifiers, "LongBranches", "java/lang/Object", null, true);
+
+        // public static void main(String[] args) {
+        modifiers.clear();
+        modifiers.add("public");
+        modifiers.add("static");
+        e.addMethod(modifiers, "main", "([Ljava/lang/String;)V", null, true);
+
+        // int n = Integer.parseInt(args[0]);
+        e.addNoArgInstruction(ALOAD_0);
+        e.addNoArgInstruction(ICONST_0);
+        e.addNoArgInstruction(AALOAD);
+        e.addMemberAccessInstruction(INVOKESTATIC, "java/lang/Integer", "parseInt",
+                "(Ljava/lang/String;)I");
+        e.addNoArgInstruction(ISTORE_1);
+
+        // int sum = 0;
+        e.addNoArgInstruction(ICONST_0);
+        e.addNoArgInstruction(ISTORE_2);
+
+        // int i = 0;
+        e.addNoArgInstruction(ICONST_0);
+        e.addNoArgInstruction(ISTORE_3);
+
+        // while (i < n) {
+        e.addLabel("StartWhile");
+
+        // if i >= n branch to "EndWhile"
+        e.addNoArgInstruction(ILOAD_3);
+        e.addNoArgInstruction(ILOAD_1);
+        e.addBranchInstruction(IF_ICMPGE, "EndWhile");
+
+        // if (i % 2 == 0) {
+        e.addNoArgInstruction(ILOAD_3);
+        e.addNoArgInstruction(ICONST_2);
+        e.addNoArgInstruction(IREM);
+        e.addBranchInstruction(IFNE, "EndIf");
+
+        // sum += 1; (11000 times)
+        for (int i = 0; i < 11000; i++) {
+            e.addIINCInstruction(2, 1);
+        }
+
+        // End of if
+        e.addLabel("EndIf");
+
+        // i += 1;
+        e.addIINCInstruction(3, 1);
+
+        // Branch to "StartWhile"
+        e.addBranchInstruction(GOTO, "StartWhile");
+
+        // End of while
+        e.addLabel("EndWhile");
+
+        // System.out.println(sum);
+        e.addMemberAccessInstruction(GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
+        e.addNoArgInstruction(ILOAD_2);
+        e.addMemberAccessInstruction(INVOKEVIRTUAL, "java/io/PrintStream", "println", "(I)V");
+
+        // return;
+        e.addNoArgInstruction(RETURN);
+
+        // Write LongBranches.class to file system
+        e.write();
+    }
+}
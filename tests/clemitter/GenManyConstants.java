@@ -0,0 +1,86 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas.
+
+import java.util.ArrayList;
+
+import jminusminus.CLEmitter;
+
+import static jminusminus.CLConstants.*;
+
+/**
+ * This class programatically generates the class file for a stress test of the constant pool,
+ * and reports the time CLEmitter took to build it. The generated application has the form:
+ *
+ * <pre>
+ * public class ManyConstants {
+ *     public static void m0() {
+ *         "s0"; 1000000; "s1"; 1000001; ...
+ *     }
+ *
+ *     public static void m1() {
+ *         ...
+ *     }
+ *
+ *     ...
+ *
+ *     public static void main(String[] args) {
+ *         System.out.println("ManyConstants");
+ *     }
+ * }
+ * </pre>
+ * <p>
+ * where each constant is loaded with an LDC and discarded with a POP. Every string and int
+ * literal is distinct, so the constant pool ends up with well over 20,000 entries. The number of
+ * methods and constants per method may be given as command-line arguments.
+ */
+public class GenManyConstants {
+    public static void main(String[] args) {
+        int methods = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int constantsPerMethod = args.length > 1 ? Integer.parseInt(args[1]) : 600;
+
+        long start = System.nanoTime();
+
+        // CLEmitter instance
+        CLEmitter e = new CLEmitter(true);
+
+        // ArrayList instance to store modifiers
+        ArrayList<String> modifiers = new ArrayList<String>();
+
+        // public class ManyConstants {
+        modifiers.add("public");
+        e.addClass(modifiers, "ManyConstants", "java/lang/Object", null, true);
+
+        // public static void m<i>() { ... }
+        modifiers.clear();
+        modifiers.add("public");
+        modifiers.add("static");
+        int k = 0;
+        for (int i = 0; i < methods; i++) {
+            e.addMethod(modifiers, "m" + i, "()V", null, true);
+            for (int j = 0; j < constantsPerMethod; j++, k++) {
+                e.addLDCInstruction("s" + k);
+                e.addNoArgInstruction(POP);
+                e.addLDCInstruction(1000000 + k);
+                e.addNoArgInstruction(POP);
+            }
+            e.addNoArgInstruction(RETURN);
+        }
+
+        // public static void main(String[] args) {
+        e.addMethod(modifiers, "main", "([Ljava/lang/String;)V", null, true);
+
+        // System.out.println("ManyConstants");
+        e.addMemberAccessInstruction(GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
+        e.addLDCInstruction("ManyConstants");
+        e.addMemberAccessInstruction(INVOKEVIRTUAL, "java/io/PrintStream", "println",
+                "(Ljava/lang/String;)V");
+
+        // return;
+        e.addNoArgInstruction(RETURN);
+
+        // Write ManyConstants.class to file system
+        e.write();
+
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%d distinct constants emitted in %.1f ms\n", 2 * k, elapsed / 1e6);
+    }
+}
@@ -0,0 +1,159 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas.
+
+import java.util.ArrayList;
+
+import jminusminus.CLEmitter;
+
+import static jminusminus.CLConstants.*;
+
+/**
+ * This class programatically generates the class file for the following Java application using
+ * CLEmitter, with the peephole optimizer enabled:
+ *
+ * <pre>
+ * public class Peephole {
+ *     public static void main(String[] args) {
+ *         if (args != null) {
+ *             System.out.println(f(args.length));
+ *         }
+ *         System.out.println(f(5));
+ *     }
+ *
+ *     private static int f(int x) {
+ *         int y = x;
+ *         y = y;
+ *         y = y + 0;
+ *         y = y * 1;
+ *         y = y + 3;
+ *         if (x != 0) {
+ *             y = y - 1;
+ *         }
+ *         return y;
+ *     }
+ * }
+ * </pre>
+ * <p>
+ * The code is generated naively, with a dead return, and a jump to a jump to a return, so that
+ * each rule of the optimizer has something to rewrite; f() comes out as:
+ *
+ * <pre>
+ *     iload_0
+ *     istore_1
+ *     iinc 1, 3
+ *     iload_0
+ *     ifeq L
+ *     iinc 1, -1
+ *   L:
+ *     iload_1
+ *     ireturn
+ * </pre>
+ */
+public class GenPeephole {
+    public static void main(String[] args) {
+        // Enable the peephole optimizer
+        CLEmitter.setOptimize(true);
+
+        // CLEmitter instance
+        CLEmitter e = new CLEmitter(true);
+
+        // ArrayList instance to store modifiers
+        ArrayList<String> modifiers = new ArrayList<String>();
+
+        // public class Peephole {
+        modifiers.add("public");
+        e.addClass(modifiers, "Peephole", "java/lang/Object", null, true);
+
+        // public static void main(String[] args) {
+        modifiers.clear();
+        modifiers.add("public");
+        modifiers.add("static");
+        e.addMethod(modifiers, "main", "([Ljava/lang/String;)V", null, true);
+
+        // if (args != null) {
+        e.addNoArgInstruction(ALOAD_0);
+        e.addNoArgInstruction(ACONST_NULL);
+        e.addBranchInstruction(IF_ACMPEQ, "EndIf");
+
+        // System.out.println(f(args.length));
+        e.addMemberAccessInstruction(GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
+        e.addNoArgInstruction(ALOAD_0);
+        e.addNoArgInstruction(ARRAYLENGTH);
+        e.addMemberAccessInstruction(INVOKESTATIC, "Peephole", "f", "(I)I");
+        e.addMemberAccessInstruction(INVOKEVIRTUAL, "java/io/PrintStream", "println", "(I)V");
+
+        // End of if
+        e.addLabel("EndIf");
+
+        // System.out.println(f(5));
+        e.addMemberAccessInstruction(GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
+        e.addNoArgInstruction(ICONST_5);
+        e.addMemberAccessInstruction(INVOKESTATIC, "Peephole", "f", "(I)I");
+        e.addMemberAccessInstruction(INVOKEVIRTUAL, "java/io/PrintStream", "println", "(I)V");
+
+        // return;
+        e.addNoArgInstruction(RETURN);
+
+        // private static int f(int x) {
+        modifiers.clear();
+        modifiers.add("private");
+        modifiers.add("static");
+        e.addMethod(modifiers, "f", "(I)I", null, true);
+
+        // int y = x;
+        e.addNoArgInstruction(ILOAD_0);
+        e.addNoArgInstruction(ISTORE_1);
+
+        // y = y;
+        e.addNoArgInstruction(ILOAD_1);
+        e.addNoArgInstruction(ISTORE_1);
+
+        // y = y + 0;
+        e.addNoArgInstruction(ILOAD_1);
+        e.addNoArgInstruction(ICONST_0);
+        e.addNoArgInstruction(IADD);
+        e.addNoArgInstruction(ISTORE_1);
+
+        // y = y * 1;
+        e.addNoArgInstruction(ILOAD_1);
+        e.addNoArgInstruction(ICONST_1);
+        e.addNoArgInstruction(IMUL);
+        e.addNoArgInstruction(ISTORE_1);
+
+        // y = y + 3;
+        e.addNoArgInstruction(ILOAD_1);
+        e.addNoArgInstruction(ICONST_3);
+        e.addNoArgInstruction(IADD);
+        e.addNoArgInstruction(ISTORE_1);
+
+        // if (x != 0) {, branching over a jump to the end of the if
+        e.addNoArgInstruction(ILOAD_0);
+        e.addNoArgInstruction(ICONST_0);
+        e.addBranchInstruction(IF_ICMPNE, "Then");
+        e.addBranchInstruction(GOTO, "EndIf");
+        e.addLabel("Then");
+
+        // y = y - 1;
+        e.addNoArgInstruction(ILOAD_1);
+        e.addNoArgInstruction(ICONST_1);
+        e.addNoArgInstruction(ISUB);
+        e.addNoArgInstruction(ISTORE_1);
+
+        // End of if
+        e.addLabel("EndIf");
+
+        // return y;, the long way round
+        e.addNoArgInstruction(ILOAD_1);
+        e.addNoArgInstruction(DUP);
+        e.addNoArgInstruction(POP);
+        e.addBranchInstruction(GOTO, "Exit");
+        e.addNoArgInstruction(ICONST_M1);
+        e.addNoArgInstruction(IRETURN);
+        e.addLabel("Exit");
+        e.addBranchInstruction(GOTO, "Return");
+        e.addLabel("Return");
+        e.addNoArgInstruction(IRETURN);
+
+        // Write Peephole.class to file system
+        e.write();
+    }
+}
@@ -0,0 +1,83 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+//
+// Accepts lo (int), hi (int) and zero or more values (int) as command-line arguments; and writes
+// to standard output each value, noting those out of [lo, hi], and the sum of the squares of the
+// values clamped to [lo, hi]. Compiled with -O, the small private and static helper methods are
+// inlined into their callers.
+
+import java.lang.Integer;
+import java.lang.System;
+
+public class Clamp {
+    // Lower bound.
+    private int lo;
+
+    // Upper bound.
+    private int hi;
+
+    // Constructs a Clamp for the interval [lo, hi].
+    public Clamp(int lo, int hi) {
+        this.lo = lo;
+        this.hi = hi;
+    }
+
+    // Entry point.
+    public static void main(String[] args) {
+        Clamp clamp = new Clamp(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+        int sum = 0;
+        int i = 2;
+        while (i <= args.length - 1) {
+            int x = Integer.parseInt(args[i]);
+            report(x, clamp.isInside(x));
+            x = clamp.clamped(x);
+            sum = sum + square(x);
+            ++i;
+        }
+        System.out.println("Sum of squares: " + sum);
+    }
+
+    // Returns x clamped to [lo, hi].
+    public int clamped(int x) {
+        if (x > hi) {
+            return hi;
+        }
+        return max(lo, x);
+    }
+
+    // Returns true if x is in [lo, hi], and false otherwise.
+    public boolean isInside(int x) {
+        return !below(x) && !above(x);
+    }
+
+    // Returns true if x is less than lo, and false otherwise.
+    private boolean below(int x) {
+        return lo > x;
+    }
+
+    // Returns true if x is greater than hi, and false otherwise.
+    private boolean above(int x) {
+        return x > hi;
+    }
+
+    // Returns the larger of a and b.
+    private static int max(int a, int b) {
+        if (a > b) {
+            return a;
+        }
+        return b;
+    }
+
+    // Returns x * x.
+    private static int square(int x) {
+        return x * x;
+    }
+
+    // Writes x, and whether it is inside the interval, to standard output.
+    private static void report(int x, boolean inside) {
+        if (!inside) {
+            System.out.println(x + " (out of range)");
+            return;
+        }
+        System.out.println(x);
+    }
+}
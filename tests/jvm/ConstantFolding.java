@@ -0,0 +1,30 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+//
+// Writes to standard output the values of a few constant expressions, which are folded at compile
+// time, with the same results (overflow included) as at run time.
+
+import java.lang.Integer;
+import java.lang.System;
+
+public class ConstantFolding {
+    // Constants.
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+    private static final String GREETING = "Hello" + ", " + "World";
+    private static final char SEPARATOR = ':';
+    private static final boolean DEBUG = !true;
+
+    // Entry point.
+    public static void main(String[] args) {
+        System.out.println(SECONDS_PER_DAY * 7);
+        System.out.println(GREETING + SEPARATOR + " " + ConstantFolding.SECONDS_PER_DAY);
+        System.out.println(Integer.MAX_VALUE + 1);
+        System.out.println(-Integer.MIN_VALUE == Integer.MIN_VALUE);
+        System.out.println(65536 * 65536 - 1);
+        System.out.println(3 * 4 > 11 && !DEBUG);
+        System.out.println("x" + 1 + 2);
+        System.out.println(1 + 2 + "x");
+        if (DEBUG) {
+            System.out.println("Debugging");
+        }
+    }
+}
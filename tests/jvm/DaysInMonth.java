@@ -0,0 +1,115 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+//
+// Accepts the name of a month (String) and a year (int) as command-line arguments; and writes the
+// number of days in the month, and the number of months left in its quarter, to standard output.
+
+import java.lang.Integer;
+import java.lang.System;
+
+public class DaysInMonth {
+    // Entry point.
+    public static void main(String[] args) {
+        int m = month(args[0]);
+        int y = Integer.parseInt(args[1]);
+        if (m == 0) {
+            System.out.println("Unknown month: " + args[0]);
+            return;
+        }
+        System.out.println(args[0] + " " + y + " has " + days(m, y) + " days");
+        System.out.println(monthsLeftInQuarter(m) + " month(s) left in the quarter");
+    }
+
+    // Returns the number (1 to 12) of the month with the given name, or 0.
+    private static int month(String name) {
+        switch (name) {
+            case "January":
+                return 1;
+            case "February":
+                return 2;
+            case "March":
+                return 3;
+            case "April":
+                return 4;
+            case "May":
+                return 5;
+            case "June":
+                return 6;
+            case "July":
+                return 7;
+            case "August":
+                return 8;
+            case "Sept":
+            case "September":
+                return 9;
+            case "October":
+                return 10;
+            case "November":
+                return 11;
+            case "December":
+                return 12;
+            default:
+                return 0;
+        }
+    }
+
+    // Returns the number of days in month m of year y.
+    private static int days(int m, int y) {
+        int days = 31;
+        switch (m) {
+            case 2:
+                days = 28;
+                if (isLeapYear(y)) {
+                    days += 1;
+                }
+                break;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                days = 30;
+                break;
+        }
+        return days;
+    }
+
+    // Returns the number of months left in the quarter of month m, m included.
+    private static int monthsLeftInQuarter(int m) {
+        int left = 0;
+        switch (m) {
+            case 1:
+            case 4:
+            case 7:
+            case 10:
+                left += 1;
+            case 2:
+            case 5:
+            case 8:
+            case 11:
+                left += 1;
+            default:
+                left += 1;
+        }
+        return left;
+    }
+
+    // Returns true if y is a leap year, and false otherwise.
+    private static boolean isLeapYear(int y) {
+        switch (y) {
+            case 1600:
+            case 2000:
+            case 2400:
+                return true;
+            case 1700:
+            case 1800:
+            case 1900:
+            case 2100:
+            case 2200:
+            case 2300:
+                return false;
+        }
+        while (y > 3) {
+            y = y - 4;
+        }
+        return y == 0;
+    }
+}
@@ -0,0 +1,89 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+//
+// Accepts angles in degrees (int, 0 to 360) as command-line arguments; and writes to standard
+// output the sine and cosine of each, times 10000 and rounded, which are read from a table, and
+// whether the angle is a prime number, which is read from another. Array initializers with 32 or
+// more constant elements, such as these, compile to strings that the class initializer decodes
+// (see the -pack option).
+
+import java.lang.Integer;
+import java.lang.System;
+
+public class SineTable {
+    // sin(d) * 10000, rounded, for d = 0, 1, ..., 90.
+    private static int[] SINES = {
+            0, 175, 349, 523, 698, 872, 1045, 1219, 1392, 1564, 1736, 1908, 2079, 2250, 2419, 2588,
+            2756, 2924, 3090, 3256, 3420, 3584, 3746, 3907, 4067, 4226, 4384, 4540, 4695, 4848,
+            5000, 5150, 5299, 5446, 5592, 5736, 5878, 6018, 6157, 6293, 6428, 6561, 6691, 6820,
+            6947, 7071, 7193, 7314, 7431, 7547, 7660, 7771, 7880, 7986, 8090, 8192, 8290, 8387,
+            8480, 8572, 8660, 8746, 8829, 8910, 8988, 9063, 9135, 9205, 9272, 9336, 9397, 9455,
+            9511, 9563, 9613, 9659, 9703, 9744, 9781, 9816, 9848, 9877, 9903, 9925, 9945, 9962,
+            9976, 9986, 9994, 9998, 10000
+    };
+
+    // Whether d is prime, for d = 0, 1, ..., 360.
+    private static boolean[] PRIMES = {
+            false, false, true, true, false, true, false, true, false, false, false, true, false,
+            true, false, false, false, true, false, true, false, false, false, true, false, false,
+            false, false, false, true, false, true, false, false, false, false, false, true, false,
+            false, false, true, false, true, false, false, false, true, false, false, false, false,
+            false, true, false, false, false, false, false, true, false, true, false, false, false,
+            false, false, true, false, false, false, true, false, true, false, false, false, false,
+            false, true, false, false, false, true, false, false, false, false, false, true, false,
+            false, false, false, false, false, false, true, false, false, false, true, false, true,
+            false, false, false, true, false, true, false, false, false, true, false, false, false,
+            false, false, false, false, false, false, false, false, false, false, true, false,
+            false, false, true, false, false, false, false, false, true, false, true, false, false,
+            false, false, false, false, false, false, false, true, false, true, false, false,
+            false, false, false, true, false, false, false, false, false, true, false, false,
+            false, true, false, false, false, false, false, true, false, false, false, false,
+            false, true, false, true, false, false, false, false, false, false, false, false,
+            false, true, false, true, false, false, false, true, false, true, false, false, false,
+            false, false, false, false, false, false, false, false, true, false, false, false,
+            false, false, false, false, false, false, false, false, true, false, false, false,
+            true, false, true, false, false, false, true, false, false, false, false, false, true,
+            false, true, false, false, false, false, false, false, false, false, false, true,
+            false, false, false, false, false, true, false, false, false, false, false, true,
+            false, false, false, false, false, true, false, true, false, false, false, false,
+            false, true, false, false, false, true, false, true, false, false, false, false, false,
+            false, false, false, false, true, false, false, false, false, false, false, false,
+            false, false, false, false, false, false, true, false, false, false, true, false, true,
+            false, false, false, true, false, false, false, false, false, false, false, false,
+            false, false, false, false, false, true, false, false, false, false, false, true,
+            false, false, false, false, false, false, false, false, false, true, false, true,
+            false, false, false, true, false, false, false, false, false, true, false
+    };
+
+    // Entry point.
+    public static void main(String[] args) {
+        int i = 0;
+        while (i <= args.length - 1) {
+            int d = Integer.parseInt(args[i]);
+            String s = "sin(" + d + ") = " + sin(d) + ", cos(" + d + ") = " + cos(d);
+            if (PRIMES[d]) {
+                s = s + ", prime";
+            }
+            System.out.println(s);
+            ++i;
+        }
+    }
+
+    // Returns sin(d) * 10000, rounded, for d in [0, 360].
+    private static int sin(int d) {
+        if (d > 180) {
+            return -sin(d - 180);
+        }
+        if (d > 90) {
+            return SINES[180 - d];
+        }
+        return SINES[d];
+    }
+
+    // Returns cos(d) * 10000, rounded, for d in [0, 360].
+    private static int cos(int d) {
+        if (d > 270) {
+            return sin(d - 270);
+        }
+        return sin(d + 90);
+    }
+}
@@ -0,0 +1,35 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+//
+// Accepts n (int) as command-line argument; and writes to standard output the sum 1 + 2 + ... + n
+// and whether n is even, both computed by tail-recursive methods. Compiled with -O, the tail
+// calls become jumps, so large values of n (eg, 50000) do not overflow the stack.
+
+import java.lang.Integer;
+import java.lang.System;
+
+public class TailRecursion {
+    // Entry point.
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        System.out.println("1 + 2 + ... + " + n + " = " + sum(n, 0));
+        System.out.println(n + " is even: " + isEven(n));
+    }
+
+    // Returns acc + 1 + 2 + ... + n.
+    private static int sum(int n, int acc) {
+        if (n == 0) {
+            return acc;
+        }
+        return sum(n - 1, acc + n);
+    }
+
+    // Returns true if n (>= 0) is even, and false otherwise.
+    private static boolean isEven(int n) {
+        if (n == 0) {
+            return true;
+        } else if (n == 1) {
+            return false;
+        }
+        return isEven(n - 2);
+    }
+}
@@ -0,0 +1,86 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+//
+// Tests the optimizations of the HIR (the -O option): constants propagated through a loop whose
+// branch on a constant condition is folded away, along with the phi function arguments it would
+// have merged in; a static field loaded over and over across the blocks of a loop, and
+// expressions computed twice; and dead code. The output is the same with and without -O, on the
+// JVM and in SPIM.
+
+import jminusminus.SPIM;
+
+public class Optimizations {
+    // The scale of the terms that terms() adds up.
+    private static int scale;
+
+    // Entry point.
+    public static void main(String[] args) {
+        SPIM.printInt(Optimizations.folded(5));
+        SPIM.printChar('\n');
+        Optimizations.scale = 3;
+        SPIM.printInt(Optimizations.terms(10));
+        SPIM.printChar('\n');
+        SPIM.printInt(Optimizations.common(3, 4));
+        SPIM.printChar(' ');
+        SPIM.printInt(Optimizations.common(5, 2));
+        SPIM.printChar('\n');
+        SPIM.printInt(Optimizations.never(7));
+        SPIM.printChar('\n');
+    }
+
+    // Returns the sum of 3 * i for i from 0 to n - 1. The else branch is never taken, since k
+    // stays 3.
+    public static int folded(int n) {
+        int k = 3;
+        int s = 0;
+        int i = 0;
+        while (n > i) {
+            if (k > 2) {
+                s = s + i * k;
+            } else {
+                s = s - 1000;
+                k = k + 1;
+            }
+            i = i + 1;
+        }
+        return s;
+    }
+
+    // Returns scale, plus the sum of scale * i + scale for i from 0 to n - 1, plus scale once
+    // more if n is more than 5.
+    public static int terms(int n) {
+        int s = Optimizations.scale;
+        int i = 0;
+        while (n > i) {
+            s = s + Optimizations.scale * i + Optimizations.scale;
+            i = i + 1;
+        }
+        if (n > 5) {
+            s = s + Optimizations.scale;
+        }
+        return s;
+    }
+
+    // Returns a value computed from a * b, over and over.
+    public static int common(int a, int b) {
+        int x = a * b + a;
+        int y = 0;
+        if (a > b) {
+            y = a * b - 1;
+        } else {
+            y = b * a + 2;
+        }
+        int unused = a * 7 + x;
+        return x + y + a * b;
+    }
+
+    // Returns n. The loop is never entered.
+    public static int never(int n) {
+        int t = 0;
+        int s = n;
+        while (t > 0) {
+            s = s + 1;
+            t = t - 1;
+        }
+        return s;
+    }
+}
@@ -0,0 +1,109 @@
+// Copyright 2012- Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+//
+// Tests the linear scan and graph coloring register allocators (-s linear and -s graph) and the phi
+// functions of the SSA form, best with a small number of registers (e.g., -r 3): more values are
+// live in the loops below than there are registers, so some must be spilled, and the phi functions
+// at the loop heads and at the joins of the nested conditionals turn into moves, some of which
+// swap values around. The output is the same with -s linear or -s graph and any number of
+// registers, on the JVM and in SPIM; the naive allocator (-s naive) is not expected to get it
+// right.
+
+import jminusminus.SPIM;
+
+public class Registers {
+    // Entry point.
+    public static void main(String[] args) {
+        SPIM.printInt(Registers.swap(7));
+        SPIM.printChar('\n');
+        SPIM.printInt(Registers.nested(6));
+        SPIM.printChar('\n');
+        SPIM.printInt(Registers.joins(20));
+        SPIM.printChar('\n');
+        SPIM.printInt(Registers.pressure(12));
+        SPIM.printChar('\n');
+    }
+
+    // Returns a value computed from a and b, which trade places each time around the loop.
+    public static int swap(int n) {
+        int a = 1;
+        int b = 2;
+        int s = 0;
+        int i = 0;
+        while (n > i) {
+            int t = a;
+            a = b;
+            b = t;
+            s = s * 3 + a;
+            i = i + 1;
+        }
+        return s * 10 + b;
+    }
+
+    // Returns the sum of i * j for 0 <= j < i < n.
+    public static int nested(int n) {
+        int s = 0;
+        int i = 0;
+        while (n > i) {
+            int j = 0;
+            while (i > j) {
+                s = s + i * j;
+                j = j + 1;
+            }
+            i = i + 1;
+        }
+        return s;
+    }
+
+    // Returns a value computed from x and y, which are updated along different paths through the
+    // nested conditionals in the loop.
+    public static int joins(int n) {
+        int x = 0;
+        int y = 5;
+        int i = 0;
+        while (n > i) {
+            if (i > 10) {
+                if (i > 15) {
+                    y = y - 1;
+                } else {
+                    x = x + 2;
+                }
+            } else {
+                y = y + x;
+            }
+            i = i + 1;
+        }
+        return x * 100 + y;
+    }
+
+    // Returns a value computed from seven values that are all live across the loop, and across the
+    // call to twice() in it.
+    public static int pressure(int n) {
+        int a = 1;
+        int b = 2;
+        int c = 3;
+        int d = 4;
+        int e = 5;
+        int f = 6;
+        int g = 7;
+        int i = 0;
+        while (n > i) {
+            a = a + b;
+            b = b + c - a;
+            c = c + d;
+            d = d - e + i;
+            e = e + f;
+            f = f - g;
+            g = g + 1;
+            if (i > 5) {
+                a = a - Registers.twice(g);
+            }
+            i = i + 1;
+        }
+        return a + b + c + d + e + f + g;
+    }
+
+    // Returns x + x.
+    private static int twice(int x) {
+        return x + x;
+    }
+}